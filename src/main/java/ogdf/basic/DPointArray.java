@@ -0,0 +1,104 @@
+package ogdf.basic;
+
+import java.util.*;
+
+//! Structure-of-arrays storage of one real point per node, indexed with node::index().
+/**
+ * The coordinates are kept in three primitive arrays, so as the force-directed layouts can do their per iteration point
+ * arithmetic in place, without allocating a DPoint per addition, subtraction or scaling. In 2D the z-coordinates stay
+ * 0.0, so the results are the same as with DPoint2.
+ *
+ * The node indices of a Graph are contiguous, so an array created for \a G has one slot per node of \a G.
+ */
+public class DPointArray
+{
+    public final double[] x; //!< The x-coordinates.
+    public final double[] y; //!< The y-coordinates.
+    public final double[] z; //!< The z-coordinates (0.0 in 2D).
+
+    //! Creates an array of \a size points (0,0,0).
+    public DPointArray(int size)
+    {
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+    }
+
+    //! Creates an array of points (0,0,0) associated with the nodes of \a G.
+    public DPointArray(Graph G)
+    {
+        this(G.numberOfNodes());
+    }
+
+    //! Returns the number of points.
+    public int size()
+    {
+        return x.length;
+    }
+
+    //! Sets all points to (0,0,0).
+    public void clear()
+    {
+        Arrays.fill(x, 0.0);
+        Arrays.fill(y, 0.0);
+        Arrays.fill(z, 0.0);
+    }
+
+    //! Sets the point with index \a i to (\a px,\a py,\a pz).
+    public void set(int i, double px, double py, double pz)
+    {
+        x[i] = px;
+        y[i] = py;
+        z[i] = pz;
+    }
+
+    //! Sets all points to the points of \a P.
+    public void set(DPointArray P)
+    {
+        System.arraycopy(P.x, 0, x, 0, x.length);
+        System.arraycopy(P.y, 0, y, 0, y.length);
+        System.arraycopy(P.z, 0, z, 0, z.length);
+    }
+
+    //! Adds the points of \a P to all points.
+    public void add(DPointArray P)
+    {
+        for (int i = 0; i < x.length; i++)
+        {
+            x[i] += P.x[i];
+            y[i] += P.y[i];
+            z[i] += P.z[i];
+        }
+    }
+
+    //! Scales the point with index \a i by \a s.
+    public void scale(int i, double s)
+    {
+        x[i] *= s;
+        y[i] *= s;
+        z[i] *= s;
+    }
+
+    //! Returns the norm of the point with index \a i.
+    public double length(int i)
+    {
+        return java.lang.Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+    }
+
+    //! Returns a new DPoint of the current dimensions with the value of the point with index \a i.
+    public DPoint get(int i)
+    {
+        DPoint p = PointFactory.INSTANCE.newDPoint();
+        p.setX(x[i]);
+        p.setY(y[i]);
+        p.setZ(z[i]);
+
+        return p;
+    }
+
+    //! Sets the point with index \a i to the value of \a p.
+    public void set(int i, DPoint p)
+    {
+        set(i, p.getX(), p.getY(), p.getZ());
+    }
+}
@@ -35,6 +35,7 @@ import java.util.*;
 import java.io.*;
 import ogdf.basic.*;
 import org.biolayout.Utils.ref;
+import org.biolayout.CPUParallelism.Executors.*;
 import org.biolayout.CoreUI.Dialogs.LayoutProgressBarDialog;
 import static org.biolayout.Environment.GlobalEnvironment.*;
 import static org.biolayout.DebugConsole.ConsoleOutput.*;
@@ -263,6 +264,23 @@ public class FMMMLayout
         return m_randSeed;
     }
 
+    //! Returns the current setting of option numberOfThreads.
+    /**
+     * The number of threads of the ComputePool the repulsive and attractive forces and the coarsening are calculated
+     * with. The work is split in fixed chunks of nodes, cells & edges, summed up in a fixed order, so for a fixed
+     * randSeed() the layout is always the same whatever numberOfThreads().
+     */
+    public int numberOfThreads()
+    {
+        return m_numberOfThreads;
+    }
+
+    //! Sets the option numberOfThreads to \a n.
+    public void numberOfThreads(int n)
+    {
+        m_numberOfThreads = ((n >= 1) ? n : 1);
+    }
+
     //! Returns the current setting of option edgeLengthMeasurement.
     /**
      * This option indicates how the length of an edge is measured. Possible values: - \a elmMidpoint: from center to
@@ -777,13 +795,13 @@ public class FMMMLayout
      * This option defines how the reduced bucket quadtree is constructed. Possible values: - \a rtcPathByPath: path by
      * path construction - \a rtcSubtreeBySubtree: subtree by subtree construction
      */
-    ReducedTreeConstruction nmTreeConstruction()
+    public ReducedTreeConstruction nmTreeConstruction()
     {
         return m_NMTreeConstruction;
     }
 
     //! Sets the option nmTreeConstruction to \a rtc.
-    void nmTreeConstruction(ReducedTreeConstruction rtc)
+    public void nmTreeConstruction(ReducedTreeConstruction rtc)
     {
         m_NMTreeConstruction = rtc;
     }
@@ -794,13 +812,13 @@ public class FMMMLayout
      * quadtree is calculated. Possible values: - \a scfIteratively: iteratively (in constant time) - \a scfAluru: by
      * the formula by Aluru et al. (in constant time)
      */
-    SmallestCellFinding nmSmallCell()
+    public SmallestCellFinding nmSmallCell()
     {
         return m_NMSmallCell;
     }
 
     //! Sets the option nmSmallCell to \a scf.
-    void nmSmallCell(SmallestCellFinding scf)
+    public void nmSmallCell(SmallestCellFinding scf)
     {
         m_NMSmallCell = scf;
     }
@@ -809,25 +827,25 @@ public class FMMMLayout
     /**
      * Defines the maximal number of particles that are contained in a leaf of the reduced bucket quadtree.
      */
-    int nmParticlesInLeaves()
+    public int nmParticlesInLeaves()
     {
         return m_NMParticlesInLeaves;
     }
 
     //! Sets the option nmParticlesInLeaves to \a n.
-    void nmParticlesInLeaves(int n)
+    public void nmParticlesInLeaves(int n)
     {
         m_NMParticlesInLeaves = ((n >= 1) ? n : 1);
     }
 
     //! Returns the precision \a p for the <i>p</i>-term multipole expansions.
-    int nmPrecision()
+    public int nmPrecision()
     {
         return m_NMPrecision;
     }
 
     //! Sets the precision for the multipole expansions to \ p.
-    void nmPrecision(int p)
+    public void nmPrecision(int p)
     {
         m_NMPrecision = ((p >= 1) ? p : 1);
     }
@@ -841,6 +859,7 @@ public class FMMMLayout
     //low level options
     //general options
     int m_randSeed; //!< The random seed.
+    int m_numberOfThreads; //!< The number of threads.
     EdgeLengthMeasurement m_edgeLengthMeasurement; //!< The option for edge length measurement.
     int m_maxIntPosExponent; //!< The option for the used	exponent.
     //options for divide et impera step
@@ -896,7 +915,23 @@ public class FMMMLayout
     NodeArray<Double> radius; //!< Holds the radius of the surrounding circle for each node.
     double time_total; //!< The runtime (=CPU-time) of the algorithm in seconds.
     FruchtermanReingold FR; //!< Class for repulsive force calculation (Fruchterman, Reingold).
-    //NMM NM; //!< Class for repulsive force calculation.
+    NMM NM; //!< Class for repulsive force calculation.
+    NodeArray<DPoint> F_rep_NMM; //!< The repulsive forces as calculated by NMM, from the positions of the node attributes.
+    //! The edges of the actual level for the multithreaded attractive forces, or null if they are calculated by one thread.
+    /**
+     * The edge with index k in the edge list of the graph is (attr_source[k], attr_target[k]) with the ideal edge
+     * length attr_length[k]; the incident edges of the node v are attr_incident[attr_incident_start[v] ..
+     * attr_incident_start[v + 1]), in the order of the edge list, as (k << 1) | 1 if v is the source of k and
+     * (k << 1) if v is the target of k.
+     */
+    int[] attr_source;
+    int[] attr_target;
+    double[] attr_length;
+    int[] attr_incident_start;
+    int[] attr_incident;
+    DPointArray F_attr_edges; //!< The attractive force on the source of each edge.
+    boolean[] attr_near_machine_precision; //!< Indicates the edges with a length near the machine precision.
+    final int MULTITHREAD_EDGE_COUNT_THRESHOLD = 1024; //!< The minimum number of edges for the multithreaded attractive forces.
     Random random;
 
     public FMMMLayout()
@@ -919,7 +954,7 @@ public class FMMMLayout
         random = new Random(37112);
         numexcept.random = random;
         FR = new FruchtermanReingold();
-        //NM = new NMM(random);
+        NM = new NMM(random);
         this.progressDialog = progressDialog;
 
         progressDialog.prepareProgressBar(100, "FMMM layout", true);
@@ -939,6 +974,16 @@ public class FMMMLayout
             {
                 update_low_level_options_due_to_high_level_options_settings();
             }
+            if (repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcNMM &&
+                    PointFactory.INSTANCE.dimensions() != PointFactory.Dimensions._2)
+            {
+                //the multipole expansions of NMM are complex numbers, so it is 2D only
+                if (DEBUG_BUILD)
+                {
+                    println("FMMM: NMM is 2D only, using the grid approximation for the 3D repulsive forces");
+                }
+                repulsiveForcesCalculation(RepulsiveForcesMethod.rfcGridApproximation);
+            }
             import_NodeAttributes(G, GA, A);
             import_EdgeAttributes(G, edgeLength, E);
 
@@ -962,8 +1007,6 @@ public class FMMMLayout
             }
         }
 
-        FR.shutdown();
-
         progressDialog.endProgressBar();
         progressDialog.stopProgressBar();
     }
@@ -1010,6 +1053,7 @@ public class FMMMLayout
             int num_components)
     {
         Multilevel Mult = new Multilevel(random);
+        Mult.number_of_threads(numberOfThreads());
 
         int max_level = 30;//sufficient for all graphs with upto pow(2,30) nodes!
         //adapt mingraphsize such that no levels are created beyond input graph.
@@ -1082,12 +1126,16 @@ public class FMMMLayout
                 max_mult_iter = ITERBOUND;
             }
 
-            NodeArray<DPoint> F_rep = new NodeArray<DPoint>(G, Factory.DPOINT); //stores rep. forces
-            NodeArray<DPoint> F_attr = new NodeArray<DPoint>(G, Factory.DPOINT); //stores attr. forces
-            NodeArray<DPoint> F = new NodeArray<DPoint>(G, Factory.DPOINT); //stores resulting forces
-            NodeArray<DPoint> last_node_movement = new NodeArray<DPoint>(G, Factory.DPOINT);//stores the force vectors F of the last
+            DPointArray P = new DPointArray(G); //stores the node positions during the force calculation
+            DPointArray F_rep = new DPointArray(G); //stores rep. forces
+            DPointArray F_attr = new DPointArray(G); //stores attr. forces
+            DPointArray F = new DPointArray(G); //stores resulting forces
+            DPointArray last_node_movement = new DPointArray(G);//stores the force vectors F of the last
             //iterations (needed to avoid oscillations)
 
+            load_positions(G, A, P);
+            load_edges(G, E);
+
             set_average_ideal_edgelength(G, E);//needed for easy scaling of the forces
             make_initialisations_for_rep_calc_classes(G);
 
@@ -1102,7 +1150,7 @@ public class FMMMLayout
                     ((stopCriterion() == StopCriterion.scFixedIterationsOrThreshold) && (iter <= max_mult_iter) &&
                     (actforcevectorlength >= threshold())))
             {//while
-                calculate_forces(G, A, E, F, F_attr, F_rep, last_node_movement, iter, 0);
+                calculate_forces(G, A, E, P, F, F_attr, F_rep, last_node_movement, iter, 0);
                 if (stopCriterion() != StopCriterion.scFixedIterations)
                 {
                     actforcevectorlength = get_average_forcevector_length(G, F);
@@ -1110,7 +1158,7 @@ public class FMMMLayout
 
                 if (progressDialog.userHasCancelled())
                 {
-                    return;
+                    break;
                 }
 
                 progressDialog.incrementProgress(iter);
@@ -1119,9 +1167,11 @@ public class FMMMLayout
 
             if (!progressDialog.userHasCancelled() && act_level == 0)
             {
-                call_POSTPROCESSING_step(G, A, E, F, F_attr, F_rep, last_node_movement, comp_index, num_components);
+                call_POSTPROCESSING_step(G, A, E, P, F, F_attr, F_rep, last_node_movement, comp_index, num_components);
             }
 
+            store_positions(G, P, A);
+
             //deallocate_memory_for_rep_calc_classes();
         }
     }
@@ -1130,10 +1180,11 @@ public class FMMMLayout
             Graph G,
             NodeArray<NodeAttributes> A,
             EdgeArray<EdgeAttributes> E,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> F_attr,
-            NodeArray<DPoint> F_rep,
-            NodeArray<DPoint> last_node_movement,
+            DPointArray P,
+            DPointArray F,
+            DPointArray F_attr,
+            DPointArray F_rep,
+            DPointArray last_node_movement,
             int comp_index,
             int num_components)
     {
@@ -1150,13 +1201,13 @@ public class FMMMLayout
             }
 
             progressDialog.incrementProgress(i);
-            calculate_forces(G, A, E, F, F_attr, F_rep, last_node_movement, i, 1);
+            calculate_forces(G, A, E, P, F, F_attr, F_rep, last_node_movement, i, 1);
         }
 
         if ((resizeDrawing() == true))
         {
-            adapt_drawing_to_ideal_average_edgelength(G, A, E);
-            update_boxlength_and_cornercoordinate(G, A);
+            adapt_drawing_to_ideal_average_edgelength(G, P, E);
+            update_boxlength_and_cornercoordinate(G, P);
         }
 
         progressDialog.prepareProgressBar(fineTuningIterations(),
@@ -1172,12 +1223,12 @@ public class FMMMLayout
             }
 
             progressDialog.incrementProgress(i);
-            calculate_forces(G, A, E, F, F_attr, F_rep, last_node_movement, i, 2);
+            calculate_forces(G, A, E, P, F, F_attr, F_rep, last_node_movement, i, 2);
         }
 
         if ((resizeDrawing() == true))
         {
-            adapt_drawing_to_ideal_average_edgelength(G, A, E);
+            adapt_drawing_to_ideal_average_edgelength(G, P, E);
         }
     }
 
@@ -1194,6 +1245,7 @@ public class FMMMLayout
         //setting low level options
         //setting general options
         randSeed(100);
+        numberOfThreads(NUMBER_OF_AVAILABLE_PROCESSORS);
         edgeLengthMeasurement(EdgeLengthMeasurement.elmBoundingCircle);
         maxIntPosExponent(40);
 
@@ -1993,19 +2045,46 @@ public class FMMMLayout
             Graph G,
             NodeArray<NodeAttributes> A,
             EdgeArray<EdgeAttributes> E,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> F_attr,
-            NodeArray<DPoint> F_rep,
-            NodeArray<DPoint> last_node_movement,
+            DPointArray P,
+            DPointArray F,
+            DPointArray F_attr,
+            DPointArray F_rep,
+            DPointArray last_node_movement,
             int iter,
             int fine_tuning_step)
     {
-        calculate_attractive_forces(G, A, E, F_attr);
-        calculate_repulsive_forces(G, A, F_rep);
+        calculate_attractive_forces(G, P, E, F_attr);
+        calculate_repulsive_forces(G, A, P, F_rep);
         add_attr_rep_forces(G, F_attr, F_rep, F, iter, fine_tuning_step);
         prevent_oscilations(G, F, last_node_movement, iter);
-        move_nodes(G, A, F);
-        update_boxlength_and_cornercoordinate(G, A);
+        move_nodes(G, P, F);
+        update_boxlength_and_cornercoordinate(G, P);
+    }
+
+    //! Copies the positions of \a A to \a P, where the force calculation keeps them.
+    void load_positions(
+            Graph G,
+            NodeArray<NodeAttributes> A,
+            DPointArray P)
+    {
+        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        {
+            node v = i.next();
+            P.set(v.index(), A.get(v).get_x(), A.get(v).get_y(), A.get(v).get_z());
+        }
+    }
+
+    //! Copies the positions of \a P back to \a A.
+    void store_positions(
+            Graph G,
+            DPointArray P,
+            NodeArray<NodeAttributes> A)
+    {
+        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        {
+            node v = i.next();
+            A.get(v).set_position(P.x[v.index()], P.y[v.index()], P.z[v.index()]);
+        }
     }
 
     void init_boxlength_and_cornercoordinate(
@@ -2103,17 +2182,11 @@ public class FMMMLayout
         update_boxlength_and_cornercoordinate(G, A);
     }
 
-    void init_F(Graph G, NodeArray<DPoint> F)
-    {
-        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
-        {
-            node v = iter.next();
-            F.set(v, PointFactory.INSTANCE.newDPoint());
-        }
-    }
-
     void make_initialisations_for_rep_calc_classes(Graph G)
     {
+        FR.number_of_threads(numberOfThreads());
+        FR.random_seed(randSeed());
+
         if (repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcExact)
         {
             FR.make_initialisations(boxlength, down_left_corner, frGridQuotient());
@@ -2124,9 +2197,9 @@ public class FMMMLayout
         }
         else //(repulsiveForcesCalculation() == RepulsiveForcesCalculation.rfcNMM
         {
-            /*NM.make_initialisations(G, boxlength, down_left_corner,
+            NM.make_initialisations(G, boxlength, down_left_corner,
                     nmParticlesInLeaves(), nmPrecision(),
-                    nmTreeConstruction(), nmSmallCell());*/
+                    nmTreeConstruction(), nmSmallCell());
         }
     }
 
@@ -2134,63 +2207,244 @@ public class FMMMLayout
     void calculate_repulsive_forces(
             Graph G,
             NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep)
+            DPointArray P,
+            DPointArray F_rep)
     {
         final int EXACT_FORCES_THRESHOLD = 50;
 
         if (G.numberOfNodes() < EXACT_FORCES_THRESHOLD || repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcExact)
         {
-            FR.calculate_exact_repulsive_forces(G, A, F_rep);
+            FR.calculate_exact_repulsive_forces(G, P, F_rep);
         }
         else if (repulsiveForcesCalculation() == RepulsiveForcesMethod.rfcGridApproximation)
         {
-            FR.calculate_approx_repulsive_forces(G, A, F_rep);
+            FR.calculate_approx_repulsive_forces(G, P, F_rep);
         }
         else //repulsiveForcesCalculation() == rfcNMM
         {
-            //NM.calculate_repulsive_forces(G, A, F_rep);
+            //the reduced quad tree of NMM is built from the positions of the node attributes
+            store_positions(G, P, A);
+            if (F_rep_NMM == null || F_rep_NMM.graphOf() != G)
+            {
+                F_rep_NMM = new NodeArray<DPoint>(G, Factory.DPOINT);
+            }
+
+            NM.calculate_repulsive_forces(G, A, F_rep_NMM);
+            for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+            {
+                node v = i.next();
+                F_rep.set(v.index(), F_rep_NMM.get(v));
+            }
+        }
+    }
+
+    //! Prepares the edges of \a G for the multithreaded attractive forces, if they are worth it.
+    void load_edges(Graph G, EdgeArray<EdgeAttributes> E)
+    {
+        int number_of_edges = G.numberOfEdges();
+        if (numberOfThreads() == 1 || number_of_edges < MULTITHREAD_EDGE_COUNT_THRESHOLD)
+        {
+            attr_source = null;
+            return;
+        }
+
+        attr_source = new int[number_of_edges];
+        attr_target = new int[number_of_edges];
+        attr_length = new double[number_of_edges];
+        attr_incident_start = new int[G.numberOfNodes() + 1];
+        attr_incident = new int[2 * number_of_edges];
+        F_attr_edges = new DPointArray(number_of_edges);
+        attr_near_machine_precision = new boolean[number_of_edges];
+
+        int k = 0;
+        for (Iterator<edge> i = G.edgesIterator(); i.hasNext(); k++)
+        {
+            edge e = i.next();
+            attr_source[k] = e.source().index();
+            attr_target[k] = e.target().index();
+            attr_length[k] = E.get(e).get_length();
+            attr_incident_start[attr_source[k] + 1]++;
+            attr_incident_start[attr_target[k] + 1]++;
+        }
+
+        for (int v = 0; v < G.numberOfNodes(); v++)
+        {
+            attr_incident_start[v + 1] += attr_incident_start[v];
+        }
+
+        int[] fill = Arrays.copyOf(attr_incident_start, G.numberOfNodes());
+        for (k = 0; k < number_of_edges; k++)
+        {
+            attr_incident[fill[attr_target[k]]++] = (k << 1);
+            attr_incident[fill[attr_source[k]]++] = (k << 1) | 1;
         }
     }
 
     void calculate_attractive_forces(
             Graph G,
-            NodeArray<NodeAttributes> A,
+            DPointArray P,
             EdgeArray<EdgeAttributes> E,
-            NodeArray<DPoint> F_attr)
+            DPointArray F_attr)
     {
+        if (attr_source != null)
+        {
+            calculate_attractive_forces_multithreaded(G.numberOfNodes(), P, F_attr);
+            return;
+        }
+
         edge e;
-        node u, v;
+        int u, v;
         double norm_v_minus_u, scalar;
-        DPoint vector_v_minus_u, f_u = PointFactory.INSTANCE.newDPoint();
-        DPoint nullpoint = PointFactory.INSTANCE.newDPoint();
+        double f_u_x = 0.0, f_u_y = 0.0, f_u_z = 0.0;
 
         //initialisation
-        init_F(G, F_attr);
+        F_attr.clear();
 
         //calculation
         for (Iterator<edge> i = G.edgesIterator(); i.hasNext();)
         {//for
             e = i.next();
 
-            u = e.source();
-            v = e.target();
-            vector_v_minus_u = A.get(v).get_position().minus(A.get(u).get_position());
-            norm_v_minus_u = vector_v_minus_u.length();
-            if (vector_v_minus_u.equals(nullpoint))
+            u = e.source().index();
+            v = e.target().index();
+            double vector_v_minus_u_x = P.x[v] - P.x[u];
+            double vector_v_minus_u_y = P.y[v] - P.y[u];
+            double vector_v_minus_u_z = P.z[v] - P.z[u];
+            norm_v_minus_u = Math.sqrt(vector_v_minus_u_x * vector_v_minus_u_x +
+                    vector_v_minus_u_y * vector_v_minus_u_y + vector_v_minus_u_z * vector_v_minus_u_z);
+            if (DPoint2.DIsEqual(vector_v_minus_u_x, 0.0) && DPoint2.DIsEqual(vector_v_minus_u_y, 0.0) &&
+                    DPoint2.DIsEqual(vector_v_minus_u_z, 0.0))
             {
-                f_u = nullpoint;
+                f_u_x = f_u_y = f_u_z = 0.0;
             }
-            else if (!numexcept.f_near_machine_precision(norm_v_minus_u, f_u))
+            else if (numexcept.near_machine_precision(norm_v_minus_u))
+            {
+                DPoint f_u = PointFactory.INSTANCE.newDPoint();
+                numexcept.f_near_machine_precision(norm_v_minus_u, f_u);
+                f_u_x = f_u.getX();
+                f_u_y = f_u.getY();
+                f_u_z = f_u.getZ();
+            }
+            else
             {
                 scalar = f_attr_scalar(norm_v_minus_u, E.get(e).get_length()) / norm_v_minus_u;
-                f_u = vector_v_minus_u.scaled(scalar);
+                f_u_x = vector_v_minus_u_x * scalar;
+                f_u_y = vector_v_minus_u_y * scalar;
+                f_u_z = vector_v_minus_u_z * scalar;
             }
 
-            F_attr.set(v, F_attr.get(v).minus(f_u));
-            F_attr.set(u, F_attr.get(u).plus(f_u));
+            F_attr.x[v] -= f_u_x;
+            F_attr.y[v] -= f_u_y;
+            F_attr.z[v] -= f_u_z;
+            F_attr.x[u] += f_u_x;
+            F_attr.y[u] += f_u_y;
+            F_attr.z[u] += f_u_z;
         }//for
     }
 
+    //! Calculates the attractive forces with the edges of load_edges().
+    /**
+     * First the force of each edge is calculated by the threads, then the rare forces near the machine precision are
+     * drawn in the order of the edges, and finally the threads sum up the forces of the incident edges of their nodes
+     * in the order of the edges; so the result is the same as with one thread, for any number of threads.
+     */
+    void calculate_attractive_forces_multithreaded(
+            final int number_of_nodes,
+            final DPointArray P,
+            final DPointArray F_attr)
+    {
+        final int threads = numberOfThreads();
+        final int number_of_edges = attr_source.length;
+        final int edges_per_thread = (int) Math.ceil((double) number_of_edges / threads);
+        final int nodes_per_thread = (int) Math.ceil((double) number_of_nodes / threads);
+
+        ComputePool.getInstance().parallelFor(threads, new ComputePool.ParallelKernel()
+        {
+            @Override
+            public void run(int threadId)
+            {
+                int from = Math.min(threadId * edges_per_thread, number_of_edges);
+                int to = Math.min(from + edges_per_thread, number_of_edges);
+
+                for (int k = from; k < to; k++)
+                {
+                    int u = attr_source[k];
+                    int v = attr_target[k];
+                    double vector_v_minus_u_x = P.x[v] - P.x[u];
+                    double vector_v_minus_u_y = P.y[v] - P.y[u];
+                    double vector_v_minus_u_z = P.z[v] - P.z[u];
+                    double norm_v_minus_u = Math.sqrt(vector_v_minus_u_x * vector_v_minus_u_x +
+                            vector_v_minus_u_y * vector_v_minus_u_y + vector_v_minus_u_z * vector_v_minus_u_z);
+                    attr_near_machine_precision[k] = false;
+                    if (DPoint2.DIsEqual(vector_v_minus_u_x, 0.0) && DPoint2.DIsEqual(vector_v_minus_u_y, 0.0) &&
+                            DPoint2.DIsEqual(vector_v_minus_u_z, 0.0))
+                    {
+                        F_attr_edges.set(k, 0.0, 0.0, 0.0);
+                    }
+                    else if (numexcept.near_machine_precision(norm_v_minus_u))
+                    {
+                        attr_near_machine_precision[k] = true;
+                    }
+                    else
+                    {
+                        double scalar = f_attr_scalar(norm_v_minus_u, attr_length[k]) / norm_v_minus_u;
+                        F_attr_edges.set(k, vector_v_minus_u_x * scalar, vector_v_minus_u_y * scalar,
+                                vector_v_minus_u_z * scalar);
+                    }
+                }
+            }
+        });
+
+        for (int k = 0; k < number_of_edges; k++)
+        {
+            if (attr_near_machine_precision[k])
+            {
+                int u = attr_source[k];
+                int v = attr_target[k];
+                double vector_v_minus_u_x = P.x[v] - P.x[u];
+                double vector_v_minus_u_y = P.y[v] - P.y[u];
+                double vector_v_minus_u_z = P.z[v] - P.z[u];
+                double norm_v_minus_u = Math.sqrt(vector_v_minus_u_x * vector_v_minus_u_x +
+                        vector_v_minus_u_y * vector_v_minus_u_y + vector_v_minus_u_z * vector_v_minus_u_z);
+                DPoint f_u = PointFactory.INSTANCE.newDPoint();
+                numexcept.f_near_machine_precision(norm_v_minus_u, f_u);
+                F_attr_edges.set(k, f_u);
+            }
+        }
+
+        ComputePool.getInstance().parallelFor(threads, new ComputePool.ParallelKernel()
+        {
+            @Override
+            public void run(int threadId)
+            {
+                int from = Math.min(threadId * nodes_per_thread, number_of_nodes);
+                int to = Math.min(from + nodes_per_thread, number_of_nodes);
+
+                for (int v = from; v < to; v++)
+                {
+                    double f_x = 0.0, f_y = 0.0, f_z = 0.0;
+                    for (int index = attr_incident_start[v]; index < attr_incident_start[v + 1]; index++)
+                    {
+                        int k = attr_incident[index] >> 1;
+                        if ((attr_incident[index] & 1) == 1) //v is the source of k
+                        {
+                            f_x += F_attr_edges.x[k];
+                            f_y += F_attr_edges.y[k];
+                            f_z += F_attr_edges.z[k];
+                        }
+                        else
+                        {
+                            f_x -= F_attr_edges.x[k];
+                            f_y -= F_attr_edges.y[k];
+                            f_z -= F_attr_edges.z[k];
+                        }
+                    }
+                    F_attr.set(v, f_x, f_y, f_z);
+                }
+            }
+        });
+    }
+
     double f_attr_scalar(double d, double ind_ideal_edge_length)
     {
         double s = 0.0;
@@ -2234,16 +2488,13 @@ public class FMMMLayout
 
     void add_attr_rep_forces(
             Graph G,
-            NodeArray<DPoint> F_attr,
-            NodeArray<DPoint> F_rep,
-            NodeArray<DPoint> F,
+            DPointArray F_attr,
+            DPointArray F_rep,
+            DPointArray F,
             int iter,
             int fine_tuning_step)
     {
-        node v;
-        DPoint f, force = PointFactory.INSTANCE.newDPoint();
-        DPoint nullpoint = PointFactory.INSTANCE.newDPoint();
-        double norm_f, scalar;
+        double f_x, f_y, f_z, norm_f, scalar;
         double act_spring_strength, act_rep_force_strength;
 
         //set cool_factor
@@ -2296,42 +2547,40 @@ public class FMMMLayout
             act_rep_force_strength = get_post_rep_force_strength(G.numberOfNodes());
         }
 
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        double average_ideal_edgelength_squared = average_ideal_edgelength * average_ideal_edgelength;
+        for (int v = 0; v < G.numberOfNodes(); v++)
         {
-            v = i.next();
-            f = F_attr.get(v).scaled(act_spring_strength).plus(F_rep.get(v).scaled(act_rep_force_strength));
-            f = f.scaled(average_ideal_edgelength * average_ideal_edgelength);
+            f_x = (F_attr.x[v] * act_spring_strength + F_rep.x[v] * act_rep_force_strength) * average_ideal_edgelength_squared;
+            f_y = (F_attr.y[v] * act_spring_strength + F_rep.y[v] * act_rep_force_strength) * average_ideal_edgelength_squared;
+            f_z = (F_attr.z[v] * act_spring_strength + F_rep.z[v] * act_rep_force_strength) * average_ideal_edgelength_squared;
 
-            norm_f = f.length();
-            if (f == nullpoint)
-            {
-                force = nullpoint;
-            }
-            else if (numexcept.f_near_machine_precision(norm_f, force))
+            norm_f = Math.sqrt(f_x * f_x + f_y * f_y + f_z * f_z);
+            if (numexcept.near_machine_precision(norm_f))
             {
+                DPoint force = PointFactory.INSTANCE.newDPoint();
+                numexcept.f_near_machine_precision(norm_f, force);
                 restrict_force_to_comp_box(force);
+                F.set(v, force);
             }
             else
             {
                 scalar = Math.min(norm_f * cool_factor * forceScalingFactor(),
                         max_radius(iter)) / norm_f;
-                force = f.scaled(scalar);
+                F.set(v, f_x * scalar, f_y * scalar, f_z * scalar);
             }
-            F.set(v, PointFactory.INSTANCE.newDPoint(force));
         }
     }
 
     void move_nodes(
             Graph G,
-            NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F)
+            DPointArray P,
+            DPointArray F)
     {
-        node v;
-
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        for (int v = 0; v < G.numberOfNodes(); v++)
         {
-            v = i.next();
-            A.get(v).set_position(A.get(v).get_position().plus(F.get(v)));
+            P.x[v] += F.x[v];
+            P.y[v] += F.y[v];
+            P.z[v] += F.z[v];
         }
     }
 
@@ -2341,44 +2590,94 @@ public class FMMMLayout
     {
         node v;
         double xmin, xmax, ymin, ymax, zmin, zmax;
-        DPoint midpoint;
+        NodeAttributes midpoint;
 
         v = G.firstNode();
-        midpoint = A.get(v).get_position();
-        xmin = xmax = midpoint.getX();
-        ymin = ymax = midpoint.getY();
-        zmin = zmax = midpoint.getZ();
+        midpoint = A.get(v);
+        xmin = xmax = midpoint.get_x();
+        ymin = ymax = midpoint.get_y();
+        zmin = zmax = midpoint.get_z();
 
         for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
         {
             v = i.next();
-            midpoint = A.get(v).get_position();
-            if (midpoint.getX() < xmin)
+            midpoint = A.get(v);
+            if (midpoint.get_x() < xmin)
             {
-                xmin = midpoint.getX();
+                xmin = midpoint.get_x();
             }
-            if (midpoint.getX() > xmax)
+            if (midpoint.get_x() > xmax)
             {
-                xmax = midpoint.getX();
+                xmax = midpoint.get_x();
             }
-            if (midpoint.getY() < ymin)
+            if (midpoint.get_y() < ymin)
             {
-                ymin = midpoint.getY();
+                ymin = midpoint.get_y();
             }
-            if (midpoint.getY() > ymax)
+            if (midpoint.get_y() > ymax)
             {
-                ymax = midpoint.getY();
+                ymax = midpoint.get_y();
             }
-            if (midpoint.getZ() < zmin)
+            if (midpoint.get_z() < zmin)
             {
-                zmin = midpoint.getZ();
+                zmin = midpoint.get_z();
             }
-            if (midpoint.getZ() > zmax)
+            if (midpoint.get_z() > zmax)
             {
-                zmax = midpoint.getZ();
+                zmax = midpoint.get_z();
             }
         }
 
+        update_boxlength_and_cornercoordinate(G.numberOfNodes(), xmin, xmax, ymin, ymax, zmin, zmax);
+    }
+
+    void update_boxlength_and_cornercoordinate(
+            Graph G,
+            DPointArray P)
+    {
+        double xmin, xmax, ymin, ymax, zmin, zmax;
+
+        xmin = xmax = P.x[0];
+        ymin = ymax = P.y[0];
+        zmin = zmax = P.z[0];
+
+        for (int v = 1; v < G.numberOfNodes(); v++)
+        {
+            if (P.x[v] < xmin)
+            {
+                xmin = P.x[v];
+            }
+            if (P.x[v] > xmax)
+            {
+                xmax = P.x[v];
+            }
+            if (P.y[v] < ymin)
+            {
+                ymin = P.y[v];
+            }
+            if (P.y[v] > ymax)
+            {
+                ymax = P.y[v];
+            }
+            if (P.z[v] < zmin)
+            {
+                zmin = P.z[v];
+            }
+            if (P.z[v] > zmax)
+            {
+                zmax = P.z[v];
+            }
+        }
+
+        update_boxlength_and_cornercoordinate(G.numberOfNodes(), xmin, xmax, ymin, ymax, zmin, zmax);
+    }
+
+    void update_boxlength_and_cornercoordinate(
+            int number_of_nodes,
+            double xmin, double xmax,
+            double ymin, double ymax,
+            double zmin, double zmax)
+    {
         //set down_left_corner and boxlength
 
         down_left_corner.setX(Math.floor(xmin - 1));
@@ -2389,7 +2688,7 @@ public class FMMMLayout
         //exception handling: all nodes have same x and y coordinate
         if (boxlength <= 2)
         {
-            boxlength = G.numberOfNodes() * 20;
+            boxlength = number_of_nodes * 20;
             down_left_corner.setX(Math.floor(xmin) - (boxlength / 2));
             down_left_corner.setY(Math.floor(ymin) - (boxlength / 2));
             down_left_corner.setZ(Math.floor(zmin) - (boxlength / 2));
@@ -2404,7 +2703,7 @@ public class FMMMLayout
         }
         else //repulsiveForcesCalculation() == rfcNMM
         {
-            //NM.update_boxlength_and_cornercoordinate(boxlength, down_left_corner);
+            NM.update_boxlength_and_cornercoordinate(boxlength, down_left_corner);
         }
     }
 
@@ -2436,14 +2735,12 @@ public class FMMMLayout
         }
     }
 
-    double get_average_forcevector_length(Graph G, NodeArray<DPoint> F)
+    double get_average_forcevector_length(Graph G, DPointArray F)
     {
         double lengthsum = 0;
-        node v;
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        for (int v = 0; v < G.numberOfNodes(); v++)
         {
-            v = i.next();
-            lengthsum += F.get(v).length();
+            lengthsum += F.length(v);
         }
         lengthsum /= G.numberOfNodes();
         return lengthsum;
@@ -2451,8 +2748,8 @@ public class FMMMLayout
 
     void prevent_oscilations(
             Graph G,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> last_node_movement,
+            DPointArray F,
+            DPointArray last_node_movement,
             int iter)
     {
 
@@ -2467,78 +2764,74 @@ public class FMMMLayout
         double pi_times_10_over_6 = 10 * pi_times_1_over_6;
         double pi_times_11_over_6 = 11 * pi_times_1_over_6;
 
-        DPoint nullpoint = PointFactory.INSTANCE.newDPoint();
         double fi; //angle in [0,2pi) measured counterclockwise
         double norm_old, norm_new, quot_old_new;
 
         if (iter > 1) //usual case
         {//if1
-            node v;
-            for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+            for (int v = 0; v < G.numberOfNodes(); v++)
             {
-                v = i.next();
-                DPoint force_new = PointFactory.INSTANCE.newDPoint(F.get(v));
-                DPoint force_old = PointFactory.INSTANCE.newDPoint(last_node_movement.get(v));
-                norm_new = F.get(v).length();
-                norm_old = last_node_movement.get(v).length();
+                norm_new = F.length(v);
+                norm_old = last_node_movement.length(v);
                 if ((norm_new > 0) && (norm_old > 0))
                 {//if2
                     quot_old_new = norm_old / norm_new;
 
                     //prevent oszilations
-                    fi = force_old.angle(force_new);
+                    fi = Math.acos((last_node_movement.x[v] * F.x[v] + last_node_movement.y[v] * F.y[v] +
+                            last_node_movement.z[v] * F.z[v]) / (norm_old * norm_new));
                     if (((fi <= pi_times_1_over_6) || (fi >= pi_times_11_over_6)) &&
                             ((norm_new > (norm_old * 2.0))))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 2.0));
+                        F.scale(v, quot_old_new * 2.0);
                     }
                     else if ((fi >= pi_times_1_over_6) && (fi <= pi_times_2_over_6) &&
                             (norm_new > (norm_old * 1.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 1.5));
+                        F.scale(v, quot_old_new * 1.5);
                     }
                     else if ((fi >= pi_times_2_over_6) && (fi <= pi_times_3_over_6) &&
                             (norm_new > (norm_old)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new));
+                        F.scale(v, quot_old_new);
                     }
                     else if ((fi >= pi_times_3_over_6) && (fi <= pi_times_4_over_6) &&
                             (norm_new > (norm_old * 0.66666666)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.66666666));
+                        F.scale(v, quot_old_new * 0.66666666);
                     }
                     else if ((fi >= pi_times_4_over_6) && (fi <= pi_times_5_over_6) &&
                             (norm_new > (norm_old * 0.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.5));
+                        F.scale(v, quot_old_new * 0.5);
                     }
                     else if ((fi >= pi_times_5_over_6) && (fi <= pi_times_7_over_6) &&
                             (norm_new > (norm_old * 0.33333333)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.33333333));
+                        F.scale(v, quot_old_new * 0.33333333);
                     }
                     else if ((fi >= pi_times_7_over_6) && (fi <= pi_times_8_over_6) &&
                             (norm_new > (norm_old * 0.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.5));
+                        F.scale(v, quot_old_new * 0.5);
                     }
                     else if ((fi >= pi_times_8_over_6) && (fi <= pi_times_9_over_6) &&
                             (norm_new > (norm_old * 0.66666666)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 0.66666666));
+                        F.scale(v, quot_old_new * 0.66666666);
                     }
                     else if ((fi >= pi_times_9_over_6) && (fi <= pi_times_10_over_6) &&
                             (norm_new > (norm_old)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new));
+                        F.scale(v, quot_old_new);
                     }
                     else if ((fi >= pi_times_10_over_6) && (fi <= pi_times_11_over_6) &&
                             (norm_new > (norm_old * 1.5)))
                     {
-                        F.set(v, F.get(v).scaled(quot_old_new * 1.5));
+                        F.scale(v, quot_old_new * 1.5);
                     }
                 }//if2
-                last_node_movement.set(v, F.get(v));
+                last_node_movement.set(v, F.x[v], F.y[v], F.z[v]);
             }
         }//if1
         else if (iter == 1)
@@ -2549,34 +2842,32 @@ public class FMMMLayout
 
     void init_last_node_movement(
             Graph G,
-            NodeArray<DPoint> F,
-            NodeArray<DPoint> last_node_movement)
+            DPointArray F,
+            DPointArray last_node_movement)
     {
-        node v;
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
-        {
-            v = i.next();
-            last_node_movement.set(v, PointFactory.INSTANCE.newDPoint(F.get(v)));
-        }
+        last_node_movement.set(F);
     }
 
     void adapt_drawing_to_ideal_average_edgelength(
             Graph G,
-            NodeArray<NodeAttributes> A,
+            DPointArray P,
             EdgeArray<EdgeAttributes> E)
     {
         edge e;
-        node v;
         double sum_real_edgelength = 0;
         double sum_ideal_edgelength = 0;
         double area_scaling_factor;
-        DPoint new_pos;
 
         for (Iterator<edge> i = G.edgesIterator(); i.hasNext();)
         {
             e = i.next();
+            int u = e.source().index();
+            int v = e.target().index();
+            double dx = P.x[u] - P.x[v];
+            double dy = P.y[u] - P.y[v];
+            double dz = P.z[u] - P.z[v];
             sum_ideal_edgelength += E.get(e).get_length();
-            sum_real_edgelength += (A.get(e.source()).get_position().minus(A.get(e.target()).get_position())).length();
+            sum_real_edgelength += Math.sqrt(dx * dx + dy * dy + dz * dz);
         }
 
         if (sum_real_edgelength == 0) //very very unlike case
@@ -2588,11 +2879,10 @@ public class FMMMLayout
             area_scaling_factor = sum_ideal_edgelength / sum_real_edgelength;
         }
 
-        for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
+        double scaling_factor = resizingScalar() * area_scaling_factor;
+        for (int v = 0; v < G.numberOfNodes(); v++)
         {
-            v = i.next();
-            new_pos = A.get(v).get_position().scaled(resizingScalar() * area_scaling_factor);
-            A.get(v).set_position(new_pos);
+            P.scale(v, scaling_factor);
         }
     }
 
@@ -32,17 +32,21 @@ package ogdf.energybased;
  */
 
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import ogdf.basic.*;
+import org.biolayout.CPUParallelism.Executors.*;
 import static org.biolayout.Environment.GlobalEnvironment.*;
 import static org.biolayout.DebugConsole.ConsoleOutput.*;
 
 class FruchtermanReingold
 {
     final int MULTITHREAD_NODE_COUNT_THRESHOLD = 256;
-    final int NUMBER_OF_THREADS = RUNTIME.availableProcessors();
+    //The exact method splits the nodes in at most MAX_NODE_BLOCKS blocks (an odd number) of at least
+    //MIN_NODE_BLOCK_SIZE nodes; the approximation splits the cells of each colour in at most MAX_CELL_CHUNKS chunks.
+    final int MAX_NODE_BLOCKS = 255;
+    final int MIN_NODE_BLOCK_SIZE = 64;
+    final int MAX_CELL_CHUNKS = 256;
     final boolean PERFORMANCE_METRICS = false;
-    ExecutorService executor;
 
     //Import updated information of the drawing area.
     public void update_boxlength_and_cornercoordinate(double b_l, DPoint d_l_c)
@@ -67,156 +71,263 @@ class FruchtermanReingold
         return _grid_quotient;
     }
 
-    public FruchtermanReingold()
+    private int _number_of_threads;//the number of threads of the force calculation
+    private long _random_seed;//the seed of the random generators of the threads
+
+    //The forces of a graph of MULTITHREAD_NODE_COUNT_THRESHOLD nodes or more are calculated in passes of chunks
+    //that write to disjoint sets of nodes, straight into F_rep. The chunks only depend on the graph, and the passes
+    //run in a fixed order, so as the forces do not depend on number_of_threads(), only how many threads of the
+    //ComputePool take the chunks of a pass. It is 1 unless set, as FMMMLayout sets it for its levels.
+    public void number_of_threads(int n)
     {
-        grid_quotient(2);
-        executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        _number_of_threads = ((n >= 1) ? n : 1);
+    }
+
+    public int number_of_threads()
+    {
+        return _number_of_threads;
     }
 
-    public void shutdown()
+    //The random generators of the chunks are seeded from random_seed(), so as the
+    //forces only depend on it.
+    public void random_seed(long seed)
     {
-        executor.shutdown();
+        _random_seed = seed;
     }
 
-    private void calculate_repulsive_force_on_node(node n, List<node> others,
-            NodeArray<NodeAttributes> A, NodeArray<DPoint> F_rep)
+    public long random_seed()
+    {
+        return _random_seed;
+    }
+
+    public FruchtermanReingold()
     {
-        DPoint f_rep_u_on_v = PointFactory.INSTANCE.newDPoint();
+        grid_quotient(2);
+        number_of_threads(1);
+        random_seed(0);
+    }
 
-        for (node v : others)
+    //per chunk random generators of a pass, for the nodes at the same position
+    private Random[] chunk_randoms = new Random[0];
+    //the number of chunked calculations since make_initialisations(), for seeding chunk_randoms
+    private int chunked_calculations;
+    //the node indices 0..n-1, as the others of the exact method
+    private int[] all_nodes = new int[0];
+    //the grid cells of the approximation, as a counting sort of the nodes:
+    //the nodes of the cell c are cell_nodes[cell_start[c]..cell_start[c + 1])
+    private int[] cell_of_node = new int[0];
+    private int[] cell_nodes = new int[0];
+    private int[] cell_start = new int[0];
+    private int[] cell_fill = new int[0];
+    private int[] non_empty_cells = new int[0];
+    //the non empty cells sorted by colour, the cells of the colour c being
+    //coloured_cells[colour_start[c]..colour_start[c + 1])
+    private int[] coloured_cells = new int[0];
+    private int[] colour_start = new int[28];
+    private int[] colour_fill = new int[27];
+
+    //Makes sure there is a random generator for every chunk of a pass.
+    private void init_chunk_randoms(int number_of_chunks)
+    {
+        if (chunk_randoms.length < number_of_chunks)
         {
-            DPoint pos_u = A.get(n).get_position();
-            DPoint pos_v = A.get(v).get_position();
-            if (pos_u.equals(pos_v))
-            {//if2  (Exception handling if two nodes have the same position)
-                pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
-            }//if2
-            DPoint vector_v_minus_u = pos_v.minus(pos_u);
-            double norm_v_minus_u = vector_v_minus_u.length();
-            if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
+            chunk_randoms = new Random[number_of_chunks];
+            for (int chunk = 0; chunk < number_of_chunks; chunk++)
             {
-                double scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                f_rep_u_on_v = vector_v_minus_u.scaled(scalar);
+                chunk_randoms[chunk] = new Random();
             }
-            F_rep.set(v, F_rep.get(v).plus(f_rep_u_on_v));
-            F_rep.set(n, F_rep.get(n).minus(f_rep_u_on_v));
         }
     }
 
-    public void calculate_exact_repulsive_forces_multithreaded(
-            final Graph G,
-            final List<node> nodes,
-            final List<node> others,
-            final NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep)
+    //Seeds the random generator of the chunk of the pass, so as it only depends on random_seed(),
+    //the calculations since make_initialisations(), the pass and the chunk.
+    private Random chunk_random(int pass, int chunk)
     {
-        ArrayList<FutureTask<NodeArray<DPoint>>> futures = new ArrayList<FutureTask<NodeArray<DPoint>>>();
-
-        int total_interactions = ((nodes.size() - 1) * nodes.size()) / 2;
-        int interactions_per_thread = (int) Math.ceil((double) total_interactions / NUMBER_OF_THREADS);
-        int last_node_index = 0;
+        Random random = chunk_randoms[chunk];
+        random.setSeed(((_random_seed * 31 + chunked_calculations) * 31 + pass) * 31 + chunk);
+        return random;
+    }
 
-        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++)
+    //Runs the kernel for every chunk of a pass, on up to number_of_threads() threads of the ComputePool,
+    //each thread taking the next chunk not taken yet. The chunks of a pass must write to disjoint nodes.
+    private void run_chunks(final int number_of_chunks, final ComputePool.ParallelKernel chunk_kernel)
+    {
+        final int threads = Math.min(number_of_threads(), number_of_chunks);
+        if (threads <= 1)
         {
-            final int first_node_index = last_node_index;
+            for (int chunk = 0; chunk < number_of_chunks; chunk++)
+            {
+                chunk_kernel.run(chunk);
+            }
+            return;
+        }
 
-            int interactions = 0;
-            while (interactions < interactions_per_thread)
+        final AtomicInteger next_chunk = new AtomicInteger();
+        ComputePool.getInstance().parallelFor(threads, new ComputePool.ParallelKernel()
+        {
+            @Override
+            public void run(int threadId)
             {
-                interactions += (nodes.size() - (last_node_index + 1));
-                last_node_index++;
+                int chunk;
+                while ((chunk = next_chunk.getAndIncrement()) < number_of_chunks)
+                {
+                    chunk_kernel.run(chunk);
+                }
             }
+        });
+    }
 
-            final int number_of_nodes;
+    //Adds the repulsive forces between the node u and the nodes others[from..to) to F_rep.
+    private void calculate_repulsive_force_on_node(int u, int[] others, int from, int to,
+            DPointArray P, DPointArray F_rep, Random random)
+    {
+        double f_rep_u_on_v_x = 0.0, f_rep_u_on_v_y = 0.0, f_rep_u_on_v_z = 0.0;
 
-            if ((last_node_index - first_node_index) > nodes.size())
+        for (int index = from; index < to; index++)
+        {
+            int v = others[index];
+            double pos_u_x = P.x[u], pos_u_y = P.y[u], pos_u_z = P.z[u];
+            if (DPoint2.DIsEqual(pos_u_x, P.x[v]) && DPoint2.DIsEqual(pos_u_y, P.y[v]) && DPoint2.DIsEqual(pos_u_z, P.z[v]))
+            {//if2  (Exception handling if two nodes have the same position)
+                DPoint pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(P.get(u), random);
+                pos_u_x = pos_u.getX();
+                pos_u_y = pos_u.getY();
+                pos_u_z = pos_u.getZ();
+            }//if2
+            double vector_v_minus_u_x = P.x[v] - pos_u_x;
+            double vector_v_minus_u_y = P.y[v] - pos_u_y;
+            double vector_v_minus_u_z = P.z[v] - pos_u_z;
+            double norm_v_minus_u = Math.sqrt(vector_v_minus_u_x * vector_v_minus_u_x +
+                    vector_v_minus_u_y * vector_v_minus_u_y + vector_v_minus_u_z * vector_v_minus_u_z);
+            if (!numexcept.near_machine_precision(norm_v_minus_u))
             {
-                number_of_nodes = nodes.size() - first_node_index;
+                double scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
+                f_rep_u_on_v_x = vector_v_minus_u_x * scalar;
+                f_rep_u_on_v_y = vector_v_minus_u_y * scalar;
+                f_rep_u_on_v_z = vector_v_minus_u_z * scalar;
             }
             else
             {
-                number_of_nodes = last_node_index - first_node_index;
+                DPoint f_rep_u_on_v = PointFactory.INSTANCE.newDPoint();
+                numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v, random);
+                f_rep_u_on_v_x = f_rep_u_on_v.getX();
+                f_rep_u_on_v_y = f_rep_u_on_v.getY();
+                f_rep_u_on_v_z = f_rep_u_on_v.getZ();
             }
+            F_rep.x[v] += f_rep_u_on_v_x;
+            F_rep.y[v] += f_rep_u_on_v_y;
+            F_rep.z[v] += f_rep_u_on_v_z;
+            F_rep.x[u] -= f_rep_u_on_v_x;
+            F_rep.y[u] -= f_rep_u_on_v_y;
+            F_rep.z[u] -= f_rep_u_on_v_z;
+        }
+    }
 
-            futures.add(thread, new FutureTask<NodeArray<DPoint>>(
-                    new Callable<NodeArray<DPoint>>()
-                    {
-                        @Override
-                        public NodeArray<DPoint> call()
-                        {
-                            NodeArray<DPoint> F_rep_thread = new NodeArray<DPoint>(G, Factory.DPOINT);
-
-                            for (int i = first_node_index; i < first_node_index + number_of_nodes; i++)
-                            {
-                                calculate_repulsive_force_on_node(
-                                        nodes.get(i),
-                                        others != null ? others : nodes.subList(i + 1, nodes.size()),
-                                        A, F_rep_thread);
-                            }
-
-                            return F_rep_thread;
-                        }
-                    }));
-            executor.submit(futures.get(thread));
+    //The nodes are split in an odd number B of blocks, and the pairs of blocks in B rounds (the circle method of a
+    //round robin tournament): in the round r, the block r calculates its inner forces, and the blocks r + k and r - k
+    //(mod B) the forces between them, for 1 <= k <= (B - 1) / 2. Every pair of nodes is calculated once, no node is
+    //in two pairs of blocks of a round, so the (B + 1) / 2 chunks of a round write straight to F_rep.
+    public void calculate_exact_repulsive_forces_chunked(
+            final int number_of_nodes,
+            final DPointArray P,
+            final DPointArray F_rep)
+    {
+        int blocks = Math.min(MAX_NODE_BLOCKS, Math.max(1, number_of_nodes / MIN_NODE_BLOCK_SIZE));
+        final int number_of_blocks = ((blocks % 2 == 0) ? blocks - 1 : blocks);
+        final int chunks_per_round = (number_of_blocks + 1) / 2;
+        final int[] first_node_index = new int[number_of_blocks + 1];
+        for (int block = 0; block <= number_of_blocks; block++)
+        {
+            first_node_index[block] = (int) (((long) block * number_of_nodes) / number_of_blocks);
         }
 
-        // Recombine results from threads
-        try
+        init_chunk_randoms(chunks_per_round);
+
+        for (int round = 0; round < number_of_blocks; round++)
         {
-            for (node v : nodes)
+            final int final_round = round;
+            run_chunks(chunks_per_round, new ComputePool.ParallelKernel()
             {
-                for (FutureTask<NodeArray<DPoint>> future : futures)
+                @Override
+                public void run(int chunk)
                 {
-                    F_rep.set(v, F_rep.get(v).plus(future.get().get(v)));
+                    Random random = chunk_random(final_round, chunk);
+                    int block = (final_round + chunk) % number_of_blocks;
+                    int other_block = (final_round - chunk + number_of_blocks) % number_of_blocks;
+                    int to = first_node_index[block + 1];
+
+                    for (int i = first_node_index[block]; i < to; i++)
+                    {
+                        if (chunk == 0)
+                        {
+                            calculate_repulsive_force_on_node(i, all_nodes, i + 1, to, P, F_rep, random);
+                        }
+                        else
+                        {
+                            calculate_repulsive_force_on_node(i, all_nodes,
+                                    first_node_index[other_block], first_node_index[other_block + 1], P, F_rep, random);
+                        }
+                    }
                 }
-            }
-        }
-        catch (InterruptedException e)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("calculate_exact_repulsive_forces_multithreaded, InterruptedException " + e.getMessage());
-            }
-        }
-        catch (ExecutionException e)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("calculate_exact_repulsive_forces_multithreaded, ExecutionException " + e.getMessage());
-            }
+            });
         }
+
+        chunked_calculations++;
     }
 
+    //The exact method on the positions of A, for the callers without a DPointArray (ie NMM).
     public void calculate_exact_repulsive_forces(
             Graph G,
             NodeArray<NodeAttributes> A,
             NodeArray<DPoint> F_rep)
     {
-        List<node> array_of_the_nodes = new ArrayList<node>();
+        DPointArray P = new DPointArray(G);
+        DPointArray F_rep_array = new DPointArray(G);
+
+        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        {
+            node v = iter.next();
+            P.set(v.index(), A.get(v).get_x(), A.get(v).get_y(), A.get(v).get_z());
+        }
+
+        calculate_exact_repulsive_forces(G, P, F_rep_array);
 
         for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
         {
             node v = iter.next();
-            F_rep.set(v, PointFactory.INSTANCE.newDPoint());
-            array_of_the_nodes.add(v);
+            F_rep.set(v, F_rep_array.get(v.index()));
+        }
+    }
+
+    public void calculate_exact_repulsive_forces(
+            Graph G,
+            DPointArray P,
+            DPointArray F_rep)
+    {
+        int number_of_nodes = G.numberOfNodes();
+        F_rep.clear();
+
+        if (all_nodes.length != number_of_nodes)
+        {
+            all_nodes = new int[number_of_nodes];
+            for (int i = 0; i < number_of_nodes; i++)
+            {
+                all_nodes[i] = i;
+            }
         }
 
-        int number_of_nodes = array_of_the_nodes.size();
         long startTime = System.nanoTime();
 
-        if (number_of_nodes < MULTITHREAD_NODE_COUNT_THRESHOLD || NUMBER_OF_THREADS == 1)
+        if (number_of_nodes < MULTITHREAD_NODE_COUNT_THRESHOLD)
         {
             for (int i = 0; i < number_of_nodes; i++)
             {
-                calculate_repulsive_force_on_node(
-                        array_of_the_nodes.get(i),
-                        array_of_the_nodes.subList(i + 1, number_of_nodes),
-                        A, F_rep);
+                calculate_repulsive_force_on_node(i, all_nodes, i + 1, number_of_nodes, P, F_rep, numexcept.random);
             }
         }
         else
         {
-            calculate_exact_repulsive_forces_multithreaded(G, array_of_the_nodes, null, A, F_rep);
+            calculate_exact_repulsive_forces_chunked(number_of_nodes, P, F_rep);
         }
 
         if (DEBUG_BUILD && PERFORMANCE_METRICS)
@@ -227,231 +338,213 @@ class FruchtermanReingold
     }
 
     public void calculate_approx_repulsive_forces_for_cell(
-            NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep,
-            List<node>[][][] contained_nodes, int i, int j, int k)
+            DPointArray P,
+            DPointArray F_rep,
+            Random random,
+            int i, int j, int k,
+            int i_num_grid_cells, int j_num_grid_cells, int k_num_grid_cells)
     {
-        int length = contained_nodes[i][j][k].size();
-        if (contained_nodes[i][j][k] == null || length == 0)
-        {
-            // Should never happen
-            return;
-        }
-
-        int i_num_grid_cells = contained_nodes.length;
-        int j_num_grid_cells = contained_nodes[0].length;
-        int k_num_grid_cells = contained_nodes[0][0].length;
+        int cell = (i * j_num_grid_cells + j) * k_num_grid_cells + k;
+        int first_index = cell_start[cell];
+        int last_index = cell_start[cell + 1];
 
         //step1: calculate forces inside contained_nodes(i,j,k)
-        List<node> nodearray_i_j_k = new ArrayList<node>();
-        for (node n : contained_nodes[i][j][k])
+        for (int uIndex = first_index; uIndex < last_index; uIndex++)
         {
-            nodearray_i_j_k.add(n);
-        }
-
-        for (int uIndex = 0; uIndex < length; uIndex++)
-        {
-            calculate_repulsive_force_on_node(
-                    nodearray_i_j_k.get(uIndex),
-                    nodearray_i_j_k.subList(uIndex + 1, length),
-                    A, F_rep);
+            calculate_repulsive_force_on_node(cell_nodes[uIndex], cell_nodes, uIndex + 1, last_index, P, F_rep, random);
         }
 
         //step 2: calculated forces to nodes in neighbour boxes
 
-        //find_neighbour_boxes
-
-        List<IPoint> neighbour_boxes = new ArrayList<IPoint>();
-        for (int i_n = i - 1; i_n <= i + 1; i_n++)
+        //find_neighbour_boxes and
+        //forget neighbour_boxes that already had access to this box
+        for (int act_i = i - 1; act_i <= i + 1; act_i++)
         {
-            for (int j_n = j - 1; j_n <= j + 1; j_n++)
+            for (int act_j = j - 1; act_j <= j + 1; act_j++)
             {
-                for (int k_n = k - 1; k_n <= k + 1; k_n++)
+                for (int act_k = k - 1; act_k <= k + 1; act_k++)
                 {
-                    if ((i_n >= 0) && (j_n >= 0) && (k_n >= 0) &&
-                            (i_n < i_num_grid_cells) && (j_n < j_num_grid_cells) && (k_n < k_num_grid_cells))
+                    if ((act_i < 0) || (act_j < 0) || (act_k < 0) ||
+                            (act_i >= i_num_grid_cells) || (act_j >= j_num_grid_cells) || (act_k >= k_num_grid_cells) ||
+                            ((act_i == i) && (act_j == j) && (act_k == k)))
                     {
-                        IPoint neighbour = PointFactory.INSTANCE.newIPoint();
-                        neighbour.setX(i_n);
-                        neighbour.setY(j_n);
-                        neighbour.setZ(k_n);
+                        continue;
+                    }
+
+                    boolean top = (act_k == k - 1 && !(act_i == i - 1 && act_j == j - 1));
+                    boolean middle = (act_k == k && (act_j == j + 1 || (act_j == j && act_i == i + 1)));
+                    boolean bottom = (act_k == k + 1 && (act_i == i + 1 && act_j == j + 1));
 
-                        if ((i_n != i) || (j_n != j) || (k_n != k))
+                    int act_cell = (act_i * j_num_grid_cells + act_j) * k_num_grid_cells + act_k;
+                    if ((top || middle || bottom) && (cell_start[act_cell] < cell_start[act_cell + 1]))
+                    {//if1
+                        for (int uIndex = first_index; uIndex < last_index; uIndex++)
                         {
-                            neighbour_boxes.add(neighbour);
+                            calculate_repulsive_force_on_node(cell_nodes[uIndex], cell_nodes,
+                                    cell_start[act_cell], cell_start[act_cell + 1], P, F_rep, random);
                         }
-                    }
+                    }//if1
                 }
             }
         }
-
-
-        //forget neighbour_boxes that already had access to this box
-        for (IPoint act_neighbour_box_it : neighbour_boxes)
-        {//forall
-            int act_i = act_neighbour_box_it.getX();
-            int act_j = act_neighbour_box_it.getY();
-            int act_k = act_neighbour_box_it.getZ();
-
-            boolean top = (act_k == k - 1 && !(act_i == i - 1 && act_j == j - 1));
-            boolean middle = (act_k == k && (act_j == j + 1 || (act_j == j && act_i == i + 1)));
-            boolean bottom = (act_k == k + 1 && (act_i == i + 1 && act_j == j + 1));
-
-            if ((top || middle || bottom) &&
-                    (contained_nodes[act_i][act_j][act_k] != null &&
-                    contained_nodes[act_i][act_j][act_k].size() > 0))
-            {//if1
-                for (node v_it : contained_nodes[i][j][k])
-                {
-                    calculate_repulsive_force_on_node(
-                            v_it,
-                            contained_nodes[act_i][act_j][act_k],
-                            A, F_rep);
-                }
-            }//if1
-        }//forall
     }
 
     public void calculate_approx_repulsive_forces(
             final Graph G,
-            final NodeArray<NodeAttributes> A,
-            NodeArray<DPoint> F_rep)
+            final DPointArray P,
+            final DPointArray F_rep)
     {
         //GRID algorithm by Fruchterman & Reingold
 
-        int i, j, k;
+        int number_of_nodes = G.numberOfNodes();
 
         //init F_rep
-        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
-        {
-            node v = iter.next();
-            F_rep.set(v, PointFactory.INSTANCE.newDPoint());
-        }
+        F_rep.clear();
 
         //init max_gridindex and set contained_nodes;
 
-        max_gridindex = (int) (Math.sqrt((double) (G.numberOfNodes())) / grid_quotient());
+        max_gridindex = (int) (Math.sqrt((double) (number_of_nodes)) / grid_quotient());
         max_gridindex = ((max_gridindex > 0) ? max_gridindex : 1);
-        int i_num_grid_cells = max_gridindex;
-        int j_num_grid_cells = max_gridindex;
-        int k_num_grid_cells = PointFactory.INSTANCE.dimensions() == PointFactory.Dimensions._2 ? 1 : max_gridindex;
+        final int i_num_grid_cells = max_gridindex;
+        final int j_num_grid_cells = max_gridindex;
+        final int k_num_grid_cells = PointFactory.INSTANCE.dimensions() == PointFactory.Dimensions._2 ? 1 : max_gridindex;
+        int number_of_cells = i_num_grid_cells * j_num_grid_cells * k_num_grid_cells;
 
-        @SuppressWarnings("unchecked")
-        final List<node>[][][] contained_nodes = new ArrayList[i_num_grid_cells][j_num_grid_cells][k_num_grid_cells];
-        List<Integer[]> non_empty_cell_list = new ArrayList<Integer[]>();
+        if (cell_of_node.length < number_of_nodes)
+        {
+            cell_of_node = new int[number_of_nodes];
+            cell_nodes = new int[number_of_nodes];
+            non_empty_cells = new int[number_of_nodes];
+        }
+        if (cell_start.length < number_of_cells + 1)
+        {
+            cell_start = new int[number_of_cells + 1];
+            cell_fill = new int[number_of_cells];
+        }
+        Arrays.fill(cell_start, 0, number_of_cells + 1, 0);
 
+        //count the nodes of the cells, noting the non empty cells in the order of their first node
+        int number_of_non_empty_cells = 0;
         double gridboxlength = boxlength / max_gridindex;
-        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        for (int v = 0; v < number_of_nodes; v++)
         {
-            node v = iter.next();
-            DPoint offset = A.get(v).get_position().minus(down_left_corner);
-            int x_index = (int) (offset.getX() / gridboxlength);
-            int y_index = (int) (offset.getY() / gridboxlength);
-            int z_index = (int) (offset.getZ() / gridboxlength);
+            int x_index = (int) ((P.x[v] - down_left_corner.getX()) / gridboxlength);
+            int y_index = (int) ((P.y[v] - down_left_corner.getY()) / gridboxlength);
+            int z_index = (int) ((P.z[v] - down_left_corner.getZ()) / gridboxlength);
+            int cell = (x_index * j_num_grid_cells + y_index) * k_num_grid_cells + z_index;
 
-            if (contained_nodes[x_index][y_index][z_index] == null)
+            cell_of_node[v] = cell;
+            if (cell_start[cell + 1]++ == 0)
             {
-                contained_nodes[x_index][y_index][z_index] = new ArrayList<node>();
-                non_empty_cell_list.add(new Integer[] {x_index, y_index, z_index});
+                non_empty_cells[number_of_non_empty_cells++] = cell;
             }
-            contained_nodes[x_index][y_index][z_index].add(v);
         }
 
-        @SuppressWarnings("unchecked")
-        final List<Integer[]>[] per_thread_cell_list = new ArrayList[NUMBER_OF_THREADS];
-        int cells_per_thread = (int) Math.ceil((double) non_empty_cell_list.size() / NUMBER_OF_THREADS);
-        int thread = 0;
-
-        // Distribute cells over threads
-        for (Integer[] cell : non_empty_cell_list)
+        //sort the nodes by cell, keeping their order inside a cell
+        for (int cell = 0; cell < number_of_cells; cell++)
         {
-            if (per_thread_cell_list[thread] == null)
-            {
-                per_thread_cell_list[thread] = new ArrayList<Integer[]>();
-            }
-
-            per_thread_cell_list[thread].add(new Integer[]
-                    {
-                        cell[0], cell[1], cell[2]
-                    });
-
-            if (per_thread_cell_list[thread].size() >= cells_per_thread)
-            {
-                thread++;
-            }
+            cell_start[cell + 1] += cell_start[cell];
+        }
+        System.arraycopy(cell_start, 0, cell_fill, 0, number_of_cells);
+        for (int v = 0; v < number_of_nodes; v++)
+        {
+            cell_nodes[cell_fill[cell_of_node[v]]++] = v;
         }
 
         long startTime = System.nanoTime();
 
-        ArrayList<FutureTask<NodeArray<DPoint>>> futures = new ArrayList<FutureTask<NodeArray<DPoint>>>();
-
         //force calculation
-        for (thread = 0; thread < NUMBER_OF_THREADS; thread++)
+        if (number_of_nodes < MULTITHREAD_NODE_COUNT_THRESHOLD)
         {
-            final List<Integer[]> cell_list = per_thread_cell_list[thread];
-
-            if (cell_list == null)
+            for (int cell_index = 0; cell_index < number_of_non_empty_cells; cell_index++)
             {
-                continue;
+                int cell = non_empty_cells[cell_index];
+                calculate_approx_repulsive_forces_for_cell(P, F_rep, numexcept.random,
+                        cell / (j_num_grid_cells * k_num_grid_cells),
+                        (cell / k_num_grid_cells) % j_num_grid_cells,
+                        cell % k_num_grid_cells,
+                        i_num_grid_cells, j_num_grid_cells, k_num_grid_cells);
             }
-
-            futures.add(thread, new FutureTask<NodeArray<DPoint>>(
-                    new Callable<NodeArray<DPoint>>()
-                    {
-                        @Override
-                        public NodeArray<DPoint> call()
-                        {
-                            NodeArray<DPoint> F_rep_thread = new NodeArray<DPoint>(G, Factory.DPOINT);
-
-                            for (Integer[] cell : cell_list)
-                            {
-                                calculate_approx_repulsive_forces_for_cell(A, F_rep_thread,
-                                        contained_nodes, cell[0], cell[1], cell[2]);
-                            }
-
-                            return F_rep_thread;
-                        }
-                    }));
-            executor.submit(futures.get(thread));
         }
-
-        // Recombine results from threads
-        try
+        else
         {
-            for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+            //A cell writes to its neighbour cells, so the cells are coloured by their indices modulo 3: the cells
+            //of a colour are 3 cells apart or more, and their chunks write straight to F_rep.
+            int number_of_colours = (k_num_grid_cells == 1) ? 9 : 27;
+            if (coloured_cells.length < number_of_nodes)
             {
-                node v = iter.next();
-                for (FutureTask<NodeArray<DPoint>> future : futures)
-                {
-                    F_rep.set(v, F_rep.get(v).plus(future.get().get(v)));
-                }
+                coloured_cells = new int[number_of_nodes];
             }
-
-            if (DEBUG_BUILD && PERFORMANCE_METRICS)
+            Arrays.fill(colour_start, 0);
+            for (int cell_index = 0; cell_index < number_of_non_empty_cells; cell_index++)
             {
-                println("calculate_approx_repulsive_forces " + non_empty_cell_list.size() + " cells, " +
-                        ((double)(System.nanoTime() - startTime) / 1000000000.0) + " seconds");
+                colour_start[cell_colour(non_empty_cells[cell_index], j_num_grid_cells, k_num_grid_cells) + 1]++;
             }
-        }
-        catch (InterruptedException e)
-        {
-            if (DEBUG_BUILD)
+            for (int colour = 0; colour < number_of_colours; colour++)
             {
-                println("calculate_approx_repulsive_forces, InterruptedException " + e.getMessage());
+                colour_start[colour + 1] += colour_start[colour];
             }
-        }
-        catch (ExecutionException e)
-        {
-            if (DEBUG_BUILD)
+            System.arraycopy(colour_start, 0, colour_fill, 0, number_of_colours);
+            for (int cell_index = 0; cell_index < number_of_non_empty_cells; cell_index++)
             {
-                println("calculate_approx_repulsive_forces, ExecutionException " + e.getMessage());
+                int cell = non_empty_cells[cell_index];
+                coloured_cells[colour_fill[cell_colour(cell, j_num_grid_cells, k_num_grid_cells)]++] = cell;
             }
+
+            init_chunk_randoms(MAX_CELL_CHUNKS);
+
+            for (int colour = 0; colour < number_of_colours; colour++)
+            {
+                final int final_colour = colour;
+                final int first_cell_index = colour_start[colour];
+                final int number_of_coloured_cells = colour_start[colour + 1] - first_cell_index;
+                final int number_of_chunks = Math.min(MAX_CELL_CHUNKS, number_of_coloured_cells);
+                run_chunks(number_of_chunks, new ComputePool.ParallelKernel()
+                {
+                    @Override
+                    public void run(int chunk)
+                    {
+                        Random random = chunk_random(final_colour, chunk);
+                        int from = first_cell_index + (int) (((long) chunk * number_of_coloured_cells) / number_of_chunks);
+                        int to = first_cell_index + (int) (((long) (chunk + 1) * number_of_coloured_cells) / number_of_chunks);
+
+                        for (int cell_index = from; cell_index < to; cell_index++)
+                        {
+                            int cell = coloured_cells[cell_index];
+                            calculate_approx_repulsive_forces_for_cell(P, F_rep, random,
+                                    cell / (j_num_grid_cells * k_num_grid_cells),
+                                    (cell / k_num_grid_cells) % j_num_grid_cells,
+                                    cell % k_num_grid_cells,
+                                    i_num_grid_cells, j_num_grid_cells, k_num_grid_cells);
+                        }
+                    }
+                });
+            }
+
+            chunked_calculations++;
         }
+
+        if (DEBUG_BUILD && PERFORMANCE_METRICS)
+        {
+            println("calculate_approx_repulsive_forces " + number_of_non_empty_cells + " cells, " +
+                    ((double)(System.nanoTime() - startTime) / 1000000000.0) + " seconds");
+        }
+    }
+
+    //The colour of a cell, from its indices modulo 3.
+    private static int cell_colour(int cell, int j_num_grid_cells, int k_num_grid_cells)
+    {
+        int i = cell / (j_num_grid_cells * k_num_grid_cells);
+        int j = (cell / k_num_grid_cells) % j_num_grid_cells;
+        int k = cell % k_num_grid_cells;
+        int colour = (i % 3) * 3 + (j % 3);
+        return ((k_num_grid_cells == 1) ? colour : colour * 3 + (k % 3));
     }
 
     public void make_initialisations(double bl, DPoint d_l_c, int grid_quot)
     {
         grid_quotient(grid_quot);
+        chunked_calculations = 0;
         down_left_corner = PointFactory.INSTANCE.newDPoint(d_l_c); //export this two values from FMMM
         boxlength = bl;
     }
@@ -44,17 +44,28 @@ package ogdf.energybased;
 
 import java.util.*;
 import ogdf.basic.*;
+import org.biolayout.CPUParallelism.Executors.*;
 import static org.biolayout.Environment.GlobalEnvironment.*;
 import static org.biolayout.DebugConsole.ConsoleOutput.*;
 
 public class Multilevel
 {
+    final int MULTITHREAD_MOON_COUNT_THRESHOLD = 1024;
     int bad_edgenr_counter;
+    int number_of_threads;
     Random random;
 
     public Multilevel(Random random)
     {
         this.random = random;
+        number_of_threads(1);
+    }
+
+    //The nearest neighbours of the moon nodes are searched with number_of_threads
+    //threads of the ComputePool; the result does not depend on it.
+    void number_of_threads(int n)
+    {
+        number_of_threads = ((n >= 1) ? n : 1);
     }
 
     int create_multilevel_representations(
@@ -295,69 +306,124 @@ public class Multilevel
 
     void create_moon_nodes_and_pm_nodes(
             List<Graph> G_mult_ptr,
-            List<NodeArray<NodeAttributes>> A_mult_ptr,
-            List<EdgeArray<EdgeAttributes>> E_mult_ptr,
-            int act_level)
+            final List<NodeArray<NodeAttributes>> A_mult_ptr,
+            final List<EdgeArray<EdgeAttributes>> E_mult_ptr,
+            final int act_level)
     {
-        node v, nearest_neighbour_node = null, neighbour_node, dedicated_sun_node;
-        double dist_to_nearest_neighbour = 0.0, dedicated_sun_distance;
-        boolean first_adj_edge;
-        int neighbour_type;
-        edge moon_edge = null;
+        node v, nearest_neighbour_node, dedicated_sun_node;
+        double dist_to_nearest_neighbour, dedicated_sun_distance;
+        edge moon_edge;
 
+        int number_of_moon_nodes = 0;
+        final node[] moon_nodes = new node[G_mult_ptr.get(act_level).numberOfNodes()];
         for (Iterator<node> i = G_mult_ptr.get(act_level).nodesIterator(); i.hasNext();)
         {
             v = i.next();
             if (A_mult_ptr.get(act_level).get(v).get_type() == 0) //a moon node
-            {//forall
-                //find nearest neighbour node
-                first_adj_edge = true;
-                for (edge e : v.adjEdges())
-                {//forall2
-                    if (v == e.source())
-                    {
-                        neighbour_node = e.target();
-                    }
-                    else
-                    {
-                        neighbour_node = e.source();
-                    }
-                    neighbour_type = A_mult_ptr.get(act_level).get(neighbour_node).get_type();
-                    if ((neighbour_type == 2) || (neighbour_type == 3))
-                    {//if_1
-                        if (first_adj_edge)
-                        {//if
-                            first_adj_edge = false;
-                            moon_edge = e;
-                            dist_to_nearest_neighbour = E_mult_ptr.get(act_level).get(e).get_length();
-                            nearest_neighbour_node = neighbour_node;
-                        }//if
-                        else if (dist_to_nearest_neighbour > E_mult_ptr.get(act_level).get(e).get_length())
-                        {//else
-                            moon_edge = e;
-                            dist_to_nearest_neighbour = E_mult_ptr.get(act_level).get(e).get_length();
-                            nearest_neighbour_node = neighbour_node;
-                        }//else
-                    }//if_1
-                }//forall2
-                //find dedic. solar system for v and update information in *A_mult_ptr[act_level]
-                //and *E_mult_ptr[act_level]
-
-                E_mult_ptr.get(act_level).get(moon_edge).make_moon_edge(); //mark this edge
-                dedicated_sun_node = A_mult_ptr.get(act_level).get(nearest_neighbour_node).
-                        get_dedicated_sun_node();
-                dedicated_sun_distance = dist_to_nearest_neighbour +
-                        A_mult_ptr.get(act_level).get(nearest_neighbour_node).get_dedicated_sun_distance();
-                A_mult_ptr.get(act_level).get(v).set_type(4);
-                A_mult_ptr.get(act_level).get(v).set_dedicated_sun_node(dedicated_sun_node);
-                A_mult_ptr.get(act_level).get(v).set_dedicated_sun_distance(dedicated_sun_distance);
-                A_mult_ptr.get(act_level).get(v).set_dedicated_pm_node(nearest_neighbour_node);
-
-                //identify nearest_neighbour_node as a pm_node and update its information
-
-                A_mult_ptr.get(act_level).get(nearest_neighbour_node).set_type(3);
-                A_mult_ptr.get(act_level).get(nearest_neighbour_node).get_dedicated_moon_node_List().add(v);
-            }//forall
+            {
+                moon_nodes[number_of_moon_nodes++] = v;
+            }
+        }
+
+        //find the nearest neighbour nodes; only sun and planet nodes (type 2 or 3) are candidates
+        //and the updates below never change this, so as the searches are independent of each other
+        final edge[] moon_edges = new edge[number_of_moon_nodes];
+        final int final_number_of_moon_nodes = number_of_moon_nodes;
+
+        if (number_of_threads == 1 || number_of_moon_nodes < MULTITHREAD_MOON_COUNT_THRESHOLD)
+        {
+            find_moon_edges(moon_nodes, moon_edges, 0, number_of_moon_nodes,
+                    A_mult_ptr.get(act_level), E_mult_ptr.get(act_level));
+        }
+        else
+        {
+            final int moon_nodes_per_thread = (int) Math.ceil((double) number_of_moon_nodes / number_of_threads);
+            ComputePool.getInstance().parallelFor(number_of_threads, new ComputePool.ParallelKernel()
+            {
+                @Override
+                public void run(int threadId)
+                {
+                    int from = Math.min(threadId * moon_nodes_per_thread, final_number_of_moon_nodes);
+                    int to = Math.min(from + moon_nodes_per_thread, final_number_of_moon_nodes);
+                    find_moon_edges(moon_nodes, moon_edges, from, to,
+                            A_mult_ptr.get(act_level), E_mult_ptr.get(act_level));
+                }
+            });
+        }
+
+        for (int index = 0; index < number_of_moon_nodes; index++)
+        {//forall
+            v = moon_nodes[index];
+            moon_edge = moon_edges[index];
+            nearest_neighbour_node = moon_edge.opposite(v);
+            dist_to_nearest_neighbour = E_mult_ptr.get(act_level).get(moon_edge).get_length();
+
+            //find dedic. solar system for v and update information in *A_mult_ptr[act_level]
+            //and *E_mult_ptr[act_level]
+
+            E_mult_ptr.get(act_level).get(moon_edge).make_moon_edge(); //mark this edge
+            dedicated_sun_node = A_mult_ptr.get(act_level).get(nearest_neighbour_node).
+                    get_dedicated_sun_node();
+            dedicated_sun_distance = dist_to_nearest_neighbour +
+                    A_mult_ptr.get(act_level).get(nearest_neighbour_node).get_dedicated_sun_distance();
+            A_mult_ptr.get(act_level).get(v).set_type(4);
+            A_mult_ptr.get(act_level).get(v).set_dedicated_sun_node(dedicated_sun_node);
+            A_mult_ptr.get(act_level).get(v).set_dedicated_sun_distance(dedicated_sun_distance);
+            A_mult_ptr.get(act_level).get(v).set_dedicated_pm_node(nearest_neighbour_node);
+
+            //identify nearest_neighbour_node as a pm_node and update its information
+
+            A_mult_ptr.get(act_level).get(nearest_neighbour_node).set_type(3);
+            A_mult_ptr.get(act_level).get(nearest_neighbour_node).get_dedicated_moon_node_List().add(v);
+        }//forall
+    }
+
+    //Sets moon_edges[from..to) to the shortest edges from moon_nodes[from..to) to a sun or planet node.
+    void find_moon_edges(
+            node[] moon_nodes,
+            edge[] moon_edges,
+            int from,
+            int to,
+            NodeArray<NodeAttributes> A,
+            EdgeArray<EdgeAttributes> E)
+    {
+        node v, neighbour_node;
+        double dist_to_nearest_neighbour = 0.0;
+        boolean first_adj_edge;
+        int neighbour_type;
+        edge moon_edge = null;
+
+        for (int index = from; index < to; index++)
+        {
+            v = moon_nodes[index];
+            first_adj_edge = true;
+            for (edge e : v.adjEdges())
+            {//forall2
+                if (v == e.source())
+                {
+                    neighbour_node = e.target();
+                }
+                else
+                {
+                    neighbour_node = e.source();
+                }
+                neighbour_type = A.get(neighbour_node).get_type();
+                if ((neighbour_type == 2) || (neighbour_type == 3))
+                {//if_1
+                    if (first_adj_edge)
+                    {//if
+                        first_adj_edge = false;
+                        moon_edge = e;
+                        dist_to_nearest_neighbour = E.get(e).get_length();
+                    }//if
+                    else if (dist_to_nearest_neighbour > E.get(e).get_length())
+                    {//else
+                        moon_edge = e;
+                        dist_to_nearest_neighbour = E.get(e).get_length();
+                    }//else
+                }//if_1
+            }//forall2
+            moon_edges[index] = moon_edge;
         }
     }
 
@@ -570,13 +636,14 @@ public class Multilevel
             List<NodeArray<NodeAttributes>> A_mult_ptr)
     {
         node v_high, v_act;
-        DPoint new_pos;
+        NodeAttributes v_high_attributes;
         for (Iterator<node> i = G_mult_ptr.get(level + 1).nodesIterator(); i.hasNext();)
         {
             v_high = i.next();
-            v_act = A_mult_ptr.get(level + 1).get(v_high).get_lower_level_node();
-            new_pos = A_mult_ptr.get(level + 1).get(v_high).get_position();
-            A_mult_ptr.get(level).get(v_act).set_position(new_pos);
+            v_high_attributes = A_mult_ptr.get(level + 1).get(v_high);
+            v_act = v_high_attributes.get_lower_level_node();
+            A_mult_ptr.get(level).get(v_act).set_position(v_high_attributes.get_x(), v_high_attributes.get_y(),
+                    v_high_attributes.get_z());
             A_mult_ptr.get(level).get(v_act).place();
         }
     }
@@ -609,7 +676,7 @@ public class Multilevel
             {//else
                 L.clear();
                 dedicated_sun = A_mult_ptr.get(level).get(v).get_dedicated_sun_node();
-                dedicated_sun_pos = PointFactory.INSTANCE.newDPoint(A_mult_ptr.get(level).get(dedicated_sun).get_position());
+                dedicated_sun_pos = A_mult_ptr.get(level).get(dedicated_sun).get_position();
                 dedicated_sun_distance = A_mult_ptr.get(level).get(v).get_dedicated_sun_distance();
 
                 if (init_placement_way == FMMMLayout.InitialPlacementMult.ipmAdvanced)
@@ -674,12 +741,13 @@ public class Multilevel
             int level)
     {
         node v_high, w_high, sun_node, v, ded_sun;
-        List<DPoint> adj_pos = new ArrayList<DPoint>();
+        //the positions of the adjacent nodes, kept in primitive arrays grown to the max. degree
+        double[] adj_pos_x = new double[0], adj_pos_y = new double[0], adj_pos_z = new double[0];
+        int adj_pos_size, adj_pos_index;
         double angle_1 = 0.0, angle_2 = 0.0, act_angle_1, act_angle_2, next_angle, min_next_angle = 0.0;
-        DPoint start_pos, end_pos;
+        double start_x, start_y, start_z; //start_pos - v_high_pos
         int MAX = 10; //the biggest of at most MAX random selected sectors is choosen
         int steps;
-        ListIterator<DPoint> it;
         boolean first_angle;
 
 
@@ -687,9 +755,21 @@ public class Multilevel
         {//forall
             v_high = i.next();
             //find pos of adjacent nodes
-            adj_pos.clear();
-            DPoint v_high_pos = PointFactory.INSTANCE.newDPoint(A_mult_ptr.get(level + 1).get(v_high).get_position());
+            NodeAttributes v_high_attributes = A_mult_ptr.get(level + 1).get(v_high);
+            double v_high_pos_x = v_high_attributes.get_x();
+            double v_high_pos_y = v_high_attributes.get_y();
+            double v_high_pos_z = v_high_attributes.get_z();
+            //x_parallel_pos - v_high_pos, with x_parallel_pos = v_high_pos + (1,0,0)
+            double x_parallel_x = (v_high_pos_x + 1) - v_high_pos_x;
+
+            if (adj_pos_x.length < v_high.adjEdges().size())
+            {
+                adj_pos_x = new double[v_high.adjEdges().size()];
+                adj_pos_y = new double[v_high.adjEdges().size()];
+                adj_pos_z = new double[v_high.adjEdges().size()];
+            }
 
+            adj_pos_size = 0;
             for (edge e_high : v_high.adjEdges())
             {
                 if (!E_mult_ptr.get(level + 1).get(e_high).is_extra_edge())
@@ -703,45 +783,52 @@ public class Multilevel
                         w_high = e_high.source();
                     }
 
-                    DPoint w_high_pos = PointFactory.INSTANCE.newDPoint(A_mult_ptr.get(level + 1).get(w_high).get_position());
-                    adj_pos.add(w_high_pos);
+                    NodeAttributes w_high_attributes = A_mult_ptr.get(level + 1).get(w_high);
+                    adj_pos_x[adj_pos_size] = w_high_attributes.get_x();
+                    adj_pos_y[adj_pos_size] = w_high_attributes.get_y();
+                    adj_pos_z[adj_pos_size] = w_high_attributes.get_z();
+                    adj_pos_size++;
                 }
             }
-            if (adj_pos.isEmpty()) //easy case
+            if (adj_pos_size == 0) //easy case
             {
                 angle_1 = 0;
                 angle_2 = 6.2831853;
             }
-            else if (adj_pos.size() == 1) //special case
+            else if (adj_pos_size == 1) //special case
             {
                 //create angle_1
-                start_pos = adj_pos.get(0);
-                DPoint x_parallel_pos = PointFactory.INSTANCE.newDPoint(v_high_pos);
-                x_parallel_pos.setX(v_high_pos.getX() + 1);
-                angle_1 = x_parallel_pos.minus(v_high_pos).angle(start_pos.minus(v_high_pos));
+                angle_1 = angle(x_parallel_x, 0.0, 0.0,
+                        adj_pos_x[0] - v_high_pos_x, adj_pos_y[0] - v_high_pos_y, adj_pos_z[0] - v_high_pos_z);
                 //create angle_2
                 angle_2 = angle_1 + Math.PI;
             }
             else //usual case
             {//else
                 steps = 1;
-                it = adj_pos.listIterator();
+                adj_pos_index = 0;
                 do
                 {
-                    int adj_pos_index = it.nextIndex();
                     //create act_angle_1
-                    start_pos = it.next();
-                    DPoint x_parallel_pos = PointFactory.INSTANCE.newDPoint(v_high_pos);
-                    x_parallel_pos.setX(v_high_pos.getX() + 1);
-                    act_angle_1 = x_parallel_pos.minus(v_high_pos).angle(start_pos.minus(v_high_pos));
+                    start_x = adj_pos_x[adj_pos_index] - v_high_pos_x;
+                    start_y = adj_pos_y[adj_pos_index] - v_high_pos_y;
+                    start_z = adj_pos_z[adj_pos_index] - v_high_pos_z;
+                    act_angle_1 = angle(x_parallel_x, 0.0, 0.0, start_x, start_y, start_z);
                     //create act_angle_2
                     first_angle = true;
 
-                    for (DPoint next_pos_ptr : adj_pos)
+                    for (int next_pos_index = 0; next_pos_index < adj_pos_size; next_pos_index++)
                     {
-                        next_angle = start_pos.minus(v_high_pos).angle(next_pos_ptr.minus(v_high_pos));
-
-                        if (!start_pos.equals(next_pos_ptr) && (first_angle || next_angle <
+                        next_angle = angle(start_x, start_y, start_z,
+                                adj_pos_x[next_pos_index] - v_high_pos_x,
+                                adj_pos_y[next_pos_index] - v_high_pos_y,
+                                adj_pos_z[next_pos_index] - v_high_pos_z);
+
+                        boolean start_pos_equals_next_pos =
+                                DPoint2.DIsEqual(adj_pos_x[adj_pos_index], adj_pos_x[next_pos_index]) &&
+                                DPoint2.DIsEqual(adj_pos_y[adj_pos_index], adj_pos_y[next_pos_index]) &&
+                                DPoint2.DIsEqual(adj_pos_z[adj_pos_index], adj_pos_z[next_pos_index]);
+                        if (!start_pos_equals_next_pos && (first_angle || next_angle <
                                 min_next_angle))
                         {
                             min_next_angle = next_angle;
@@ -755,7 +842,8 @@ public class Multilevel
                         angle_2 = act_angle_2;
                     }
                     steps++;
-                } while ((steps <= MAX) && it.hasNext());
+                    adj_pos_index++;
+                } while ((steps <= MAX) && (adj_pos_index < adj_pos_size));
 
                 if (angle_1 == angle_2)
                 {
@@ -853,6 +941,13 @@ public class Multilevel
         }//forall
     }
 
+    //the angle between the vectors (ax,ay,az) and (bx,by,bz), as DPoint::angle
+    static double angle(double ax, double ay, double az, double bx, double by, double bz)
+    {
+        double dot = ax * bx + ay * by + az * bz;
+        return Math.acos(dot / (Math.sqrt(ax * ax + ay * ay + az * az) * Math.sqrt(bx * bx + by * by + bz * bz)));
+    }
+
     DPoint create_random_pos(DPoint center, double radius)
     {
         DPoint new_point = PointFactory.INSTANCE.newDPoint();
@@ -42,7 +42,7 @@ package ogdf.energybased;
  * \see  http://www.gnu.org/copyleft/gpl.html
  ***************************************************************/
 
-/*import java.util.*;
+import java.util.*;
 import ogdf.basic.*;
 import org.biolayout.Utils.Complex;
 import org.biolayout.Utils.ref;
@@ -93,7 +93,7 @@ public class NMM
     void calculate_repulsive_forces(
             Graph G,
             NodeArray<NodeAttributes> A,
-            NodeArray<DPoint2> F_rep)
+            NodeArray<DPoint> F_rep)
     {
         if (using_NMM) //use NewMultipoleMethod
         {
@@ -108,13 +108,13 @@ public class NMM
     public void calculate_repulsive_forces_by_NMM(
             Graph G,
             NodeArray<NodeAttributes> A,
-            NodeArray<DPoint2> F_rep)
+            NodeArray<DPoint> F_rep)
     {
         QuadTreeNM T = new QuadTreeNM();
         node v;
-        NodeArray<DPoint2> F_direct = new NodeArray<DPoint2>(G, Factory.DPOINT);
-        NodeArray<DPoint2> F_local_exp = new NodeArray<DPoint2>(G, Factory.DPOINT);
-        NodeArray<DPoint2> F_multipole_exp = new NodeArray<DPoint2>(G, Factory.DPOINT);
+        NodeArray<DPoint> F_direct = new NodeArray<DPoint>(G, Factory.DPOINT);
+        NodeArray<DPoint> F_local_exp = new NodeArray<DPoint>(G, Factory.DPOINT);
+        NodeArray<DPoint> F_multipole_exp = new NodeArray<DPoint>(G, Factory.DPOINT);
         List<QuadTreeNodeNM> quad_tree_leaves;
 
         //initializations
@@ -150,7 +150,7 @@ public class NMM
     void calculate_repulsive_forces_by_exact_method(
             Graph G,
             NodeArray<NodeAttributes> A,
-            NodeArray<DPoint2> F_rep)
+            NodeArray<DPoint> F_rep)
     {
         ExactMethod.calculate_exact_repulsive_forces(G, A, F_rep);
     }
@@ -158,7 +158,7 @@ public class NMM
     void make_initialisations(
             Graph G,
             double bl,
-            DPoint2 d_l_c,
+            DPoint d_l_c,
             int p_i_l,
             int p,
             FMMMLayout.ReducedTreeConstruction t_c_w,
@@ -172,7 +172,7 @@ public class NMM
             precision(p);
             tree_construction_way(t_c_w);
             find_sm_cell(f_s_c);
-            down_left_corner = new DPoint2(d_l_c); //Export this two values from FMMM
+            down_left_corner = new DPoint2(d_l_c.getX(), d_l_c.getY()); //Export this two values from FMMM
             boxlength = bl;
             init_binko(2 * precision());
             init_power_of_2_array();
@@ -184,12 +184,12 @@ public class NMM
         }
     }
 
-    void update_boxlength_and_cornercoordinate(double b_l, DPoint2 d_l_c)
+    void update_boxlength_and_cornercoordinate(double b_l, DPoint d_l_c)
     {
         if (using_NMM)
         {
             boxlength = b_l;
-            down_left_corner = new DPoint2(d_l_c);
+            down_left_corner = new DPoint2(d_l_c.getX(), d_l_c.getY());
         }
         else
         {
@@ -246,87 +246,17 @@ public class NMM
             NodeArray<NodeAttributes> A,
             QuadTreeNM T)
     {
-        List<QuadTreeNodeNM> act_leaf_List, new_leaf_List;
-        List<QuadTreeNodeNM> act_leaf_List_ptr, new_leaf_List_ptr, help_ptr;
-        List<ParticleInfo> act_x_List_copy = new ArrayList<ParticleInfo>();
-        List<ParticleInfo> act_y_List_copy = new ArrayList<ParticleInfo>();
-        QuadTreeNodeNM act_node_ptr;
+        List<QuadTreeNodeNM> act_leaf_List = new ArrayList<QuadTreeNodeNM>();
 
         build_up_root_node(G, A, T);
-
-        act_leaf_List = new ArrayList<QuadTreeNodeNM>();
-        new_leaf_List = new ArrayList<QuadTreeNodeNM>();
         act_leaf_List.add(T.get_root_ptr());
-        act_leaf_List_ptr = act_leaf_List;
-        new_leaf_List_ptr = new_leaf_List;
 
-        while (!act_leaf_List_ptr.isEmpty())
+        //decompose the treenodes top down: the sorted coordinate Lists of a treenode
+        //are split among its children, so they stay sorted and are never resorted
+        while (!act_leaf_List.isEmpty())
         {
-            while (!act_leaf_List_ptr.isEmpty())
-            {
-                act_node_ptr = act_leaf_List_ptr.remove(0);
-                make_copy_and_init_Lists(act_node_ptr.get_x_List_ptr(), act_x_List_copy,
-                        act_node_ptr.get_y_List_ptr(), act_y_List_copy);
-                T.set_act_ptr(act_node_ptr);
-                decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List_ptr);
-            }
-            help_ptr = act_leaf_List_ptr;
-            act_leaf_List_ptr = new_leaf_List_ptr;
-            new_leaf_List_ptr = help_ptr;
-        }
-    }
-
-    void make_copy_and_init_Lists(
-            List<ParticleInfo> L_x_orig,
-            List<ParticleInfo> L_x_copy,
-            List<ParticleInfo> L_y_orig,
-            List<ParticleInfo> L_y_copy)
-    {
-        ListIterator<ParticleInfo> origin_x_item, copy_x_item, origin_y_item, copy_y_item;
-        ParticleInfo P_x_orig, P_y_orig, P_x_copy, P_y_copy;
-        boolean L_y_orig_traversed = false;
-
-        L_x_copy.clear();
-        L_y_copy.clear();
-
-        origin_x_item = L_x_orig.listIterator();
-        while (origin_x_item.hasNext())
-        {
-            //reset values
-            P_x_orig = origin_x_item.next();
-            P_x_orig.set_subList_ptr(null); //clear subList_ptr
-            P_x_orig.set_copy_item(null);   //clear copy_item
-            P_x_orig.unmark(); //unmark this element
-            P_x_orig.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-
-            //update L_x_copy
-            P_x_copy = new ParticleInfo(P_x_orig);
-            L_x_copy.add(P_x_copy);
-
-            //update L_x_orig
-            P_x_orig.set_copy_item(P_x_copy);
-        }
-
-        origin_y_item = L_y_orig.listIterator();
-        while (origin_y_item.hasNext())
-        {
-            //reset values
-            P_y_orig = origin_y_item.next();
-            P_y_orig.set_subList_ptr(null); //clear subList_ptr
-            P_y_orig.set_copy_item(null);   //clear copy_item
-            P_y_orig.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-            P_y_orig.unmark(); //unmark this element
-
-            //update L_x(y)_copy
-            P_y_copy = new ParticleInfo(P_y_orig);
-            ParticleInfo new_cross_ref_item = P_y_orig.get_cross_ref_item().get_copy_item();
-            P_y_copy.set_cross_ref_item(new_cross_ref_item);
-            L_y_copy.add(P_y_copy);
-            new_cross_ref_item.set_cross_ref_item(P_y_copy);
-            P_x_copy = new ParticleInfo(new_cross_ref_item);
-
-            //update L_y_orig
-            P_y_orig.set_copy_item(P_y_copy);
+            T.set_act_ptr(act_leaf_List.remove(act_leaf_List.size() - 1));
+            decompose_subtreenode(T, act_leaf_List);
         }
     }
 
@@ -361,8 +291,8 @@ public class NMM
 
             P_x = new ParticleInfo();
             P_y = new ParticleInfo();
-            P_x.set_x_y_coord(A.get(v).get_x());
-            P_y.set_x_y_coord(A.get(v).get_y());
+            P_x.set_x_y_coord(A.get(v).get_position().getX());
+            P_y.set_x_y_coord(A.get(v).get_position().getY());
             P_x.set_vertex(v);
             P_y.set_vertex(v);
             L_x.add(P_x);
@@ -390,34 +320,19 @@ public class NMM
         }
     }
 
-
     void decompose_subtreenode(
             QuadTreeNM T,
-            List<ParticleInfo> act_x_List_copy,
-            List<ParticleInfo> act_y_List_copy,
             List<QuadTreeNodeNM> new_leaf_List)
     {
         QuadTreeNodeNM act_ptr = T.get_act_ptr();
         int act_particle_number = act_ptr.get_x_List_ptr().size();
         double x_min, x_max, y_min, y_max;
-        ref<List<ParticleInfo>> L_x_l_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_r_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_lb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_rb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_lt_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_x_rt_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_l_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_r_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_lb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_rb_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_lt_ptr = new ref<List<ParticleInfo>>(null);
-        ref<List<ParticleInfo>> L_y_rt_ptr = new ref<List<ParticleInfo>>(null);
 
         ref<Double> x_min_ref = new ref<Double>();
         ref<Double> x_max_ref = new ref<Double>();
         ref<Double> y_min_ref = new ref<Double>();
         ref<Double> y_max_ref = new ref<Double>();
-        calculate_boundaries_of_act_node(T.get_act_ptr(), x_min_ref, x_max_ref, y_min_ref, y_max_ref);
+        calculate_boundaries_of_act_node(act_ptr, x_min_ref, x_max_ref, y_min_ref, y_max_ref);
         x_min = x_min_ref.get();
         x_max = x_max_ref.get();
         y_min = y_min_ref.get();
@@ -425,139 +340,81 @@ public class NMM
 
         if (find_sm_cell() == FMMMLayout.SmallestCellFinding.scfIteratively)
         {
-            find_small_cell_iteratively(T.get_act_ptr(), x_min, x_max, y_min, y_max);
+            find_small_cell_iteratively(act_ptr, x_min, x_max, y_min, y_max);
         }
         else //find_small_cell == FMMMLayout.scfAluru
         {
-            find_small_cell_iteratively(T.get_act_ptr(), x_min, x_max, y_min, y_max);
+            find_small_cell_by_formula(act_ptr, x_min, x_max, y_min, y_max);
         }
 
         if ((act_particle_number > particles_in_leaves()) &&
                 ((x_max - x_min >= MIN_BOX_LENGTH) || (y_max - y_min >= MIN_BOX_LENGTH)))
-        {//if0
-
-            //recursive calls for the half of the quad that contains the most particles
-
-            split_in_x_direction(act_ptr, L_x_l_ptr, L_y_l_ptr,
-                    L_x_r_ptr, L_y_r_ptr);
-
-            if (L_x_r_ptr.get() == null ||
-                    (L_x_l_ptr.get() != null && L_x_l_ptr.get().size() > L_x_r_ptr.get().size()))
-            {//if1 left half contains more particles
-                split_in_y_direction(act_ptr, L_x_lb_ptr,
-                        L_y_lb_ptr, L_x_lt_ptr, L_y_lt_ptr);
-                if ((L_x_lt_ptr.get() == null) ||
-                        (L_x_lb_ptr.get() != null && L_x_lb_ptr.get().size() > L_x_lt_ptr.get().size()))
-                {//if2
-                    T.create_new_lb_child(L_x_lb_ptr.get(), L_y_lb_ptr.get());
-                    T.go_to_lb_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//if2
-                else //L_x_lt_ptr.get() != null &&  L_x_lb_ptr.get().size() <= L_x_lt_ptr.get().size()
-                {//else1
-                    T.create_new_lt_child(L_x_lt_ptr.get(), L_y_lt_ptr.get());
-                    T.go_to_lt_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//else1
-            }//if1
-            else //L_x_r_ptr.get() != null && (L_x_l_ptr.get().size() <= L_x_r_ptr.get().size())
-            {//else2 right half contains more particles
-                split_in_y_direction(act_ptr, L_x_rb_ptr,
-                        L_y_rb_ptr, L_x_rt_ptr, L_y_rt_ptr);
-                if ((L_x_rt_ptr.get() == null) ||
-                        (L_x_rb_ptr.get() != null && L_x_rb_ptr.get().size() > L_x_rt_ptr.get().size()))
-                {//if3
-                    T.create_new_rb_child(L_x_rb_ptr.get(), L_y_rb_ptr.get());
-                    T.go_to_rb_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//if3
-                else// L_x_rt_ptr.get() != null && L_x_rb_ptr.get().size() <= L_x_rt_ptr.get().size()
-                {//else3
-                    T.create_new_rt_child(L_x_rt_ptr.get(), L_y_rt_ptr.get());
-                    T.go_to_rt_child();
-                    decompose_subtreenode(T, act_x_List_copy, act_y_List_copy, new_leaf_List);
-                    T.go_to_father();
-                }//else3
-            }//else2
-
-            //build up the rest of the quad-subLists
-
-            if (L_x_l_ptr.get() != null && L_x_lb_ptr.get() == null && L_x_lt_ptr.get() == null &&
-                    !act_ptr.child_lb_exists() && !act_ptr.child_lt_exists())
-            {
-                split_in_y_direction(act_ptr, L_x_l_ptr, L_x_lb_ptr, L_x_lt_ptr, L_y_l_ptr,
-                        L_y_lb_ptr, L_y_lt_ptr);
-            }
-            else if (L_x_r_ptr.get() != null && L_x_rb_ptr.get() == null && L_x_rt_ptr.get() == null &&
-                    !act_ptr.child_rb_exists() && !act_ptr.child_rt_exists())
-            {
-                split_in_y_direction(act_ptr, L_x_r_ptr, L_x_rb_ptr, L_x_rt_ptr, L_y_r_ptr,
-                        L_y_rb_ptr, L_y_rt_ptr);
-            }
-
-            //create rest of the childnodes
-            if ((!act_ptr.child_lb_exists()) && (L_x_lb_ptr.get() != null))
-            {
-                T.create_new_lb_child(L_x_lb_ptr.get(), L_y_lb_ptr.get());
+        {//if
+            double act_Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
+            double x_mid_coord = act_ptr.get_Sm_downleftcorner().m_x + act_Sm_boxlength_half;
+            double y_mid_coord = act_ptr.get_Sm_downleftcorner().m_y + act_Sm_boxlength_half;
+            List<ParticleInfo> L_x_l = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_y_l = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_x_r = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_y_r = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_x_lb = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_y_lb = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_x_lt = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_y_lt = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_x_rb = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_y_rb = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_x_rt = new ArrayList<ParticleInfo>();
+            List<ParticleInfo> L_y_rt = new ArrayList<ParticleInfo>();
+
+            split_in_x_direction(act_ptr.get_x_List_ptr(), act_ptr.get_y_List_ptr(), x_mid_coord,
+                    L_x_l, L_y_l, L_x_r, L_y_r);
+            split_in_y_direction(L_x_l, L_y_l, y_mid_coord, L_x_lb, L_y_lb, L_x_lt, L_y_lt);
+            split_in_y_direction(L_x_r, L_y_r, y_mid_coord, L_x_rb, L_y_rb, L_x_rt, L_y_rt);
+
+            //create the childnodes of the non empty quads
+            if (!L_x_lb.isEmpty())
+            {
+                T.create_new_lb_child(L_x_lb, L_y_lb);
                 T.go_to_lb_child();
                 new_leaf_List.add(T.get_act_ptr());
                 T.go_to_father();
             }
-            if ((!act_ptr.child_lt_exists()) && (L_x_lt_ptr.get() != null))
+            if (!L_x_lt.isEmpty())
             {
-                T.create_new_lt_child(L_x_lt_ptr.get(), L_y_lt_ptr.get());
+                T.create_new_lt_child(L_x_lt, L_y_lt);
                 T.go_to_lt_child();
                 new_leaf_List.add(T.get_act_ptr());
                 T.go_to_father();
             }
-            if ((!act_ptr.child_rb_exists()) && (L_x_rb_ptr.get() != null))
+            if (!L_x_rb.isEmpty())
             {
-                T.create_new_rb_child(L_x_rb_ptr.get(), L_y_rb_ptr.get());
+                T.create_new_rb_child(L_x_rb, L_y_rb);
                 T.go_to_rb_child();
                 new_leaf_List.add(T.get_act_ptr());
                 T.go_to_father();
             }
-            if ((!act_ptr.child_rt_exists()) && (L_x_rt_ptr.get() != null))
+            if (!L_x_rt.isEmpty())
             {
-                T.create_new_rt_child(L_x_rt_ptr.get(), L_y_rt_ptr.get());
+                T.create_new_rt_child(L_x_rt, L_y_rt);
                 T.go_to_rt_child();
                 new_leaf_List.add(T.get_act_ptr());
                 T.go_to_father();
             }
-            //reset  act_ptr.set_x(y)_List_ptr to avoid multiple deleting of dynamic memory;
-            //(only if *act_ptr is a leaf of T the reserved space is freed (and this is
-            //sufficient !!!))
-            act_ptr.set_x_List_ptr(null);
-            act_ptr.set_y_List_ptr(null);
-        }//if0
+        }//if
         else
-        { //else a leaf or machineprecision is reached:
-            //The List contained_nodes is set for *act_ptr and the information of
-            //act_x_List_copy and act_y_List_copy is used to insert particles into the
-            //shorter Lists of previous touched treenodes;additionaly the dynamical allocated
-            //space for *act_ptr.get_x(y)_List_ptr() is freed.
-
+        { //else a leaf or machineprecision is reached: set the List contained_nodes
             List<node> L = new ArrayList<node>();
 
-            //set List contained nodes
-
             for (ParticleInfo it : act_ptr.get_x_List_ptr())
             {
                 L.add(it.get_vertex());
             }
-            T.get_act_ptr().set_contained_nodes(L);
-
-            //insert particles into previous touched Lists
-
-            build_up_sorted_subLists(act_x_List_copy, act_y_List_copy);
+            act_ptr.set_contained_nodes(L);
+        }
 
-            //free allocated space for *act_ptr.get_x(y)_List_ptr()
-            act_ptr.get_x_List_ptr().clear();//free used space for old L_x,L_y Lists
-            act_ptr.get_y_List_ptr().clear();
-        }//else
+        //the L_x(y) Lists of *act_ptr are not needed any more
+        act_ptr.set_x_List_ptr(null);
+        act_ptr.set_y_List_ptr(null);
     }
 
     void calculate_boundaries_of_act_node(
@@ -680,539 +537,75 @@ public class NMM
         }
     }
 
+    //splits the sorted Lists L_x, L_y at x_mid_coord into the sorted Lists of the left
+    //and the right half: L_x is split at the first particle that is not left of x_mid_coord,
+    //while L_y is filtered by the x-coordinates of the crossreferenced L_x particles
     void split_in_x_direction(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr)
+            List<ParticleInfo> L_x,
+            List<ParticleInfo> L_y,
+            double x_mid_coord,
+            List<ParticleInfo> L_x_left,
+            List<ParticleInfo> L_y_left,
+            List<ParticleInfo> L_x_right,
+            List<ParticleInfo> L_y_right)
     {
-        ListIterator<ParticleInfo> l_item = act_ptr.get_x_List_ptr().listIterator();
-        ListIterator<ParticleInfo> r_item = act_ptr.get_x_List_ptr().listIterator(act_ptr.get_x_List_ptr().size());
-        ParticleInfo last_left_item = null;
-        double act_Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
-        double x_mid_coord = act_ptr.get_Sm_downleftcorner().m_x + act_Sm_boxlength_half;
-        double l_xcoord, r_xcoord;
-        boolean left_particleList_empty = false;
-        boolean right_particleList_empty = false;
-        boolean left_particleList_larger = true;
-
-        //traverse *act_ptr.get_x_List_ptr() from left and right
-
-        while (l_item.hasNext() && r_item.hasPrevious())
-        {//while
-            l_xcoord = l_item.next().get_x_y_coord();
-            r_xcoord = r_item.previous().get_x_y_coord();
-            if (l_xcoord >= x_mid_coord)
+        for (ParticleInfo P_x : L_x)
+        {
+            if (P_x.get_x_y_coord() < x_mid_coord)
             {
-                left_particleList_larger = false;
-                if (l_item.previousIndex() >= 0)
-                {
-                    last_left_item = act_ptr.get_x_List_ptr().get(l_item.previousIndex());
-                }
-                else
-                {
-                    left_particleList_empty = true;
-                }
-            }
-            else if (r_xcoord < x_mid_coord)
-            {
-                if (r_item.nextIndex() < act_ptr.get_x_List_ptr().size())
-                {
-                    last_left_item = act_ptr.get_x_List_ptr().get(r_item.nextIndex());
-                }
-                else
-                {
-                    right_particleList_empty = true;
-                }
+                L_x_left.add(P_x);
             }
             else
             {
-                break;
+                L_x_right.add(P_x);
             }
-        }//while
-
-        //get the L_x(y) Lists of the bigger half (from *act_ptr.get_x(y)_List_ptr))
-        //and make entries in L_x_copy,L_y_copy for the smaller halfs
-
-        if (left_particleList_empty)
-        {
-            L_x_left_ptr.set(null);
-            L_y_left_ptr.set(null);
-            L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        }
-        else if (right_particleList_empty)
-        {
-            L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-            L_x_right_ptr.set(null);
-            L_y_right_ptr.set(null);
         }
-        else if (left_particleList_larger)
-        {
-            x_delete_right_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
-        }
-        else //left particleList is smaller or equal to right particleList
-        {
-            x_delete_left_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
-        }
-    }
 
-    void split_in_y_direction(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr)
-    {
-        ListIterator<ParticleInfo> l_item = act_ptr.get_y_List_ptr().listIterator();
-        ListIterator<ParticleInfo> r_item = act_ptr.get_y_List_ptr().listIterator(act_ptr.get_y_List_ptr().size());
-        ParticleInfo last_left_item = null;
-        double act_Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
-        double y_mid_coord = act_ptr.get_Sm_downleftcorner().m_y + act_Sm_boxlength_half;
-        double l_ycoord, r_ycoord;
-        boolean last_left_item_found = false;
-        boolean left_particleList_empty = false;
-        boolean right_particleList_empty = false;
-        boolean left_particleList_larger = true;
-        //traverse *act_ptr.get_y_List_ptr() from left and right
-
-        while (l_item.hasNext() && r_item.hasPrevious())
-        {//while
-            l_ycoord = l_item.next().get_x_y_coord();
-            r_ycoord = r_item.previous().get_x_y_coord();
-            if (l_ycoord >= y_mid_coord)
+        for (ParticleInfo P_y : L_y)
+        {
+            if (P_y.get_cross_ref_item().get_x_y_coord() < x_mid_coord)
             {
-                left_particleList_larger = false;
-                if (l_item.previousIndex() >= 0)
-                {
-                    last_left_item = act_ptr.get_y_List_ptr().get(l_item.previousIndex());
-                }
-                else
-                {
-                    left_particleList_empty = true;
-                }
-            }
-            else if (r_ycoord < y_mid_coord)
-            {
-                if (r_item.nextIndex() < act_ptr.get_y_List_ptr().size())
-                {
-                    last_left_item = act_ptr.get_y_List_ptr().get(r_item.nextIndex());
-                }
-                else
-                {
-                    right_particleList_empty = true;
-                }
+                L_y_left.add(P_y);
             }
             else
             {
-                break;
+                L_y_right.add(P_y);
             }
-        }//while
-
-        //get the L_x(y) Lists of the bigger half (from *act_ptr.get_x(y)_List_ptr))
-        //and make entries in L_x_copy,L_y_copy for the smaller halfs
-
-        if (left_particleList_empty)
-        {
-            L_x_left_ptr.set(null);
-            L_y_left_ptr.set(null);
-            L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        }
-        else if (right_particleList_empty)
-        {
-            L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-            L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-            L_x_right_ptr.set(null);
-            L_y_right_ptr.set(null);
-        }
-        else if (left_particleList_larger)
-        {
-            y_delete_right_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
         }
-        else //left particleList is smaller or equal to right particleList
-        {
-            y_delete_left_subLists(act_ptr, L_x_left_ptr, L_y_left_ptr,
-                    L_x_right_ptr, L_y_right_ptr, last_left_item);
-        }
-    }
-
-    void x_delete_right_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_right_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_right_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = L_x_left_ptr.get().indexOf(last_left_item) + 1; i < L_x_left_ptr.get().size(); i++)
-        {//while
-            act_p_info = L_x_left_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_x_item = act_p_info.get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_right_ptr.get());
-
-            p_in_L_y_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_right_ptr.get());
-
-            //create *L_x(y)_left_ptr
-            L_y_left_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_x_left_ptr.get().remove(act_p_info);
-        }//while
-    }
-
-    void x_delete_left_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_left_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_left_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = 0; i <= L_x_right_ptr.get().indexOf(last_left_item); i++)
-        {//while
-            act_p_info = L_x_right_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_x_item = act_p_info.get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_left_ptr.get());
-
-            p_in_L_y_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_left_ptr.get());
-
-            //create *L_x(y)_right_ptr
-            L_y_right_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_x_right_ptr.get().remove(act_p_info);
-        }//while
-    }
-
-    void y_delete_right_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_left_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_left_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_right_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_right_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = L_y_left_ptr.get().indexOf(last_left_item) + 1; i < L_y_left_ptr.get().size(); i++)
-        {//while
-            act_p_info = L_x_left_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_y_item = act_p_info.get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_right_ptr.get());
-
-            p_in_L_x_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_right_ptr.get());
-
-            //create *L_x(y)_left_ptr
-            L_x_left_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_y_left_ptr.get().remove(act_p_info);
-        }//while
-    }
-
-    void y_delete_left_subLists(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_left_ptr,
-            ref<List<ParticleInfo>> L_y_left_ptr,
-            ref<List<ParticleInfo>> L_x_right_ptr,
-            ref<List<ParticleInfo>> L_y_right_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo act_p_info;
-        ParticleInfo p_in_L_x_item, p_in_L_y_item;
-
-        L_x_right_ptr.set(act_ptr.get_x_List_ptr());
-        L_y_right_ptr.set(act_ptr.get_y_List_ptr());
-        L_x_left_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_left_ptr.set(new ArrayList<ParticleInfo>());
-
-        for (int i = 0; i <= L_y_right_ptr.get().indexOf(last_left_item); i++)
-        {//while
-            act_p_info = L_x_left_ptr.get().get(i);
-
-            //save references for *L_x(y)_right_ptr in L_x(y)_copy
-            p_in_L_y_item = act_p_info.get_copy_item();
-            p_in_L_y_item.set_subList_ptr(L_y_left_ptr.get());
-
-            p_in_L_x_item = act_p_info.get_cross_ref_item().get_copy_item();
-            p_in_L_x_item.set_subList_ptr(L_x_left_ptr.get());
-
-            //create *L_x(y)_right_ptr
-            L_x_right_ptr.get().remove(act_p_info.get_cross_ref_item());
-            L_y_right_ptr.get().remove(act_p_info);
-        }//while
     }
 
+    //splits the sorted Lists L_x, L_y at y_mid_coord into the sorted Lists of the bottom
+    //and the top half (as split_in_x_direction with the roles of L_x and L_y exchanged)
     void split_in_y_direction(
-            QuadTreeNodeNM act_ptr,
-            ref<List<ParticleInfo>> L_x_ptr,
-            ref<List<ParticleInfo>> L_x_b_ptr,
-            ref<List<ParticleInfo>> L_x_t_ptr,
-            ref<List<ParticleInfo>> L_y_ptr,
-            ref<List<ParticleInfo>> L_y_b_ptr,
-            ref<List<ParticleInfo>> L_y_t_ptr)
+            List<ParticleInfo> L_x,
+            List<ParticleInfo> L_y,
+            double y_mid_coord,
+            List<ParticleInfo> L_x_bottom,
+            List<ParticleInfo> L_y_bottom,
+            List<ParticleInfo> L_x_top,
+            List<ParticleInfo> L_y_top)
     {
-        ListIterator<ParticleInfo> l_item = L_y_ptr.get().listIterator();
-        ListIterator<ParticleInfo> r_item = L_y_ptr.get().listIterator(L_y_ptr.get().size());
-        ParticleInfo last_left_item = null;
-        double act_Sm_boxlength_half = act_ptr.get_Sm_boxlength() / 2;
-        double y_mid_coord = act_ptr.get_Sm_downleftcorner().m_y + act_Sm_boxlength_half;
-        double l_ycoord, r_ycoord;
-        boolean left_particleList_empty = false;
-        boolean right_particleList_empty = false;
-        boolean left_particleList_larger = true;
-
-        //traverse *L_y_ptr from left and right
-
-        while (l_item.hasNext() && r_item.hasPrevious())
-        {//while
-            l_ycoord = l_item.next().get_x_y_coord();
-            r_ycoord = r_item.previous().get_x_y_coord();
-            if (l_ycoord >= y_mid_coord)
-            {
-                left_particleList_larger = false;
-                if (l_item.previousIndex() >= 0)
-                {
-                    last_left_item = L_y_ptr.get().get(l_item.previousIndex());
-                }
-                else
-                {
-                    left_particleList_empty = true;
-                }
-            }
-            else if (r_ycoord < y_mid_coord)
+        for (ParticleInfo P_y : L_y)
+        {
+            if (P_y.get_x_y_coord() < y_mid_coord)
             {
-                if (r_item.nextIndex() < L_y_ptr.get().size())
-                {
-                    last_left_item = L_y_ptr.get().get(r_item.nextIndex());
-                }
-                else
-                {
-                    right_particleList_empty = true;
-                }
+                L_y_bottom.add(P_y);
             }
             else
             {
-                break;
+                L_y_top.add(P_y);
             }
-        }//while
-
-        //create *L_x_l(b)_ptr
-
-        if (left_particleList_empty)
-        {
-            L_x_b_ptr.set(null);
-            L_y_b_ptr.set(null);
-            L_x_t_ptr.set(L_x_ptr.get());
-            L_y_t_ptr.set(L_y_ptr.get());
-        }
-        else if (right_particleList_empty)
-        {
-            L_x_b_ptr.set(L_x_ptr.get());
-            L_y_b_ptr.set(L_y_ptr.get());
-            L_x_t_ptr.set(null);
-            L_y_t_ptr.set(null);
-        }
-        else if (left_particleList_larger)
-        {
-            y_move_right_subLists(L_x_ptr, L_x_b_ptr, L_x_t_ptr, L_y_ptr, L_y_b_ptr, L_y_t_ptr,
-                    last_left_item);
-        }
-        else //left particleList is smaller or equal to right particleList
-        {
-            y_move_left_subLists(L_x_ptr, L_x_b_ptr, L_x_t_ptr, L_y_ptr, L_y_b_ptr, L_y_t_ptr,
-                    last_left_item);
         }
-    }
-
-    void y_move_left_subLists(
-            ref<List<ParticleInfo>> L_x_ptr,
-            ref<List<ParticleInfo>> L_x_l_ptr,
-            ref<List<ParticleInfo>> L_x_r_ptr,
-            ref<List<ParticleInfo>> L_y_ptr,
-            ref<List<ParticleInfo>> L_y_l_ptr,
-            ref<List<ParticleInfo>> L_y_r_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo p_in_L_x_info, p_in_L_y_info;
 
-        L_x_r_ptr.set(L_x_ptr.get());
-        L_y_r_ptr.set(L_y_ptr.get());
-        L_x_l_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_l_ptr.set(new ArrayList<ParticleInfo>());
-
-        //build up the L_y_Lists and update crossreferences in *L_x_l_ptr
-        for (int i = 0; i <= L_y_r_ptr.get().indexOf(last_left_item); i++)
-        {//while
-            p_in_L_y_info = L_y_r_ptr.get().get(i);
-
-            //create *L_x(y)_l_ptr
-            L_y_l_ptr.get().add(p_in_L_y_info);
-            p_in_L_x_info = p_in_L_y_info.get_cross_ref_item();
-            p_in_L_x_info.set_cross_ref_item(L_y_l_ptr.get().get(L_y_l_ptr.get().size() - 1));
-            p_in_L_x_info.mark(); //mark this element of the List
-
-            //create *L_y_r_ptr
-            L_y_r_ptr.get().remove(p_in_L_y_info);
-        }//while
-
-        //build up the L_x Lists and update crossreferences in *L_y_l_ptr
-        for (int i = 0; i < L_x_r_ptr.get().size(); i++)
-        {//while
-            p_in_L_x_info = L_x_r_ptr.get().get(i);
-
-            if (p_in_L_x_info.is_marked())
-            {
-                p_in_L_x_info.unmark();
-                L_x_l_ptr.get().add(p_in_L_x_info);
-                p_in_L_y_info = p_in_L_x_info.get_cross_ref_item();
-                p_in_L_y_info.set_cross_ref_item(L_x_l_ptr.get().get(L_x_l_ptr.get().size() - 1));
-            }
-
-            //create *L_x_r_ptr
-            if (p_in_L_x_info.is_marked())
-            {
-                L_x_r_ptr.get().remove(p_in_L_x_info);
-            }
-        }//while
-    }
-
-    void y_move_right_subLists(
-            ref<List<ParticleInfo>> L_x_ptr,
-            ref<List<ParticleInfo>> L_x_l_ptr,
-            ref<List<ParticleInfo>> L_x_r_ptr,
-            ref<List<ParticleInfo>> L_y_ptr,
-            ref<List<ParticleInfo>> L_y_l_ptr,
-            ref<List<ParticleInfo>> L_y_r_ptr,
-            ParticleInfo last_left_item)
-    {
-        ParticleInfo p_in_L_x_info, p_in_L_y_info;
-
-        L_x_l_ptr.set(L_x_ptr.get());
-        L_y_l_ptr.set(L_y_ptr.get());
-        L_x_r_ptr.set(new ArrayList<ParticleInfo>());
-        L_y_r_ptr.set(new ArrayList<ParticleInfo>());
-
-        //build up the L_y_Lists and update crossreferences in *L_x_r_ptr
-        for (int i = L_y_l_ptr.get().indexOf(last_left_item) + 1; i < L_y_l_ptr.get().size(); i++)
-        {//while
-            p_in_L_y_info = L_y_r_ptr.get().get(i);
-
-            //create *L_x(y)_r_ptr
-            L_y_r_ptr.get().add(p_in_L_y_info);
-            p_in_L_x_info = p_in_L_y_info.get_cross_ref_item();
-            p_in_L_x_info.set_cross_ref_item(L_y_r_ptr.get().get(L_y_r_ptr.get().size() - 1));
-            p_in_L_x_info.mark(); //mark this element of the List
-
-            //create *L_y_l_ptr
-            L_y_l_ptr.get().remove(p_in_L_y_info);
-        }//while
-
-        //build up the L_x Lists and update crossreferences in *L_y_r_ptr
-        for (int i = 0; i < L_x_l_ptr.get().size(); i++)
-        {//while
-            p_in_L_x_info = L_x_l_ptr.get().get(i);
-
-            if (p_in_L_x_info.is_marked())
-            {
-                p_in_L_x_info.unmark();
-                L_x_l_ptr.get().add(p_in_L_x_info);
-                p_in_L_y_info = p_in_L_x_info.get_cross_ref_item();
-                p_in_L_y_info.set_cross_ref_item(L_x_r_ptr.get().get(L_x_r_ptr.get().size() - 1));
-            }
-
-            //create *L_x_r_ptr
-            if (p_in_L_x_info.is_marked())
-            {
-                L_x_l_ptr.get().remove(p_in_L_x_info);
-            }
-        }//while
-    }
-
-    void build_up_sorted_subLists(
-            List<ParticleInfo> L_x_copy,
-            List<ParticleInfo> L_y_copy)
-    {
-        ParticleInfo P_x, P_y;
-        List<ParticleInfo> L_x_ptr = new ArrayList<ParticleInfo>();
-        List<ParticleInfo> L_y_ptr = new ArrayList<ParticleInfo>();
-        ListIterator<ParticleInfo> it;
-        ParticleInfo new_cross_ref_item;
-
-        it = L_x_copy.listIterator();
-        while (it.hasNext())
+        for (ParticleInfo P_x : L_x)
         {
-            P_x = it.next();
-
-            if (P_x.get_subList_ptr() != null)
+            if (P_x.get_cross_ref_item().get_x_y_coord() < y_mid_coord)
             {
-                //reset values
-                L_x_ptr = P_x.get_subList_ptr();
-                P_x.set_subList_ptr(null); //clear subList_ptr
-                P_x.set_copy_item(null);   //clear copy_item
-                P_x.unmark(); //unmark this element
-                P_x.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-
-                //update *L_x_ptr
-                L_x_ptr.add(P_x);
-
-                //update L_x_copy
-                P_x.set_tmp_cross_ref_item(P_x);
+                L_x_bottom.add(P_x);
             }
-        }
-
-        it = L_x_copy.listIterator();
-        while (it.hasNext())
-        {
-            P_y = it.next();
-
-            if (P_y.get_subList_ptr() != null)
+            else
             {
-                //reset values
-                L_y_ptr = P_y.get_subList_ptr();
-                P_y.set_subList_ptr(null); //clear subList_ptr
-                P_y.set_copy_item(null);   //clear copy_item
-                P_y.unmark(); //unmark this element
-                P_y.set_tmp_cross_ref_item(null);//clear tmp_cross_ref_item
-
-                //update *L_x(y)_ptr
-
-                new_cross_ref_item = P_y.get_cross_ref_item().get_tmp_cross_ref_item();
-                P_y.set_cross_ref_item(new_cross_ref_item);
-                L_y_ptr.add(P_y);
-                P_x = new_cross_ref_item;
-                P_x.set_cross_ref_item(P_y);
+                L_x_top.add(P_x);
             }
         }
     }
@@ -1357,8 +750,8 @@ public class NMM
         while (!subtree_root_ptr.contained_nodes_empty())
         {
             v = subtree_root_ptr.pop_contained_nodes();
-            xcoord = A.get(v).get_x() - subtree_root_ptr.get_Sm_downleftcorner().m_x;
-            ycoord = A.get(v).get_y() - subtree_root_ptr.get_Sm_downleftcorner().m_y;;
+            xcoord = A.get(v).get_position().getX() - subtree_root_ptr.get_Sm_downleftcorner().m_x;
+            ycoord = A.get(v).get_position().getY() - subtree_root_ptr.get_Sm_downleftcorner().m_y;;
             x_index = (int) (xcoord / minboxlength);
             y_index = (int) (ycoord / minboxlength);
             act_ptr = leaf_ptr[x_index][y_index];
@@ -1753,29 +1146,29 @@ public class NMM
         // {//else
         List<node> L = T.get_act_ptr().get_contained_nodes();
         node v = L.remove(0);
-        double x_min = A.get(v).get_x();
+        double x_min = A.get(v).get_position().getX();
         double x_max = x_min;
-        double y_min = A.get(v).get_y();
+        double y_min = A.get(v).get_position().getY();
         double y_max = y_min;
 
         while (!L.isEmpty())
         {
             v = L.remove(0);
-            if (A.get(v).get_x() < x_min)
+            if (A.get(v).get_position().getX() < x_min)
             {
-                x_min = A.get(v).get_x();
+                x_min = A.get(v).get_position().getX();
             }
-            if (A.get(v).get_x() > x_max)
+            if (A.get(v).get_position().getX() > x_max)
             {
-                x_max = A.get(v).get_x();
+                x_max = A.get(v).get_position().getX();
             }
-            if (A.get(v).get_y() < y_min)
+            if (A.get(v).get_position().getY() < y_min)
             {
-                y_min = A.get(v).get_y();
+                y_min = A.get(v).get_position().getY();
             }
-            if (A.get(v).get_y() > y_max)
+            if (A.get(v).get_position().getY() > y_max)
             {
-                y_max = A.get(v).get_y();
+                y_max = A.get(v).get_position().getY();
             }
         }
         if (x_min != x_max || y_min != y_max) //nodes are not all at the same position
@@ -1786,7 +1179,7 @@ public class NMM
             }
             else //find_sm_cell == FMMMLayout.scfAluru
             {
-                find_small_cell_iteratively(T.get_act_ptr(), x_min, x_max, y_min, y_max);
+                find_small_cell_by_formula(T.get_act_ptr(), x_min, x_max, y_min, y_max);
             }
             return true;
         }
@@ -2163,7 +1556,7 @@ public class NMM
 
         for (node v_it : nodes_in_box)
         {
-            Q.plus(new Complex(1.0));
+            Q = Q.plus(new Complex(1.0));
         }
 
         coef[0] = Q;
@@ -2175,7 +1568,7 @@ public class NMM
 
         for (node v_it : nodes_in_box)
         {
-            Complex z_v = new Complex(A.get(v_it).get_x(), A.get(v_it).get_y());
+            Complex z_v = new Complex(A.get(v_it).get_position().getX(), A.get(v_it).get_position().getY());
             z_v_minus_z_0_over_k = z_v.minus(z_0);
             for (k = 1; k <= precision(); k++)
             {
@@ -2195,7 +1588,7 @@ public class NMM
 
         z_1 = father_ptr.get_Sm_center();
         z_0 = act_ptr.get_Sm_center();
-        father_ptr.get_multipole_exp()[0] = act_ptr.get_multipole_exp()[0].plus(act_ptr.get_multipole_exp()[0]);
+        father_ptr.get_multipole_exp()[0] = father_ptr.get_multipole_exp()[0].plus(act_ptr.get_multipole_exp()[0]);
 
         //init z_0_minus_z_1_over
         z_0_minus_z_1_over[0] = new Complex(1.0);
@@ -2675,7 +2068,7 @@ public class NMM
         for (node v_it : contained_nodes)
         {//forall
             //set position of v as center ( (1,0,....,0) are the multipole coefficients at v)
-            Complex z_0 = new Complex(A.get(v_it).get_x(), A.get(v_it).get_y());
+            Complex z_0 = new Complex(A.get(v_it).get_position().getX(), A.get(v_it).get_position().getY());
 
             //now transform multipole_0_of_v to the locale expansion around z_1
 
@@ -2688,7 +2081,7 @@ public class NMM
             else
             {
                 ptr_1.get_local_exp()[0] = ptr_1.get_local_exp()[0].plus(
-                        z_1.minus(z_0).log()).multipliedBy(multipole_0_of_v);
+                        z_1.minus(z_0).log().multipliedBy(multipole_0_of_v));
             }
 
             z_1_minus_z_0_over_s = z_1.minus(z_0);
@@ -2698,7 +2091,7 @@ public class NMM
                 ptr_1.get_local_exp()[s] = ptr_1.get_local_exp()[s].plus(
                         pow_minus_1_s_plus_1.multipliedBy(multipole_0_of_v).dividedBy(
                         z_1_minus_z_0_over_s.multipliedBy(s)));
-                z_1_minus_z_0_over_s = z_1_minus_z_0_over_s.plus(z_1.minus(z_0));
+                z_1_minus_z_0_over_s = z_1_minus_z_0_over_s.multipliedBy(z_1.minus(z_0));
             }
         }//forall
     }
@@ -2706,13 +2099,12 @@ public class NMM
     void transform_local_exp_to_forces(
             NodeArray<NodeAttributes> A,
             List<QuadTreeNodeNM> quad_tree_leaves,
-            NodeArray<DPoint2> F_local_exp)
+            NodeArray<DPoint> F_local_exp)
     {
         List<node> contained_nodes;
         Complex sum;
         Complex z_0;
         Complex z_v_minus_z_0_over_k_minus_1;
-        DPoint2 force_vector = new DPoint2();
 
         //calculate derivative of the potential polynom (= local expansion at leaf nodes)
         //and evaluate it for each node in contained_nodes()
@@ -2725,7 +2117,7 @@ public class NMM
 
             for (node v_ptr : contained_nodes)
             {
-                Complex z_v = new Complex(A.get(v_ptr).get_x(), A.get(v_ptr).get_y());
+                Complex z_v = new Complex(A.get(v_ptr).get_position().getX(), A.get(v_ptr).get_position().getY());
                 sum = new Complex(0.0, 0.0);
                 z_v_minus_z_0_over_k_minus_1 = new Complex(1.0);
                 for (int k = 1; k <= precision(); k++)
@@ -2734,9 +2126,7 @@ public class NMM
                             z_v_minus_z_0_over_k_minus_1));
                     z_v_minus_z_0_over_k_minus_1 = z_v_minus_z_0_over_k_minus_1.multipliedBy(z_v.minus(z_0));
                 }
-                force_vector.m_x = sum.r();
-                force_vector.m_y = (-1.0) * sum.i();
-                F_local_exp.set(v_ptr, force_vector);
+                F_local_exp.set(v_ptr, new DPoint2(sum.r(), (-1.0) * sum.i()));
             }
         }
     }
@@ -2744,7 +2134,7 @@ public class NMM
     void transform_multipole_exp_to_forces(
             NodeArray<NodeAttributes> A,
             List<QuadTreeNodeNM> quad_tree_leaves,
-            NodeArray<DPoint2> F_multipole_exp)
+            NodeArray<DPoint> F_multipole_exp)
     {
         List<QuadTreeNodeNM> M;
         List<node> act_contained_nodes;
@@ -2767,7 +2157,7 @@ public class NMM
                 z_0 = M_node_ptr_ptr.get_Sm_center();
                 for (node v_ptr : act_contained_nodes)
                 {
-                    Complex z_v = new Complex(A.get(v_ptr).get_x(), A.get(v_ptr).get_y());
+                    Complex z_v = new Complex(A.get(v_ptr).get_position().getX(), A.get(v_ptr).get_position().getY());
                     z_v_minus_z_0_over_minus_k_minus_1 = new Complex(1.0).dividedBy(z_v.minus(z_0));
                     sum = M_node_ptr_ptr.get_multipole_exp()[0].multipliedBy(
                             z_v_minus_z_0_over_minus_k_minus_1);
@@ -2792,7 +2182,7 @@ public class NMM
     void calculate_neighbourcell_forces(
             NodeArray<NodeAttributes> A,
             List<QuadTreeNodeNM> quad_tree_leaves,
-            NodeArray<DPoint2> F_direct)
+            NodeArray<DPoint> F_direct)
     {
         List<node> act_contained_nodes, neighbour_contained_nodes, non_neighbour_contained_nodes;
         List<QuadTreeNodeNM> neighboured_leaves;
@@ -2800,8 +2190,8 @@ public class NMM
         double act_leaf_boxlength, neighbour_leaf_boxlength;
         DPoint2 act_leaf_dlc, neighbour_leaf_dlc;
         DPoint2 f_rep_u_on_v = new DPoint2();
-        DPoint2 vector_v_minus_u;
-        DPoint2 pos_u, pos_v;
+        DPoint vector_v_minus_u;
+        DPoint pos_u, pos_v;
         double norm_v_minus_u, scalar;
         int length;
         node u, v;
@@ -2832,17 +2222,17 @@ public class NMM
                         v = numbered_nodes[l];
                         pos_u = A.get(u).get_position();
                         pos_v = A.get(v).get_position();
-                        if (pos_u == pos_v)
+                        if (pos_u.equals(pos_v))
                         {//if2  (Exception handling if two nodes have the same position)
                             pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
                         }//if2
                         vector_v_minus_u = pos_v.minus(pos_u);
-                        norm_v_minus_u = vector_v_minus_u.norm();
+                        norm_v_minus_u = vector_v_minus_u.length();
                         if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                         {
                             scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                            f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                            f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                            f_rep_u_on_v.m_x = scalar * vector_v_minus_u.getX();
+                            f_rep_u_on_v.m_y = scalar * vector_v_minus_u.getY();
                         }
                         F_direct.set(v, F_direct.get(v).plus(f_rep_u_on_v));
                         F_direct.set(u, F_direct.get(u).minus(f_rep_u_on_v));
@@ -2877,17 +2267,17 @@ public class NMM
                             {//for
                                 pos_u = A.get(u_ptr).get_position();
                                 pos_v = A.get(v_ptr).get_position();
-                                if (pos_u == pos_v)
+                                if (pos_u.equals(pos_v))
                                 {//if2  (Exception handling if two nodes have the same position)
                                     pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
                                 }//if2
                                 vector_v_minus_u = pos_v.minus(pos_u);
-                                norm_v_minus_u = vector_v_minus_u.norm();
+                                norm_v_minus_u = vector_v_minus_u.length();
                                 if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                                 {
                                     scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                                    f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                                    f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                                    f_rep_u_on_v.m_x = scalar * vector_v_minus_u.getX();
+                                    f_rep_u_on_v.m_y = scalar * vector_v_minus_u.getY();
                                 }
                                 F_direct.set(v_ptr, F_direct.get(v_ptr).plus(f_rep_u_on_v));
                                 F_direct.set(u_ptr, F_direct.get(u_ptr).minus(f_rep_u_on_v));
@@ -2909,17 +2299,17 @@ public class NMM
                         {//for
                             pos_u = A.get(u_ptr).get_position();
                             pos_v = A.get(v_ptr).get_position();
-                            if (pos_u == pos_v)
+                            if (pos_u.equals(pos_v))
                             {//if2  (Exception handling if two nodes have the same position)
                                 pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_u);
                             }//if2
                             vector_v_minus_u = pos_v.minus(pos_u);
-                            norm_v_minus_u = vector_v_minus_u.norm();
+                            norm_v_minus_u = vector_v_minus_u.length();
                             if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                             {
                                 scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                                f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                                f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                                f_rep_u_on_v.m_x = scalar * vector_v_minus_u.getX();
+                                f_rep_u_on_v.m_y = scalar * vector_v_minus_u.getY();
                             }
                             F_direct.set(v_ptr, F_direct.get(v_ptr).plus(f_rep_u_on_v));
                         }//for
@@ -2933,12 +2323,12 @@ public class NMM
                     pos_v = A.get(v_ptr).get_position();
                     pos_u = numexcept.choose_distinct_random_point_in_radius_epsilon(pos_v);
                     vector_v_minus_u = pos_v.minus(pos_u);
-                    norm_v_minus_u = vector_v_minus_u.norm();
+                    norm_v_minus_u = vector_v_minus_u.length();
                     if (!numexcept.f_rep_near_machine_precision(norm_v_minus_u, f_rep_u_on_v))
                     {
                         scalar = f_rep_scalar(norm_v_minus_u) / norm_v_minus_u;
-                        f_rep_u_on_v.m_x = scalar * vector_v_minus_u.m_x;
-                        f_rep_u_on_v.m_y = scalar * vector_v_minus_u.m_y;
+                        f_rep_u_on_v.m_x = scalar * vector_v_minus_u.getX();
+                        f_rep_u_on_v.m_y = scalar * vector_v_minus_u.getY();
                     }
                     F_direct.set(v_ptr, F_direct.get(v_ptr).plus(f_rep_u_on_v));
                 }
@@ -2948,10 +2338,10 @@ public class NMM
 
     void add_rep_forces(
             Graph G,
-            NodeArray<DPoint2> F_direct,
-            NodeArray<DPoint2> F_multipole_exp,
-            NodeArray<DPoint2> F_local_exp,
-            NodeArray<DPoint2> F_rep)
+            NodeArray<DPoint> F_direct,
+            NodeArray<DPoint> F_multipole_exp,
+            NodeArray<DPoint> F_local_exp,
+            NodeArray<DPoint> F_rep)
     {
         node v;
         for (Iterator<node> i = G.nodesIterator(); i.hasNext();)
@@ -3047,4 +2437,4 @@ public class NMM
     {
         return _precision;
     }
-}*/
+}
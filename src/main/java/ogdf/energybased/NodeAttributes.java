@@ -80,6 +80,14 @@ public class NodeAttributes
         position = PointFactory.INSTANCE.newDPoint(pos);
     }
 
+    //sets the position in place, without copying a DPoint
+    public void set_position(double x, double y, double z)
+    {
+        position.setX(x);
+        position.setY(y);
+        position.setZ(z);
+    }
+
     public void set_width(double w)
     {
         width = w;
@@ -95,6 +103,22 @@ public class NodeAttributes
         return PointFactory.INSTANCE.newDPoint(position);
     }
 
+    //the coordinates of the position, without copying a DPoint
+    public double get_x()
+    {
+        return position.getX();
+    }
+
+    public double get_y()
+    {
+        return position.getY();
+    }
+
+    public double get_z()
+    {
+        return position.getZ();
+    }
+
     public double get_width()
     {
         return width;
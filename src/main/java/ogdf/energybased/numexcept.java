@@ -62,6 +62,20 @@ public class numexcept
             double ymax,
             double zmin,
             double zmax)
+    {
+        return choose_distinct_random_point_in_disque(old_point, xmin, xmax, ymin, ymax, zmin, zmax, numexcept.random);
+    }
+
+    //As above, drawing the random values from random (ie the generator of a thread).
+    public static DPoint choose_distinct_random_point_in_disque(
+            DPoint old_point,
+            double xmin,
+            double xmax,
+            double ymin,
+            double ymax,
+            double zmin,
+            double zmax,
+            Random random)
     {
         double mindist;//minimal distance from old_point to the boundaries of the disc
         double mindist_to_xmin, mindist_to_xmax, mindist_to_ymin, mindist_to_ymax, mindist_to_zmin, mindist_to_zmax;
@@ -156,6 +170,12 @@ public class numexcept
     //A random point (distinct from old_pos) on the disque around old_pos with
     //radius epsilon = 0.1 is computed.
     public static DPoint choose_distinct_random_point_in_radius_epsilon(DPoint old_pos)
+    {
+        return choose_distinct_random_point_in_radius_epsilon(old_pos, numexcept.random);
+    }
+
+    //As above, drawing the random values from random (ie the generator of a thread).
+    public static DPoint choose_distinct_random_point_in_radius_epsilon(DPoint old_pos, Random random)
     {
         double xmin = old_pos.getX() - 1 * epsilon;
         double xmax = old_pos.getX() + 1 * epsilon;
@@ -164,7 +184,18 @@ public class numexcept
         double zmin = old_pos.getZ() - 1 * epsilon;
         double zmax = old_pos.getZ() + 1 * epsilon;
 
-        return choose_distinct_random_point_in_disque(old_pos, xmin, xmax, ymin, ymax, zmin, zmax);
+        return choose_distinct_random_point_in_disque(old_pos, xmin, xmax, ymin, ymax, zmin, zmax, random);
+    }
+
+    //Returns true if distance has a value near the machine precision, that is iff
+    //f_rep_near_machine_precision and f_near_machine_precision would replace the
+    //force; lets the callers on primitive coordinates test this without a DPoint.
+    public static boolean near_machine_precision(double distance)
+    {
+        double POS_BIG_LIMIT = POS_BIG_DOUBLE * 1e-190;
+        double POS_SMALL_LIMIT = POS_SMALL_DOUBLE * 1e190;
+
+        return (distance > POS_BIG_LIMIT) || (distance < POS_SMALL_LIMIT);
     }
 
     //If distance has a value near the machine precision the repulsive force calculation
@@ -172,6 +203,12 @@ public class numexcept
     //true is returned and force is set to a reasonable value that does
     //not cause problems; Else false is returned and force keeps unchanged.
     public static boolean f_rep_near_machine_precision(double distance, DPoint force)
+    {
+        return f_rep_near_machine_precision(distance, force, numexcept.random);
+    }
+
+    //As above, drawing the random values from random (ie the generator of a thread).
+    public static boolean f_rep_near_machine_precision(double distance, DPoint force, Random random)
     {
         double POS_BIG_LIMIT = POS_BIG_DOUBLE * 1e-190;
         double POS_SMALL_LIMIT = POS_SMALL_DOUBLE * 1e190;
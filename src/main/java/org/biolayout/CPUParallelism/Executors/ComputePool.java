@@ -0,0 +1,213 @@
+package org.biolayout.CPUParallelism.Executors;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.biolayout.CoreUI.Dialogs.*;
+import org.biolayout.CPUParallelism.*;
+import static org.biolayout.Environment.GlobalEnvironment.*;
+import static org.biolayout.DebugConsole.ConsoleOutput.*;
+
+/**
+*
+* The ComputePool class is the application-wide N-Core compute pool, a ForkJoinPool of NUMBER_OF_AVAILABLE_PROCESSORS
+* daemon threads that live for the whole application, with a 'parallel for' API running a kernel once per threadId.
+*
+* Dispatching a parallel for to the already running threads costs microseconds, instead of the creation of a new thread pool
+* & the CyclicBarrier handshake per call, which matters for the per iteration kernels of the layout algorithms.
+* A parallel for called from within the pool (ie from another kernel) is work-stolen by the calling thread, so nesting never deadlocks.
+*
+* @see org.biolayout.CPUParallelism.CyclicBarrierTimer
+*/
+
+public final class ComputePool
+{
+
+    /**
+    *  The kernel of a parallel for, run once per threadId in [0, totalThreads).
+    */
+    public interface ParallelKernel
+    {
+        public void run(int threadId);
+    }
+
+    /**
+    *  The pool thread name.
+    */
+    private static final String POOL_NAME = "ComputePool";
+
+    /**
+    *  The lazily created application-wide pool, as held by the class loading of ComputePoolHolder.
+    *  Its parallelism is NUMBER_OF_AVAILABLE_PROCESSORS, asked of the Runtime so as the pool does not initialise the
+    *  GlobalEnvironment (& its screen dependent settings) when used without the application, ie by the unit tests.
+    */
+    private static final class ComputePoolHolder
+    {
+        private static final ComputePool INSTANCE = new ComputePool( Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+    *  The ForkJoinPool of the pool threads.
+    */
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+    *  The constructor of the ComputePool class.
+    */
+    private ComputePool(int parallelism)
+    {
+        forkJoinPool = new ForkJoinPool(parallelism, new ComputePoolThreadFactory(), null, false);
+    }
+
+    /**
+    *  Gets the application-wide compute pool.
+    */
+    public static ComputePool getInstance()
+    {
+        return ComputePoolHolder.INSTANCE;
+    }
+
+    /**
+    *  Runs the kernel once per threadId in [0, totalThreads) & waits for all of them to finish.
+    */
+    public void parallelFor(int totalThreads, ParallelKernel kernel)
+    {
+        parallelFor(totalThreads, kernel, null, null);
+    }
+
+    /**
+    *  Runs the kernel once per threadId in [0, totalThreads) & waits for all of them to finish.
+    *  The threadIds not yet started when the user cancels from the layoutProgressBarDialog are skipped, while the
+    *  cyclicBarrierTimer (if any) logs the time of the whole parallel for.
+    */
+    public void parallelFor(int totalThreads, ParallelKernel kernel, LayoutProgressBarDialog layoutProgressBarDialog, CyclicBarrierTimer cyclicBarrierTimer)
+    {
+        submitParallelFor(totalThreads, kernel, layoutProgressBarDialog, cyclicBarrierTimer).join();
+    }
+
+    /**
+    *  Starts running the kernel once per threadId in [0, totalThreads) without waiting, so as the calling thread can keep on working
+    *  (ie consuming the results of the kernels) until it joins the returned task.
+    */
+    public ForkJoinTask<?> submitParallelFor(int totalThreads, ParallelKernel kernel, LayoutProgressBarDialog layoutProgressBarDialog, CyclicBarrierTimer cyclicBarrierTimer)
+    {
+        if (cyclicBarrierTimer != null)
+        {
+            cyclicBarrierTimer.clear();
+            cyclicBarrierTimer.run();
+        }
+
+        return forkJoinPool.submit( new ParallelForTask(totalThreads, kernel, layoutProgressBarDialog, cyclicBarrierTimer) );
+    }
+
+    /**
+    *  Invokes a (recursively splitting) ForkJoinTask on the pool & returns its result.
+    */
+    public <T> T invoke(ForkJoinTask<T> task)
+    {
+        return forkJoinPool.invoke(task);
+    }
+
+    /**
+    *  The root task of a parallel for, forking one task per threadId.
+    */
+    private static final class ParallelForTask extends RecursiveAction
+    {
+
+        private final int totalThreads;
+        private final ParallelKernel kernel;
+        private final LayoutProgressBarDialog layoutProgressBarDialog;
+        private final CyclicBarrierTimer cyclicBarrierTimer;
+
+        private ParallelForTask(int totalThreads, ParallelKernel kernel, LayoutProgressBarDialog layoutProgressBarDialog, CyclicBarrierTimer cyclicBarrierTimer)
+        {
+            this.totalThreads = totalThreads;
+            this.kernel = kernel;
+            this.layoutProgressBarDialog = layoutProgressBarDialog;
+            this.cyclicBarrierTimer = cyclicBarrierTimer;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try
+            {
+                ParallelKernelTask[] kernelTasks = new ParallelKernelTask[totalThreads];
+                for (int threadId = 0; threadId < totalThreads; threadId++)
+                    kernelTasks[threadId] = new ParallelKernelTask(threadId, kernel, layoutProgressBarDialog);
+                invokeAll(kernelTasks);
+            }
+            finally
+            {
+                if (cyclicBarrierTimer != null)
+                    cyclicBarrierTimer.run();
+            }
+        }
+
+    }
+
+    /**
+    *  The task running the kernel for a threadId, unless the user has already cancelled.
+    */
+    private static final class ParallelKernelTask extends RecursiveAction
+    {
+
+        private final int threadId;
+        private final ParallelKernel kernel;
+        private final LayoutProgressBarDialog layoutProgressBarDialog;
+
+        private ParallelKernelTask(int threadId, ParallelKernel kernel, LayoutProgressBarDialog layoutProgressBarDialog)
+        {
+            this.threadId = threadId;
+            this.kernel = kernel;
+            this.layoutProgressBarDialog = layoutProgressBarDialog;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( (layoutProgressBarDialog != null) && layoutProgressBarDialog.userHasCancelled() )
+            {
+                if (DEBUG_BUILD) println("Skipping the " + POOL_NAME + " kernel with threadId " + threadId + " as the user has cancelled.");
+                return;
+            }
+
+            kernel.run(threadId);
+        }
+
+    }
+
+    /**
+    *  The factory of the pool threads, named like the LoggerThreads.
+    */
+    private static final class ComputePoolThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory
+    {
+
+        private final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+        {
+            ForkJoinWorkerThread thread = new ComputePoolThread(pool);
+            thread.setName(POOL_NAME + " thread id: " + created.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+
+    }
+
+    /**
+    *  The pool thread, as the ForkJoinWorkerThread constructor is protected.
+    */
+    private static final class ComputePoolThread extends ForkJoinWorkerThread
+    {
+
+        private ComputePoolThread(ForkJoinPool pool)
+        {
+            super(pool);
+        }
+
+    }
+
+
+}
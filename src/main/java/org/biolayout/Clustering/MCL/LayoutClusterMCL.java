@@ -30,6 +30,11 @@ public final class LayoutClusterMCL
     */
     private static boolean hasOnceLoadedMCLExecutable = false;
 
+    /**
+    *  Variable used for falling back to the in-process MCL engine when the native MCL executable is not found.
+    */
+    private static boolean hasMCLExecutable = false;
+
     public LayoutClusterMCL(LayoutFrame layoutFrame, Graph graph)
     {
         this.layoutFrame = layoutFrame;
@@ -131,14 +136,24 @@ public final class LayoutClusterMCL
                 if (DEBUG_BUILD) println("InterruptedException with the waitFor() method in the LayoutClusterMCL.checkExecutable() class & method:\n" + ex.getMessage());
             }
 
-            clusterMCLAction.setEnabled(true);
+            hasMCLExecutable = true;
         }
         catch (IOException ioEx)
         {
-            if (DEBUG_BUILD) println("MCL not found!\n" + ioEx.getMessage());
+            if (DEBUG_BUILD) println("MCL not found, using the in-process MCL engine!\n" + ioEx.getMessage());
 
-            clusterMCLAction.setEnabled(false);
+            hasMCLExecutable = false;
         }
+
+        clusterMCLAction.setEnabled(true);
+    }
+
+    /**
+    *  Whether the native MCL executable was found.
+    */
+    static boolean hasMCLExecutable() // package access
+    {
+        return hasMCLExecutable;
     }
 
     public AbstractAction getClusterMCLAction()
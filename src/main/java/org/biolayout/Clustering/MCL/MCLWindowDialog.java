@@ -45,7 +45,11 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
     private HashMap<Vertex, Integer> idVertexMap = null;
     private Document MCL_text = null;
     private JTextArea textArea = null;
-    private boolean cancelMCLThread = false;
+    private volatile boolean cancelMCLThread = false;
+    private volatile SparseMCL sparseMCL = null;
+    private int[] columnOffsets = null;
+    private int[] rowIndices = null;
+    private float[] weights = null;
     private JButton cancelMCLThreadButton = null;
 
     public MCLWindowDialog(LayoutFrame layoutFrame, Graph graph, File fileInput)
@@ -248,7 +252,7 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
             Vertex vertex2 = null;
             Edge edge1 = null;
             Edge edge2 = null;
-            ArrayList<String[]> MCL_paramList = new ArrayList<String[]>();
+            ArrayList<int[]> MCL_clusterList = new ArrayList<int[]>();
             while ( ( line = br.readLine() ) != null && !cancelMCLThread )
             {
                param = line.split("\\s+");
@@ -285,7 +289,7 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
                {
                    //EXTRACTS CLUSTERS TO A TEMPORARY BUFFER
                    classNumber++;
-                   MCL_paramList.add(param);
+                   MCL_clusterList.add( parseCluster(param) );
                }
 
                if ( param[0].equals("(mcldump") )
@@ -305,12 +309,12 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
 
             if (!cancelMCLThread)
             {
-                clearClassesAndCreateClassSet();
+                clearClassesAndCreateClassSet( MCL_INFLATION_VALUE.get() );
 
                 LayoutClasses layoutClasses = layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager().getCurrentClassSetAllClasses();
                 layoutClasses.clearClasses();
 
-                createAllLayoutClasses(layoutClasses, classNumber, MCL_paramList);
+                createAllLayoutClasses(layoutClasses, classNumber, MCL_clusterList);
             }
         }
         catch (IOException ioExc)
@@ -334,9 +338,213 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
         }
     }
 
-    private void clearClassesAndCreateClassSet()
+    private int[] parseCluster(String[] param)
     {
-        String classSetName = "MCL_" + MCL_INFLATION_VALUE.get() + "_" + MCL_SCHEME.get();
+        int[] cluster = new int[param.length];
+        int clusterSize = 0;
+        for (String index : param)
+            if ( !index.isEmpty() )
+                cluster[clusterSize++] = Integer.parseInt(index);
+
+        return (clusterSize == cluster.length) ? cluster : Arrays.copyOf(cluster, clusterSize);
+    }
+
+    /**
+    *  Creates the graph of the in-process SparseMCL engine, same vertex indices & weights as the header of the native MCL executable.
+    */
+    private void createSparseMCLGraph()
+    {
+        NetworkContainer nc = layoutFrame.getNetworkRootContainer();
+        int numberOfVertices = nc.getNumberOfVertices();
+        vertexIDMap = new HashMap<>();
+        idVertexMap = new HashMap<>();
+        for ( Vertex vertex : nc.getVertices() )
+        {
+            vertexIDMap.put(vertexIDMap.size(), vertex);
+            idVertexMap.put(vertex, idVertexMap.size());
+        }
+
+        columnOffsets = new int[numberOfVertices + 1];
+        for (int index = 0; index < numberOfVertices; index++)
+            columnOffsets[index + 1] = columnOffsets[index] + vertexIDMap.get(index).getEdgeConnectionsMap().size();
+
+        rowIndices = new int[ columnOffsets[numberOfVertices] ];
+        weights = new float[ columnOffsets[numberOfVertices] ];
+        boolean useWeights = WEIGHTED_EDGES && !nc.getIsPetriNet();
+        for (int index = 0; index < numberOfVertices; index++)
+        {
+            int position = columnOffsets[index];
+            for ( Map.Entry<Vertex, Edge> edgeConnection : vertexIDMap.get(index).getEdgeConnectionsMap().entrySet() )
+            {
+                rowIndices[position] = idVertexMap.get( edgeConnection.getKey() );
+                weights[position++] = (useWeights) ? edgeConnection.getValue().getWeight() : 1.0f;
+            }
+        }
+    }
+
+    private void appendSparseMCLOptionsText(String inflationValues, boolean useNCoreParallelism, boolean isInflationSweep)
+    {
+        appendText("\nNow starting " + ( (useNCoreParallelism) ? NUMBER_OF_AVAILABLE_PROCESSORS + "-Core " : "" ) + "in-process MCL" + ( (isInflationSweep) ? " inflation sweep" : "" ) + " with options:\n[-I " + inflationValues
+                   + ( (MCL_PRE_INFLATION_VALUE.get() > 0.0) ? " -pi " + MCL_PRE_INFLATION_VALUE.get() : "" ) + " -scheme " + MCL_SCHEME.get() + "]\n\n");
+        if ( !MCL_ADVANCED_OPTIONS.get().isEmpty() )
+            appendText("MCL Advanced Options ignored, as " + ( (isInflationSweep) ? "the inflation sweep runs in-process" : "the native MCL executable was not found" ) + ".\n\n");
+        else if ( isInflationSweep && MCL_USE_NATIVE_EXECUTABLE.get() )
+            appendText("Native MCL Executable not used, as the inflation sweep always runs in-process.\n\n");
+    }
+
+    /**
+    *  Clusters the graph with the in-process SparseMCL engine, same matrix & options as the native MCL executable.
+    */
+    private void runSparseMCL()
+    {
+        createSparseMCLGraph();
+
+        boolean useNCoreParallelism = USE_MULTICORE_PROCESS && USE_MCL_N_CORE_PARALLELISM.get();
+        appendSparseMCLOptionsText( Float.toString( MCL_INFLATION_VALUE.get() ), useNCoreParallelism, false );
+        appendText(" ite   chaos  entries\n");
+
+        long startTime = System.nanoTime();
+        sparseMCL = new SparseMCL(vertexIDMap.size(), columnOffsets, rowIndices, weights, MCL_INFLATION_VALUE.get(), MCL_PRE_INFLATION_VALUE.get(), MCL_SCHEME.get(), useNCoreParallelism);
+        if (cancelMCLThread)
+            sparseMCL.cancel();
+        ArrayList<int[]> MCL_clusterList = sparseMCL.cluster( new SparseMCL.IterationListener()
+        {
+            @Override
+            public void iterationDone(int iteration, double chaos, long numberOfNonZeros)
+            {
+                appendText( String.format("%4d %7.2f %8d\n", iteration, chaos, numberOfNonZeros) );
+            }
+        } );
+        sparseMCL = null;
+
+        if ( !cancelMCLThread && (MCL_clusterList != null) )
+        {
+            appendText("\nFound " + MCL_clusterList.size() + " clusters (modularity " + String.format( "%.4f", SparseMCL.modularity(vertexIDMap.size(), columnOffsets, rowIndices, weights, MCL_clusterList) )
+                       + ") in " + ( (System.nanoTime() - startTime) / 1e9 ) + " seconds.\n");
+
+            clearClassesAndCreateClassSet( MCL_INFLATION_VALUE.get() );
+
+            LayoutClasses layoutClasses = layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager().getCurrentClassSetAllClasses();
+            layoutClasses.clearClasses();
+
+            createAllLayoutClasses( layoutClasses, MCL_clusterList.size(), MCL_clusterList );
+        }
+    }
+
+    /**
+    *  Clusters the graph at all the inflation sweep values with the in-process SparseMCL engine, creating a class set for each one
+    *  & switching to the class set of the highest modularity.
+    */
+    private void runSparseMCLInflationSweep(float[] inflationValues)
+    {
+        createSparseMCLGraph();
+
+        boolean useNCoreParallelism = USE_MULTICORE_PROCESS && USE_MCL_N_CORE_PARALLELISM.get();
+        StringBuilder inflationValuesText = new StringBuilder();
+        for (float inflationValue : inflationValues)
+            inflationValuesText.append( (inflationValuesText.length() == 0) ? "" : "," ).append(inflationValue);
+        appendSparseMCLOptionsText(inflationValuesText.toString(), useNCoreParallelism, true);
+
+        long startTime = System.nanoTime();
+        sparseMCL = new SparseMCL(vertexIDMap.size(), columnOffsets, rowIndices, weights, MCL_INFLATION_VALUE.get(), MCL_PRE_INFLATION_VALUE.get(), MCL_SCHEME.get(), useNCoreParallelism);
+        if (cancelMCLThread)
+            sparseMCL.cancel();
+        ArrayList<ArrayList<int[]>> allClusters = sparseMCL.sweep(inflationValues, new SparseMCL.SweepListener()
+        {
+            @Override
+            public void inflationDone(float inflation, ArrayList<int[]> clusters, int numberOfIterations)
+            {
+                synchronized (MCLWindowDialog.this)
+                {
+                    appendText("Inflation " + inflation + ": " + clusters.size() + " clusters after " + numberOfIterations + " iterations.\n");
+                }
+            }
+        } );
+        sparseMCL = null;
+
+        if ( !cancelMCLThread && (allClusters != null) )
+        {
+            appendText("\nInflation sweep finished in " + ( (System.nanoTime() - startTime) / 1e9 ) + " seconds.\n\n inflation  clusters  modularity\n");
+
+            int bestIndex = 0;
+            double bestModularity = Double.NEGATIVE_INFINITY;
+            for (int index = 0; index < inflationValues.length; index++)
+            {
+                ArrayList<int[]> MCL_clusterList = allClusters.get(index);
+                double modularity = SparseMCL.modularity(vertexIDMap.size(), columnOffsets, rowIndices, weights, MCL_clusterList);
+                appendText( String.format("%10.2f %9d %11.4f\n", inflationValues[index], MCL_clusterList.size(), modularity) );
+                if (modularity > bestModularity)
+                {
+                    bestModularity = modularity;
+                    bestIndex = index;
+                }
+
+                clearClassesAndCreateClassSet(inflationValues[index]);
+
+                LayoutClasses layoutClasses = layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager().getCurrentClassSetAllClasses();
+                layoutClasses.clearClasses();
+
+                createAllLayoutClasses( layoutClasses, MCL_clusterList.size(), MCL_clusterList );
+            }
+
+            layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager().switchClassSet( getClassSetName(inflationValues[bestIndex]) );
+            appendText("\nSwitched to the class set " + getClassSetName(inflationValues[bestIndex]) + " of the highest modularity.\n");
+        }
+    }
+
+    /**
+    *  Parses the inflation sweep values, ignoring any duplicate ones. Returns null after reporting the invalid ones (not numbers
+    *  or not above 1) to the user, so as a mistyped sweep is not run without them.
+    */
+    private float[] parseInflationSweepValues()
+    {
+        LinkedHashSet<Float> inflationValues = new LinkedHashSet<Float>();
+        StringBuilder invalidInflationValues = new StringBuilder();
+        for ( String inflationValue : MCL_INFLATION_SWEEP_VALUES.get().trim().split("[\\s,;]+") )
+        {
+            if ( inflationValue.isEmpty() )
+                continue;
+
+            try
+            {
+                float value = Float.parseFloat(inflationValue);
+                if (value > 1.0f)
+                {
+                    inflationValues.add(value);
+                    continue;
+                }
+            }
+            catch (NumberFormatException nfExc)
+            {
+                if (DEBUG_BUILD) println("NumberFormatException in parseInflationSweepValues():\n" + nfExc.getMessage());
+            }
+
+            invalidInflationValues.append( (invalidInflationValues.length() == 0) ? "" : " " ).append(inflationValue);
+        }
+
+        if (invalidInflationValues.length() > 0)
+        {
+            JOptionPane.showMessageDialog(this, "Invalid Inflation Sweep Values: " + invalidInflationValues + "\nInflation values have to be numbers above 1, separated by spaces or commas.",
+                                          "Invalid Inflation Sweep Values", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+
+        float[] values = new float[ inflationValues.size() ];
+        int index = 0;
+        for (float value : inflationValues)
+            values[index++] = value;
+
+        return values;
+    }
+
+    private String getClassSetName(float inflation)
+    {
+        return "MCL_" + inflation + "_" + MCL_SCHEME.get();
+    }
+
+    private void clearClassesAndCreateClassSet(float inflation)
+    {
+        String classSetName = getClassSetName(inflation);
 
         if ( !layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager().classSetExists(classSetName) )
             layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager().createNewClassSet(classSetName);
@@ -345,7 +553,7 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
         layoutFrame.getNetworkRootContainer().getLayoutClassSetsManager().switchClassSet(classSetName);
     }
 
-    private void createAllLayoutClasses(LayoutClasses layoutClasses, int classNumber, ArrayList<String[]> MCL_paramList)
+    private void createAllLayoutClasses(LayoutClasses layoutClasses, int classNumber, ArrayList<int[]> MCL_clusterList)
     {
         // prime numbers color generator values
         primeNumberIndex1 =  3; // start with prime number   7
@@ -369,7 +577,7 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
         int prevIntegerCharacters = 0;
         int classNumberIndex = 0;
         int currentIntegerCharacters = 0;
-        for (String[] MCL_param : MCL_paramList)
+        for (int[] MCL_cluster : MCL_clusterList)
         {
             currentIntegerCharacters = Integer.toString(++classNumberIndex).length();
             if (currentIntegerCharacters > prevIntegerCharacters)
@@ -400,8 +608,8 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
                 layoutClasses.createClass(classNumberIndex, "Cluster" + zerosToPut + classNumberIndex);
 
             // IF WE WANT: SET MEMBERS IN SMALL CLUSTERS TO NO CLASS
-            for (int i = 0; i < MCL_param.length; i++)
-                layoutClasses.setClass(vertexIDMap.get(new Integer(MCL_param[i])), ( MCL_param.length > MCL_SMALLEST_CLUSTER.get() ) ? classNumberIndex : 0);
+            for (int i = 0; i < MCL_cluster.length; i++)
+                layoutClasses.setClass(vertexIDMap.get(MCL_cluster[i]), ( MCL_cluster.length > MCL_SMALLEST_CLUSTER.get() ) ? classNumberIndex : 0);
         }
     }
 
@@ -456,11 +664,31 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
         {
            this.setTitle( MCL_TITLE + ( ( USE_MULTICORE_PROCESS && USE_MCL_N_CORE_PARALLELISM.get() ) ? " (Utilizing " + NUMBER_OF_AVAILABLE_PROCESSORS + "-Core Parallelism)" : "" ) );
 
-           appendText("Creating MCL Header: ");
-           createMCLHeader();
-
-           appendText("Done. ");
-           runMCL();
+           float[] inflationSweepValues = parseInflationSweepValues();
+           if (inflationSweepValues == null)
+           {
+               appendText("Invalid Inflation Sweep Values, clustering not started.\n");
+               cancelMCLThread = true;
+           }
+           else if (inflationSweepValues.length > 0)
+           {
+               runSparseMCLInflationSweep(inflationSweepValues);
+           }
+           else if ( LayoutClusterMCL.hasMCLExecutable() && ( MCL_USE_NATIVE_EXECUTABLE.get() || !MCL_ADVANCED_OPTIONS.get().isEmpty() ) )
+           {
+               appendText("Creating MCL Header: ");
+               createMCLHeader();
+
+               appendText("Done. ");
+               long startTime = System.nanoTime();
+               runMCL();
+               if (!cancelMCLThread)
+                   appendText("\nMCL process finished in " + ( (System.nanoTime() - startTime) / 1e9 ) + " seconds.\n");
+           }
+           else
+           {
+               runSparseMCL();
+           }
 
             if (!cancelMCLThread)
             {
@@ -477,6 +705,10 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
                 cancelMCLThreadButton.setText("Close Window");
                 cancelMCLThreadButton.setToolTipText("Close Window");
                 vertexIDMap = null;
+                idVertexMap = null;
+                columnOffsets = null;
+                rowIndices = null;
+                weights = null;
 
                 this.repaint();
             }
@@ -503,6 +735,9 @@ final class MCLWindowDialog extends JDialog implements Runnable, ActionListener
     private void closeMCLWindow()
     {
         cancelMCLThread = true;
+        SparseMCL currentSparseMCL = sparseMCL;
+        if (currentSparseMCL != null)
+            currentSparseMCL.cancel();
         fileInput.delete();
 
         this.setVisible(false);
@@ -0,0 +1,662 @@
+package org.biolayout.Clustering.MCL;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import org.biolayout.CPUParallelism.Executors.*;
+import static java.lang.Math.*;
+import static org.biolayout.Environment.GlobalEnvironment.*;
+
+/**
+*
+* The SparseMCL class is an in-process Markov Clustering (MCL) engine, in place of the external mcl executable.
+*
+* The column stochastic matrix is kept in compressed sparse column form. Every iteration expands the matrix by squaring it,
+* one column at a time with a dense accumulator per thread, prunes the expanded column like the mcl executable (the cutoff,
+* selection & recovery numbers of its -scheme option), inflates & normalises it. All these operations are local to a column,
+* so the columns are processed in parallel in one pass per iteration, with the same result for any number of threads.
+* The iterations stop when the chaos of the matrix (the largest max / sum of squares - 1 of its columns) vanishes, the
+* clusters being the attractor systems of the limit matrix. An inflation sweep shares the matrix & its first expansion among
+* all its inflation values, clustering them concurrently.
+*
+* @see org.biolayout.Clustering.MCL.MCLWindowDialog
+*
+*/
+
+final class SparseMCL // package access
+{
+
+    /**
+    *  The progress of the clustering, reported after every iteration.
+    */
+    public interface IterationListener
+    {
+        public void iterationDone(int iteration, double chaos, long numberOfNonZeros);
+    }
+
+    /**
+    *  The progress of an inflation sweep, reported after every inflation value from the thread clustering it.
+    */
+    public interface SweepListener
+    {
+        public void inflationDone(float inflation, ArrayList<int[]> clusters, int numberOfIterations);
+    }
+
+    /**
+    *  The prune number (the cutoff being its reciprocal), the selection number, the recovery number & the recovery percentage
+    *  of the -scheme 1 to 7 options, as of the mcl executable.
+    */
+    private static final int[][] SCHEMES = { {  3000,  400,  500, 90 },
+                                             {  4000,  500,  600, 90 },
+                                             {  5000,  600,  700, 90 },
+                                             {  6000,  700,  800, 90 },
+                                             {  7000,  800,  900, 90 },
+                                             { 10000, 1100, 1400, 90 },
+                                             { 10000, 1200, 1600, 90 } };
+
+    private static final double CHAOS_THRESHOLD = 1e-4;
+    private static final int MAXIMUM_ITERATIONS = 1000;
+    private static final int COLUMNS_PER_TASK = 64;
+
+    private final int numberOfNodes;
+    private final float inflation;
+    private final double cutoff;
+    private final int selectionNumber;
+    private final int recoveryNumber;
+    private final double recoveryMass;
+    private final int numberOfThreads;
+
+    private int[] columnOffsets = null;
+    private int[] rowIndices = null;
+    private double[] values = null;
+    private int numberOfIterations = 0;
+    private final AtomicBoolean isCancelled;
+
+    /**
+    *  The SparseMCL constructor, with the symmetric graph as the neighbours of every node in [columnOffsets[node], columnOffsets[node + 1])
+    *  of the rowIndices & weights arrays. Loops with the largest weight of their column are added, as the mcl executable does, in place of
+    *  any loops of the graph.
+    */
+    public SparseMCL(int numberOfNodes, int[] columnOffsets, int[] rowIndices, float[] weights, float inflation, float preInflation, int scheme, boolean useNCoreParallelism)
+    {
+        this(numberOfNodes, columnOffsets, rowIndices, weights, inflation, preInflation, scheme, (useNCoreParallelism) ? NUMBER_OF_AVAILABLE_PROCESSORS : 1);
+    }
+
+    /**
+    *  The SparseMCL constructor with the given number of threads of the ComputePool.
+    */
+    SparseMCL(int numberOfNodes, int[] columnOffsets, int[] rowIndices, float[] weights, float inflation, float preInflation, int scheme, int numberOfThreads)
+    {
+        this.numberOfNodes = numberOfNodes;
+        this.inflation = inflation;
+
+        int[] schemeValues = SCHEMES[ min( max(scheme, 1), SCHEMES.length ) - 1 ];
+        this.cutoff = 1.0 / schemeValues[0];
+        this.selectionNumber = schemeValues[1];
+        this.recoveryNumber = schemeValues[2];
+        this.recoveryMass = schemeValues[3] / 100.0;
+        this.numberOfThreads = max(numberOfThreads, 1);
+        this.isCancelled = new AtomicBoolean(false);
+
+        initMatrix(columnOffsets, rowIndices, weights, preInflation);
+    }
+
+    /**
+    *  The SparseMCL constructor of an inflation sweep, single threaded with its own inflation value, sharing the matrix of the sweep
+    *  & its cancellation. The matrix arrays are never modified, but replaced by every iteration.
+    */
+    private SparseMCL(SparseMCL sparseMCL, float inflation)
+    {
+        this.numberOfNodes = sparseMCL.numberOfNodes;
+        this.inflation = inflation;
+        this.cutoff = sparseMCL.cutoff;
+        this.selectionNumber = sparseMCL.selectionNumber;
+        this.recoveryNumber = sparseMCL.recoveryNumber;
+        this.recoveryMass = sparseMCL.recoveryMass;
+        this.numberOfThreads = 1;
+        this.isCancelled = sparseMCL.isCancelled;
+
+        columnOffsets = sparseMCL.columnOffsets;
+        rowIndices = sparseMCL.rowIndices;
+        values = sparseMCL.values;
+    }
+
+    /**
+    *  Initializes the column stochastic matrix of the graph with its loops, pre-inflated if preInflation > 0.
+    *  The loops of the graph are skipped, so as every column has a single diagonal entry.
+    */
+    private void initMatrix(int[] graphColumnOffsets, int[] graphRowIndices, float[] graphWeights, float preInflation)
+    {
+        columnOffsets = new int[numberOfNodes + 1];
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            int numberOfGraphLoops = 0;
+            for (int i = graphColumnOffsets[column]; i < graphColumnOffsets[column + 1]; i++)
+                if (graphRowIndices[i] == column)
+                    numberOfGraphLoops++;
+
+            columnOffsets[column + 1] = columnOffsets[column] + (graphColumnOffsets[column + 1] - graphColumnOffsets[column]) - numberOfGraphLoops + 1;
+        }
+
+        rowIndices = new int[ columnOffsets[numberOfNodes] ];
+        values = new double[ columnOffsets[numberOfNodes] ];
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            int index = columnOffsets[column];
+            double maximumWeight = 0.0;
+            boolean hasAddedLoop = false;
+            for (int i = graphColumnOffsets[column]; i < graphColumnOffsets[column + 1]; i++)
+                if (graphRowIndices[i] != column)
+                    maximumWeight = max(maximumWeight, graphWeights[i]);
+
+            // the rows of every column in ascending order, with the loop in between
+            int[] sortedNeighbours = Arrays.copyOfRange(graphRowIndices, graphColumnOffsets[column], graphColumnOffsets[column + 1]);
+            float[] sortedWeights = new float[sortedNeighbours.length];
+            sortNeighbours(sortedNeighbours, graphWeights, graphColumnOffsets[column], sortedWeights);
+            for (int i = 0; i <= sortedNeighbours.length; i++)
+            {
+                if ( !hasAddedLoop && ( (i == sortedNeighbours.length) || (sortedNeighbours[i] > column) ) )
+                {
+                    rowIndices[index] = column;
+                    values[index++] = (maximumWeight > 0.0) ? maximumWeight : 1.0;
+                    hasAddedLoop = true;
+                }
+
+                if ( (i < sortedNeighbours.length) && (sortedNeighbours[i] != column) )
+                {
+                    rowIndices[index] = sortedNeighbours[i];
+                    values[index++] = sortedWeights[i];
+                }
+            }
+
+            double sum = 0.0;
+            for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+            {
+                if (preInflation > 0.0f)
+                    values[i] = pow(values[i], preInflation);
+                sum += values[i];
+            }
+            for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+                values[i] /= sum;
+        }
+    }
+
+    /**
+    *  Sorts the neighbours of a column in ascending order, along with their weights starting at the weightsOffset.
+    */
+    private static void sortNeighbours(int[] neighbours, float[] weights, int weightsOffset, float[] sortedWeights)
+    {
+        long[] keys = new long[neighbours.length];
+        for (int i = 0; i < neighbours.length; i++)
+            keys[i] = ( (long)neighbours[i] << 32 ) | i;
+        Arrays.sort(keys);
+
+        for (int i = 0; i < neighbours.length; i++)
+        {
+            int position = (int)keys[i];
+            neighbours[i] = (int)(keys[i] >>> 32);
+            sortedWeights[i] = weights[weightsOffset + position];
+        }
+    }
+
+    /**
+    *  Cancels the clustering, from any thread.
+    */
+    public void cancel()
+    {
+        isCancelled.set(true);
+    }
+
+    /**
+    *  Clusters the graph. Returns the clusters as arrays of their nodes in ascending order, the largest clusters first,
+    *  or null if cancelled.
+    */
+    public ArrayList<int[]> cluster(IterationListener iterationListener)
+    {
+        return ( iterateToLimit( 1, iterate(inflation), iterationListener ) ) ? interpretClusters() : null;
+    }
+
+    /**
+    *  Clusters the graph at all the given inflation values. As the inflation only applies after the expansion, the matrix & its first
+    *  expansion & pruning are shared by all inflation values, which are then clustered concurrently, one per thread.
+    *  Returns the clusters of every inflation value in their given order, or null if cancelled.
+    */
+    public ArrayList<ArrayList<int[]>> sweep(final float[] inflationValues, final SweepListener sweepListener)
+    {
+        // an inflation of 1 only normalises the pruned columns, the same as normalising before inflating them
+        iterate(1.0f);
+        if ( isCancelled.get() )
+            return null;
+
+        final ArrayList<ArrayList<int[]>> allClusters = new ArrayList<ArrayList<int[]>>( Collections.<ArrayList<int[]>>nCopies(inflationValues.length, null) );
+        final AtomicInteger nextInflationValue = new AtomicInteger(0);
+        ComputePool.ParallelKernel kernel = new ComputePool.ParallelKernel()
+        {
+
+            @Override
+            public void run(int threadId)
+            {
+                int index = 0;
+                while ( !isCancelled.get() && ( ( index = nextInflationValue.getAndIncrement() ) < inflationValues.length ) )
+                {
+                    SparseMCL sparseMCL = new SparseMCL(SparseMCL.this, inflationValues[index]);
+                    if ( sparseMCL.iterateToLimit( 1, sparseMCL.inflate(), null ) )
+                    {
+                        ArrayList<int[]> clusters = sparseMCL.interpretClusters();
+                        allClusters.set(index, clusters);
+                        if (sweepListener != null)
+                            sweepListener.inflationDone(inflationValues[index], clusters, sparseMCL.numberOfIterations);
+                    }
+                }
+            }
+
+
+        };
+
+        int numberOfSweepThreads = min(numberOfThreads, inflationValues.length);
+        if (numberOfSweepThreads > 1)
+            ComputePool.getInstance().parallelFor(numberOfSweepThreads, kernel);
+        else
+            kernel.run(0);
+
+        return ( isCancelled.get() ) ? null : allClusters;
+    }
+
+    /**
+    *  Iterates until the chaos vanishes, starting after the given iteration & its chaos. Returns false if cancelled.
+    */
+    private boolean iterateToLimit(int iteration, double chaos, IterationListener iterationListener)
+    {
+        while ( !isCancelled.get() )
+        {
+            numberOfIterations = iteration;
+            if (iterationListener != null)
+                iterationListener.iterationDone(iteration, chaos, columnOffsets[numberOfNodes]);
+
+            if ( (chaos < CHAOS_THRESHOLD) || (iteration++ == MAXIMUM_ITERATIONS) )
+                return true;
+
+            chaos = iterate(inflation);
+        }
+
+        return false;
+    }
+
+    /**
+    *  Inflates & normalises all the columns of the matrix, without expanding them. Returns the chaos of the new matrix.
+    */
+    private double inflate()
+    {
+        double[] inflatedValues = new double[values.length];
+        double chaos = 0.0;
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            double sum = 0.0;
+            for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+            {
+                inflatedValues[i] = pow(values[i], inflation);
+                sum += inflatedValues[i];
+            }
+
+            double maximumValue = 0.0;
+            double sumOfSquares = 0.0;
+            for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+            {
+                inflatedValues[i] /= sum;
+                if (inflatedValues[i] > maximumValue)
+                    maximumValue = inflatedValues[i];
+                sumOfSquares += inflatedValues[i] * inflatedValues[i];
+            }
+
+            if (sumOfSquares > 0.0)
+                chaos = max(chaos, maximumValue / sumOfSquares - 1.0);
+        }
+        values = inflatedValues;
+
+        return chaos;
+    }
+
+    /**
+    *  Expands, prunes, inflates & normalises all the columns of the matrix in parallel. Returns the chaos of the new matrix.
+    */
+    private double iterate(final float iterationInflation)
+    {
+        final int[][] newRowIndices = new int[numberOfNodes][];
+        final double[][] newValues = new double[numberOfNodes][];
+        final double[] threadChaos = new double[numberOfThreads];
+        final AtomicInteger nextColumn = new AtomicInteger(0);
+
+        ComputePool.ParallelKernel kernel = new ComputePool.ParallelKernel()
+        {
+
+            @Override
+            public void run(int threadId)
+            {
+                ColumnAccumulator columnAccumulator = new ColumnAccumulator(numberOfNodes);
+                int startColumn = 0;
+                while ( !isCancelled.get() && ( ( startColumn = nextColumn.getAndAdd(COLUMNS_PER_TASK) ) < numberOfNodes ) )
+                {
+                    int endColumn = min(startColumn + COLUMNS_PER_TASK, numberOfNodes);
+                    for (int column = startColumn; column < endColumn; column++)
+                        threadChaos[threadId] = max( threadChaos[threadId], columnAccumulator.processColumn(column, iterationInflation, newRowIndices, newValues) );
+                }
+            }
+
+
+        };
+
+        if (numberOfThreads > 1)
+            ComputePool.getInstance().parallelFor(numberOfThreads, kernel);
+        else
+            kernel.run(0);
+
+        if ( isCancelled.get() )
+            return 0.0;
+
+        int[] newColumnOffsets = new int[numberOfNodes + 1];
+        for (int column = 0; column < numberOfNodes; column++)
+            newColumnOffsets[column + 1] = newColumnOffsets[column] + newRowIndices[column].length;
+
+        rowIndices = new int[ newColumnOffsets[numberOfNodes] ];
+        values = new double[ newColumnOffsets[numberOfNodes] ];
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            System.arraycopy(newRowIndices[column], 0, rowIndices, newColumnOffsets[column], newRowIndices[column].length);
+            System.arraycopy(newValues[column], 0, values, newColumnOffsets[column], newValues[column].length);
+        }
+        columnOffsets = newColumnOffsets;
+
+        double chaos = 0.0;
+        for (double thread : threadChaos)
+            chaos = max(chaos, thread);
+
+        return chaos;
+    }
+
+    /**
+    *  The dense accumulator of the expanded columns of a thread, reused for all its columns.
+    */
+    private final class ColumnAccumulator
+    {
+        private final double[] accumulator;
+        private final boolean[] isTouched;
+        private int[] touchedRows;
+        private double[] sortedValues;
+        private int numberOfEntriesToKeep = 0;
+
+        public ColumnAccumulator(int numberOfNodes)
+        {
+            accumulator = new double[numberOfNodes];
+            isTouched = new boolean[numberOfNodes];
+            touchedRows = new int[64];
+            sortedValues = new double[64];
+        }
+
+        /**
+        *  Expands, prunes, inflates & normalises the given column. Returns the chaos of the new column.
+        */
+        public double processColumn(int column, float inflation, int[][] newRowIndices, double[][] newValues)
+        {
+            // expansion: the column of the squared matrix is the sum of the columns of its entries, scaled by them
+            int numberOfTouchedRows = 0;
+            for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+            {
+                int middle = rowIndices[i];
+                double value = values[i];
+                for (int j = columnOffsets[middle]; j < columnOffsets[middle + 1]; j++)
+                {
+                    int row = rowIndices[j];
+                    if (!isTouched[row])
+                    {
+                        isTouched[row] = true;
+                        if (numberOfTouchedRows == touchedRows.length)
+                            touchedRows = Arrays.copyOf(touchedRows, 2 * numberOfTouchedRows);
+                        touchedRows[numberOfTouchedRows++] = row;
+                    }
+                    accumulator[row] += value * values[j];
+                }
+            }
+
+            double threshold = findPruningThreshold(numberOfTouchedRows);
+
+            // pruning with the threshold, the equal entries being kept in the order they were reached up to the number of entries to keep
+            int numberOfKeptRows = 0;
+            for (int i = 0; i < numberOfTouchedRows; i++)
+                if (accumulator[ touchedRows[i] ] > threshold)
+                    numberOfKeptRows++;
+            int numberOfEqualRows = numberOfEntriesToKeep - numberOfKeptRows;
+
+            int[] columnRows = new int[numberOfEntriesToKeep];
+            int index = 0;
+            for (int i = 0; i < numberOfTouchedRows; i++)
+            {
+                int row = touchedRows[i];
+                double value = accumulator[row];
+                if ( (value > threshold) || ( (value == threshold) && (numberOfEqualRows-- > 0) ) )
+                {
+                    columnRows[index++] = row;
+                }
+                else
+                {
+                    accumulator[row] = 0.0;
+                    isTouched[row] = false;
+                }
+            }
+
+            // inflation of the kept entries in ascending row order
+            Arrays.sort(columnRows);
+            double[] columnValues = new double[numberOfEntriesToKeep];
+            double sum = 0.0;
+            for (int i = 0; i < numberOfEntriesToKeep; i++)
+            {
+                int row = columnRows[i];
+                columnValues[i] = pow(accumulator[row], inflation);
+                sum += columnValues[i];
+                accumulator[row] = 0.0;
+                isTouched[row] = false;
+            }
+
+            // normalisation & the chaos of the column
+            double maximumValue = 0.0;
+            double sumOfSquares = 0.0;
+            for (int i = 0; i < numberOfEntriesToKeep; i++)
+            {
+                columnValues[i] /= sum;
+                if (columnValues[i] > maximumValue)
+                    maximumValue = columnValues[i];
+                sumOfSquares += columnValues[i] * columnValues[i];
+            }
+
+            newRowIndices[column] = columnRows;
+            newValues[column] = columnValues;
+
+            return (sumOfSquares > 0.0) ? maximumValue / sumOfSquares - 1.0 : 0.0;
+        }
+
+        /**
+        *  Finds the smallest value kept by the pruning of the expanded column, setting the number of entries to keep:
+        *  the entries above the cutoff, at most the selection number of them, recovering the largest entries up to
+        *  the recovery number if the kept entries fall below the recovery percentage of the column mass.
+        */
+        private double findPruningThreshold(int numberOfTouchedRows)
+        {
+            if (sortedValues.length < numberOfTouchedRows)
+                sortedValues = new double[numberOfTouchedRows];
+
+            // only the entries above the cutoff are sorted, unless some more are to be recovered
+            double mass = 0.0;
+            int numberOfSortedValues = 0;
+            for (int i = 0; i < numberOfTouchedRows; i++)
+            {
+                double value = accumulator[ touchedRows[i] ];
+                mass += value;
+                if (value >= cutoff)
+                    sortedValues[numberOfSortedValues++] = value;
+            }
+            Arrays.sort(sortedValues, 0, numberOfSortedValues);
+
+            int numberOfEntries = 0;
+            double keptMass = 0.0;
+            while ( numberOfEntries < min(numberOfSortedValues, selectionNumber) )
+                keptMass += sortedValues[numberOfSortedValues - 1 - numberOfEntries++];
+
+            if ( (keptMass < recoveryMass * mass) && (numberOfEntries < min(numberOfTouchedRows, recoveryNumber)) )
+            {
+                if ( (numberOfEntries == numberOfSortedValues) && (numberOfSortedValues < numberOfTouchedRows) )
+                {
+                    for (int i = 0; i < numberOfTouchedRows; i++)
+                        sortedValues[i] = accumulator[ touchedRows[i] ];
+                    numberOfSortedValues = numberOfTouchedRows;
+                    Arrays.sort(sortedValues, 0, numberOfSortedValues);
+                }
+
+                while ( (numberOfEntries < min(numberOfSortedValues, recoveryNumber)) && (keptMass < recoveryMass * mass) )
+                    keptMass += sortedValues[numberOfSortedValues - 1 - numberOfEntries++];
+            }
+
+            numberOfEntriesToKeep = numberOfEntries;
+
+            return (numberOfEntries > 0) ? sortedValues[numberOfSortedValues - numberOfEntries] : 0.0;
+        }
+
+
+    }
+
+    /**
+    *  Interprets the limit matrix as clusters: the attractors (the nodes with a loop) attracting each other form the attractor
+    *  systems, every other node joining the attractor system of the attractor attracting it the most (the first one on ties).
+    */
+    private ArrayList<int[]> interpretClusters()
+    {
+        boolean[] isAttractor = new boolean[numberOfNodes];
+        for (int column = 0; column < numberOfNodes; column++)
+            for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+                if (rowIndices[i] == column)
+                    isAttractor[column] = true;
+
+        int[] parents = new int[numberOfNodes];
+        for (int node = 0; node < numberOfNodes; node++)
+            parents[node] = node;
+        for (int column = 0; column < numberOfNodes; column++)
+            if (isAttractor[column])
+                for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+                    if ( isAttractor[ rowIndices[i] ] )
+                        union(parents, column, rowIndices[i]);
+
+        int[] clusterRoots = new int[numberOfNodes];
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            if (isAttractor[column])
+            {
+                clusterRoots[column] = find(parents, column);
+            }
+            else
+            {
+                int attractor = column;
+                double maximumValue = 0.0;
+                for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+                {
+                    if ( isAttractor[ rowIndices[i] ] && (values[i] > maximumValue) )
+                    {
+                        attractor = rowIndices[i];
+                        maximumValue = values[i];
+                    }
+                }
+                clusterRoots[column] = find(parents, attractor);
+            }
+        }
+
+        HashMap<Integer, ArrayList<Integer>> clustersMap = new HashMap<Integer, ArrayList<Integer>>();
+        ArrayList<ArrayList<Integer>> clustersList = new ArrayList<ArrayList<Integer>>();
+        for (int node = 0; node < numberOfNodes; node++)
+        {
+            ArrayList<Integer> cluster = clustersMap.get(clusterRoots[node]);
+            if (cluster == null)
+            {
+                cluster = new ArrayList<Integer>();
+                clustersMap.put(clusterRoots[node], cluster);
+                clustersList.add(cluster);
+            }
+            cluster.add(node);
+        }
+
+        // the largest clusters first, as the mcl executable, then in the order of their smallest nodes
+        Collections.sort(clustersList, new Comparator<ArrayList<Integer>>()
+        {
+
+            @Override
+            public int compare(ArrayList<Integer> cluster1, ArrayList<Integer> cluster2)
+            {
+                return (cluster1.size() != cluster2.size()) ? cluster2.size() - cluster1.size() : cluster1.get(0) - cluster2.get(0);
+            }
+
+
+        });
+
+        ArrayList<int[]> clusters = new ArrayList<int[]>( clustersList.size() );
+        for (ArrayList<Integer> clusterList : clustersList)
+        {
+            int[] cluster = new int[ clusterList.size() ];
+            for (int i = 0; i < cluster.length; i++)
+                cluster[i] = clusterList.get(i);
+            clusters.add(cluster);
+        }
+
+        return clusters;
+    }
+
+    /**
+    *  The modularity of the clusters in the weighted graph, given as in the SparseMCL constructor.
+    */
+    public static double modularity(int numberOfNodes, int[] columnOffsets, int[] rowIndices, float[] weights, ArrayList<int[]> clusters)
+    {
+        int[] clusterIndices = new int[numberOfNodes];
+        for (int index = 0; index < clusters.size(); index++)
+            for (int node : clusters.get(index))
+                clusterIndices[node] = index;
+
+        // every edge is in the columns of both its nodes, so the total weight is twice the weight of the graph
+        double[] clusterDegrees = new double[ clusters.size() ];
+        double totalWeight = 0.0;
+        double innerWeight = 0.0;
+        for (int column = 0; column < numberOfNodes; column++)
+        {
+            for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+            {
+                totalWeight += weights[i];
+                clusterDegrees[ clusterIndices[column] ] += weights[i];
+                if (clusterIndices[ rowIndices[i] ] == clusterIndices[column])
+                    innerWeight += weights[i];
+            }
+        }
+
+        if (totalWeight == 0.0)
+            return 0.0;
+
+        double modularity = innerWeight / totalWeight;
+        for (double clusterDegree : clusterDegrees)
+            modularity -= (clusterDegree / totalWeight) * (clusterDegree / totalWeight);
+
+        return modularity;
+    }
+
+    private static int find(int[] parents, int node)
+    {
+        while (parents[node] != node)
+        {
+            parents[node] = parents[ parents[node] ];
+            node = parents[node];
+        }
+
+        return node;
+    }
+
+    private static void union(int[] parents, int node1, int node2)
+    {
+        int root1 = find(parents, node1);
+        int root2 = find(parents, node2);
+        if (root1 != root2)
+            parents[ max(root1, root2) ] = min(root1, root2);
+    }
+
+
+}
@@ -127,6 +127,10 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
 
     private JCheckBox layoutUseEdgeWeightsForLayout = null;
     private JCheckBox layoutTiledLayout = null;
+    private JCheckBox layoutAnytimeLayout = null;
+    private JCheckBox layoutIncrementalRelayout = null;
+    private JCheckBox layoutUseBarnesHut = null;
+    private FloatNumberField layoutBarnesHutThetaField = null;
     private FloatNumberField layoutKvalueField = null;
     private FloatNumberField layoutStartingTemperatureField = null;
     private JTextField layoutIterationsField = null;
@@ -172,7 +176,9 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
     private JSlider MCL_SchemeSlider = null;
     private JTextField MCL_smallestClusterAllowedField = null;
     private JCheckBox MCL_assignRandomClusterColorsCheckBox = null;
+    private JCheckBox MCL_useNativeExecutableCheckBox = null;
     private JTextField MCL_advancedOptionsTextField = null;
+    private JTextField MCL_inflationSweepValuesTextField = null;
     private JButton MCL_clusterGraphUsingMCLButton = null;
 
     private JCheckBox saveSPNResultsCheckBox = null;
@@ -182,6 +188,8 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
     private JButton saveSPNResultsClearButton = null;
     private JFileChooser saveSPNResultsFileChooser = null;
     private JCheckBox useSPNAnimatedTransitionsShadingCheckBox = null;
+    private JTextField SPNRandomSeedField = null;
+    private JCheckBox SPNStreamingErrorAggregationCheckBox = null;
     private JButton runSPNSimulationButton = null;
 
     private JComboBox<SearchURL> searchURLComboBox = null;
@@ -965,6 +973,18 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         layoutUseEdgeWeightsForLayout.setActionCommand(CHANGE_ACTION_COMMAND);
         layoutTiledLayout.addActionListener(this);
         layoutTiledLayout.setActionCommand(CHANGE_ACTION_COMMAND);
+        layoutAnytimeLayout = new JCheckBox("Anytime Layout");
+        layoutAnytimeLayout.setToolTipText("Show The Layout While Running, Which Can Be Stopped At Any Point");
+        layoutAnytimeLayout.addActionListener(this);
+        layoutAnytimeLayout.setActionCommand(CHANGE_ACTION_COMMAND);
+        layoutIncrementalRelayout = new JCheckBox("Incremental Burst Layout After Edits");
+        layoutIncrementalRelayout.setToolTipText("Burst Layout Iterations After Deleting Nodes Only Move The Neighbourhoods Of The Edits");
+        layoutIncrementalRelayout.addActionListener(this);
+        layoutIncrementalRelayout.setActionCommand(CHANGE_ACTION_COMMAND);
+        layoutUseBarnesHut = new JCheckBox("Use Barnes-Hut Approximation");
+        layoutUseBarnesHut.setToolTipText("Use Barnes-Hut Approximation For The Repulsive Forces");
+        layoutUseBarnesHut.addActionListener(this);
+        layoutUseBarnesHut.setActionCommand(CHANGE_ACTION_COMMAND);
 
         layoutStartingTemperatureField = new FloatNumberField(0, 10);
         layoutStartingTemperatureField.addCaretListener(this);
@@ -978,11 +998,15 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         layoutBurstIterationsField = new JTextField("", 10);
         layoutBurstIterationsField.addCaretListener(this);
         layoutBurstIterationsField.setToolTipText("Burst Layout Iterations");
+        layoutBarnesHutThetaField = new FloatNumberField(0, 10);
+        layoutBarnesHutThetaField.addCaretListener(this);
+        layoutBarnesHutThetaField.setToolTipText("Barnes-Hut Theta (Opening Angle)");
 
         layoutStartingTemperatureField.setDocument( new TextFieldFilter(TextFieldFilter.FLOAT) );
         layoutIterationsField.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
         layoutKvalueField.setDocument( new TextFieldFilter(TextFieldFilter.FLOAT) );
         layoutBurstIterationsField.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
+        layoutBarnesHutThetaField.setDocument( new TextFieldFilter(TextFieldFilter.FLOAT) );
 
         // Algorithm selection
         JPanel algorithmPanel = new JPanel(true);
@@ -1027,10 +1051,14 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
 
         fruchtermanReingoldPanel.add(layoutUseEdgeWeightsForLayout);
         fruchtermanReingoldPanel.add(layoutTiledLayout);
+        fruchtermanReingoldPanel.add(layoutAnytimeLayout);
         fruchtermanReingoldPanel.add(labelledComponent("Starting Temperature:", layoutStartingTemperatureField));
         fruchtermanReingoldPanel.add(labelledComponent("Number Of Layout Iterations:", layoutIterationsField));
         fruchtermanReingoldPanel.add(labelledComponent("K-Value Modifier:", layoutKvalueField));
         fruchtermanReingoldPanel.add(labelledComponent("Burst Layout Iterations:", layoutBurstIterationsField));
+        fruchtermanReingoldPanel.add(layoutIncrementalRelayout);
+        fruchtermanReingoldPanel.add(layoutUseBarnesHut);
+        fruchtermanReingoldPanel.add(labelledComponent("Barnes-Hut Theta:", layoutBarnesHutThetaField));
 
         // FMMM options
         JPanel fmmmPanel = new JPanel(true);
@@ -1351,10 +1379,19 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         MCL_assignRandomClusterColorsCheckBox.addActionListener(this);
         MCL_assignRandomClusterColorsCheckBox.setToolTipText("Assign Random Cluster Colors");
 
+        MCL_useNativeExecutableCheckBox = new JCheckBox("Use Native MCL Executable");
+        MCL_useNativeExecutableCheckBox.setActionCommand(CHANGE_ACTION_COMMAND);
+        MCL_useNativeExecutableCheckBox.addActionListener(this);
+        MCL_useNativeExecutableCheckBox.setToolTipText("Use The Native MCL Executable Instead Of The In-Process MCL Engine (Always Used With MCL Advanced Options, Never With Inflation Sweep Values)");
+
         MCL_advancedOptionsTextField = new JTextField("", 20);
         MCL_advancedOptionsTextField.addCaretListener(this);
         MCL_advancedOptionsTextField.setToolTipText("MCL Advanced Options");
 
+        MCL_inflationSweepValuesTextField = new JTextField("", 20);
+        MCL_inflationSweepValuesTextField.addCaretListener(this);
+        MCL_inflationSweepValuesTextField.setToolTipText("Inflation Values To Cluster At In One Sweep, One Class Set Each (ie 1.4 1.8 2.2), Leave Empty For A Single Clustering. The Sweep Always Runs In-Process, Even With The Native MCL Executable");
+
         MCL_clusterGraphUsingMCLButton = new JButton( layoutFrame.getLayoutClusterMCL().getClusterMCLAction() );
         MCL_clusterGraphUsingMCLButton.addActionListener(this);
         MCL_clusterGraphUsingMCLButton.setToolTipText("Cluster Graph Using MCL");
@@ -1431,9 +1468,15 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         MCLPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Assign Random Cluster Colors");
         addTitledButtonBorder(MCLPropertiesPanelBorder, MCL_assignRandomClusterColorsCheckBox, "", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, rightPanel);
 
+        MCLPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Use Native MCL Executable");
+        addTitledButtonBorder(MCLPropertiesPanelBorder, MCL_useNativeExecutableCheckBox, "", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, rightPanel);
+
         MCLPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "MCL Advanced Options");
         addTitledButtonBorder(MCLPropertiesPanelBorder, MCL_advancedOptionsTextField, "", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, rightPanel);
 
+        MCLPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Inflation Sweep Values");
+        addTitledButtonBorder(MCLPropertiesPanelBorder, MCL_inflationSweepValuesTextField, "(always runs in-process, even with the native MCL executable)", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, rightPanel);
+
         MCLPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Cluster Graph Using MCL");
         addTitledButtonBorder(MCLPropertiesPanelBorder, MCL_clusterGraphUsingMCLButton, "", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, rightPanel);
 
@@ -1518,6 +1561,16 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         useSPNAnimatedTransitionsShadingCheckBox.setEnabled(USE_SHADERS_PROCESS);
         useSPNAnimatedTransitionsShadingCheckBox.setToolTipText("Use SPN Animated Transitions Shading (3D graphs only)");
 
+        SPNRandomSeedField = new JTextField("", 10);
+        SPNRandomSeedField.setDocument( new TextFieldFilter(TextFieldFilter.NUMERIC) );
+        SPNRandomSeedField.addCaretListener(this);
+        SPNRandomSeedField.setToolTipText("SPN Random Seed (0 For A New Seed Every Simulation)");
+
+        SPNStreamingErrorAggregationCheckBox = new JCheckBox("Use Streaming Error Aggregation");
+        SPNStreamingErrorAggregationCheckBox.setActionCommand(CHANGE_ACTION_COMMAND);
+        SPNStreamingErrorAggregationCheckBox.addActionListener(this);
+        SPNStreamingErrorAggregationCheckBox.setToolTipText("Use Streaming Error Aggregation (memory independent of the number of runs)");
+
         runSPNSimulationButton = new JButton( layoutFrame.getSignalingPetriNetSimulationDialog().getSignalingPetriNetSimulationDialogAction() );
         runSPNSimulationButton.addActionListener(this);
         runSPNSimulationButton.setToolTipText("Run SPN Simulation");
@@ -1528,6 +1581,12 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         simulationPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Use SPN Animated Transitions Shading (Advanced (Per-Pixel) GLSL Shader Option)");
         addTitledButtonBorder(simulationPropertiesPanelBorder, useSPNAnimatedTransitionsShadingCheckBox, "", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, simulationSPNPanel);
 
+        simulationPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "SPN Random Seed");
+        addTitledButtonBorder(simulationPropertiesPanelBorder, SPNRandomSeedField, "(0 for a new seed every simulation, otherwise reproducible results)", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, simulationSPNPanel);
+
+        simulationPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "SPN Error Aggregation");
+        addTitledButtonBorder(simulationPropertiesPanelBorder, SPNStreamingErrorAggregationCheckBox, "(running mean & variance instead of storing every run)", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, simulationSPNPanel);
+
         simulationPropertiesPanelBorder = BorderFactory.createTitledBorder(ETCHED, "Run SPN Simulation");
         addTitledButtonBorder(simulationPropertiesPanelBorder, runSPNSimulationButton, "(run SPN simulation using current options)", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, simulationSPNPanel);
 
@@ -2424,10 +2483,14 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
 
         layoutUseEdgeWeightsForLayout.setSelected( USE_EDGE_WEIGHTS_FOR_LAYOUT.get() );
         layoutTiledLayout.setSelected( TILED_LAYOUT.get() );
+        layoutAnytimeLayout.setSelected( ANYTIME_LAYOUT.get() );
+        layoutIncrementalRelayout.setSelected( INCREMENTAL_RELAYOUT.get() );
         layoutStartingTemperatureField.setText( Float.toString( STARTING_TEMPERATURE.get() ) );
         layoutIterationsField.setText( Integer.toString( NUMBER_OF_LAYOUT_ITERATIONS.get() ) );
         layoutKvalueField.setText( Float.toString( KVALUE_MODIFIER.get() ) );
         layoutBurstIterationsField.setText( Integer.toString( BURST_LAYOUT_ITERATIONS.get() ) );
+        layoutUseBarnesHut.setSelected( USE_BARNES_HUT_FOR_LAYOUT.get() );
+        layoutBarnesHutThetaField.setText( Float.toString( BARNES_HUT_THETA.get() ) );
         layoutMinimumComponentSizeField.setText( Integer.toString( MINIMUM_COMPONENT_SIZE.get() ) );
 
         MCL_inflationField.setText( Float.toString( MCL_INFLATION_VALUE.get() ) );
@@ -2437,7 +2500,9 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         MCL_schemeField.setText( Integer.toString( MCL_SCHEME.get() ) );
         MCL_SchemeSlider.setValue( MCL_SCHEME.get() );
         MCL_assignRandomClusterColorsCheckBox.setSelected( MCL_ASSIGN_RANDOM_CLUSTER_COLOURS.get() );
+        MCL_useNativeExecutableCheckBox.setSelected( MCL_USE_NATIVE_EXECUTABLE.get() );
         MCL_advancedOptionsTextField.setText( MCL_ADVANCED_OPTIONS.get() );
+        MCL_inflationSweepValuesTextField.setText( MCL_INFLATION_SWEEP_VALUES.get() );
         MCL_smallestClusterAllowedField.setText( Integer.toString( MCL_SMALLEST_CLUSTER.get() ) );
         optionsMCLChanged = false;
 
@@ -2459,6 +2524,8 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         saveSPNResultsTextField.setText( SAVE_SPN_RESULTS_FILE_NAME.get() );
         automaticallySaveSPNResultsToPreChosenFolderCheckBox.setSelected( AUTOMATICALLY_SAVE_SPN_RESULTS_TO_PRECHOSEN_FOLDER.get() );
         useSPNAnimatedTransitionsShadingCheckBox.setSelected( USE_SHADERS_PROCESS && USE_SPN_ANIMATED_TRANSITIONS_SHADING.get() );
+        SPNRandomSeedField.setText( Integer.toString( SPN_RANDOM_SEED.get() ) );
+        SPNStreamingErrorAggregationCheckBox.setSelected( SPN_STREAMING_ERROR_AGGREGATION.get() );
 
         materialSpecular.setSelected( MATERIAL_SPECULAR.get() );
         materialShininess.setValue( MATERIAL_SPECULAR_SHINE.get() );
@@ -2709,10 +2776,14 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
 
         USE_EDGE_WEIGHTS_FOR_LAYOUT.set( layoutUseEdgeWeightsForLayout.isSelected() );
         TILED_LAYOUT.set( layoutTiledLayout.isSelected() );
+        ANYTIME_LAYOUT.set( layoutAnytimeLayout.isSelected() );
+        INCREMENTAL_RELAYOUT.set( layoutIncrementalRelayout.isSelected() );
         STARTING_TEMPERATURE.set( layoutStartingTemperatureField.getValue() );
         NUMBER_OF_LAYOUT_ITERATIONS.set(layoutIterationsField);
         KVALUE_MODIFIER.set( layoutKvalueField.getValue() );
         BURST_LAYOUT_ITERATIONS.set(layoutBurstIterationsField);
+        USE_BARNES_HUT_FOR_LAYOUT.set( layoutUseBarnesHut.isSelected() );
+        BARNES_HUT_THETA.set( layoutBarnesHutThetaField.getValue() );
         MINIMUM_COMPONENT_SIZE.set(layoutMinimumComponentSizeField);
 
         FMMM_DESIRED_EDGE_LENGTH.set(fmmmDesiredEdgeLength.getValue());
@@ -2725,12 +2796,16 @@ public class LayoutGraphPropertiesDialog extends JDialog implements LayoutClasse
         MCL_PRE_INFLATION_VALUE.set( MCL_preInflationField.getValue() );
         MCL_SCHEME.set(MCL_schemeField);
         MCL_ASSIGN_RANDOM_CLUSTER_COLOURS.set( MCL_assignRandomClusterColorsCheckBox.isSelected() );
+        MCL_USE_NATIVE_EXECUTABLE.set( MCL_useNativeExecutableCheckBox.isSelected() );
         MCL_ADVANCED_OPTIONS.set( MCL_advancedOptionsTextField.getText() );
+        MCL_INFLATION_SWEEP_VALUES.set( MCL_inflationSweepValuesTextField.getText() );
         MCL_SMALLEST_CLUSTER.set(MCL_smallestClusterAllowedField);
 
         SAVE_SPN_RESULTS.set( saveSPNResultsCheckBox.isSelected() );
         AUTOMATICALLY_SAVE_SPN_RESULTS_TO_PRECHOSEN_FOLDER.set( automaticallySaveSPNResultsToPreChosenFolderCheckBox.isSelected() );
         USE_SPN_ANIMATED_TRANSITIONS_SHADING.set( useSPNAnimatedTransitionsShadingCheckBox.isSelected() );
+        SPN_RANDOM_SEED.set(SPNRandomSeedField);
+        SPN_STREAMING_ERROR_AGGREGATION.set( SPNStreamingErrorAggregationCheckBox.isSelected() );
 
         COLOR_EDGES_BY_COLOR.set( edgesColorByColor.isSelected() );
         COLOR_EDGES_BY_WEIGHT.set( edgesColorByWeight.isSelected() );
@@ -24,6 +24,7 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
     private JLabel label = null;
     private JLabel statusLabel = null;
     private JButton cancelButton = null;
+    private JButton stopButton = null;
     private LayoutFrame layoutFrame = null;
     private Timer timer = null;
     private int progressValue;
@@ -44,6 +45,11 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
         cancelButton = new JButton();
         cancelButton.setText("Cancel");
         cancelButton.addActionListener(this);
+        stopButton = new JButton();
+        stopButton.setText("Stop");
+        stopButton.setToolTipText("Stop the layout, keeping the layout so far");
+        stopButton.addActionListener(this);
+        stopButton.setVisible(false);
 
         label.setText(" " + VERSION);
         progressBar.setValue(0);
@@ -62,7 +68,10 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
         this.getContentPane().setLayout( new BorderLayout(10, 0) );
         this.getContentPane().add(label, BorderLayout.NORTH);
         this.getContentPane().add(progressBar, BorderLayout.CENTER);
-        this.getContentPane().add(cancelButton, BorderLayout.EAST);
+        JPanel buttonsPanel = new JPanel( new GridLayout(1, 2, 5, 0) );
+        buttonsPanel.add(stopButton);
+        buttonsPanel.add(cancelButton);
+        this.getContentPane().add(buttonsPanel, BorderLayout.EAST);
         this.getContentPane().add(statusLabel, BorderLayout.SOUTH);
         this.getContentPane().setSize( new Dimension(700, 500) );
         this.setUndecorated(true);
@@ -74,6 +83,11 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
     }
 
     public void prepareProgressBar(int max, String title, boolean isCancellable)
+    {
+        prepareProgressBar(max, title, isCancellable, false);
+    }
+
+    public void prepareProgressBar(int max, String title, boolean isCancellable, boolean isStoppable)
     {
         reset = false;
         statusLabel.setText(" " + title);
@@ -92,6 +106,9 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
         cancelled = false;
         cancelButton.setEnabled(true);
         cancelButton.setVisible(isCancellable);
+        stopped = false;
+        stopButton.setEnabled(true);
+        stopButton.setVisible(isStoppable);
     }
 
     public void prepareProgressBar(int max, String title)
@@ -99,6 +116,31 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
         prepareProgressBar(max, title, false);
     }
 
+    /**
+    *  Moves a started progress bar on to the next stage of the same task, keeping the cancel & stop requests of the user
+    *  (unlike prepareProgressBar()), so as a task of many stages stops as a whole.
+    */
+    public synchronized void continueProgressBar(int max, String title)
+    {
+        statusLabel.setText(" " + title);
+
+        maxValue = max;
+        if (maxValue <= 0)
+        {
+            progressBar.setIndeterminate(true);
+            progressBar.setString("");
+        }
+        else
+        {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(maxValue);
+            progressBar.setString("0%");
+        }
+
+        progressValue = 0;
+        progressBar.setValue(0);
+    }
+
     public void startProgressBar()
     {
         timer.start();
@@ -188,6 +230,12 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
         return cancelled;
     }
 
+    boolean stopped = false;
+    public synchronized boolean userHasStopped()
+    {
+        return stopped;
+    }
+
     @Override
     public void actionPerformed(ActionEvent e)
     {
@@ -196,6 +244,11 @@ public class LayoutProgressBarDialog extends JDialog implements ActionListener
             cancelled = true;
             cancelButton.setEnabled(false);
         }
+        else if (e.getSource().equals(stopButton))
+        {
+            stopped = true;
+            stopButton.setEnabled(false);
+        }
     }
 
     /**
@@ -1195,10 +1195,10 @@ public final class LayoutFrame extends JFrame implements GraphListener
                     correlationData.preprocess(layoutProgressBarDialog, CURRENT_SCALE_TRANSFORM, CURRENT_NORMALISATION);
 
                     if (DEBUG_BUILD) println("Correlation File is: " + CORRELATION_FILE_PATH + CORRELATION_FILE);
-                    String metricName = CURRENT_METRIC.toString().toLowerCase();
+                    String metricName = Utils.hyphenatedOf(CURRENT_METRIC.toString());
 
+                    // the cache file serves any threshold not below the one it was built with, so it is not part of the filename
                     String correlationFilename = IOUtils.getPrefix(file.getAbsolutePath());
-                    correlationFilename += "_r-" + STORED_CORRELATION_THRESHOLD;
 
                     if (CORRELATION_DATA_TRANSPOSE)
                     {
@@ -1216,6 +1216,12 @@ public final class LayoutFrame extends JFrame implements GraphListener
                     }
 
                     correlationFilename += "_" + metricName;
+
+                    if (CORRELATION_APPROXIMATE_LSH && CURRENT_METRIC.isStandardised())
+                    {
+                        correlationFilename += "_lsh-" + CORRELATION_LSH_TABLES + "x" + CORRELATION_LSH_BITS_PER_TABLE;
+                    }
+
                     correlationFilename += ".correlationcache";
 
                     File correlationFile = new File(correlationFilename);
@@ -1243,7 +1249,7 @@ public final class LayoutFrame extends JFrame implements GraphListener
                         CorrelationParser checker = new CorrelationParser(nc, this, correlationData);
                         checker.init(correlationFile, fileExtension);
 
-                        if (!forceGeneration && checker.checkFile())
+                        if (!forceGeneration && checker.checkFile() && (checker.getStoredCorrelationThreshold() <= STORED_CORRELATION_THRESHOLD))
                         {
                             // the file looks good, let's use it
                             file = correlationFile;
@@ -1251,6 +1257,7 @@ public final class LayoutFrame extends JFrame implements GraphListener
                         else
                         {
                             // We should only get here if the correlationcache file is created by a different version
+                            // or with a higher threshold than the one now requested
                             //
                             // The file is not good, close file before deletion, delete it & rebuild it
                             checker.close();
@@ -0,0 +1,261 @@
+package org.biolayout.Correlation;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ *
+ * The CorrelationCacheReader reads the version 3 .correlationcache format
+ * (see CorrelationCacheWriter) through memory-mapped windows of the file.
+ *
+ */
+public final class CorrelationCacheReader
+{
+
+    /**
+     * Size of the file windows mapped for reading the row edges.
+     */
+    private static final long MAPPED_WINDOW_SIZE = (1L << 28);
+
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int totalRows;
+    private final float weightsFloor;
+    private final int firstCountsBucket;
+    private final int countsBuckets;
+    private final long[] rowsOffsets;
+    private final int[] rowsLengths;
+    private final int[] rowsEdgesCounts;
+
+    private MappedByteBuffer mappedWindow = null;
+    private long mappedWindowStart = 0;
+    private long mappedWindowEnd = 0;
+
+    public CorrelationCacheReader(File file) throws IOException
+    {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        channel = randomAccessFile.getChannel();
+
+        try
+        {
+            fileSize = channel.size();
+            if (fileSize < CorrelationCacheWriter.HEADER_SIZE)
+            {
+                throw new IOException("Correlation cache file is truncated");
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, CorrelationCacheWriter.HEADER_SIZE);
+            if (header.getInt() != CorrelationData.FILE_MAGIC_NUMBER)
+            {
+                throw new IOException("Not a version 3 correlation cache file");
+            }
+
+            totalRows = header.getInt();
+            weightsFloor = header.getFloat();
+            firstCountsBucket = header.getInt();
+            countsBuckets = CorrelationCacheWriter.TOTAL_COUNTS_BUCKETS - firstCountsBucket;
+
+            long indexSize = (long) totalRows * CorrelationCacheWriter.INDEX_ENTRY_SIZE;
+            long countsSize = (long) totalRows * countsBuckets * 4;
+            if ((totalRows < 0) || (firstCountsBucket < 0) || (countsBuckets <= 0)
+                    || (fileSize < CorrelationCacheWriter.HEADER_SIZE + indexSize + countsSize))
+            {
+                throw new IOException("Correlation cache file index is truncated");
+            }
+
+            rowsOffsets = new long[totalRows];
+            rowsLengths = new int[totalRows];
+            rowsEdgesCounts = new int[totalRows];
+            int row = 0;
+            for (long indexPosition = CorrelationCacheWriter.HEADER_SIZE; row < totalRows; indexPosition += MAPPED_WINDOW_SIZE)
+            {
+                ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition,
+                        Math.min(MAPPED_WINDOW_SIZE, CorrelationCacheWriter.HEADER_SIZE + indexSize - indexPosition));
+                for (; (row < totalRows) && (index.remaining() >= CorrelationCacheWriter.INDEX_ENTRY_SIZE); row++)
+                {
+                    rowsOffsets[row] = index.getLong();
+                    rowsLengths[row] = index.getInt();
+                    rowsEdgesCounts[row] = index.getInt();
+                    if ((rowsOffsets[row] + rowsLengths[row]) > fileSize)
+                    {
+                        throw new IOException("Correlation cache file data is truncated");
+                    }
+                }
+            }
+        }
+        catch (IOException ioe)
+        {
+            randomAccessFile.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Gets the total rows of the cache file.
+     */
+    public int getTotalRows()
+    {
+        return totalRows;
+    }
+
+    /**
+     * Gets the lowest weight stored in the cache file, any threshold not
+     * below it can be served from the file.
+     */
+    public float getWeightsFloor()
+    {
+        return weightsFloor;
+    }
+
+    /**
+     * Gets the number of edges stored for a row.
+     */
+    public int getRowEdgesCount(int row)
+    {
+        return rowsEdgesCounts[row];
+    }
+
+    /**
+     * Adds the stored per row and weight bucket edge counts to the given
+     * counts array, as laid out by CorrelationData.getCounts().
+     */
+    public void readCounts(int[][] counts) throws IOException
+    {
+        long countsPosition = CorrelationCacheWriter.HEADER_SIZE + (long) totalRows * CorrelationCacheWriter.INDEX_ENTRY_SIZE;
+        long countsSize = (long) totalRows * countsBuckets * 4;
+        // windows hold whole rows of counts
+        long rowCountsSize = (long) countsBuckets * 4;
+        long windowSize = (MAPPED_WINDOW_SIZE / rowCountsSize) * rowCountsSize;
+        int row = 0;
+        for (long position = countsPosition; row < totalRows; position += windowSize)
+        {
+            IntBuffer rowsCounts = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(windowSize, countsPosition + countsSize - position)).asIntBuffer();
+            for (; (row < totalRows) && (rowsCounts.remaining() >= countsBuckets); row++)
+            {
+                for (int bucket = firstCountsBucket; bucket < CorrelationCacheWriter.TOTAL_COUNTS_BUCKETS; bucket++)
+                {
+                    counts[row][bucket] += rowsCounts.get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads all the edges of a row into the given arrays, which have to fit
+     * getRowEdgesCount(row) values, sorted by descending weight and returns
+     * the number of edges read.
+     */
+    public int readRow(int row, int[] otherRows, float[] weights) throws IOException
+    {
+        return readRow(row, -Float.MAX_VALUE, otherRows, weights);
+    }
+
+    /**
+     * Reads the edges of a row with a weight above the given threshold into
+     * the given arrays, sorted by descending weight and returns the number of
+     * edges read. The edges are a prefix of the row, found with a binary
+     * search on the stored weights.
+     */
+    public int readRow(int row, float threshold, int[] otherRows, float[] weights) throws IOException
+    {
+        int rowEdgesCount = rowsEdgesCounts[row];
+        if (rowEdgesCount == 0)
+        {
+            return 0;
+        }
+
+        ByteBuffer rowBuffer = mapRow(rowsOffsets[row], rowsLengths[row]);
+        int rowStart = rowBuffer.position();
+
+        int low = 0;
+        int high = rowEdgesCount;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (dequantiseWeight(rowBuffer.getShort(rowStart + 2 * middle)) > threshold)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+
+        int edgesCount = low;
+        for (int k = 0; k < edgesCount; k++)
+        {
+            weights[k] = dequantiseWeight(rowBuffer.getShort());
+        }
+
+        rowBuffer.position(rowStart + 2 * rowEdgesCount);
+        for (int k = 0; k < edgesCount; k++)
+        {
+            int zigzag = 0;
+            int shift = 0;
+            byte value = 0;
+            do
+            {
+                value = rowBuffer.get();
+                zigzag |= (value & 0x7F) << shift;
+                shift += 7;
+            }
+            while (value < 0);
+
+            otherRows[k] = row + ((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+
+        return edgesCount;
+    }
+
+    private float dequantiseWeight(short quantisedWeight)
+    {
+        return CorrelationCacheWriter.dequantiseWeight(weightsFloor, quantisedWeight & 0xFFFF);
+    }
+
+    /**
+     * Returns a buffer positioned at the given row data, remapping the file
+     * window only when the row lies outside the current one.
+     */
+    private ByteBuffer mapRow(long rowOffset, int rowLength) throws IOException
+    {
+        if ((mappedWindow == null) || (rowOffset < mappedWindowStart) || ((rowOffset + rowLength) > mappedWindowEnd))
+        {
+            mappedWindowStart = rowOffset;
+            mappedWindowEnd = Math.min(fileSize, rowOffset + Math.max(MAPPED_WINDOW_SIZE, rowLength));
+            mappedWindow = channel.map(FileChannel.MapMode.READ_ONLY, mappedWindowStart, mappedWindowEnd - mappedWindowStart);
+        }
+
+        ByteBuffer rowBuffer = mappedWindow.duplicate();
+        rowBuffer.position((int) (rowOffset - mappedWindowStart));
+
+        return rowBuffer;
+    }
+
+    /**
+     * Reads the first int of a file, used to tell the cache file versions apart.
+     */
+    public static int readMagicNumber(File file) throws IOException
+    {
+        DataInputStream inputStream = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            return inputStream.readInt();
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
+
+    public void close() throws IOException
+    {
+        mappedWindow = null;
+        randomAccessFile.close();
+    }
+
+
+}
@@ -0,0 +1,236 @@
+package org.biolayout.Correlation;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ *
+ * The CorrelationCacheWriter writes the version 3 .correlationcache format
+ * through a FileChannel.
+ *
+ * Layout (big endian):
+ *   header:  int magic number, int total rows, float weights floor, int first counts bucket
+ *   index:   per row a long data offset, an int byte length and an int edges count
+ *   counts:  per row the number of edges of the row (in either direction) falling in
+ *            each 0.01 weight bucket, from the first counts bucket up to bucket 100
+ *   data:    per row its edge weights in descending order as unsigned shorts, quantised
+ *            linearly in [weights floor, 1], followed by the other rows of the edges
+ *            in the same order as zigzag varint encoded differences from the row
+ *
+ * As the weights of a row are sorted and fixed size, the edges above any
+ * threshold not below the weights floor are a binary searched prefix of the
+ * row, so a single cache file serves all higher thresholds.
+ * Rows may be written in any order, the index and counts are written on close().
+ *
+ */
+public final class CorrelationCacheWriter
+{
+
+    public static final int HEADER_SIZE = 16;
+    public static final int INDEX_ENTRY_SIZE = 16;
+    public static final int QUANTISATION_LEVELS = 0xFFFF;
+    public static final int TOTAL_COUNTS_BUCKETS = 101;
+
+    /**
+     * Size of the direct buffer the edges are encoded to before being written.
+     */
+    private static final int WRITE_BUFFER_SIZE = (1 << 20);
+
+    /**
+     * Max bytes of an encoded other row, a 5 byte varint.
+     */
+    private static final int MAX_OTHER_ROW_SIZE = 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final int totalRows;
+    private final float weightsFloor;
+    private final float quantisationScale;
+    private final int firstCountsBucket;
+    private final int countsBuckets;
+    private final long[] rowsOffsets;
+    private final int[] rowsLengths;
+    private final int[] rowsEdgesCounts;
+    private final int[] rowsCounts;
+    private long position = 0;
+
+    private int currentRow = -1;
+    private int currentRowEdgesCount = 0;
+    private long[] currentRowEdges = new long[1024];
+
+    public CorrelationCacheWriter(File file, int totalRows, float weightsFloor) throws IOException
+    {
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        this.channel.truncate(0);
+        this.totalRows = totalRows;
+        this.weightsFloor = weightsFloor;
+        this.quantisationScale = (weightsFloor < 1.0f) ? QUANTISATION_LEVELS / (1.0f - weightsFloor) : 0.0f;
+        this.firstCountsBucket = countsBucket(weightsFloor);
+        this.countsBuckets = TOTAL_COUNTS_BUCKETS - firstCountsBucket;
+        this.rowsOffsets = new long[totalRows];
+        this.rowsLengths = new int[totalRows];
+        this.rowsEdgesCounts = new int[totalRows];
+        this.rowsCounts = new int[totalRows * countsBuckets];
+        this.position = HEADER_SIZE + (long) totalRows * INDEX_ENTRY_SIZE + (long) totalRows * countsBuckets * 4;
+    }
+
+    /**
+     * Starts the edges of a row.
+     */
+    public void startRow(int row)
+    {
+        currentRow = row;
+        currentRowEdgesCount = 0;
+    }
+
+    /**
+     * Adds an edge to the current row, in any order. The weight should not be
+     * below the weights floor.
+     */
+    public void addEdge(int otherRow, float weight)
+    {
+        if (currentRowEdgesCount == currentRowEdges.length)
+        {
+            currentRowEdges = Arrays.copyOf(currentRowEdges, 2 * currentRowEdgesCount);
+        }
+
+        int quantisedWeight = Math.round((weight - weightsFloor) * quantisationScale);
+        quantisedWeight = (quantisedWeight < 0) ? 0 : ((quantisedWeight > QUANTISATION_LEVELS) ? QUANTISATION_LEVELS : quantisedWeight);
+
+        // inverted weight in the high bits, so as an ascending sort orders the edges by descending weight
+        currentRowEdges[currentRowEdgesCount++] = ((long) (QUANTISATION_LEVELS - quantisedWeight) << 32) | (otherRow & 0xFFFFFFFFL);
+
+        int bucket = countsBucket(dequantiseWeight(weightsFloor, quantisedWeight)) - firstCountsBucket;
+        if (bucket >= 0)
+        {
+            rowsCounts[currentRow * countsBuckets + bucket]++;
+            rowsCounts[otherRow * countsBuckets + bucket]++;
+        }
+    }
+
+    /**
+     * Ends the edges of the current row, writing them sorted by descending
+     * weight.
+     */
+    public void endRow() throws IOException
+    {
+        Arrays.sort(currentRowEdges, 0, currentRowEdgesCount);
+
+        long rowOffset = position + writeBuffer.position();
+        for (int k = 0; k < currentRowEdgesCount; k++)
+        {
+            if (writeBuffer.remaining() < 2)
+            {
+                flushWriteBuffer();
+            }
+
+            writeBuffer.putShort((short) (QUANTISATION_LEVELS - (int) (currentRowEdges[k] >>> 32)));
+        }
+
+        for (int k = 0; k < currentRowEdgesCount; k++)
+        {
+            if (writeBuffer.remaining() < MAX_OTHER_ROW_SIZE)
+            {
+                flushWriteBuffer();
+            }
+
+            int difference = (int) currentRowEdges[k] - currentRow;
+            int zigzag = (difference << 1) ^ (difference >> 31);
+            while ((zigzag & ~0x7F) != 0)
+            {
+                writeBuffer.put((byte) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            writeBuffer.put((byte) zigzag);
+        }
+
+        rowsOffsets[currentRow] = rowOffset;
+        rowsLengths[currentRow] = (int) (position + writeBuffer.position() - rowOffset);
+        rowsEdgesCounts[currentRow] = currentRowEdgesCount;
+        currentRow = -1;
+    }
+
+    /**
+     * Writes the header, the row index and the row counts and closes the file.
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            flushWriteBuffer();
+
+            long headerPosition = 0;
+            writeBuffer.putInt(CorrelationData.FILE_MAGIC_NUMBER);
+            writeBuffer.putInt(totalRows);
+            writeBuffer.putFloat(weightsFloor);
+            writeBuffer.putInt(firstCountsBucket);
+            for (int i = 0; i < totalRows; i++)
+            {
+                if (writeBuffer.remaining() < INDEX_ENTRY_SIZE)
+                {
+                    headerPosition += writeAt(headerPosition);
+                }
+
+                writeBuffer.putLong(rowsOffsets[i]);
+                writeBuffer.putInt(rowsLengths[i]);
+                writeBuffer.putInt(rowsEdgesCounts[i]);
+            }
+            for (int i = 0; i < rowsCounts.length; i++)
+            {
+                if (writeBuffer.remaining() < 4)
+                {
+                    headerPosition += writeAt(headerPosition);
+                }
+
+                writeBuffer.putInt(rowsCounts[i]);
+            }
+            writeAt(headerPosition);
+
+            channel.force(false);
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private void flushWriteBuffer() throws IOException
+    {
+        position += writeAt(position);
+    }
+
+    private int writeAt(long filePosition) throws IOException
+    {
+        writeBuffer.flip();
+        int bytes = writeBuffer.remaining();
+        while (writeBuffer.hasRemaining())
+        {
+            filePosition += channel.write(writeBuffer, filePosition);
+        }
+        writeBuffer.clear();
+
+        return bytes;
+    }
+
+    /**
+     * Returns the 0.01 weight bucket of a weight, as used by
+     * CorrelationData.getCounts().
+     */
+    public static int countsBucket(float weight)
+    {
+        int bucket = (int) Math.floor(100.0f * weight);
+        return (bucket < 0) ? 0 : ((bucket >= TOTAL_COUNTS_BUCKETS) ? TOTAL_COUNTS_BUCKETS - 1 : bucket);
+    }
+
+    /**
+     * Returns the weight of a quantised weight.
+     */
+    public static float dequantiseWeight(float weightsFloor, int quantisedWeight)
+    {
+        return weightsFloor + quantisedWeight * ((1.0f - weightsFloor) / QUANTISATION_LEVELS);
+    }
+
+
+}
@@ -1,10 +1,10 @@
 package org.biolayout.Correlation;
 
 import java.io.*;
-import java.nio.*;
 import java.text.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import javax.swing.*;
 import static java.lang.Math.*;
 import java.util.AbstractMap.SimpleEntry;
@@ -124,22 +124,117 @@ public final class CorrelationData
     }
 
     /**
-     * Constant used defining the amount of RAM to be used in the N-Core
-     * Parallelization algorithm. Here, 128Mb (2^27) RAM will be allocated for
-     * the float results array.
+     * A reusable buffer holding the above threshold edges of a band of
+     * consecutive rows, passed from an N-Core thread to the writer.
      */
-    private static final int MAX_ARRAY_RAM_USAGE = (1 << 27);
+    private static final class CorrelationRowsBand
+    {
+
+        private static final int INITIAL_ROW_CAPACITY = 16;
+
+        private final int threadId;
+        private int startRow = 0;
+        private int endRow = -1;
+        private int[] rowsEdgesCounts = new int[0];
+        private int[][] rowsEdgesIDs = new int[0][];
+        private float[][] rowsEdgesWeights = new float[0][];
+
+        public CorrelationRowsBand(int threadId)
+        {
+            this.threadId = threadId;
+        }
+
+        public void reset(int startRow, int endRow)
+        {
+            this.startRow = startRow;
+            this.endRow = endRow;
+
+            int bandRows = endRow - startRow + 1;
+            if (rowsEdgesCounts.length < bandRows)
+            {
+                rowsEdgesCounts = new int[bandRows];
+                rowsEdgesIDs = Arrays.copyOf(rowsEdgesIDs, bandRows);
+                rowsEdgesWeights = Arrays.copyOf(rowsEdgesWeights, bandRows);
+            }
+
+            for (int i = 0; i < bandRows; i++)
+            {
+                rowsEdgesCounts[i] = 0;
+                if (rowsEdgesIDs[i] == null)
+                {
+                    rowsEdgesIDs[i] = new int[INITIAL_ROW_CAPACITY];
+                    rowsEdgesWeights[i] = new float[INITIAL_ROW_CAPACITY];
+                }
+            }
+        }
+
+        public void addEdge(int row, int otherRow, float weight)
+        {
+            int bandRow = row - startRow;
+            int count = rowsEdgesCounts[bandRow];
+            if (count == rowsEdgesIDs[bandRow].length)
+            {
+                rowsEdgesIDs[bandRow] = Arrays.copyOf(rowsEdgesIDs[bandRow], 2 * count);
+                rowsEdgesWeights[bandRow] = Arrays.copyOf(rowsEdgesWeights[bandRow], 2 * count);
+            }
+
+            rowsEdgesIDs[bandRow][count] = otherRow;
+            rowsEdgesWeights[bandRow][count] = weight;
+            rowsEdgesCounts[bandRow] = count + 1;
+        }
+    }
+
+    /**
+     * Marker passed to the writer by every N-Core thread when it has no more
+     * row bands to calculate.
+     */
+    private static final CorrelationRowsBand END_OF_ROW_BANDS = new CorrelationRowsBand(-1);
+
+    /**
+     * Constant used defining the amount of RAM a tile of standardised rows
+     * should occupy in the N-Core Parallelization algorithm, so as for a tile
+     * to stay resident in the L2 cache while it is being processed. Here, 256Kb
+     * (2^18) RAM will be used per tile.
+     */
+    private static final int TILE_RAM_USAGE = (1 << 18);
+
+    /**
+     * Constants used defining the min and max number of rows per tile.
+     */
+    private static final int MIN_TILE_SIZE = 16;
+    private static final int MAX_TILE_SIZE = 512;
 
     /**
-     * Constant used defining the max array size for the float results array.
+     * Constant used defining how many row band buffers each N-Core thread
+     * owns, so as a thread can keep calculating while its previous band is
+     * being written to file.
      */
-    private static final int MAX_ARRAY_SIZE = MAX_ARRAY_RAM_USAGE / 4;
+    private static final int ROW_BANDS_PER_THREAD = 2;
 
-    public static final int FILE_MAGIC_NUMBER = 0xB73D0004;
+    /**
+     * Constant used defining how many row blocks per thread the Spearman rank
+     * transform is split in, so as the ForkJoinPool can balance uneven rows.
+     */
+    private static final int SPEARMAN_RANKS_TASKS_PER_THREAD = 8;
+
+    /**
+     * Constant used defining the most elements of a heap matrix, above which
+     * matrices are memory-mapped.
+     */
+    private static final long MAX_HEAP_MATRIX_ELEMENTS = Integer.MAX_VALUE - 8;
+
+    /**
+     * Magic number of the version 3 .correlationcache files written by the
+     * CorrelationCacheWriter. Version 1 (0xB73D0004) and version 2
+     * (0xB73D0005) files are not read any more and get rebuilt.
+     */
+    public static final int FILE_MAGIC_NUMBER = 0xB73D0006;
 
     private LayoutFrame layoutFrame = null;
     private LayoutProgressBarDialog layoutProgressBarDialog = null;
     private int rowIndex = 0;
+    private final AtomicLong calculationsDone = new AtomicLong();
+    private long totalCalculations = 0;
     private long searchSpace = 0;
     private String metricName = "";
     private NumberFormat nf1 = null;
@@ -151,17 +246,12 @@ public final class CorrelationData
     private boolean transpose = false;
     private String[] columnNamesArray = null;
     private String[] rowIDsArray = null;
-    private FloatBuffer sumX_cacheBuffer = null;
-    private float[] sumX_cacheArray = null;
-    private float[] sumX2_cacheArray = null;
-    private FloatBuffer sumX_sumX2_cacheBuffer = null;
-    private float[] sumX_sumX2_cacheArray = null;
-    private FloatBuffer sumColumns_X2_cacheBuffer = null;
-    private float[] sumColumns_X2_cacheArray = null;
-    private FloatBuffer correlationDataBuffer = null;
-    private float[] correlationDataArray = null;
-    private FloatBuffer correlationRanksBuffer = null;
-    private float[] correlationRanksArray = null;
+    private CorrelationMatrix correlationDataMatrix = null;
+    private CorrelationMatrix standardisedDataMatrix = null;
+    private boolean isRawDataMatrixMapped = false;
+    private boolean[] standardisedValidRowsArray = null;
+    private CorrelationMetric correlationMetric = null;
+    private CorrelationLSHIndex lshIndex = null;
     private HashMap<String, Integer> identityMap = null;
     private HashMap<String, Integer> columnNameMap = null;
     private int[][] countsArray = null;
@@ -185,7 +275,7 @@ public final class CorrelationData
 
     // variables needed for N-CP
     private final CyclicBarrierTimer cyclicBarrierTimer = (USE_MULTICORE_PROCESS) ? new CyclicBarrierTimer() : null;
-    private final CyclicBarrier threadBarrier = (USE_MULTICORE_PROCESS) ? new CyclicBarrier(NUMBER_OF_AVAILABLE_PROCESSORS + 1, cyclicBarrierTimer) : null;
+    private final ComputePool computePool = (USE_MULTICORE_PROCESS) ? ComputePool.getInstance() : null;
 
     /**
      * The constructor of the CorrelationData class.
@@ -210,15 +300,11 @@ public final class CorrelationData
 
         columnNamesArray = new String[totalColumns];
         rowIDsArray = new String[totalRows];
-        sumX_cacheBuffer = FloatBuffer.allocate(totalRows);
-        sumX_cacheArray = sumX_cacheBuffer.array();
-        sumX2_cacheArray = new float[totalRows];
-        sumX_sumX2_cacheBuffer = FloatBuffer.allocate(totalRows);
-        sumX_sumX2_cacheArray = sumX_sumX2_cacheBuffer.array();
-        sumColumns_X2_cacheBuffer = FloatBuffer.allocate(totalRows);
-        sumColumns_X2_cacheArray = sumColumns_X2_cacheBuffer.array();
-        correlationDataBuffer = FloatBuffer.allocate(totalRows * totalColumns);
-        correlationDataArray = correlationDataBuffer.array();
+        if (correlationDataMatrix != null)
+        {
+            correlationDataMatrix.close();
+        }
+        correlationDataMatrix = createCorrelationMatrix(totalRows, totalColumns);
 
         identityMap.clear();
         columnNameMap.clear();
@@ -274,68 +360,170 @@ public final class CorrelationData
     }
 
     /**
-     * Converts data to Spearman Rank order.
+     * Creates a heap matrix, or a memory-mapped one when
+     * CORRELATION_MEMORY_MAPPED_MATRICES is set or when the matrix would not
+     * fit in int indexing or in half of the max heap. Falls back to a heap
+     * matrix if the file can not be mapped.
+     */
+    private CorrelationMatrix createCorrelationMatrix(int totalRows, int totalColumns)
+    {
+        long totalElements = (long) totalRows * (long) totalColumns; // has to be cast like this so as to not lose the long conversion and result in an overflow after the multiplication
+        if ( CORRELATION_MEMORY_MAPPED_MATRICES || (totalElements > MAX_HEAP_MATRIX_ELEMENTS) || ( (4 * totalElements) > (Runtime.getRuntime().maxMemory() / 2) ) )
+        {
+            try
+            {
+                return new CorrelationMatrix(totalRows, totalColumns, null);
+            }
+            catch (IOException ioe)
+            {
+                if (DEBUG_BUILD)
+                {
+                    println("IOException in createCorrelationMatrix(), using a heap matrix instead:\n" + ioe.getMessage());
+                }
+            }
+        }
+
+        return new CorrelationMatrix(totalRows, totalColumns);
+    }
+
+    /**
+     * Moves the raw data of a heap data matrix to a new memory-mapped matrix
+     * for the time of the network build, the heap matrix becoming the
+     * standardised data buffer, so as the standardised metrics need a single
+     * matrix of heap. The data accessors read the mapped raw data meanwhile,
+     * until clearAllCachedDataStructures() copies them back. Already mapped
+     * data stay in place (their standardised copy being mapped as well), as do
+     * data that can not be mapped.
+     */
+    private void moveRawDataToMappedMatrix()
+    {
+        if ( correlationDataMatrix.isMemoryMapped() )
+        {
+            return;
+        }
+
+        CorrelationMatrix rawDataMatrix = null;
+        try
+        {
+            rawDataMatrix = new CorrelationMatrix(totalRows, totalColumns, null);
+        }
+        catch (IOException ioe)
+        {
+            if (DEBUG_BUILD)
+            {
+                println("IOException in moveRawDataToMappedMatrix(), standardising a heap copy of the data instead:\n" + ioe.getMessage());
+            }
+
+            return;
+        }
+
+        rawDataMatrix.writeRows(0, totalRows, correlationDataMatrix.array(), 0);
+        standardisedDataMatrix = correlationDataMatrix;
+        correlationDataMatrix = rawDataMatrix;
+        isRawDataMatrixMapped = true;
+    }
+
+    /**
+     * Converts data to Spearman Rank order, ranking every row straight into
+     * the standardised data buffer (to be standardised in place afterwards).
+     * The buffer is the heap data matrix if its raw data were moved to a
+     * mapped matrix, so as the ranks need no second matrix of heap, otherwise
+     * a new matrix. The rows are ranked in parallel blocks on a ForkJoinPool.
      */
     private void convertToSpearmanRankOrder()
     {
-        correlationRanksBuffer = FloatBuffer.allocate(totalRows * totalColumns);
-        correlationRanksArray = correlationRanksBuffer.array();
+        if (standardisedDataMatrix == null)
+        {
+            standardisedDataMatrix = createCorrelationMatrix(totalRows, totalColumns);
+        }
 
-        for (int i = 0; i < totalRows; i++)
+        if (USE_MULTICORE_PROCESS && USE_CORRELATION_CALCULATION_N_CORE_PARALLELISM.get() && (NUMBER_OF_AVAILABLE_PROCESSORS > 1))
+        {
+            computePool.invoke( new SpearmanRanksTask(0, totalRows, max(1, totalRows / (SPEARMAN_RANKS_TASKS_PER_THREAD * NUMBER_OF_AVAILABLE_PROCESSORS))) );
+        }
+        else
         {
-            sumX_cacheArray[i] = 0.0f;
-            sumX2_cacheArray[i] = 0.0f;
+            rankRows(0, totalRows, new long[totalColumns]);
         }
+    }
 
-        float[] rowValues = new float[totalColumns];
-        float[] originalValues = new float[totalColumns];
-        HashMap<Float, Float> ranksMap = new HashMap<Float, Float>();
-        float value = 0.0f;
-        for (int i = 0; i < totalRows; i++)
+    /**
+     * Recursively splits the rows to be ranked in halves, down to blocks of
+     * at most rowsPerTask rows, each ranked with its own sort keys array.
+     */
+    private final class SpearmanRanksTask extends RecursiveAction
+    {
+
+        private final int startRow;
+        private final int endRow;
+        private final int rowsPerTask;
+
+        private SpearmanRanksTask(int startRow, int endRow, int rowsPerTask)
         {
-            ranksMap.clear();
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.rowsPerTask = rowsPerTask;
+        }
 
-            for (int j = 0; j < totalColumns; j++)
+        @Override
+        protected void compute()
+        {
+            if ((endRow - startRow) <= rowsPerTask)
+            {
+                rankRows(startRow, endRow, new long[totalColumns]);
+            }
+            else
             {
-                value = correlationDataArray[i * totalColumns + j];
-                rowValues[j] = value;
-                originalValues[j] = value;
+                int middleRow = (startRow + endRow) >>> 1;
+                invokeAll( new SpearmanRanksTask(startRow, middleRow, rowsPerTask), new SpearmanRanksTask(middleRow, endRow, rowsPerTask) );
             }
+        }
 
-            Arrays.sort(rowValues);
-            PrimitiveArraysUtils.reverse(rowValues);
+    }
 
-            float currentRank = 0.0f;
-            float tied = 0.0f;
+    /**
+     * Ranks the rows [startRow, endRow) into the standardised data buffer,
+     * tied values getting their average rank.
+     * Each row is sorted as primitive long keys holding the order preserving
+     * bits of the value in the high half and its column in the low half.
+     */
+    private void rankRows(int startRow, int endRow, long[] sortKeys)
+    {
+        float[] rowValues = new float[totalColumns];
+        float[] rowRanks = new float[totalColumns];
+        for (int i = startRow; i < endRow; i++)
+        {
+            correlationDataMatrix.readRows(i, i + 1, rowValues, 0);
             for (int j = 0; j < totalColumns; j++)
             {
-                currentRank++;
-                if ((j < (totalColumns - 1)) && (rowValues[j] == rowValues[j + 1]))
+                int bits = Float.floatToIntBits(rowValues[j]);
+                bits ^= ( (bits >> 31) & 0x7FFFFFFF ); // flip negative values so as the signed int order matches the float order
+                sortKeys[j] = ( (long) bits << 32 ) | j;
+            }
+
+            Arrays.sort(sortKeys, 0, totalColumns);
+
+            int tieStart = 0;
+            while (tieStart < totalColumns)
+            {
+                float value = rowValues[(int) sortKeys[tieStart]];
+                int tieEnd = tieStart + 1;
+                while ( (tieEnd < totalColumns) && (rowValues[(int) sortKeys[tieEnd]] == value) )
                 {
-                    tied++;
+                    tieEnd++;
                 }
-                else
+
+                // ranks are 1-based, so the average rank of positions [tieStart, tieEnd) is their midpoint plus one
+                float rank = (tieStart + tieEnd + 1) / 2.0f;
+                for (int k = tieStart; k < tieEnd; k++)
                 {
-                    ranksMap.put(rowValues[j], (tied == 0.0f) ? currentRank : currentRank - (currentRank - (currentRank - tied)) / 2.0f);
-                    tied = 0.0f;
+                    rowRanks[(int) sortKeys[k]] = rank;
                 }
-            }
 
-            for (int j = 0; j < totalColumns; j++)
-            {
-                correlationRanksArray[i * totalColumns + j] = ranksMap.get(originalValues[j]);
+                tieStart = tieEnd;
             }
-        }
 
-        // rebuild caches for rank order values, not raw values
-        for (int i = 0; i < totalRows; i++)
-        {
-            for (int j = 0; j < totalColumns; j++)
-            {
-                value = correlationRanksArray[i * totalColumns + j];
-                sumX_cacheArray[i] += value;
-                sumX2_cacheArray[i] += (value * value);
-            }
+            standardisedDataMatrix.writeRows(i, i + 1, rowRanks, 0);
         }
     }
 
@@ -348,7 +536,7 @@ public final class CorrelationData
         this.layoutProgressBarDialog = layoutProgressBarDialog;
         this.rowIndex = 0;
         this.searchSpace = (long) totalRows * (long) totalRows; // has to be cast like this so as to not lose the long conversion and result in an overflow after the multiplication
-        this.metricName = Character.toUpperCase(metricName.charAt(0)) + metricName.substring(1);
+        this.metricName = Utils.titleCaseOf(metricName.replace('-', '_'));
 
         this.nf1 = NumberFormat.getNumberInstance();
         this.nf1.setMaximumFractionDigits(0);
@@ -362,6 +550,11 @@ public final class CorrelationData
             this.nf3.setMaximumFractionDigits(5);
         }
 
+        if ( CURRENT_METRIC.isStandardised() )
+        {
+            moveRawDataToMappedMatrix();
+        }
+
         if (CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN))
         {
             convertToSpearmanRankOrder();
@@ -369,12 +562,12 @@ public final class CorrelationData
 
         File correlationFileTmp = new File(correlationFile.getAbsolutePath() + ".tmp");
         File correlationFileTextTmp = new File(correlationFile.getAbsolutePath() + ".txt.tmp");
-        ObjectOutputStream outOstream = null;
+        CorrelationCacheWriter cacheWriter = null;
         PrintWriter outPrintWriter = null;
 
         try
         {
-            outOstream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(correlationFileTmp)));
+            cacheWriter = new CorrelationCacheWriter(correlationFileTmp, totalRows, threshold);
             if (writeCorrelationTextFile)
             {
                 outPrintWriter = new PrintWriter(correlationFileTextTmp);
@@ -385,31 +578,43 @@ public final class CorrelationData
             layoutProgressBarDialog.startProgressBar();
             layoutProgressBarDialog.setText("Caching...");
 
-            for (int i = 0; i < totalRows; i++)
+            correlationMetric = createCorrelationMetric();
+
+            if (CORRELATION_APPROXIMATE_LSH && !CURRENT_METRIC.isStandardised())
             {
-                sumX_sumX2_cacheArray[i] = (sumX_cacheArray[i] * sumX_cacheArray[i]);
-                sumColumns_X2_cacheArray[i] = (totalColumns * sumX2_cacheArray[i]);
+                if (DEBUG_BUILD)
+                {
+                    println("The approximate LSH correlation network needs a standardised metric, calculating the exact " + metricName + " network instead.");
+                }
+            }
+            else if (CORRELATION_APPROXIMATE_LSH)
+            {
+                layoutProgressBarDialog.setText("Hashing...");
+                long startTime = System.nanoTime();
+                lshIndex = new CorrelationLSHIndex(standardisedDataMatrix, standardisedValidRowsArray,
+                        CORRELATION_LSH_TABLES, CORRELATION_LSH_BITS_PER_TABLE, (USE_MULTICORE_PROCESS) ? NUMBER_OF_AVAILABLE_PROCESSORS : 1);
+                if (DEBUG_BUILD)
+                {
+                    println("LSH index with " + CORRELATION_LSH_TABLES + " tables of " + CORRELATION_LSH_BITS_PER_TABLE + " bits built in " + ((System.nanoTime() - startTime) / 1e6) + " ms.");
+                }
             }
-
-            outOstream.writeInt(FILE_MAGIC_NUMBER);
 
             if (USE_CORRELATION_CALCULATION_N_CORE_PARALLELISM.get() && USE_MULTICORE_PROCESS)
             {
-                calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(threshold,
-                        outOstream, outPrintWriter, writeCorrelationTextFile);
+                performMultiCoreCorrelationCalculationAndWriteToFile(threshold,
+                        cacheWriter, outPrintWriter, writeCorrelationTextFile);
             }
             else if (!USE_MULTICORE_PROCESS)
             {
-                performSingleCoreCorrelationCalculationAndWriteToFile(threshold, outOstream,
+                performSingleCoreCorrelationCalculationAndWriteToFile(threshold, cacheWriter,
                         outPrintWriter, writeCorrelationTextFile);
             }
             else
             {
-                calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(threshold,
-                        outOstream, outPrintWriter, writeCorrelationTextFile);
+                performMultiCoreCorrelationCalculationAndWriteToFile(threshold,
+                        cacheWriter, outPrintWriter, writeCorrelationTextFile);
             }
 
-            outOstream.flush();
             if (writeCorrelationTextFile)
             {
                 outPrintWriter.flush();
@@ -427,18 +632,18 @@ public final class CorrelationData
         {
             try
             {
-                if (outOstream != null)
+                if (cacheWriter != null)
                 {
-                    outOstream.close();
+                    cacheWriter.close();
                 }
             }
             catch (IOException ioe)
             {
                 if (DEBUG_BUILD)
                 {
-                    println("IOException in buildCorrelationNetwork() closing the outOstream stream\n" + ioe.getMessage());
+                    println("IOException in buildCorrelationNetwork() closing the cacheWriter\n" + ioe.getMessage());
                 }
-                JOptionPane.showMessageDialog(layoutFrame, "IOException in closing the Correlation network outOstream stream\n" + ioe.getMessage(), "Error: IOException in closing the Correlation network outOstream stream", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(layoutFrame, "IOException in closing the Correlation network cache file\n" + ioe.getMessage(), "Error: IOException in closing the Correlation network cache file", JOptionPane.ERROR_MESSAGE);
             }
 
             if (writeCorrelationTextFile)
@@ -476,140 +681,123 @@ public final class CorrelationData
      * Calculates the correlation values in a single thread and writes them to a
      * binary file.
      */
-    private void performSingleCoreCorrelationCalculationAndWriteToFile(float threshold, ObjectOutputStream outOstream,
+    private void performSingleCoreCorrelationCalculationAndWriteToFile(float threshold, CorrelationCacheWriter cacheWriter,
             PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
-        float[] correlationData = CURRENT_METRIC.equals(CorrelationTypes.PEARSON) ? correlationDataArray : ((CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN)) ? correlationRanksArray : correlationDataArray);
+        CorrelationMetric metric = correlationMetric.threadInstance();
+        float[] rowResults = new float[totalRows];
+        int[] candidateRows = (lshIndex != null) ? new int[totalRows] : null;
+        int[] candidateStamps = (lshIndex != null) ? createCandidateStamps() : null;
         float correlation = 0.0f;
         for (int i = 0; i < totalRows - 1; i++) // last row does not perform any calculations, thus skipped
         {
             updateSingleCoreGUI();
 
-            outOstream.writeInt(i);
+            cacheWriter.startRow(i);
 
-            for (int j = (i + 1); j < totalRows; j++)
+            if (lshIndex != null)
             {
-                correlation = calculateCorrelation(i, j, correlationData);
-                if (correlation >= threshold)
+                int totalCandidates = lshIndex.findCandidates(i, candidateStamps, candidateRows);
+                for (int k = 0; k < totalCandidates; k++)
                 {
-                    outOstream.writeInt(j);
-                    outOstream.writeFloat(correlation);
-                }
-
-                if (writeCorrelationTextFile)
-                {
-                    outPrintWriter.println(rowIDsArray[i] + "\t" + rowIDsArray[j] + "\t" + nf3.format(correlation));
-                }
-            }
-
-            outOstream.writeInt(i);
-        }
-    }
+                    correlation = metric.calculate(i, candidateRows[k]);
+                    if (correlation >= threshold)
+                    {
+                        cacheWriter.addEdge(candidateRows[k], correlation);
+                    }
 
-    /**
-     * Calculates the steps needed, memory allocated per step and executes the
-     * correlation calculation with N-Core parallelism.
-     */
-    private void calculateStepsAndMemoryAllocatedForNCoreParallelismAndExecuteCorrelationCalculation(float threshold,
-            ObjectOutputStream outOstream, PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
-    {
-        // below is code to break the correlation calculation into steps according to how much memory we are allocating for the intermediate step results
-        boolean isPowerOfTwo = org.biolayout.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
-        int arraySize = 0;
-        int startRow = 0;
-        int endRow = -1; // has to init at -1 for 'startRow = endRow + 1' line, so as to start at row 0
-        int stepNumber = 0;
-        int[] cachedRowsResultsIndicesToSkip = new int[totalRows - 1];
-        float[] stepResults = null;
-        boolean rowsSearchProcessedStopped = false;
-        while (!rowsSearchProcessedStopped)
-        {
-            arraySize = 0;
-            startRow = endRow + 1;
-
-            // last row does not need to be checked as it does not perform any calculations
-            for (int i = startRow; i < totalRows - 1; i++)
-            {
-                cachedRowsResultsIndicesToSkip[i] = totalRows - (i + 1);
-                arraySize += cachedRowsResultsIndicesToSkip[i];
-
-                // stop if MAX_ARRAY_SIZE not enough for all calculations
-                if (arraySize >= MAX_ARRAY_SIZE)
-                {
-                    // if last row to be checked, stop the process
-                    if (i == (totalRows - 2))
+                    if (writeCorrelationTextFile)
                     {
-                        rowsSearchProcessedStopped = true;
+                        outPrintWriter.println(rowIDsArray[i] + "\t" + rowIDsArray[candidateRows[k]] + "\t" + nf3.format(correlation));
                     }
-                    endRow = i;
-                    break;
                 }
 
-                // if last row to be checked, stop the process
-                if (i == (totalRows - 2))
-                {
-                    endRow = i;
-                    rowsSearchProcessedStopped = true;
-                }
+                cacheWriter.endRow();
+                continue;
             }
 
-            stepNumber++;
-            stepResults = new float[arraySize];
-
-            if (DEBUG_BUILD)
+            metric.calculateRow(i, i + 1, totalRows, rowResults, 0);
+            for (int j = (i + 1); j < totalRows; j++)
             {
-                println("Now starting the N-Core parallelization process with the variables below:\nstartRow: " + (startRow + 1) + " endRow: " + (endRow + 1) + " arraySize: " + arraySize + " rowsSearchProcessedStopped: " + rowsSearchProcessedStopped);
-            }
-            performMultiCoreCorrelationCalculation(isPowerOfTwo, startRow, endRow, stepResults, cachedRowsResultsIndicesToSkip);
+                correlation = rowResults[j - (i + 1)];
+                if (correlation >= threshold)
+                {
+                    cacheWriter.addEdge(j, correlation);
+                }
 
-            if (layoutProgressBarDialog.userHasCancelled())
-            {
-                break;
+                if (writeCorrelationTextFile)
+                {
+                    outPrintWriter.println(rowIDsArray[i] + "\t" + rowIDsArray[j] + "\t" + nf3.format(correlation));
+                }
             }
 
-            writeAllStepResultsToFile(threshold, startRow, endRow, stepNumber, stepResults,
-                    outOstream, outPrintWriter, writeCorrelationTextFile);
-
-            // clean memory before continuing
-            stepResults = null;
-            System.gc();
+            cacheWriter.endRow();
         }
-
-        // clean memory at end of all calculations
-        stepResults = null;
-        cachedRowsResultsIndicesToSkip = null;
-        System.gc();
     }
 
     /**
-     * Main method of the correlation calculation execution code. Uses an N-Core
-     * paralellism algorithm in case of multiple core availability.
+     * Calculates the correlation values with N-Core parallelism and writes
+     * them to a binary file. The threads calculate bands of rows and push the
+     * above threshold edges to the calling thread, which writes them while
+     * the calculation continues. Every thread owns ROW_BANDS_PER_THREAD
+     * recycled buffers, so memory usage does not depend on the number of rows.
      */
-    private void performMultiCoreCorrelationCalculation(boolean isPowerOfTwo, int startRow, int endRow, float[] stepResults, int[] cachedRowsResultsIndicesToSkip)
+    private void performMultiCoreCorrelationCalculationAndWriteToFile(float threshold, CorrelationCacheWriter cacheWriter,
+            PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
-        LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                new LoggerThreadFactory("correlationData"),
-                new ThreadPoolExecutor.CallerRunsPolicy());
-
-        cyclicBarrierTimer.clear();
+        int tileSize = calculateTileSize();
+        // the text file has to contain all values, not just the above threshold ones
+        float bandThreshold = (writeCorrelationTextFile) ? -Float.MAX_VALUE : threshold;
+        AtomicInteger nextBandIndex = new AtomicInteger();
+        BlockingQueue<CorrelationRowsBand> writeQueue = new ArrayBlockingQueue<CorrelationRowsBand>(NUMBER_OF_AVAILABLE_PROCESSORS * (ROW_BANDS_PER_THREAD + 1));
+        List<BlockingQueue<CorrelationRowsBand>> freeBandsQueues = new ArrayList<BlockingQueue<CorrelationRowsBand>>(NUMBER_OF_AVAILABLE_PROCESSORS);
         for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
         {
-            executor.execute(correlationCalculationProcessKernel(threadId, isPowerOfTwo, startRow, endRow, stepResults, cachedRowsResultsIndicesToSkip));
+            BlockingQueue<CorrelationRowsBand> freeBands = new ArrayBlockingQueue<CorrelationRowsBand>(ROW_BANDS_PER_THREAD);
+            for (int i = 0; i < ROW_BANDS_PER_THREAD; i++)
+            {
+                freeBands.add(new CorrelationRowsBand(threadId));
+            }
+            freeBandsQueues.add(freeBands);
         }
 
+        calculationsDone.set(0);
+        totalCalculations = totalCalculationsOf(totalRows);
+
+        // the calling thread writes the bands while the pool threads calculate them
+        ForkJoinTask<?> correlationCalculationTask = computePool.submitParallelFor(NUMBER_OF_AVAILABLE_PROCESSORS,
+                correlationCalculationProcessKernel(tileSize, bandThreshold, nextBandIndex, freeBandsQueues, writeQueue), null, cyclicBarrierTimer);
+
+        IOException writeException = null;
         try
         {
-            threadBarrier.await(); // wait for all threads to be ready
-            threadBarrier.await(); // wait for all threads to finish
-            executor.shutdown();
-        }
-        catch (BrokenBarrierException ex)
-        {
-            if (DEBUG_BUILD)
+            int finishedThreads = 0;
+            while (finishedThreads < NUMBER_OF_AVAILABLE_PROCESSORS)
             {
-                println("Problem with a broken barrier with the main correlation calculation thread in performMultiCoreCorrelationCalculation()!:\n" + ex.getMessage());
+                CorrelationRowsBand band = writeQueue.take();
+                if (band == END_OF_ROW_BANDS)
+                {
+                    finishedThreads++;
+                    continue;
+                }
+
+                // keep draining after a write failure, so as the threads do not block on their buffers
+                if (writeException == null)
+                {
+                    try
+                    {
+                        writeRowsBandToFile(threshold, band, cacheWriter, outPrintWriter, writeCorrelationTextFile);
+                    }
+                    catch (IOException ioe)
+                    {
+                        writeException = ioe;
+                    }
+                }
+
+                freeBandsQueues.get(band.threadId).put(band);
             }
+
+            correlationCalculationTask.join(); // wait for all threads to finish
         }
         catch (InterruptedException ex)
         {
@@ -617,102 +805,172 @@ public final class CorrelationData
             Thread.currentThread().interrupt();
             if (DEBUG_BUILD)
             {
-                println("Problem with pausing the main correlation calculation thread in performMultiCoreCorrelationCalculation()!:\n" + ex.getMessage());
+                println("Problem with pausing the main correlation calculation thread in performMultiCoreCorrelationCalculationAndWriteToFile()!:\n" + ex.getMessage());
             }
         }
 
         if (DEBUG_BUILD)
         {
-            println("\nTotal Correlation Data N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
+            println("\nTotal Correlation Data N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms (bands of " + tileSize + " rows).\n");
+        }
+
+        if (writeException != null)
+        {
+            throw writeException;
         }
     }
 
     /**
-     * Performs all correlation calculations.
+     * Calculates the number of rows per tile so as for a tile of standardised
+     * rows to fit in TILE_RAM_USAGE.
      */
-    private void allCorrelationCalculations(int threadId, boolean isPowerOfTwo, int startRow, int endRow, float[] stepResults, int[] cachedRowsResultsIndicesToSkip)
+    private int calculateTileSize()
     {
-        float[] correlationData = CURRENT_METRIC.equals(CorrelationTypes.PEARSON) ? correlationDataArray : ((CURRENT_METRIC.equals(CorrelationTypes.SPEARMAN)) ? correlationRanksArray : correlationDataArray);
-        int rowResultIndex = 0;
-        if (isPowerOfTwo)
-        {
-            for (int i = startRow; i <= endRow; i++)
+        int tileSize = TILE_RAM_USAGE / (4 * max(1, totalColumns));
+        return (tileSize < MIN_TILE_SIZE) ? MIN_TILE_SIZE : ((tileSize > MAX_TILE_SIZE) ? MAX_TILE_SIZE : tileSize);
+    }
+
+    /**
+     * Performs all correlation calculations of the row bands picked up by this
+     * thread. Every band is calculated in square tiles of row pairs, so as
+     * each tile of other rows stays in cache while all the band rows use it.
+     */
+    private void allCorrelationCalculations(int tileSize, float bandThreshold, AtomicInteger nextBandIndex,
+            BlockingQueue<CorrelationRowsBand> freeBands, BlockingQueue<CorrelationRowsBand> writeQueue) throws InterruptedException
+    {
+        CorrelationMetric metric = correlationMetric.threadInstance();
+        float[] tileResults = new float[tileSize];
+        int[] candidateRows = (lshIndex != null) ? new int[totalRows] : null;
+        int[] candidateStamps = (lshIndex != null) ? createCandidateStamps() : null;
+        int bandStartRow = 0;
+        // last row does not perform any calculations, thus skipped
+        while ((bandStartRow = nextBandIndex.getAndIncrement() * tileSize) < totalRows - 1)
+        {
+            int bandEndRow = min(bandStartRow + tileSize, totalRows - 1) - 1;
+            CorrelationRowsBand band = freeBands.take();
+            band.reset(bandStartRow, bandEndRow);
+
+            if (lshIndex != null)
             {
-                if ((i & (NUMBER_OF_AVAILABLE_PROCESSORS - 1)) == threadId)
+                calculateApproximateRowsBand(metric, band, bandThreshold, candidateRows, candidateStamps);
+                writeQueue.put(band);
+
+                if (layoutProgressBarDialog.userHasCancelled())
                 {
-                    updateMultiCoreGUI();
+                    break;
+                }
 
-                    for (int j = (i + 1); j < totalRows; j++)
+                continue;
+            }
+
+            for (int tileStartColumn = bandStartRow + 1; tileStartColumn < totalRows; tileStartColumn += tileSize)
+            {
+                int tileEndColumn = min(tileStartColumn + tileSize, totalRows);
+                long tileCalculations = 0;
+                for (int i = bandStartRow; i <= bandEndRow; i++)
+                {
+                    // only the upper triangle is calculated, for the diagonal tiles start right after the row itself
+                    int fromRow = max(tileStartColumn, i + 1);
+                    if (fromRow < tileEndColumn)
                     {
-                        stepResults[rowResultIndex++] = calculateCorrelation(i, j, correlationData);
+                        metric.calculateRow(i, fromRow, tileEndColumn, tileResults, 0);
+                        for (int j = fromRow; j < tileEndColumn; j++)
+                        {
+                            if (tileResults[j - fromRow] >= bandThreshold)
+                            {
+                                band.addEdge(i, j, tileResults[j - fromRow]);
+                            }
+                        }
+                        tileCalculations += tileEndColumn - fromRow;
                     }
                 }
-                else
-                {
-                    rowResultIndex += cachedRowsResultsIndicesToSkip[i];
-                }
+
+                updateMultiCoreGUI(calculationsDone.addAndGet(tileCalculations));
 
                 if (layoutProgressBarDialog.userHasCancelled())
                 {
                     break;
                 }
             }
+
+            writeQueue.put(band);
+
+            if (layoutProgressBarDialog.userHasCancelled())
+            {
+                break;
+            }
         }
-        else
+    }
+
+    /**
+     * Performs the correlation calculations of a row band against the LSH
+     * candidates of its rows only.
+     */
+    private void calculateApproximateRowsBand(CorrelationMetric metric, CorrelationRowsBand band, float bandThreshold, int[] candidateRows, int[] candidateStamps)
+    {
+        for (int i = band.startRow; i <= band.endRow; i++)
         {
-            for (int i = startRow; i <= endRow; i++)
+            int totalCandidates = lshIndex.findCandidates(i, candidateStamps, candidateRows);
+            for (int k = 0; k < totalCandidates; k++)
             {
-                if ((i % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId)
-                {
-                    updateMultiCoreGUI();
-
-                    for (int j = (i + 1); j < totalRows; j++)
-                    {
-                        stepResults[rowResultIndex++] = calculateCorrelation(i, j, correlationData);
-                    }
-                }
-                else
+                float correlation = metric.calculate(i, candidateRows[k]);
+                if (correlation >= bandThreshold)
                 {
-                    rowResultIndex += cachedRowsResultsIndicesToSkip[i];
+                    band.addEdge(i, candidateRows[k], correlation);
                 }
+            }
 
-                if (layoutProgressBarDialog.userHasCancelled())
-                {
-                    break;
-                }
+            // progress is reported against the exact search space
+            updateMultiCoreGUI(calculationsDone.addAndGet(totalRows - (i + 1)));
+
+            if (layoutProgressBarDialog.userHasCancelled())
+            {
+                break;
             }
         }
     }
 
     /**
-     * Return a light-weight runnable using the Adapter technique for the
+     * Creates a per-thread stamps array for CorrelationLSHIndex.findCandidates().
+     */
+    private int[] createCandidateStamps()
+    {
+        int[] candidateStamps = new int[totalRows];
+        Arrays.fill(candidateStamps, -1);
+
+        return candidateStamps;
+    }
+
+    /**
+     * Returns the number of row pairs of the correlation calculation.
+     */
+    private static long totalCalculationsOf(int totalRows)
+    {
+        return ((long) totalRows * (long) (totalRows - 1)) / 2; // has to be cast like this so as to not lose the long conversion and result in an overflow after the multiplication
+    }
+
+    /**
+     * Return a light-weight kernel using the Adapter technique for the
      * correlation calculation so as to avoid any load latencies.
      */
-    private Runnable correlationCalculationProcessKernel(final int threadId, final boolean isPowerOfTwo, final int startRow, final int endRow, final float[] stepResults, final int[] cachedRowsResultsIndicesToSkip)
+    private ComputePool.ParallelKernel correlationCalculationProcessKernel(final int tileSize, final float bandThreshold, final AtomicInteger nextBandIndex,
+            final List<BlockingQueue<CorrelationRowsBand>> freeBandsQueues, final BlockingQueue<CorrelationRowsBand> writeQueue)
     {
-        return new Runnable()
+        return new ComputePool.ParallelKernel()
         {
 
             @Override
-            public void run()
+            public void run(int threadId)
             {
                 try
                 {
-                    threadBarrier.await();
                     try
                     {
-                        allCorrelationCalculations(threadId, isPowerOfTwo, startRow, endRow, stepResults, cachedRowsResultsIndicesToSkip);
+                        allCorrelationCalculations(tileSize, bandThreshold, nextBandIndex, freeBandsQueues.get(threadId), writeQueue);
                     }
                     finally
                     {
-                        threadBarrier.await();
-                    }
-                }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD)
-                    {
-                        println("Problem with a broken barrier with the N-Core thread with threadId " + threadId + " in correlationCalculationProcessKernel()!:\n" + ex.getMessage());
+                        writeQueue.put(END_OF_ROW_BANDS);
                     }
                 }
                 catch (InterruptedException ex)
@@ -744,10 +1002,9 @@ public final class CorrelationData
     /**
      * Updates the GUI for the correlation calculation iterations.
      */
-    private void updateMultiCoreGUI()
+    private void updateMultiCoreGUI(long calculation)
     {
-        double calculation = ((double) (++rowIndex) * (double) totalRows); // has to be cast like this so as to not lose the double conversion and result in an overflow after the multiplication
-        double percent = 100.0 * (calculation / searchSpace);
+        double percent = 100.0 * ((double) calculation / totalCalculations);
 
         layoutProgressBarDialog.incrementProgress((int) percent);
         layoutProgressBarDialog.setText("Done " + nf1.format(calculation) + " " + metricName + " calculations (" + createProgressBarTextValue(percent, nf2.format(percent)) + "%)"
@@ -775,70 +1032,166 @@ public final class CorrelationData
     }
 
     /**
-     * Writes all step results to a binary file.
+     * Writes a band of rows to a binary file.
      */
-    private void writeAllStepResultsToFile(float threshold, int startRow, int endRow,
-            int stepNumber, float[] stepResults, ObjectOutputStream outOstream,
+    private void writeRowsBandToFile(float threshold, CorrelationRowsBand band, CorrelationCacheWriter cacheWriter,
             PrintWriter outPrintWriter, boolean writeCorrelationTextFile) throws IOException
     {
-        String currentLayoutProgressBarText = layoutProgressBarDialog.getText();
-        currentLayoutProgressBarText = currentLayoutProgressBarText.substring(1,
-                currentLayoutProgressBarText.indexOf(")") + 1);
-
-        int index = 0;
-        float correlation = 0.0f;
-        for (int i = startRow; i <= endRow; i++)
+        for (int i = band.startRow; i <= band.endRow; i++)
         {
-            int percent = ((i - startRow) * 100) / (endRow - startRow);
+            int bandRow = i - band.startRow;
+            int[] edgesIDs = band.rowsEdgesIDs[bandRow];
+            float[] edgesWeights = band.rowsEdgesWeights[bandRow];
 
-            outOstream.writeInt(i);
+            cacheWriter.startRow(i);
 
-            for (int j = (i + 1); j < totalRows; j++)
+            for (int k = 0; k < band.rowsEdgesCounts[bandRow]; k++)
             {
-                correlation = stepResults[index++];
-                if (correlation >= threshold)
+                if (edgesWeights[k] >= threshold)
                 {
-                    outOstream.writeInt(j);
-                    outOstream.writeFloat(correlation);
+                    cacheWriter.addEdge(edgesIDs[k], edgesWeights[k]);
                 }
 
                 if (writeCorrelationTextFile)
                 {
-                    outPrintWriter.println(rowIDsArray[i] + "\t" + rowIDsArray[j]
-                            + "\t" + nf3.format(correlation));
+                    outPrintWriter.println(rowIDsArray[i] + "\t" + rowIDsArray[edgesIDs[k]]
+                            + "\t" + nf3.format(edgesWeights[k]));
                 }
             }
 
-            outOstream.writeInt(i);
+            cacheWriter.endRow();
+        }
+    }
 
-            layoutProgressBarDialog.setText(currentLayoutProgressBarText
-                    + "  (Saving " + percent + "%)");
+    /**
+     * Creates the metric of CURRENT_METRIC, precomputing its per row data.
+     * Pearson, Spearman and biweight midcorrelation all become the dot
+     * product of standardised rows, the rest precompute their own row data.
+     */
+    private CorrelationMetric createCorrelationMetric()
+    {
+        switch (CURRENT_METRIC)
+        {
+            case KENDALL_TAU_B:
+                return new KendallTauCorrelationMetric(correlationDataMatrix);
+
+            case MUTUAL_INFORMATION:
+                return new MutualInformationCorrelationMetric(correlationDataMatrix);
+
+            case BIWEIGHT_MIDCORRELATION:
+                standardiseRows(correlationDataMatrix, true);
+                break;
+
+            case SPEARMAN:
+                standardiseRows(standardisedDataMatrix, false);
+                break;
+
+            default:
+            case PEARSON:
+                standardiseRows(correlationDataMatrix, false);
+                break;
         }
+
+        return new StandardisedCorrelationMetric(standardisedDataMatrix, standardisedValidRowsArray, calculateTileSize());
     }
 
     /**
-     * Calculates the correlation value.
+     * Centres and normalises every row of the given matrix to unit length, so
+     * as for the Pearson correlation of two rows to become their dot product.
+     * With biweight, the deviations from the row median are first weighted by
+     * their Tukey biweights (9 median absolute deviations wide), so as the dot
+     * product becomes the biweight midcorrelation; rows with a zero median
+     * absolute deviation fall back to the Pearson standardisation.
+     * Rows with no variance are flagged as invalid and always correlate to -1.
+     * The matrix may be the standardised data buffer itself (Spearman ranks),
+     * in which case the rows are standardised in place. The standardised data
+     * buffer is the heap data matrix if its raw data were moved to a mapped
+     * matrix, a new matrix otherwise.
      */
-    public float calculateCorrelation(int firstRow, int secondRow, float[] matrix)
+    private void standardiseRows(CorrelationMatrix matrix, boolean biweight)
     {
-        float denominator = (float) sqrt((sumColumns_X2_cacheArray[firstRow] - sumX_sumX2_cacheArray[firstRow]) * (sumColumns_X2_cacheArray[secondRow] - sumX_sumX2_cacheArray[secondRow]));
-        if ((denominator != 0.0f) && !(denominator != denominator)) // second check is to avoid an NaN problem, see definition of Float.isNaN()
+        if (standardisedDataMatrix == null)
+        {
+            standardisedDataMatrix = createCorrelationMatrix(totalRows, totalColumns);
+        }
+        standardisedValidRowsArray = new boolean[totalRows];
+
+        float[] rowValues = new float[totalColumns];
+        float[] standardisedRowValues = new float[totalColumns];
+        float[] sortedValues = (biweight) ? new float[totalColumns] : null;
+        for (int i = 0; i < totalRows; i++)
         {
-            int indexFirstRowDimension = firstRow * totalColumns;
-            int indexSecondRowDimension = secondRow * totalColumns;
-            float sumXY = 0.0f;
-            for (int i = 0; i < totalColumns; i++)
+            matrix.readRows(i, i + 1, rowValues, 0);
+            double center = 0.0;
+            for (int j = 0; j < totalColumns; j++)
+            {
+                center += rowValues[j];
+            }
+            center /= totalColumns;
+
+            double scale = 0.0;
+            if (biweight)
+            {
+                System.arraycopy(rowValues, 0, sortedValues, 0, totalColumns);
+                Arrays.sort(sortedValues);
+                double median = medianOfSorted(sortedValues);
+                for (int j = 0; j < totalColumns; j++)
+                {
+                    sortedValues[j] = (float) abs(rowValues[j] - median);
+                }
+                Arrays.sort(sortedValues);
+
+                scale = 9.0 * medianOfSorted(sortedValues);
+                if (scale > 0.0)
+                {
+                    center = median;
+                }
+            }
+
+            double sumSquares = 0.0;
+            for (int j = 0; j < totalColumns; j++)
+            {
+                double value = weightedDeviation(rowValues[j], center, scale);
+                sumSquares += (value * value);
+            }
+
+            double norm = sqrt(sumSquares);
+            standardisedValidRowsArray[i] = (norm != 0.0) && !Double.isNaN(norm) && !Double.isInfinite(norm);
+            for (int j = 0; j < totalColumns; j++)
             {
-                sumXY += (matrix[indexFirstRowDimension + i] * matrix[indexSecondRowDimension + i]);
+                standardisedRowValues[j] = (standardisedValidRowsArray[i]) ? (float) (weightedDeviation(rowValues[j], center, scale) / norm) : 0.0f;
             }
 
-            float result = ((totalColumns * sumXY) - (sumX_cacheArray[firstRow] * sumX_cacheArray[secondRow])) / denominator;
-            return (result > 1.0f) ? 1.0f : ((result < -1.0f) ? -1.0f : result);
+            standardisedDataMatrix.writeRows(i, i + 1, standardisedRowValues, 0);
         }
-        else
+    }
+
+    /**
+     * Returns the deviation of a value from the center, weighted by its Tukey
+     * biweight when the scale is positive.
+     */
+    private static double weightedDeviation(float value, double center, double scale)
+    {
+        double deviation = value - center;
+        if (scale <= 0.0)
+        {
+            return deviation;
+        }
+
+        double u = deviation / scale;
+        if (abs(u) >= 1.0)
         {
-            return -1.0f;
+            return 0.0;
         }
+
+        double weight = 1.0 - u * u;
+        return deviation * weight * weight;
+    }
+
+    private static double medianOfSorted(float[] sortedValues)
+    {
+        int middle = sortedValues.length / 2;
+        return ((sortedValues.length & 1) == 1) ? sortedValues[middle] : (sortedValues[middle - 1] + (double) sortedValues[middle]) / 2.0;
     }
 
     /**
@@ -846,22 +1199,26 @@ public final class CorrelationData
      */
     private void clearAllCachedDataStructures()
     {
-        sumX_cacheBuffer.clear();
-        sumX_cacheBuffer = null;
-        sumX_cacheArray = null;
-        sumX2_cacheArray = null;
-        sumX_sumX2_cacheBuffer.clear();
-        sumX_sumX2_cacheBuffer = null;
-        sumX_sumX2_cacheArray = null;
-        sumColumns_X2_cacheBuffer.clear();
-        sumColumns_X2_cacheBuffer = null;
-        sumColumns_X2_cacheArray = null;
-        if (correlationRanksBuffer != null)
+        if (standardisedDataMatrix != null)
         {
-            correlationRanksBuffer.clear();
-            correlationRanksBuffer = null;
-            correlationRanksArray = null;
+            if (isRawDataMatrixMapped)
+            {
+                // copy the raw data back to the heap data matrix, until now the standardised data buffer
+                CorrelationMatrix rawDataMatrix = correlationDataMatrix;
+                rawDataMatrix.readRows(0, totalRows, standardisedDataMatrix.array(), 0);
+                correlationDataMatrix = standardisedDataMatrix;
+                rawDataMatrix.close();
+                isRawDataMatrixMapped = false;
+            }
+            else
+            {
+                standardisedDataMatrix.close();
+            }
+            standardisedDataMatrix = null;
+            standardisedValidRowsArray = null;
         }
+        correlationMetric = null;
+        lshIndex = null;
 
         nf1 = null;
         nf2 = null;
@@ -870,23 +1227,6 @@ public final class CorrelationData
         System.gc();
     }
 
-    public void sumRows()
-    {
-        for (int row = 0; row < totalRows; row++)
-        {
-            sumX_cacheArray[row] = 0.0f;
-            sumX2_cacheArray[row] = 0.0f;
-
-            for (int column = 0; column < totalColumns; column++)
-            {
-                float value = getDataValue(row, column);
-
-                sumX_cacheArray[row] += value;
-                sumX2_cacheArray[row] += (value * value);
-            }
-        }
-    }
-
     /**
      * Gets the countsArray data structure.
      */
@@ -909,7 +1249,7 @@ public final class CorrelationData
      */
     public float getDataValue(int i, int j)
     {
-        return correlationDataArray[i * totalColumns + j];
+        return correlationDataMatrix.get(i, j);
     }
 
     /**
@@ -917,7 +1257,7 @@ public final class CorrelationData
      */
     public void setDataValue(int i, int j, float value)
     {
-        correlationDataArray[i * totalColumns + j] = value;
+        correlationDataMatrix.set(i, j, value);
     }
 
     /**
@@ -926,11 +1266,16 @@ public final class CorrelationData
     public float findGlobalMaxValueFromCorrelationDataArray()
     {
         float maxValue = Float.MIN_VALUE;
-        for (int i = 0; i < correlationDataArray.length; i++)
+        float[] rowValues = new float[totalColumns];
+        for (int i = 0; i < totalRows; i++)
         {
-            if (maxValue < correlationDataArray[i])
+            correlationDataMatrix.readRows(i, i + 1, rowValues, 0);
+            for (int j = 0; j < totalColumns; j++)
             {
-                maxValue = correlationDataArray[i];
+                if (maxValue < rowValues[j])
+                {
+                    maxValue = rowValues[j];
+                }
             }
         }
 
@@ -1387,17 +1732,20 @@ public final class CorrelationData
             sortedColumnMap = sortColumnAnnotation.getSortedColumnMap();
         }
 
+        float[] rowValues = new float[totalColumns];
+        correlationDataMatrix.readRows(row, row + 1, rowValues, 0);
+
         for (int column = 0; column < totalColumns; column++)
         {
             float value;
 
             if (sortedColumnMap != null)
             {
-                value = getDataValue(row, sortedColumnMap[column]);
+                value = rowValues[sortedColumnMap[column]];
             }
             else
             {
-                value = getDataValue(row, column);
+                value = rowValues[column];
             }
 
             switch (transformType)
@@ -1596,63 +1944,17 @@ public final class CorrelationData
         }
     }
     
+    /**
+     * Quantile normalises the columns with the QuantileNormaliser, in parallel
+     * on the ComputePool when N-Core correlation calculations are enabled.
+     */
     private void quantileNormalise(LayoutProgressBarDialog layoutProgressBarDialog)
     {
-        int[] quantileRanking = new int[correlationDataArray.length];
-        float[] sortedColumnValues = new float[correlationDataArray.length];
-        float[] meanValues = new float[totalRows];
-        for (int column = 0; column < totalColumns; column++)
-        {
-            // Sort the ColumnValues
-            List<Float> columnValues = new ArrayList<>();
-            for (int row = 0; row < totalRows; row++)
-            {
-                float value = getDataValue(row, column);
-                columnValues.add(value);
-            }
-            Collections.sort(columnValues);
-            Set<Float> uniqueSortedColumnValues = new TreeSet<>(columnValues);
-            
-            for (int row = 0; row < totalRows; row++)
-            {
-                // Set the ranking
-                float dataValue = getDataValue(row, column);
-                int i = 0;
-                for (Float columnValue : uniqueSortedColumnValues)
-                {
-                    if (columnValue == dataValue)
-                        quantileRanking[row * totalColumns + column] = i;
-                    i++;
-                }
-                // Copy Result to sortedColumns
-                sortedColumnValues[row * totalColumns + column] = columnValues.get(row);
-            }
-        }
-
-        // Set 
-        for (int row = 0; row < totalRows; row++)
-        {
-            float meanValue = 0;
-            String values = "";
-            for (int column = 0; column < totalColumns; column++)
-            {
-                meanValue += sortedColumnValues[row * totalColumns + column];
-                values += " " + sortedColumnValues[row * totalColumns + column];
-            }
-            meanValues[row] = meanValue/totalColumns;
-        }
-        
-        // Set the mean value based on the ranking
-        for (int row = 0; row < totalRows; row++)
-        {
-            for (int column = 0; column < totalColumns; column++)
-            {
-                int index = row * totalColumns + column;
-                setDataValue(row, column, meanValues[quantileRanking[index]]);
-            }
-        }
+        layoutProgressBarDialog.setText("Quantile Normalising");
+        boolean useComputePool = USE_MULTICORE_PROCESS && USE_CORRELATION_CALCULATION_N_CORE_PARALLELISM.get() && (NUMBER_OF_AVAILABLE_PROCESSORS > 1);
+        new QuantileNormaliser(correlationDataMatrix, layoutProgressBarDialog).normalise( (useComputePool) ? computePool : null );
     }
-    
+
     private void normalise(LayoutProgressBarDialog layoutProgressBarDialog)
     {
         for (int row = 0; row < totalRows; row++)
@@ -1807,9 +2109,6 @@ public final class CorrelationData
                 break;
         }
 
-        layoutProgressBarDialog.setText("Summing");
-        sumRows();
-
         layoutProgressBarDialog.endProgressBar();
     }
 }
@@ -15,7 +15,22 @@ public final class CorrelationEnvironment
     /**
     *  Available Correlation types.
     */
-    public static enum CorrelationTypes { PEARSON, SPEARMAN }
+    public static enum CorrelationTypes
+    {
+        PEARSON,
+        SPEARMAN,
+        KENDALL_TAU_B,
+        BIWEIGHT_MIDCORRELATION,
+        MUTUAL_INFORMATION;
+
+        /**
+        *  Whether the metric is the dot product of standardised rows, as needed by the approximate (LSH) network.
+        */
+        public boolean isStandardised()
+        {
+            return (this == PEARSON) || (this == SPEARMAN) || (this == BIWEIGHT_MIDCORRELATION);
+        }
+    }
     public static CorrelationTypes CURRENT_METRIC = CorrelationTypes.PEARSON;
 
     public static enum TransformType
@@ -55,5 +70,16 @@ public final class CorrelationEnvironment
     public static int         CORRELATION_DATA_FIRST_COLUMN = 0;
     public static int         CORRELATION_DATA_FIRST_ROW = 0;
     public static boolean     CORRELATION_DATA_TRANSPOSE = false;
+    public static boolean     CORRELATION_MEMORY_MAPPED_MATRICES = false;
+
+    /**
+    *  Approximate (sign random projection LSH) correlation network settings.
+    */
+    public static final int   DEFAULT_CORRELATION_LSH_TABLES = 32;
+    public static final int   DEFAULT_CORRELATION_LSH_BITS_PER_TABLE = 12;
+    public static final int   MAX_CORRELATION_LSH_BITS_PER_TABLE = 30;
+    public static boolean     CORRELATION_APPROXIMATE_LSH = false;
+    public static int         CORRELATION_LSH_TABLES = DEFAULT_CORRELATION_LSH_TABLES;
+    public static int         CORRELATION_LSH_BITS_PER_TABLE = DEFAULT_CORRELATION_LSH_BITS_PER_TABLE;
 
 }
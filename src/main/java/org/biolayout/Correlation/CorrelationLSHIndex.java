@@ -0,0 +1,271 @@
+package org.biolayout.Correlation;
+
+import java.util.*;
+import org.biolayout.CPUParallelism.Executors.*;
+
+/**
+ *
+ * The CorrelationLSHIndex is a sign random projection locality sensitive
+ * hashing index over standardised (centred, unit length) rows, for which the
+ * Pearson correlation equals the cosine similarity.
+ *
+ * Every table hashes a row to the signs of its projections on a number of
+ * random hyperplanes, so two rows with correlation r share a table bucket
+ * with probability (1 - acos(r) / pi) ^ bits. Rows sharing a bucket in any
+ * table are the candidate pairs, which then have to be verified exactly.
+ *
+ * Buckets of more than MAXIMUM_BUCKET_SIZE rows (skewed data) are split with
+ * SPLIT_BITS more random hyperplanes, up to MAXIMUM_SPLIT_LEVELS times, so as
+ * the candidates of a row stay bounded at the cost of the recall of the
+ * pairs the split buckets separate.
+ *
+ */
+public final class CorrelationLSHIndex
+{
+
+    /**
+     * Seed of the random hyperplanes, so as approximate networks are reproducible.
+     */
+    private static final long HYPERPLANES_SEED = 0x5EEDB10L;
+
+    /**
+     * Max number of rows of a bucket before it gets split.
+     */
+    static final int MAXIMUM_BUCKET_SIZE = 2048;
+
+    /**
+     * Number of random hyperplanes splitting an oversized bucket.
+     */
+    private static final int SPLIT_BITS = 8;
+
+    /**
+     * Max number of times a bucket gets split, as identical rows can never be split apart.
+     */
+    private static final int MAXIMUM_SPLIT_LEVELS = 2;
+
+    private final int totalTables;
+    private final boolean[] validRows;
+    private final int[][] sortedRows;
+    private final int[][] rowsPositions;
+    private final int[][] rowsBucketEnds;
+
+    /**
+     * Builds the index, hashing the rows with the given number of threads of the ComputePool.
+     */
+    public CorrelationLSHIndex(final CorrelationMatrix standardisedData, boolean[] validRows,
+            int totalTables, final int bitsPerTable, int numberOfThreads)
+    {
+        int totalRows = standardisedData.getTotalRows();
+        int totalColumns = standardisedData.getTotalColumns();
+        this.totalTables = totalTables;
+        this.validRows = validRows;
+
+        final float[] hyperplanes = createHyperplanes(HYPERPLANES_SEED, totalTables * bitsPerTable, totalColumns);
+        final int[][] signatures = new int[totalTables][totalRows];
+        hashRows(standardisedData, hyperplanes, signatures, totalColumns, bitsPerTable, numberOfThreads);
+
+        sortedRows = new int[totalTables][totalRows];
+        rowsPositions = new int[totalTables][totalRows];
+        rowsBucketEnds = new int[totalTables][totalRows];
+        long[] keys = new long[totalRows];
+        float[] rowValues = new float[totalColumns];
+        for (int table = 0; table < totalTables; table++)
+        {
+            for (int row = 0; row < totalRows; row++)
+            {
+                keys[row] = ((long) signatures[table][row] << 32) | row;
+            }
+            Arrays.sort(keys);
+
+            for (int position = 0; position < totalRows; position++)
+            {
+                sortedRows[table][position] = (int) keys[position];
+            }
+
+            int bucketStart = 0;
+            while (bucketStart < totalRows)
+            {
+                int bucketEnd = bucketStart + 1;
+                while ( (bucketEnd < totalRows) && ( (keys[bucketEnd] >>> 32) == (keys[bucketStart] >>> 32) ) )
+                {
+                    bucketEnd++;
+                }
+
+                indexBucket(standardisedData, rowValues, table, bucketStart, bucketEnd, 0);
+                bucketStart = bucketEnd;
+            }
+        }
+    }
+
+    /**
+     * Creates the given number of random Gaussian hyperplanes.
+     */
+    private static float[] createHyperplanes(long seed, int totalHyperplanes, int totalColumns)
+    {
+        float[] hyperplanes = new float[totalHyperplanes * totalColumns];
+        java.util.Random random = new java.util.Random(seed);
+        for (int i = 0; i < hyperplanes.length; i++)
+        {
+            hyperplanes[i] = (float) random.nextGaussian();
+        }
+
+        return hyperplanes;
+    }
+
+    /**
+     * Calculates the signature of a row, one bit per projection sign on the
+     * given number of hyperplanes from the given one.
+     */
+    private static int calculateSignature(float[] rowValues, float[] hyperplanes, int firstHyperplane, int totalBits, int totalColumns)
+    {
+        int signature = 0;
+        for (int bit = 0; bit < totalBits; bit++)
+        {
+            int indexHyperplaneDimension = (firstHyperplane + bit) * totalColumns;
+            float projection = 0.0f;
+            for (int k = 0; k < totalColumns; k++)
+            {
+                projection += (rowValues[k] * hyperplanes[indexHyperplaneDimension + k]);
+            }
+
+            signature = (signature << 1) | ((projection >= 0.0f) ? 1 : 0);
+        }
+
+        return signature;
+    }
+
+    /**
+     * Calculates the signatures of all rows, split in row blocks across the
+     * given number of threads of the ComputePool.
+     */
+    private static void hashRows(final CorrelationMatrix standardisedData, final float[] hyperplanes, final int[][] signatures,
+            final int totalColumns, final int bitsPerTable, int numberOfThreads)
+    {
+        final int totalTables = signatures.length;
+        final int totalRows = signatures[0].length;
+        final int rowsPerThread = (totalRows + numberOfThreads - 1) / numberOfThreads;
+        ComputePool.ParallelKernel kernel = new ComputePool.ParallelKernel()
+        {
+
+            @Override
+            public void run(int threadId)
+            {
+                int startRow = threadId * rowsPerThread;
+                int endRow = Math.min(startRow + rowsPerThread, totalRows);
+                float[] rowValues = new float[totalColumns];
+                for (int row = startRow; row < endRow; row++)
+                {
+                    standardisedData.readRows(row, row + 1, rowValues, 0);
+                    for (int table = 0; table < totalTables; table++)
+                    {
+                        signatures[table][row] = calculateSignature(rowValues, hyperplanes, table * bitsPerTable, bitsPerTable, totalColumns);
+                    }
+                }
+            }
+
+        };
+
+        if (numberOfThreads > 1)
+        {
+            ComputePool.getInstance().parallelFor(numberOfThreads, kernel);
+        }
+        else
+        {
+            kernel.run(0);
+        }
+    }
+
+    /**
+     * Stores the positions & the bucket end of the rows of the bucket at the
+     * sorted positions [bucketStart, bucketEnd) of the table, first splitting
+     * it if oversized. The rows of a bucket are kept in ascending order.
+     */
+    private void indexBucket(CorrelationMatrix standardisedData, float[] rowValues, int table, int bucketStart, int bucketEnd, int splitLevel)
+    {
+        int[] tableSortedRows = sortedRows[table];
+        if ( ( (bucketEnd - bucketStart) > MAXIMUM_BUCKET_SIZE ) && (splitLevel < MAXIMUM_SPLIT_LEVELS) )
+        {
+            int totalColumns = standardisedData.getTotalColumns();
+            float[] hyperplanes = createHyperplanes(HYPERPLANES_SEED + 1 + table * MAXIMUM_SPLIT_LEVELS + splitLevel, SPLIT_BITS, totalColumns);
+            long[] keys = new long[bucketEnd - bucketStart];
+            for (int position = bucketStart; position < bucketEnd; position++)
+            {
+                int row = tableSortedRows[position];
+                standardisedData.readRows(row, row + 1, rowValues, 0);
+                keys[position - bucketStart] = ((long) calculateSignature(rowValues, hyperplanes, 0, SPLIT_BITS, totalColumns) << 32) | row;
+            }
+            Arrays.sort(keys);
+
+            int subBucketStart = 0;
+            while (subBucketStart < keys.length)
+            {
+                int subBucketEnd = subBucketStart + 1;
+                while ( (subBucketEnd < keys.length) && ( (keys[subBucketEnd] >>> 32) == (keys[subBucketStart] >>> 32) ) )
+                {
+                    subBucketEnd++;
+                }
+
+                for (int k = subBucketStart; k < subBucketEnd; k++)
+                {
+                    tableSortedRows[bucketStart + k] = (int) keys[k];
+                }
+
+                indexBucket(standardisedData, rowValues, table, bucketStart + subBucketStart, bucketStart + subBucketEnd, splitLevel + 1);
+                subBucketStart = subBucketEnd;
+            }
+
+            return;
+        }
+
+        for (int position = bucketStart; position < bucketEnd; position++)
+        {
+            rowsPositions[table][tableSortedRows[position]] = position;
+            rowsBucketEnds[table][tableSortedRows[position]] = bucketEnd;
+        }
+    }
+
+    /**
+     * Collects the candidate rows after the given row that share a bucket
+     * with it in any table, these being the rest of its bucket as the rows of
+     * a bucket are in ascending order. The stamps array has to be of totalRows
+     * size, be initialized to -1 and be used by a single thread. Returns the
+     * number of candidates stored in the candidates array.
+     */
+    public int findCandidates(int row, int[] stamps, int[] candidates)
+    {
+        if (!validRows[row])
+        {
+            return 0;
+        }
+
+        int totalCandidates = 0;
+        for (int table = 0; table < totalTables; table++)
+        {
+            int[] tableSortedRows = sortedRows[table];
+            int bucketEnd = rowsBucketEnds[table][row];
+            for (int position = rowsPositions[table][row] + 1; position < bucketEnd; position++)
+            {
+                int otherRow = tableSortedRows[position];
+                if ((stamps[otherRow] != row) && validRows[otherRow])
+                {
+                    stamps[otherRow] = row;
+                    candidates[totalCandidates++] = otherRow;
+                }
+            }
+        }
+
+        return totalCandidates;
+    }
+
+    /**
+     * Returns the probability of two rows with the given correlation to be
+     * found as candidates with the given index settings.
+     */
+    public static double expectedRecall(double correlation, int totalTables, int bitsPerTable)
+    {
+        double collisionProbability = Math.pow(1.0 - Math.acos(Math.max(-1.0, Math.min(1.0, correlation))) / Math.PI, bitsPerTable);
+        return 1.0 - Math.pow(1.0 - collisionProbability, totalTables);
+    }
+
+
+}
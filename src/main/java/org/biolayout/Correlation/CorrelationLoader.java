@@ -62,16 +62,6 @@ public final class CorrelationLoader
         }
     }
 
-    private void setReasonForFailure(int row, int column, String reason)
-    {
-        if (row >= 0 && column >= 0)
-        {
-            reasonForFailure += "At row " + (row + 1) + ", column " + (column + 1) + ":\n";
-        }
-
-        reasonForFailure += reason;
-    }
-
     public boolean parse(LayoutFrame layoutFrame)
     {
         LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
@@ -81,7 +71,7 @@ public final class CorrelationLoader
 
         ParseProgressIndicator ppi = new ParseProgressIndicator(layoutProgressBarDialog);
 
-        TextDelimitedMatrix tdm;
+        TextDelimitedFloatMatrix tdfm;
         int row = -1;
         int column = -1;
 
@@ -89,23 +79,18 @@ public final class CorrelationLoader
         {
             reasonForFailure = "";
 
-            String absFileName = file.getAbsolutePath();
-            String ext = absFileName.substring(absFileName.lastIndexOf(".") + 1, absFileName.length()).toUpperCase();
-            boolean tabDelimited = ext.equals(SupportedInputFileTypes.EXPRESSION.toString());
-            String delimiter = tabDelimited ? "\t" : "";
-            tdm = new TextDelimitedMatrix(file, ppi, delimiter);
+            tdfm = new TextDelimitedFloatMatrix(file, ppi, delimiterOf(file), firstDataColumn, firstDataRow, transpose);
 
-            layoutProgressBarDialog.setText("Parsing " + tdm.numLines() + " lines");
+            layoutProgressBarDialog.setText("Scanning lines");
 
-            if (!tdm.parse())
+            if (!tdfm.scan())
             {
-                reasonForFailure = tdm.reasonForFailure;
+                reasonForFailure = tdfm.reasonForFailure;
                 return false;
             }
 
-            tdm.setTranspose(transpose);
-            int numColumns = tdm.numColumns();
-            int numRows = tdm.numRows();
+            int numColumns = tdfm.numColumns();
+            int numRows = tdfm.numRows();
 
             // - 1 because the first column is always the row ID
             rowAnnotationLabels = new String[firstDataColumn - 1];
@@ -115,6 +100,22 @@ public final class CorrelationLoader
                     numColumns - firstDataColumn,
                     transpose);
 
+            layoutProgressBarDialog.setText("Parsing " + tdfm.numLines() + " lines");
+
+            // the data cells are parsed straight into the correlation data, in parallel
+            if (!tdfm.parse(new TextDelimitedFloatMatrix.FloatMatrix()
+            {
+                @Override
+                public void setDataValue(int dataRow, int dataColumn, float value)
+                {
+                    correlationData.setDataValue(dataRow, dataColumn, value);
+                }
+            }))
+            {
+                reasonForFailure = tdfm.reasonForFailure;
+                return false;
+            }
+
             layoutProgressBarDialog.setText("Loading data");
 
             for (row = 0; row < numRows; row++)
@@ -122,9 +123,11 @@ public final class CorrelationLoader
                 int percent = (100 * row) / numRows;
                 layoutProgressBarDialog.incrementProgress(percent);
 
-                for (column = 0; column < numColumns; column++)
+                // only the annotation cells are left to load
+                int numAnnotationColumns = (row < firstDataRow) ? numColumns : firstDataColumn;
+                for (column = 0; column < numAnnotationColumns; column++)
                 {
-                    String value = tdm.valueAt(column, row);
+                    String value = tdfm.valueAt(column, row);
                     int dataColumn = column - firstDataColumn;
                     int dataRow = row - firstDataRow;
 
@@ -168,37 +171,9 @@ public final class CorrelationLoader
                             // Row names
                             correlationData.setRowID(dataRow, value);
                         }
-                        else if (column >= firstDataColumn)
-                        {
-                            // The data itself
-                            float currentValue = Float.parseFloat(value.replace(',', '.'));
-                            correlationData.setDataValue(dataRow, dataColumn, currentValue);
-                        }
                     }
                 }
             }
-
-            correlationData.sumRows();
-        }
-        catch (NumberFormatException nfe)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("NumberFormatException in parse():\n" + nfe.getMessage());
-            }
-
-            setReasonForFailure(row, column, nfe.toString());
-            return false;
-        }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("IOException in parse():\n" + ioe.getMessage());
-            }
-
-            setReasonForFailure(row, column, ioe.toString());
-            return false;
         }
         finally
         {
@@ -217,29 +192,30 @@ public final class CorrelationLoader
 
         ParseProgressIndicator ppi = new ParseProgressIndicator(layoutProgressBarDialog);
 
-        TextDelimitedMatrix tdm;
+        TextDelimitedFloatMatrix tdfm;
 
         int chipGeneCount = 0;
 
         try
         {
-            String absFileName = file.getAbsolutePath();
-            String ext = absFileName.substring(absFileName.lastIndexOf(".") + 1, absFileName.length()).toUpperCase();
-            boolean tabDelimited = ext.equals(SupportedInputFileTypes.EXPRESSION.toString());
-            String delimiter = tabDelimited ? "\t" : "";
-            tdm = new TextDelimitedMatrix(file, ppi, delimiter);
+            tdfm = new TextDelimitedFloatMatrix(file, ppi, delimiterOf(file), firstDataColumn, firstDataRow, transpose);
+
+            if (!tdfm.scan())
+            {
+                reasonForFailure = tdfm.reasonForFailure;
+                return false;
+            }
 
-            layoutProgressBarDialog.setText("Parsing " + tdm.numLines() + " lines");
+            layoutProgressBarDialog.setText("Parsing " + tdfm.numLines() + " lines");
 
-            if (!tdm.parse())
+            // no FloatMatrix, so as only the annotation cells are parsed
+            if (!tdfm.parse(null))
             {
-                reasonForFailure = tdm.reasonForFailure;
+                reasonForFailure = tdfm.reasonForFailure;
                 return false;
             }
 
-            tdm.setTranspose(transpose);
-            int numColumns = tdm.numColumns();
-            int numRows = tdm.numRows();
+            int numRows = tdfm.numRows();
 
             layoutProgressBarDialog.setText("Loading annotations");
 
@@ -252,7 +228,7 @@ public final class CorrelationLoader
                 chipGeneCount++;
                 for (int column = 0; column < firstDataColumn; column++)
                 {
-                    String value = tdm.valueAt(column, row);
+                    String value = tdfm.valueAt(column, row);
                     int dataColumn = column - firstDataColumn;
                     int dataRow = row - firstDataRow;
 
@@ -282,15 +258,6 @@ public final class CorrelationLoader
                 }
             }
         }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("IOException in parseAnnotations():\n" + ioe.getMessage());
-            }
-
-            return false;
-        }
         finally
         {
             AnnotationTypeManagerBG.getInstanceSingleton().setChipGeneCount(chipGeneCount);
@@ -300,6 +267,18 @@ public final class CorrelationLoader
         return true;
     }
 
+    /**
+     * Expression files are tab delimited, anything else is CSV.
+     */
+    private String delimiterOf(File file)
+    {
+        String absFileName = file.getAbsolutePath();
+        String ext = absFileName.substring(absFileName.lastIndexOf(".") + 1, absFileName.length()).toUpperCase();
+        boolean tabDelimited = ext.equals(SupportedInputFileTypes.EXPRESSION.toString());
+
+        return tabDelimited ? "\t" : "";
+    }
+
     private String cleanString(String string)
     {
         // This is apparently marginally faster than replaceAll("[\"\']", " ")
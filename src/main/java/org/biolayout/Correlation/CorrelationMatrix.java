@@ -0,0 +1,200 @@
+package org.biolayout.Correlation;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ *
+ * The CorrelationMatrix is a row major float matrix, either on the heap or
+ * memory-mapped from a temporary file so as matrices above int indexing or
+ * the heap size can be processed. A mapped matrix is split in windows of
+ * whole rows, each addressed with int offsets, while the file offsets are
+ * long. Rows are read and written in tiles, so the calculations work on heap
+ * copies of consecutive rows at near sequential I/O speed.
+ *
+ */
+public final class CorrelationMatrix
+{
+
+    /**
+     * Max size of a mapped window of rows.
+     */
+    private static final long MAX_MAPPED_WINDOW_SIZE = (1L << 30);
+
+    private final int totalRows;
+    private final int totalColumns;
+    private final float[] array;
+    private final File file;
+    private final int rowsPerWindow;
+    private final FloatBuffer[] windows;
+
+    /**
+     * Allocates a heap matrix.
+     */
+    public CorrelationMatrix(int totalRows, int totalColumns)
+    {
+        this.totalRows = totalRows;
+        this.totalColumns = totalColumns;
+        this.array = FloatBuffer.allocate(totalRows * totalColumns).array();
+        this.file = null;
+        this.rowsPerWindow = totalRows;
+        this.windows = null;
+    }
+
+    /**
+     * Creates a matrix mapped from a new temporary file in the given directory
+     * (the default temporary directory when null).
+     */
+    public CorrelationMatrix(int totalRows, int totalColumns, File directory) throws IOException
+    {
+        this.totalRows = totalRows;
+        this.totalColumns = totalColumns;
+        this.array = null;
+        this.file = File.createTempFile("correlationMatrix", ".tmp", directory);
+        this.file.deleteOnExit();
+
+        long rowSize = 4L * Math.max(1, totalColumns);
+        this.rowsPerWindow = (int) Math.max(1, Math.min(totalRows, MAX_MAPPED_WINDOW_SIZE / rowSize));
+        int totalWindows = (totalRows + rowsPerWindow - 1) / rowsPerWindow;
+        this.windows = new FloatBuffer[totalWindows];
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            for (int window = 0; window < totalWindows; window++)
+            {
+                long windowStartRow = (long) window * rowsPerWindow;
+                long windowRows = Math.min(rowsPerWindow, totalRows - windowStartRow);
+                // the mapping stays valid after the channel is closed
+                windows[window] = channel.map(FileChannel.MapMode.READ_WRITE, windowStartRow * rowSize, windowRows * rowSize)
+                        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            }
+        }
+        catch (IOException ioe)
+        {
+            file.delete();
+            throw ioe;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    public int getTotalRows()
+    {
+        return totalRows;
+    }
+
+    public int getTotalColumns()
+    {
+        return totalColumns;
+    }
+
+    /**
+     * Whether the matrix is memory-mapped, otherwise array() holds its values.
+     */
+    public boolean isMemoryMapped()
+    {
+        return (array == null);
+    }
+
+    /**
+     * Gets the row major array of a heap matrix, null if memory-mapped.
+     */
+    public float[] array()
+    {
+        return array;
+    }
+
+    public float get(int row, int column)
+    {
+        if (array != null)
+        {
+            return array[row * totalColumns + column];
+        }
+
+        return windows[row / rowsPerWindow].get((row % rowsPerWindow) * totalColumns + column);
+    }
+
+    public void set(int row, int column, float value)
+    {
+        if (array != null)
+        {
+            array[row * totalColumns + column] = value;
+        }
+        else
+        {
+            windows[row / rowsPerWindow].put((row % rowsPerWindow) * totalColumns + column, value);
+        }
+    }
+
+    /**
+     * Reads the rows [startRow, endRow) into the destination array, starting
+     * from destinationOffset. Safe to call from many threads at once.
+     */
+    public void readRows(int startRow, int endRow, float[] destination, int destinationOffset)
+    {
+        if (array != null)
+        {
+            System.arraycopy(array, startRow * totalColumns, destination, destinationOffset, (endRow - startRow) * totalColumns);
+            return;
+        }
+
+        for (int row = startRow; row < endRow; )
+        {
+            int window = row / rowsPerWindow;
+            int windowEndRow = Math.min(endRow, (window + 1) * rowsPerWindow);
+            FloatBuffer windowBuffer = windows[window].duplicate();
+            windowBuffer.position((row % rowsPerWindow) * totalColumns);
+            windowBuffer.get(destination, destinationOffset, (windowEndRow - row) * totalColumns);
+            destinationOffset += (windowEndRow - row) * totalColumns;
+            row = windowEndRow;
+        }
+    }
+
+    /**
+     * Writes the rows [startRow, endRow) from the source array, starting from
+     * sourceOffset. Threads may write different rows at once.
+     */
+    public void writeRows(int startRow, int endRow, float[] source, int sourceOffset)
+    {
+        if (array != null)
+        {
+            System.arraycopy(source, sourceOffset, array, startRow * totalColumns, (endRow - startRow) * totalColumns);
+            return;
+        }
+
+        for (int row = startRow; row < endRow; )
+        {
+            int window = row / rowsPerWindow;
+            int windowEndRow = Math.min(endRow, (window + 1) * rowsPerWindow);
+            FloatBuffer windowBuffer = windows[window].duplicate();
+            windowBuffer.position((row % rowsPerWindow) * totalColumns);
+            windowBuffer.put(source, sourceOffset, (windowEndRow - row) * totalColumns);
+            sourceOffset += (windowEndRow - row) * totalColumns;
+            row = windowEndRow;
+        }
+    }
+
+    /**
+     * Releases the matrix, deleting the file of a memory-mapped one (or on
+     * exit, for platforms not deleting files still mapped).
+     */
+    public void close()
+    {
+        if (file != null)
+        {
+            for (int window = 0; window < windows.length; window++)
+            {
+                windows[window] = null;
+            }
+
+            file.delete();
+        }
+    }
+
+
+}
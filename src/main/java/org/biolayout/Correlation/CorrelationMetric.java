@@ -0,0 +1,37 @@
+package org.biolayout.Correlation;
+
+/**
+ *
+ * The CorrelationMetric is the pairwise row similarity calculated by the
+ * correlation network builder. Implementations precompute their per row data
+ * on construction and are then used by the row band scheduler of
+ * CorrelationData, so every metric runs on the same N-Core tiles and is
+ * written to the same cache format.
+ *
+ * Values are in [-1, 1], rows the metric is undefined for correlate to -1.
+ *
+ */
+public interface CorrelationMetric
+{
+
+    /**
+     * Returns an instance of the metric for a single calculation thread,
+     * sharing the precomputed row data. Metrics without per calculation
+     * scratch space may return themselves.
+     */
+    public CorrelationMetric threadInstance();
+
+    /**
+     * Calculates the values of the given row against the rows [fromRow, toRow)
+     * and stores them consecutively in the results array, starting from
+     * resultsOffset.
+     */
+    public void calculateRow(int row, int fromRow, int toRow, float[] results, int resultsOffset);
+
+    /**
+     * Calculates the value of two rows.
+     */
+    public float calculate(int row, int otherRow);
+
+
+}
@@ -4,7 +4,9 @@ import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
 import javax.swing.*;
+import java.text.*;
 import java.util.Stack;
+import org.biolayout.Correlation.CorrelationLSHIndex;
 import org.biolayout.Utils.*;
 import static org.biolayout.Environment.GlobalEnvironment.*;
 import static org.biolayout.Correlation.CorrelationEnvironment.*;
@@ -34,6 +36,10 @@ public final class CorrelationLoaderDialog extends JDialog implements ActionList
     private JComboBox<String> normalisationComboBox = null;
     private JEditorPane textArea = null;
     private JCheckBox saveCorrelationTextFileCheckBox = null;
+    private JCheckBox approximateCheckBox = null;
+    private WholeNumberField lshTablesField = null;
+    private WholeNumberField lshBitsPerTableField = null;
+    private JLabel lshExpectedRecallLabel = null;
     private File correlationFile = null;
 
     private boolean proceed = false;
@@ -167,6 +173,65 @@ public final class CorrelationLoaderDialog extends JDialog implements ActionList
         return tab;
     }
 
+    private JPanel approximateTab()
+    {
+        JPanel tab = new JPanel(true);
+        JPanel tabLine1 = new JPanel();
+        JPanel tabLine2 = new JPanel();
+
+        // Approximate correlation network
+        approximateCheckBox = new JCheckBox();
+        approximateCheckBox.setText("Approximate Correlation Network (LSH)");
+        approximateCheckBox.setToolTipText("Only calculate the correlation of row pairs found by Locality Sensitive Hashing, for very large data sets");
+        approximateCheckBox.setSelected(CORRELATION_APPROXIMATE_LSH);
+        tabLine1.add(approximateCheckBox);
+
+        // More tables increase recall, more bits per table increase speed
+        lshTablesField = new WholeNumberField(CORRELATION_LSH_TABLES, 4);
+        lshTablesField.setToolTipText("Hash Tables (more tables increase recall)");
+        tabLine2.add(new JLabel("Hash Tables:"));
+        tabLine2.add(lshTablesField);
+        lshBitsPerTableField = new WholeNumberField(CORRELATION_LSH_BITS_PER_TABLE, 4);
+        lshBitsPerTableField.setToolTipText("Bits Per Hash Table (more bits increase speed)");
+        tabLine2.add(new JLabel("Bits Per Table:"));
+        tabLine2.add(lshBitsPerTableField);
+        lshExpectedRecallLabel = new JLabel();
+        tabLine2.add(lshExpectedRecallLabel);
+
+        KeyAdapter updateExpectedRecall = new KeyAdapter()
+        {
+            @Override
+            public void keyReleased(KeyEvent e)
+            {
+                updateExpectedRecallLabel();
+            }
+        };
+        lshTablesField.addKeyListener(updateExpectedRecall);
+        lshBitsPerTableField.addKeyListener(updateExpectedRecall);
+        correlationField.addKeyListener(updateExpectedRecall);
+        updateExpectedRecallLabel();
+
+        tab.setLayout(new BoxLayout(tab, BoxLayout.PAGE_AXIS));
+        tab.add(tabLine1);
+        tab.add(tabLine2);
+
+        return tab;
+    }
+
+    private void updateExpectedRecallLabel()
+    {
+        if ( correlationField.isEmpty() || lshTablesField.isEmpty() || lshBitsPerTableField.isEmpty() )
+        {
+            lshExpectedRecallLabel.setText("");
+            return;
+        }
+
+        NumberFormat nf = NumberFormat.getPercentInstance();
+        nf.setMaximumFractionDigits(1);
+        lshExpectedRecallLabel.setText( "Expected Recall: " + nf.format( CorrelationLSHIndex.expectedRecall( correlationField.getValue(),
+                lshTablesField.getValue(), lshBitsPerTableField.getValue() ) ) );
+    }
+
     private void initComponents()
     {
         JTabbedPane tabbedPane = new JTabbedPane();
@@ -178,6 +243,7 @@ public final class CorrelationLoaderDialog extends JDialog implements ActionList
 
         tabbedPane.addTab("General", generalTab());
         tabbedPane.addTab("Preprocessing", preprocessingTab());
+        tabbedPane.addTab("Approximate", approximateTab());
 
         centrePanel.setLayout(new BorderLayout());
         textArea = new JEditorPane("text/html", "");
@@ -229,6 +295,24 @@ public final class CorrelationLoaderDialog extends JDialog implements ActionList
                     return;
                 }
 
+                if ( approximateCheckBox.isSelected() )
+                {
+                    if ( lshTablesField.isEmpty() || (lshTablesField.getValue() <= 0) )
+                    {
+                        JOptionPane.showMessageDialog(frame, "The number of Hash Tables must be larger than 0.\nPlease try inserting a number of Hash Tables (default " + DEFAULT_CORRELATION_LSH_TABLES + ").", "Invalid number of Hash Tables!", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+                    else if ( lshBitsPerTableField.isEmpty() || (lshBitsPerTableField.getValue() <= 0) || (lshBitsPerTableField.getValue() > MAX_CORRELATION_LSH_BITS_PER_TABLE) )
+                    {
+                        JOptionPane.showMessageDialog(frame, "The Bits Per Table must be between 1 and " + MAX_CORRELATION_LSH_BITS_PER_TABLE + ".\nPlease try inserting a number of Bits Per Table (default " + DEFAULT_CORRELATION_LSH_BITS_PER_TABLE + ").", "Invalid number of Bits Per Table!", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+
+                    CORRELATION_LSH_TABLES = lshTablesField.getValue();
+                    CORRELATION_LSH_BITS_PER_TABLE = lshBitsPerTableField.getValue();
+                }
+
+                CORRELATION_APPROXIMATE_LSH = approximateCheckBox.isSelected();
                 CURRENT_METRIC = CorrelationTypes.values()[correlationMetric.getSelectedIndex()];
                 CURRENT_SCALE_TRANSFORM = ScaleTransformType.values()[scaleTransformComboBox.getSelectedIndex()];
                 CURRENT_NORMALISATION = NormalisationType.values()[normalisationComboBox.getSelectedIndex()];
@@ -0,0 +1,225 @@
+package org.biolayout.Correlation;
+
+import java.util.*;
+import static java.lang.Math.*;
+
+/**
+ *
+ * The KendallTauCorrelationMetric calculates the Kendall tau-b rank
+ * correlation with Knight's O(m log m) algorithm: the columns are put in the
+ * order of the first row (ties broken by the second row), after which the
+ * discordant pairs are the swaps of a merge sort on the second row.
+ *
+ * The column order and the dense ranks of every row, as well as the number
+ * of tied pairs of every row, are precomputed once, so a pair of rows only
+ * needs the sort of the tied groups of the first row and the merge sort.
+ *
+ */
+public final class KendallTauCorrelationMetric implements CorrelationMetric
+{
+
+    private final int totalColumns;
+    private final int[] rowsOrders;
+    private final int[] rowsRanks;
+    private final long[] rowsTiedPairs;
+    private final boolean[] rowsHaveTies;
+    private final long totalPairs;
+
+    private final int[] otherRanks;
+    private final int[] mergeBuffer;
+
+    public KendallTauCorrelationMetric(CorrelationMatrix data)
+    {
+        int totalRows = data.getTotalRows();
+        int totalColumns = data.getTotalColumns();
+        this.totalColumns = totalColumns;
+        this.rowsOrders = new int[totalRows * totalColumns];
+        this.rowsRanks = new int[totalRows * totalColumns];
+        this.rowsTiedPairs = new long[totalRows];
+        this.rowsHaveTies = new boolean[totalRows];
+        this.totalPairs = ((long) totalColumns * (totalColumns - 1)) / 2;
+
+        long[] sortKeys = new long[totalColumns];
+        float[] rowValues = new float[totalColumns];
+        for (int row = 0; row < totalRows; row++)
+        {
+            int indexRowDimension = row * totalColumns;
+            data.readRows(row, row + 1, rowValues, 0);
+            for (int column = 0; column < totalColumns; column++)
+            {
+                int bits = Float.floatToIntBits(rowValues[column]);
+                bits ^= ( (bits >> 31) & 0x7FFFFFFF ); // flip negative values so as the signed int order matches the float order
+                sortKeys[column] = ( (long) bits << 32 ) | column;
+            }
+
+            Arrays.sort(sortKeys);
+
+            int rank = -1;
+            int tieLength = 0;
+            float previousValue = 0.0f;
+            for (int k = 0; k < totalColumns; k++)
+            {
+                int column = (int) sortKeys[k];
+                float value = rowValues[column];
+                if ( (k == 0) || (value != previousValue) )
+                {
+                    rowsTiedPairs[row] += ( (long) tieLength * (tieLength - 1) ) / 2;
+                    tieLength = 0;
+                    rank++;
+                }
+
+                tieLength++;
+                previousValue = value;
+                rowsOrders[indexRowDimension + k] = column;
+                rowsRanks[indexRowDimension + column] = rank;
+            }
+
+            rowsTiedPairs[row] += ( (long) tieLength * (tieLength - 1) ) / 2;
+            rowsHaveTies[row] = (rank + 1) < totalColumns;
+        }
+
+        this.otherRanks = new int[totalColumns];
+        this.mergeBuffer = new int[totalColumns];
+    }
+
+    private KendallTauCorrelationMetric(KendallTauCorrelationMetric metric)
+    {
+        this.totalColumns = metric.totalColumns;
+        this.rowsOrders = metric.rowsOrders;
+        this.rowsRanks = metric.rowsRanks;
+        this.rowsTiedPairs = metric.rowsTiedPairs;
+        this.rowsHaveTies = metric.rowsHaveTies;
+        this.totalPairs = metric.totalPairs;
+
+        this.otherRanks = new int[totalColumns];
+        this.mergeBuffer = new int[totalColumns];
+    }
+
+    /**
+     * Every thread needs its own ranks and merge buffers.
+     */
+    @Override
+    public CorrelationMetric threadInstance()
+    {
+        return new KendallTauCorrelationMetric(this);
+    }
+
+    @Override
+    public void calculateRow(int row, int fromRow, int toRow, float[] results, int resultsOffset)
+    {
+        for (int j = fromRow; j < toRow; j++)
+        {
+            results[resultsOffset++] = calculate(row, j);
+        }
+    }
+
+    @Override
+    public float calculate(int row, int otherRow)
+    {
+        long rowTiedPairs = rowsTiedPairs[row];
+        long otherRowTiedPairs = rowsTiedPairs[otherRow];
+        if ( (rowTiedPairs == totalPairs) || (otherRowTiedPairs == totalPairs) )
+        {
+            return -1.0f;
+        }
+
+        int indexRowDimension = row * totalColumns;
+        int indexOtherRowDimension = otherRow * totalColumns;
+        for (int k = 0; k < totalColumns; k++)
+        {
+            otherRanks[k] = rowsRanks[indexOtherRowDimension + rowsOrders[indexRowDimension + k]];
+        }
+
+        long jointTiedPairs = 0;
+        if (rowsHaveTies[row])
+        {
+            // order the tied groups of the row by the other row, counting the pairs tied in both
+            int groupStart = 0;
+            for (int k = 1; k <= totalColumns; k++)
+            {
+                if ( (k == totalColumns) || (rowsRanks[indexRowDimension + rowsOrders[indexRowDimension + k]] != rowsRanks[indexRowDimension + rowsOrders[indexRowDimension + groupStart]]) )
+                {
+                    if ( (k - groupStart) > 1 )
+                    {
+                        Arrays.sort(otherRanks, groupStart, k);
+                        int tieLength = 1;
+                        for (int l = groupStart + 1; l < k; l++)
+                        {
+                            if (otherRanks[l] == otherRanks[l - 1])
+                            {
+                                tieLength++;
+                            }
+                            else
+                            {
+                                jointTiedPairs += ( (long) tieLength * (tieLength - 1) ) / 2;
+                                tieLength = 1;
+                            }
+                        }
+                        jointTiedPairs += ( (long) tieLength * (tieLength - 1) ) / 2;
+                    }
+
+                    groupStart = k;
+                }
+            }
+        }
+
+        long discordantPairs = countMergeSortSwaps();
+        double numerator = totalPairs - rowTiedPairs - otherRowTiedPairs + jointTiedPairs - 2 * discordantPairs;
+        double denominator = sqrt( (double) (totalPairs - rowTiedPairs) * (double) (totalPairs - otherRowTiedPairs) );
+        float result = (float) (numerator / denominator);
+
+        return (result > 1.0f) ? 1.0f : ((result < -1.0f) ? -1.0f : result);
+    }
+
+    /**
+     * Sorts the otherRanks array with a bottom-up merge sort and returns the
+     * number of swaps, the pairs in strictly descending order.
+     */
+    private long countMergeSortSwaps()
+    {
+        int[] source = otherRanks;
+        int[] destination = mergeBuffer;
+        long swaps = 0;
+        for (int width = 1; width < totalColumns; width <<= 1)
+        {
+            for (int start = 0; start < totalColumns; start += (width << 1))
+            {
+                int middle = min(start + width, totalColumns);
+                int end = min(start + (width << 1), totalColumns);
+                int left = start;
+                int right = middle;
+                int k = start;
+                while ( (left < middle) && (right < end) )
+                {
+                    if (source[right] < source[left])
+                    {
+                        swaps += (middle - left);
+                        destination[k++] = source[right++];
+                    }
+                    else
+                    {
+                        destination[k++] = source[left++];
+                    }
+                }
+
+                while (left < middle)
+                {
+                    destination[k++] = source[left++];
+                }
+
+                while (right < end)
+                {
+                    destination[k++] = source[right++];
+                }
+            }
+
+            int[] swap = source;
+            source = destination;
+            destination = swap;
+        }
+
+        return swaps;
+    }
+
+
+}
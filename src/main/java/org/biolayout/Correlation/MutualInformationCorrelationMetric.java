@@ -0,0 +1,166 @@
+package org.biolayout.Correlation;
+
+import java.util.*;
+import static java.lang.Math.*;
+
+/**
+ *
+ * The MutualInformationCorrelationMetric calculates the mutual information of
+ * two rows from equal width bins of their values, reported as the
+ * information coefficient of correlation sqrt(1 - exp(-2 * MI)), which is in
+ * [0, 1] and equals |r| for normally distributed rows, so as the usual
+ * correlation thresholds keep their meaning.
+ *
+ * The bin codes and the entropy of every row are precomputed once, so a pair
+ * of rows only needs the counting of its joint histogram. Rows with NaN or
+ * infinite values are not binned and are never correlated.
+ *
+ */
+public final class MutualInformationCorrelationMetric implements CorrelationMetric
+{
+
+    /**
+     * Upper limit of the bins per row, so as the bin codes fit in a byte.
+     */
+    private static final int MAX_BINS = 64;
+
+    private final int totalColumns;
+    private final int totalBins;
+    private final byte[] rowsBinCodes;
+    private final double[] rowsEntropies;
+    private final double[] countsLogCounts;
+
+    private final int[] jointCounts;
+
+    public MutualInformationCorrelationMetric(CorrelationMatrix data)
+    {
+        int totalRows = data.getTotalRows();
+        int totalColumns = data.getTotalColumns();
+        this.totalColumns = totalColumns;
+        // cube root rule for the number of bins
+        this.totalBins = max(2, min(MAX_BINS, (int) round(cbrt(totalColumns))));
+        this.rowsBinCodes = new byte[totalRows * totalColumns];
+        this.rowsEntropies = new double[totalRows];
+        this.countsLogCounts = new double[totalColumns + 1];
+        for (int count = 1; count <= totalColumns; count++)
+        {
+            countsLogCounts[count] = count * log(count);
+        }
+
+        int[] counts = new int[totalBins];
+        float[] rowValues = new float[totalColumns];
+        for (int row = 0; row < totalRows; row++)
+        {
+            int indexRowDimension = row * totalColumns;
+            data.readRows(row, row + 1, rowValues, 0);
+            float minValue = Float.POSITIVE_INFINITY;
+            float maxValue = Float.NEGATIVE_INFINITY;
+            boolean isValidRow = true;
+            for (int column = 0; column < totalColumns; column++)
+            {
+                float value = rowValues[column];
+                if ( Float.isNaN(value) || Float.isInfinite(value) )
+                {
+                    isValidRow = false;
+                    break;
+                }
+
+                minValue = min(minValue, value);
+                maxValue = max(maxValue, value);
+            }
+
+            // rows with NaN or infinite values are invalid like in the standardised metrics, their zero entropy never correlating them
+            if (!isValidRow)
+            {
+                rowsEntropies[row] = 0.0;
+                continue;
+            }
+
+            double binScale = (maxValue > minValue) ? totalBins / ((double) maxValue - minValue) : 0.0;
+            for (int column = 0; column < totalColumns; column++)
+            {
+                int bin = (int) ((rowValues[column] - (double) minValue) * binScale);
+                bin = (bin < 0) ? 0 : ((bin >= totalBins) ? totalBins - 1 : bin);
+                rowsBinCodes[indexRowDimension + column] = (byte) bin;
+                counts[bin]++;
+            }
+
+            rowsEntropies[row] = entropyOf(counts);
+            Arrays.fill(counts, 0);
+        }
+
+        this.jointCounts = new int[totalBins * totalBins];
+    }
+
+    private MutualInformationCorrelationMetric(MutualInformationCorrelationMetric metric)
+    {
+        this.totalColumns = metric.totalColumns;
+        this.totalBins = metric.totalBins;
+        this.rowsBinCodes = metric.rowsBinCodes;
+        this.rowsEntropies = metric.rowsEntropies;
+        this.countsLogCounts = metric.countsLogCounts;
+
+        this.jointCounts = new int[totalBins * totalBins];
+    }
+
+    /**
+     * Every thread needs its own joint histogram.
+     */
+    @Override
+    public CorrelationMetric threadInstance()
+    {
+        return new MutualInformationCorrelationMetric(this);
+    }
+
+    @Override
+    public void calculateRow(int row, int fromRow, int toRow, float[] results, int resultsOffset)
+    {
+        for (int j = fromRow; j < toRow; j++)
+        {
+            results[resultsOffset++] = calculate(row, j);
+        }
+    }
+
+    @Override
+    public float calculate(int row, int otherRow)
+    {
+        double rowEntropy = rowsEntropies[row];
+        double otherRowEntropy = rowsEntropies[otherRow];
+        if ( (rowEntropy == 0.0) || (otherRowEntropy == 0.0) )
+        {
+            return -1.0f;
+        }
+
+        int indexRowDimension = row * totalColumns;
+        int indexOtherRowDimension = otherRow * totalColumns;
+        for (int k = 0; k < totalColumns; k++)
+        {
+            jointCounts[rowsBinCodes[indexRowDimension + k] * totalBins + rowsBinCodes[indexOtherRowDimension + k]]++;
+        }
+
+        double jointEntropy = entropyOf(jointCounts);
+        Arrays.fill(jointCounts, 0);
+
+        double mutualInformation = max(0.0, rowEntropy + otherRowEntropy - jointEntropy);
+        float result = (float) sqrt(1.0 - exp(-2.0 * mutualInformation));
+
+        return (result > 1.0f) ? 1.0f : result;
+    }
+
+    /**
+     * Returns the entropy in nats of the given histogram of totalColumns
+     * values, log(m) - sum(c * log(c)) / m.
+     */
+    private double entropyOf(int[] counts)
+    {
+        double sumCountsLogCounts = 0.0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            sumCountsLogCounts += countsLogCounts[counts[i]];
+        }
+
+        return (countsLogCounts[totalColumns] - sumCountsLogCounts) / totalColumns;
+    }
+
+
+}
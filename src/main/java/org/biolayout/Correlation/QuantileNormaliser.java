@@ -0,0 +1,187 @@
+package org.biolayout.Correlation;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.biolayout.CoreUI.Dialogs.*;
+import org.biolayout.CPUParallelism.Executors.*;
+
+/**
+ *
+ * The QuantileNormaliser quantile normalises the columns of a matrix: every
+ * value is replaced by the mean over all columns of the values sharing its
+ * rank in their column. Tied values of a column get the average of the means
+ * over the ranks they span.
+ *
+ * Each column is argsorted on primitive long keys (order preserving float
+ * bits << 32 | row), the columns being sorted and rewritten in parallel on
+ * the ComputePool if given one.
+ *
+ */
+final class QuantileNormaliser // package access
+{
+
+    private final CorrelationMatrix matrix;
+    private final int totalRows;
+    private final int totalColumns;
+    private final LayoutProgressBarDialog layoutProgressBarDialog;
+    private final int[] sortedColumnsRows;
+    private final double[] meanValues;
+    private final AtomicInteger columnsDone = new AtomicInteger(0);
+
+    /**
+     * The layoutProgressBarDialog may be null, for no progress reporting.
+     */
+    QuantileNormaliser(CorrelationMatrix matrix, LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        this.matrix = matrix;
+        this.totalRows = matrix.getTotalRows();
+        this.totalColumns = matrix.getTotalColumns();
+        this.layoutProgressBarDialog = layoutProgressBarDialog;
+        this.sortedColumnsRows = new int[totalRows * totalColumns];
+        this.meanValues = new double[totalRows];
+    }
+
+    /**
+     * Quantile normalises the matrix in place, on the given ComputePool or on
+     * the calling thread if it is null.
+     */
+    void normalise(ComputePool computePool)
+    {
+        invokeQuantileNormaliseTask( computePool, new QuantileNormaliseTask(true, 0, totalColumns) );
+
+        // column sums are added in a fixed order, so as the result does not depend on the number of threads
+        for (int column = 0; column < totalColumns; column++)
+        {
+            int indexColumnDimension = column * totalRows;
+            for (int rank = 0; rank < totalRows; rank++)
+            {
+                meanValues[rank] += matrix.get(sortedColumnsRows[indexColumnDimension + rank], column);
+            }
+        }
+
+        for (int rank = 0; rank < totalRows; rank++)
+        {
+            meanValues[rank] /= totalColumns;
+        }
+
+        invokeQuantileNormaliseTask( computePool, new QuantileNormaliseTask(false, 0, totalColumns) );
+    }
+
+    private static void invokeQuantileNormaliseTask(ComputePool computePool, QuantileNormaliseTask quantileNormaliseTask)
+    {
+        if (computePool != null)
+        {
+            computePool.invoke(quantileNormaliseTask);
+        }
+        else
+        {
+            quantileNormaliseTask.compute();
+        }
+    }
+
+    /**
+     * Recursively splits the columns [startColumn, endColumn) in halves down to
+     * single columns, which are either argsorted (sortPass) or rewritten with
+     * the quantile mean values.
+     */
+    private final class QuantileNormaliseTask extends RecursiveAction
+    {
+
+        private final boolean sortPass;
+        private final int startColumn;
+        private final int endColumn;
+
+        private QuantileNormaliseTask(boolean sortPass, int startColumn, int endColumn)
+        {
+            this.sortPass = sortPass;
+            this.startColumn = startColumn;
+            this.endColumn = endColumn;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( (endColumn - startColumn) > 1 && inForkJoinPool() )
+            {
+                int middleColumn = (startColumn + endColumn) >>> 1;
+                invokeAll( new QuantileNormaliseTask(sortPass, startColumn, middleColumn),
+                           new QuantileNormaliseTask(sortPass, middleColumn, endColumn) );
+            }
+            else
+            {
+                long[] sortKeys = (sortPass) ? new long[totalRows] : null;
+                for (int column = startColumn; column < endColumn; column++)
+                {
+                    if (sortPass)
+                    {
+                        sortColumn(column, sortKeys);
+                    }
+                    else
+                    {
+                        setColumnQuantileMeanValues(column);
+                    }
+
+                    int done = columnsDone.incrementAndGet();
+                    if (layoutProgressBarDialog != null)
+                    {
+                        layoutProgressBarDialog.incrementProgress( (100 * done) / (2 * totalColumns) );
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Stores the rows of a column in ascending value order.
+     */
+    private void sortColumn(int column, long[] sortKeys)
+    {
+        for (int row = 0; row < totalRows; row++)
+        {
+            int bits = Float.floatToIntBits( matrix.get(row, column) );
+            bits ^= ( (bits >> 31) & 0x7FFFFFFF ); // flip negative values so as the signed int order matches the float order
+            sortKeys[row] = ( (long) bits << 32 ) | row;
+        }
+
+        Arrays.sort(sortKeys);
+
+        int indexColumnDimension = column * totalRows;
+        for (int rank = 0; rank < totalRows; rank++)
+        {
+            sortedColumnsRows[indexColumnDimension + rank] = (int) sortKeys[rank];
+        }
+    }
+
+    /**
+     * Replaces the values of a column with the quantile mean value of their
+     * rank, averaging the mean values over the ranks of tied values.
+     */
+    private void setColumnQuantileMeanValues(int column)
+    {
+        int indexColumnDimension = column * totalRows;
+        int tieStart = 0;
+        while (tieStart < totalRows)
+        {
+            float value = matrix.get(sortedColumnsRows[indexColumnDimension + tieStart], column);
+            double meanValue = meanValues[tieStart];
+            int tieEnd = tieStart + 1;
+            while ( (tieEnd < totalRows) && (matrix.get(sortedColumnsRows[indexColumnDimension + tieEnd], column) == value) )
+            {
+                meanValue += meanValues[tieEnd];
+                tieEnd++;
+            }
+
+            meanValue /= (tieEnd - tieStart);
+            for (int rank = tieStart; rank < tieEnd; rank++)
+            {
+                matrix.set(sortedColumnsRows[indexColumnDimension + rank], column, (float) meanValue);
+            }
+
+            tieStart = tieEnd;
+        }
+    }
+
+
+}
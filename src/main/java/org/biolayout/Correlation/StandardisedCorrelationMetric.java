@@ -0,0 +1,193 @@
+package org.biolayout.Correlation;
+
+import java.util.*;
+
+/**
+ *
+ * The StandardisedCorrelationMetric is the dot product of rows centred and
+ * normalised to unit length, which is the Pearson correlation of the
+ * original rows (of their ranks for Spearman) and the biweight
+ * midcorrelation when the rows are weighted by their biweights first.
+ *
+ * A memory-mapped matrix is read in tiles of tileRows consecutive rows into
+ * per thread heap buffers, which the row band scheduler then reuses for all
+ * the rows of its band.
+ *
+ */
+public final class StandardisedCorrelationMetric implements CorrelationMetric
+{
+
+    private final CorrelationMatrix standardisedMatrix;
+    private final float[] standardisedData;
+    private final boolean[] validRows;
+    private final int totalRows;
+    private final int totalColumns;
+    private final int tileRows;
+
+    private final float[] rowBuffer;
+    private final float[] otherRowBuffer;
+    private final float[] tileBuffer;
+    private int bufferedRow = -1;
+    private int tileStartRow = 0;
+    private int tileEndRow = 0;
+
+    public StandardisedCorrelationMetric(CorrelationMatrix standardisedMatrix, boolean[] validRows, int tileRows)
+    {
+        this.standardisedMatrix = standardisedMatrix;
+        this.standardisedData = standardisedMatrix.array();
+        this.validRows = validRows;
+        this.totalRows = standardisedMatrix.getTotalRows();
+        this.totalColumns = standardisedMatrix.getTotalColumns();
+        this.tileRows = tileRows;
+
+        boolean memoryMapped = standardisedMatrix.isMemoryMapped();
+        this.rowBuffer = (memoryMapped) ? new float[totalColumns] : null;
+        this.otherRowBuffer = (memoryMapped) ? new float[totalColumns] : null;
+        this.tileBuffer = (memoryMapped) ? new float[tileRows * totalColumns] : null;
+    }
+
+    /**
+     * A heap matrix metric is stateless, so it is shared by all threads,
+     * while a memory-mapped one needs per thread tile buffers.
+     */
+    @Override
+    public CorrelationMetric threadInstance()
+    {
+        return (standardisedMatrix.isMemoryMapped()) ? new StandardisedCorrelationMetric(standardisedMatrix, validRows, tileRows) : this;
+    }
+
+    @Override
+    public void calculateRow(int row, int fromRow, int toRow, float[] results, int resultsOffset)
+    {
+        if (!validRows[row])
+        {
+            Arrays.fill(results, resultsOffset, resultsOffset + (toRow - fromRow), -1.0f);
+            return;
+        }
+
+        if (standardisedData != null)
+        {
+            calculateRow(standardisedData, row * totalColumns, standardisedData, fromRow * totalColumns, fromRow, toRow, results, resultsOffset);
+            return;
+        }
+
+        bufferRow(row);
+        for (int j = fromRow; j < toRow; )
+        {
+            if ((j < tileStartRow) || (j >= tileEndRow))
+            {
+                tileStartRow = j;
+                tileEndRow = Math.min(j + tileRows, totalRows);
+                standardisedMatrix.readRows(tileStartRow, tileEndRow, tileBuffer, 0);
+            }
+
+            int chunkEndRow = Math.min(toRow, tileEndRow);
+            calculateRow(rowBuffer, 0, tileBuffer, (j - tileStartRow) * totalColumns, j, chunkEndRow, results, resultsOffset + (j - fromRow));
+            j = chunkEndRow;
+        }
+    }
+
+    /**
+     * Calculates the values of the row starting at indexRowDimension against
+     * the consecutive rows [fromRow, toRow) starting at indexFromRowDimension.
+     * The inner loop is register-blocked on four rows at a time so as every
+     * element load of the given row is reused four times.
+     */
+    private void calculateRow(float[] rowMatrix, int indexRowDimension, float[] matrix, int indexFromRowDimension,
+            int fromRow, int toRow, float[] results, int resultsOffset)
+    {
+        int j = fromRow;
+        int indexFirstRowDimension = indexFromRowDimension;
+        for (; j + 3 < toRow; j += 4)
+        {
+            int indexSecondRowDimension = indexFirstRowDimension + totalColumns;
+            int indexThirdRowDimension = indexSecondRowDimension + totalColumns;
+            int indexFourthRowDimension = indexThirdRowDimension + totalColumns;
+            float sumXY1 = 0.0f;
+            float sumXY2 = 0.0f;
+            float sumXY3 = 0.0f;
+            float sumXY4 = 0.0f;
+            for (int k = 0; k < totalColumns; k++)
+            {
+                float value = rowMatrix[indexRowDimension + k];
+                sumXY1 += (value * matrix[indexFirstRowDimension + k]);
+                sumXY2 += (value * matrix[indexSecondRowDimension + k]);
+                sumXY3 += (value * matrix[indexThirdRowDimension + k]);
+                sumXY4 += (value * matrix[indexFourthRowDimension + k]);
+            }
+
+            results[resultsOffset++] = correlationResult(j, sumXY1);
+            results[resultsOffset++] = correlationResult(j + 1, sumXY2);
+            results[resultsOffset++] = correlationResult(j + 2, sumXY3);
+            results[resultsOffset++] = correlationResult(j + 3, sumXY4);
+            indexFirstRowDimension = indexFourthRowDimension + totalColumns;
+        }
+
+        for (; j < toRow; j++)
+        {
+            float sumXY = 0.0f;
+            for (int k = 0; k < totalColumns; k++)
+            {
+                sumXY += (rowMatrix[indexRowDimension + k] * matrix[indexFirstRowDimension + k]);
+            }
+
+            results[resultsOffset++] = correlationResult(j, sumXY);
+            indexFirstRowDimension += totalColumns;
+        }
+    }
+
+    @Override
+    public float calculate(int row, int otherRow)
+    {
+        if (!validRows[row])
+        {
+            return -1.0f;
+        }
+
+        float[] rowMatrix = standardisedData;
+        float[] otherRowMatrix = standardisedData;
+        int indexRowDimension = row * totalColumns;
+        int indexOtherRowDimension = otherRow * totalColumns;
+        if (standardisedData == null)
+        {
+            bufferRow(row);
+            standardisedMatrix.readRows(otherRow, otherRow + 1, otherRowBuffer, 0);
+            rowMatrix = rowBuffer;
+            otherRowMatrix = otherRowBuffer;
+            indexRowDimension = 0;
+            indexOtherRowDimension = 0;
+        }
+
+        float sumXY = 0.0f;
+        for (int k = 0; k < totalColumns; k++)
+        {
+            sumXY += (rowMatrix[indexRowDimension + k] * otherRowMatrix[indexOtherRowDimension + k]);
+        }
+
+        return correlationResult(otherRow, sumXY);
+    }
+
+    private void bufferRow(int row)
+    {
+        if (bufferedRow != row)
+        {
+            standardisedMatrix.readRows(row, row + 1, rowBuffer, 0);
+            bufferedRow = row;
+        }
+    }
+
+    /**
+     * Clamps a standardised dot product to a valid correlation value.
+     */
+    private float correlationResult(int otherRow, float sumXY)
+    {
+        if (!validRows[otherRow])
+        {
+            return -1.0f;
+        }
+
+        return (sumXY > 1.0f) ? 1.0f : ((sumXY < -1.0f) ? -1.0f : sumXY);
+    }
+
+
+}
@@ -169,6 +169,8 @@ public final class GlobalEnvironment
     public static final boolean RANDOM_INITIAL_LAYOUT_COORDS = true;
     public static final double REFERENCE_K_VALUE = 30.0;
     public static final PrefBool TILED_LAYOUT = new PrefBool(true, "tiled_layout", true);
+    public static final PrefBool ANYTIME_LAYOUT = new PrefBool(false, "anytime_layout", true);
+    public static final PrefBool INCREMENTAL_RELAYOUT = new PrefBool(true, "incremental_relayout", true);
     public static final PrefBool USE_EDGE_WEIGHTS_FOR_LAYOUT = new PrefBool(true, "use_edge_weights_for_layout", true);
     public static final PrefFloat STARTING_TEMPERATURE = new PrefFloat(100.0f, "starting_temperature", true);
     public static final PrefInt NUMBER_OF_LAYOUT_ITERATIONS = new PrefInt(100, "number_of_layout_iterations", true);
@@ -187,7 +189,7 @@ public final class GlobalEnvironment
     public static final PrefEnum<FmmmQualityVsSpeed> FMMM_QUALITY_VS_SPEED = new PrefEnum<FmmmQualityVsSpeed>(
             FmmmQualityVsSpeed.class, FmmmQualityVsSpeed.LOW_QUALITY_HIGH_SPEED, "fmmm_quality_vs_speed", true);
 
-    public static enum FmmmForceModel { EADES, FRUCHTERMAN_REINGOLD }
+    public static enum FmmmForceModel { EADES, FRUCHTERMAN_REINGOLD, NMM }
     public static final PrefEnum<FmmmForceModel> FMMM_FORCE_MODEL = new PrefEnum<FmmmForceModel>(
             FmmmForceModel.class, FmmmForceModel.FRUCHTERMAN_REINGOLD, "fmmm_force_model", true);
     public static enum FmmmStopCriterion { FORCE_THRESHOLD_AND_FIXED_ITERATIONS, FIXED_ITERATIONS, FORCE_THRESHOLD }
@@ -316,6 +318,8 @@ public final class GlobalEnvironment
     public static final PrefInt MCL_SMALLEST_CLUSTER = new PrefInt(3, "mcl_smallest_cluster", true);
     public static final PrefBool MCL_ASSIGN_RANDOM_CLUSTER_COLOURS = new PrefBool(false, "mcl_assign_random_cluster_colours", true);
     public static final PrefString MCL_ADVANCED_OPTIONS = new PrefString("", "mcl_advanced_options", true);
+    public static final PrefBool MCL_USE_NATIVE_EXECUTABLE = new PrefBool(false, "mcl_use_native_executable", true);
+    public static final PrefString MCL_INFLATION_SWEEP_VALUES = new PrefString("", "mcl_inflation_sweep_values", true);
 
     public static enum SPNDistributionTypes { UNIFORM, STANDARD_NORMAL, DETERMINISTIC_PROCESS }
     public static final SPNDistributionTypes SPN_DEFAULT_DISTRIBUTION_TYPE = SPNDistributionTypes.UNIFORM;
@@ -327,6 +331,8 @@ public final class GlobalEnvironment
     public static final PrefString SAVE_SPN_RESULTS_FILE_NAME = new PrefString("", "save_spn_results_file_name", true);
     public static final PrefBool AUTOMATICALLY_SAVE_SPN_RESULTS_TO_PRECHOSEN_FOLDER = new PrefBool(false, "automatically_save_spn_results_to_prechosen_folder", true);
     public static final PrefBool USE_SPN_ANIMATED_TRANSITIONS_SHADING = new PrefBool(false, "use_spn_animated_transitions_shading", true);
+    public static final PrefInt SPN_RANDOM_SEED = new PrefInt(0, "spn_random_seed", true);
+    public static final PrefBool SPN_STREAMING_ERROR_AGGREGATION = new PrefBool(true, "spn_streaming_error_aggregation", true);
 
     public static final int GLSL_MAX_TEXTURE_SIZE = 4096;
     public static final int GLSL_TEXTURE_STEP = 512;
@@ -352,9 +358,12 @@ public final class GlobalEnvironment
     public static final PrefBool COMPARE_GPU_COMPUTING_CORRELATION_CALCULATION_WITH_CPU = new PrefBool(false, "compare_gpu_computing_correlation_calculation_with_cpu", true);
     public static final PrefString COMPARE_GPU_COMPUTING_CORRELATION_CALCULATION_WITH_CPU_DEFAULT_COMPARISON_METHOD = new PrefString(GPU_COMPUTING_DEFAULT_CPU_COMPARISON_METHOD, "compare_gpu_computing_correlation_calculation_with_cpu_default_comparison_method", true);
     public static final PrefBool USE_LAYOUT_N_CORE_PARALLELISM = new PrefBool(true, "use_layout_n_core_parallelism", true);
+    public static final PrefBool USE_BARNES_HUT_FOR_LAYOUT = new PrefBool(false, "use_barnes_hut_for_layout", true);
+    public static final PrefFloat BARNES_HUT_THETA = new PrefFloat(0.8f, "barnes_hut_theta", true);
     public static final PrefBool COMPARE_GPU_COMPUTING_LAYOUT_CALCULATION_WITH_CPU = new PrefBool(false, "compare_gpu_computing_layout_calculation_with_cpu", true);
     public static final PrefString COMPARE_GPU_COMPUTING_LAYOUT_CALCULATION_WITH_CPU_DEFAULT_COMPARISON_METHOD = new PrefString(GPU_COMPUTING_DEFAULT_CPU_COMPARISON_METHOD, "compare_gpu_computing_layout_calculation_with_cpu_default_comparison_method", true);
     public static final PrefBool USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM = new PrefBool(true, "use_atomic_synchronization_for_layout_n_core_parallelism", true);
+    public static final PrefBool USE_THREAD_LOCAL_ACCUMULATION_FOR_LAYOUT_N_CORE_PARALLELISM = new PrefBool(true, "use_thread_local_accumulation_for_layout_n_core_parallelism", true);
     public static final PrefBool USE_MCL_N_CORE_PARALLELISM = new PrefBool(true, "use_mcl_n_core_parallelism", true);
     public static final PrefBool USE_SPN_N_CORE_PARALLELISM = new PrefBool(true, "use_spn_n_core_parallelism", true);
 
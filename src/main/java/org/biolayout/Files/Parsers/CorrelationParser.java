@@ -1,8 +1,9 @@
 package org.biolayout.Files.Parsers;
 
+import org.biolayout.Correlation.CorrelationCacheReader;
+import org.biolayout.Correlation.CorrelationCacheWriter;
 import org.biolayout.Correlation.CorrelationData;
 import java.io.*;
-import java.util.HashSet;
 import org.biolayout.CoreUI.*;
 import org.biolayout.CoreUI.Dialogs.*;
 import org.biolayout.Network.*;
@@ -19,7 +20,7 @@ import static org.biolayout.DebugConsole.ConsoleOutput.*;
 public class CorrelationParser extends CoreParser
 {
 
-    private ObjectInputStream iistream = null;
+    private CorrelationCacheReader cacheReader = null;
     File file = null;
     private CorrelationData correlationData = null;
     private int[][] counts = null;
@@ -35,29 +36,22 @@ public class CorrelationParser extends CoreParser
     @Override
     public boolean init(File file, String fileExtension)
     {
+        this.file = file;
         try
         {
-            this.file = file;
-            iistream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            // version 1 & 2 cache files are not read, they are rebuilt instead
+            if (CorrelationCacheReader.readMagicNumber(file) == CorrelationData.FILE_MAGIC_NUMBER)
+            {
+                cacheReader = new CorrelationCacheReader(file);
+            }
 
-            return true;
+            return (cacheReader != null);
         }
         catch (Exception exc)
         {
-            try
-            {
-                iistream.close();
-            }
-            catch (IOException ioe)
-            {
-                if (DEBUG_BUILD)
-                {
-                    println("IOException while closing streamers in init():\n" + ioe.getMessage());
-                }
-            }
-            finally
+            if (DEBUG_BUILD)
             {
-
+                println("Exception in init():\n" + exc.getMessage());
             }
 
             return false;
@@ -67,8 +61,6 @@ public class CorrelationParser extends CoreParser
     @Override
     public boolean parse()
     {
-        int counter = 0;
-        HashSet<Integer> filterSet = new HashSet<Integer>();
         LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
         layoutProgressBarDialog.prepareProgressBar(100, "Reading in Graph Data:");
         layoutProgressBarDialog.startProgressBar();
@@ -78,52 +70,11 @@ public class CorrelationParser extends CoreParser
 
         try
         {
-            iistream.readInt();    // magic number
-
-            int nodeId = 0;
-            int percent = 0;
-            String nodeOne = "";
-            String nodeTwo = "";
-            int otherId = 0;
-            float weight = 0.0f;
-            while (iistream.available() != 0)
+            if (cacheReader != null)
             {
-                nodeId = iistream.readInt();
-                percent = (int) (100.0f * ((float) counter / (float) correlationData.getTotalRows()));
-
-                layoutProgressBarDialog.incrementProgress(percent);
-
-                nodeOne = correlationData.getRowID(nodeId);
-                for (;;) // while (true)
-                {
-                    otherId = iistream.readInt();
-                    if (nodeId == otherId)
-                    {
-                        break;
-                    }
-                    else
-                    {
-                        weight = iistream.readFloat();
-                        if (weight > CURRENT_CORRELATION_THRESHOLD)
-                        {
-                            boolean filterOne = CURRENT_FILTER_SET.contains(nodeId);
-                            boolean filterTwo = CURRENT_FILTER_SET.contains(otherId);
-
-                            if (!filterOne && !filterTwo)
-                            {
-                                nodeTwo = correlationData.getRowID(otherId);
-                                nc.addNetworkConnection(nodeOne, nodeTwo, weight);
-                            }
-                        }
-                    }
-                }
-
-                counter++;
+                parseCacheFile(layoutProgressBarDialog);
+                isSuccessful = true;
             }
-
-            WEIGHTED_EDGES = true;
-
-            isSuccessful = true;
         }
         catch (IOException ioe)
         {
@@ -134,129 +85,138 @@ public class CorrelationParser extends CoreParser
         }
         finally
         {
-            try
+            close();
+            layoutProgressBarDialog.endProgressBar();
+        }
+
+        return isSuccessful;
+    }
+
+    /**
+     * Adds all above threshold edges of a version 3 cache file to the network.
+     */
+    private void parseCacheFile(LayoutProgressBarDialog layoutProgressBarDialog) throws IOException
+    {
+        int totalRows = cacheReader.getTotalRows();
+        int[] otherIds = new int[totalRows];
+        float[] weights = new float[totalRows];
+        for (int nodeId = 0; nodeId < totalRows; nodeId++)
+        {
+            layoutProgressBarDialog.incrementProgress((int) (100.0f * ((float) nodeId / (float) totalRows)));
+
+            if (CURRENT_FILTER_SET.contains(nodeId))
             {
-                iistream.close();
+                continue;
             }
-            catch (IOException ioe)
+
+            String nodeOne = correlationData.getRowID(nodeId);
+            int edgesCount = cacheReader.readRow(nodeId, CURRENT_CORRELATION_THRESHOLD, otherIds, weights);
+            for (int k = 0; k < edgesCount; k++)
             {
-                if (DEBUG_BUILD)
+                if (!CURRENT_FILTER_SET.contains(otherIds[k]))
                 {
-                    println("IOException while closing streams in parse():\n" + ioe.getMessage());
+                    nc.addNetworkConnection(nodeOne, correlationData.getRowID(otherIds[k]), weights[k]);
                 }
             }
-            finally
-            {
-                layoutProgressBarDialog.endProgressBar();
-            }
         }
 
-        return isSuccessful;
+        WEIGHTED_EDGES = true;
     }
 
-    public void close()
+    /**
+     * Counts all edges of a version 3 cache file per node and weight. Without
+     * filtered nodes the counts stored in the file are used as they are.
+     */
+    private void scanCacheFile() throws IOException
     {
-        try
+        if (CURRENT_FILTER_SET.isEmpty())
         {
-            iistream.close();
+            cacheReader.readCounts(counts);
+
+            return;
         }
-        catch (IOException ioe)
+
+        int totalRows = cacheReader.getTotalRows();
+        int[] otherIds = new int[totalRows];
+        float[] weights = new float[totalRows];
+        for (int nodeId = 0; nodeId < totalRows; nodeId++)
         {
-            if (DEBUG_BUILD)
+            if (CURRENT_FILTER_SET.contains(nodeId))
             {
-                println("IOException while closing streams in close():\n" + ioe.getMessage());
+                continue;
             }
-        }
-    }
 
-    public void scan()
-    {
-        try
-        {
-            iistream.readInt();    // magic number
-
-            int nodeId = 0;
-            int otherId = 0;
-            int index = 0;
-            float weight = 0.0f;
-            while (iistream.available() != 0)
+            int edgesCount = cacheReader.readRow(nodeId, otherIds, weights);
+            for (int k = 0; k < edgesCount; k++)
             {
-                nodeId = iistream.readInt();
-
-                for (;;) // while (true)
+                if (!CURRENT_FILTER_SET.contains(otherIds[k]))
                 {
-                    otherId = iistream.readInt();
-                    if (nodeId == otherId)
-                    {
-                        break;
-                    }
-                    else
-                    {
-                        weight = iistream.readFloat();
-                        index = (int) Math.floor(100.0f * weight);
-
-                        boolean filterOne = CURRENT_FILTER_SET.contains(nodeId);
-                        boolean filterTwo = CURRENT_FILTER_SET.contains(otherId);
-
-                        if (!filterOne && !filterTwo)
-                        {
-                            counts[nodeId][index]++;
-                            counts[otherId][index]++;
-                        }
-                    }
+                    int index = CorrelationCacheWriter.countsBucket(weights[k]);
+                    counts[nodeId][index]++;
+                    counts[otherIds[k]][index]++;
                 }
             }
         }
-        catch (IOException ioe)
-        {
-            if (DEBUG_BUILD)
-            {
-                println("IOException in scan():\n" + ioe.getMessage());
-            }
-        }
     }
 
-    public void rescan()
+    public void close()
     {
         try
         {
-            counts = correlationData.clearCounts();
-            iistream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
-            scan();
+            if (cacheReader != null)
+            {
+                cacheReader.close();
+            }
         }
         catch (IOException ioe)
         {
             if (DEBUG_BUILD)
             {
-                println("IOException in rescan():\n" + ioe.getMessage());
+                println("IOException while closing streams in close():\n" + ioe.getMessage());
             }
         }
     }
 
-    public boolean checkFile()
+    public void scan()
     {
-        int magicNumber = 0;
-
         try
         {
-            magicNumber = iistream.readInt();
+            if (cacheReader != null)
+            {
+                scanCacheFile();
+            }
         }
         catch (IOException ioe)
         {
             if (DEBUG_BUILD)
             {
-                println("IOException in check_file():\n" + ioe.getMessage());
+                println("IOException in scan():\n" + ioe.getMessage());
             }
-
-            return false;
         }
+    }
 
-        if (magicNumber == CorrelationData.FILE_MAGIC_NUMBER)
-        {
-            return true;
-        }
+    public void rescan()
+    {
+        counts = correlationData.clearCounts();
+        scan();
+    }
 
-        return false;
+    /**
+     * Checks the cache file is of the current version, its header having
+     * already been validated when opening it.
+     */
+    public boolean checkFile()
+    {
+        return (cacheReader != null);
+    }
+
+    /**
+     * Gets the lowest correlation value stored in the cache file, any stored
+     * threshold not below it can be served without rebuilding the file.
+     */
+    public float getStoredCorrelationThreshold()
+    {
+        return cacheReader.getWeightsFloor();
     }
 
     public int getNodeCount()
@@ -113,6 +113,11 @@ public final class GraphRendererThreadUpdater extends Thread implements Runnable
     */
     private long excessTime = 0L;
 
+    /**
+    *  The snapshots of a running layout to be applied before rendering, if any.
+    */
+    private volatile LayoutSnapshotBuffer layoutSnapshotBuffer = null;
+
     /**
     *  The GraphRendererThreadUpdater constructor.
     */
@@ -167,6 +172,11 @@ public final class GraphRendererThreadUpdater extends Thread implements Runnable
                 }
             }
 
+            // Apply the latest layout snapshot, lock-free with the layout thread
+            LayoutSnapshotBuffer currentLayoutSnapshotBuffer = layoutSnapshotBuffer;
+            if (currentLayoutSnapshotBuffer != null)
+                currentLayoutSnapshotBuffer.applyLatestSnapshot();
+
             // Render the screen
             if (DEBUG_BUILD) println("Display() callback for:\n" + this.toString());
             glCanvas.display();
@@ -271,10 +281,26 @@ public final class GraphRendererThreadUpdater extends Thread implements Runnable
         }
 
         if (!rendering)
+        {
             resumeRendererThreadUpdater();
+            // hand the layout snapshots back to the layout thread
+            setLayoutSnapshotBuffer(null);
+        }
         this.rendering = rendering;
     }
 
+    /**
+    *  Sets the snapshots of a running layout to be applied before rendering each frame (null when the layout is done).
+    */
+    public synchronized void setLayoutSnapshotBuffer(LayoutSnapshotBuffer layoutSnapshotBuffer)
+    {
+        if (this.layoutSnapshotBuffer != null)
+            this.layoutSnapshotBuffer.setAppliedByRenderer(false);
+        if (layoutSnapshotBuffer != null)
+            layoutSnapshotBuffer.setAppliedByRenderer(!generalPauseRendererUpdateThread);
+        this.layoutSnapshotBuffer = layoutSnapshotBuffer;
+    }
+
     /**
     *  Gets the frameCount variable.
     */
@@ -444,6 +470,10 @@ public final class GraphRendererThreadUpdater extends Thread implements Runnable
         {
             if (DEBUG_BUILD) println("Now generally pausing the renderer thread updater!");
             generalPauseRendererUpdateThread = true;
+
+            // the layout thread applies its snapshots itself while paused
+            if (layoutSnapshotBuffer != null)
+                layoutSnapshotBuffer.setAppliedByRenderer(false);
         }
     }
 
@@ -457,6 +487,8 @@ public final class GraphRendererThreadUpdater extends Thread implements Runnable
         {
             if (DEBUG_BUILD) println("Now generally resuming the renderer thread updater!");
             generalPauseRendererUpdateThread = false;
+            if (layoutSnapshotBuffer != null)
+                layoutSnapshotBuffer.setAppliedByRenderer(true);
             notify();
         }
     }
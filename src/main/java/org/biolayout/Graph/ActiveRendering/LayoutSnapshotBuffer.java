@@ -0,0 +1,163 @@
+package org.biolayout.Graph.ActiveRendering;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+*
+* LayoutSnapshotBuffer class hands the vertex coordinates of a running layout over to the renderer without locking.
+*
+* The layout thread publishes a snapshot of its coordinates array at a fixed cadence into its back buffer & swaps it with the
+* shared middle buffer, while the renderer thread swaps the middle buffer with its front buffer when a new snapshot is there
+* & applies it. This double-buffering with a shared spare buffer never lets either side wait for the other or see a half
+* written snapshot, so the layout iterations run at full speed while the renderer always shows the latest published layout.
+*
+* @see org.biolayout.Graph.ActiveRendering.GraphRendererThreadUpdater
+*
+*/
+
+public final class LayoutSnapshotBuffer
+{
+
+    /**
+    *  The applier of a snapshot, run by the thread acquiring it.
+    */
+    public interface LayoutSnapshotApplier
+    {
+        public void applyLayoutSnapshot(float[] snapshot);
+    }
+
+    /**
+    *  The bit marking the middle buffer as holding a snapshot not yet acquired.
+    */
+    private static final int NEW_SNAPSHOT_BIT = 4;
+
+    /**
+    *  The bits of the middle buffer index.
+    */
+    private static final int BUFFER_INDEX_MASK = 3;
+
+    /**
+    *  The back, middle & front buffers.
+    */
+    private final float[][] buffers = new float[3][];
+
+    /**
+    *  The middle buffer index, with the NEW_SNAPSHOT_BIT.
+    */
+    private final AtomicInteger middleBuffer = new AtomicInteger(1);
+
+    /**
+    *  The back buffer index, owned by the publishing layout thread.
+    */
+    private int backBuffer = 0;
+
+    /**
+    *  The front buffer index, owned by the applying thread.
+    */
+    private int frontBuffer = 2;
+
+    /**
+    *  Makes sure only one thread applies a snapshot at a time.
+    */
+    private final AtomicBoolean isApplying = new AtomicBoolean(false);
+
+    /**
+    *  No snapshots are applied after closing.
+    */
+    private volatile boolean isClosed = false;
+
+    /**
+    *  Whether a renderer thread applies the snapshots, otherwise the layout thread has to.
+    */
+    private volatile boolean isAppliedByRenderer = false;
+
+    private final LayoutSnapshotApplier layoutSnapshotApplier;
+    private final long snapshotPeriod;
+    private long lastSnapshotTime = 0L;
+
+    /**
+    *  The LayoutSnapshotBuffer constructor, with the period of the snapshots in milliseconds.
+    */
+    public LayoutSnapshotBuffer(LayoutSnapshotApplier layoutSnapshotApplier, long snapshotPeriodInMilliseconds)
+    {
+        this.layoutSnapshotApplier = layoutSnapshotApplier;
+        this.snapshotPeriod = TimeUnit.MILLISECONDS.toNanos(snapshotPeriodInMilliseconds);
+
+        lastSnapshotTime = System.nanoTime();
+    }
+
+    /**
+    *  Whether the next snapshot is due. To be called by the layout thread only.
+    */
+    public boolean isSnapshotDue()
+    {
+        return (System.nanoTime() - lastSnapshotTime) >= snapshotPeriod;
+    }
+
+    /**
+    *  Publishes a snapshot of the given coordinates. To be called by the layout thread only.
+    */
+    public void publishSnapshot(float[] coordinates)
+    {
+        if ( (buffers[backBuffer] == null) || (buffers[backBuffer].length != coordinates.length) )
+            buffers[backBuffer] = new float[coordinates.length];
+        System.arraycopy(coordinates, 0, buffers[backBuffer], 0, coordinates.length);
+
+        backBuffer = middleBuffer.getAndSet(backBuffer | NEW_SNAPSHOT_BIT) & BUFFER_INDEX_MASK;
+        lastSnapshotTime = System.nanoTime();
+    }
+
+    /**
+    *  Applies the latest snapshot, if not applied already. Returns true if a snapshot was applied.
+    *  Returns false straight away if another thread is applying a snapshot at the same time.
+    */
+    public boolean applyLatestSnapshot()
+    {
+        if ( isClosed || !isApplying.compareAndSet(false, true) )
+            return false;
+
+        try
+        {
+            if ( isClosed || ( (middleBuffer.get() & NEW_SNAPSHOT_BIT) == 0 ) )
+                return false;
+
+            frontBuffer = middleBuffer.getAndSet(frontBuffer) & BUFFER_INDEX_MASK;
+            layoutSnapshotApplier.applyLayoutSnapshot(buffers[frontBuffer]);
+
+            return true;
+        }
+        finally
+        {
+            isApplying.set(false);
+        }
+    }
+
+    /**
+    *  Closes the buffer, waiting for a snapshot being applied to finish, so as the layout thread can safely apply its final layout.
+    */
+    public void close()
+    {
+        isClosed = true;
+        while ( isApplying.get() )
+            Thread.yield();
+    }
+
+    /**
+    *  Sets whether a renderer thread applies the snapshots.
+    */
+    public void setAppliedByRenderer(boolean isAppliedByRenderer)
+    {
+        this.isAppliedByRenderer = isAppliedByRenderer;
+    }
+
+    /**
+    *  Gets whether a renderer thread applies the snapshots.
+    */
+    public boolean isAppliedByRenderer()
+    {
+        return isAppliedByRenderer;
+    }
+
+
+}
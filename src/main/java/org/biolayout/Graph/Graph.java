@@ -22,6 +22,7 @@ import com.jogamp.opengl.awt.GLCanvas;
 import static com.jogamp.opengl.GL2.*;
 import org.biolayout.CoreUI.*;
 import org.biolayout.Graph.ActionsUI.*;
+import org.biolayout.Graph.ActiveRendering.*;
 import org.biolayout.Graph.GraphElements.*;
 import org.biolayout.Graph.Selection.*;
 import org.biolayout.Models.Lathe3D.*;
@@ -974,7 +975,11 @@ public class Graph extends GLCanvas implements GraphInterface
                 TILED_LAYOUT.set(false);
             }
 
-            nc.relayout(GraphLayoutAlgorithm.FRUCHTERMAN_REINGOLD);
+            // after edits, only the neighbourhoods of the changed vertices are laid out again
+            if ( INCREMENTAL_RELAYOUT.get() && nc.hasChangedVertices() )
+                layoutFrame.getNetworkRootContainer().incrementalRelayout();
+            else
+                nc.relayout(GraphLayoutAlgorithm.FRUCHTERMAN_REINGOLD);
             burstUpdate();
 
             if (SHOW_LAYOUT_ITERATIONS.get())
@@ -1208,6 +1213,17 @@ public class Graph extends GLCanvas implements GraphInterface
             graphRendererThreadUpdater.setTargetFPS(USE_VSYNCH.get() ? targetFPS : noVynchTargetFPS);
     }
 
+    /**
+    *  Hands the snapshots of a running layout over to the renderer thread updater, if running (null when the layout is done).
+    *  Otherwise the layout thread applies the snapshots itself, see LayoutSnapshotBuffer.isAppliedByRenderer().
+    */
+    public void setLayoutSnapshotBuffer(LayoutSnapshotBuffer layoutSnapshotBuffer)
+    {
+        GraphRendererThreadUpdater currentGraphRendererThreadUpdater = graphRendererThreadUpdater;
+        if (currentGraphRendererThreadUpdater != null)
+            currentGraphRendererThreadUpdater.setLayoutSnapshotBuffer(layoutSnapshotBuffer);
+    }
+
     public void recreateGraphEdges(Collection<GraphEdge> edges)
     {
         graphEdges = new HashSet<GraphEdge>(edges);
@@ -75,6 +75,12 @@ final class GraphUndoDelete // package access
                 howManyNodesAndEdges--;
 
                 nc.getEdges().add(edge);
+
+                // restoring the connections removed from the not deleted vertices
+                edge.getFirstVertex().addConnection(edge.getSecondVertex(), edge);
+                edge.getSecondVertex().addConnection(edge.getFirstVertex(), edge);
+                nc.addChangedVertex( edge.getFirstVertex() );
+                nc.addChangedVertex( edge.getSecondVertex() );
             }
 
             graph.rebuildGraph();
@@ -671,8 +671,10 @@ public final class SelectionManager
                 Edge edge = graphEdge.getEdge();
                 if (edge.getFirstVertex() == graphNode.getVertex()) {
                     edge.getSecondVertex().removeConnection(edge);
+                    layoutFrame.getNetworkRootContainer().addChangedVertex( edge.getSecondVertex() );
                 } else {
                     edge.getFirstVertex().removeConnection(edge);
+                    layoutFrame.getNetworkRootContainer().addChangedVertex( edge.getFirstVertex() );
                 }
                 layoutFrame.getNetworkRootContainer().getEdges().remove( graphEdge.getEdge() );
             }
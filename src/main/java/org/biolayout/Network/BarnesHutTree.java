@@ -0,0 +1,410 @@
+package org.biolayout.Network;
+
+import java.util.*;
+import static java.lang.Math.*;
+
+/**
+*
+*  The BarnesHutTree class is a quadtree (2D) or octree (3D) of the vertex coordinates, used by the FRLayout
+*  Barnes-Hut repulsion mode. Every node covers a square (cubic) cell and a consecutive range of the permuted
+*  vertex IDs, along with the number and the center of mass of its vertices.
+*
+*  For a given vertex, the tree collects the vertices of the nearby leaves for exact pairwise repulsion, and the
+*  far away nodes (cell size / distance < theta) for repulsion from their center of mass, while the cells beyond
+*  the repulsion cutoff distance are pruned altogether, for O(n log n) iterations instead of O(n^2).
+*
+*  Pseudo vertices do not repulse each other in 3D, thus the nodes also keep the number and the center of mass of
+*  their non-pseudo vertices when a pseudo vertex matrix is given.
+*
+*/
+
+public final class BarnesHutTree
+{
+
+    private static final int MAX_LEAF_VERTICES = 8;
+    private static final int MAX_DEPTH = 24;
+    private static final int INITIAL_NODES_SIZE = 1024;
+
+    private final int dimensions;
+    private final int totalCellChildren;
+
+    private int[] vertexIDs = new int[0];
+    private int[] vertexIDsCellCodes = new int[0];
+    private int[] sortedVertexIDs = new int[0];
+    private float[] coords = null;
+    private int[] pseudoVertexMatrix = null;
+
+    private int totalNodes = 0;
+    private int[] nodeStart = new int[INITIAL_NODES_SIZE];
+    private int[] nodeEnd = new int[INITIAL_NODES_SIZE];
+    private int[] nodeFirstChild = new int[INITIAL_NODES_SIZE];
+    private int[] nodeTotalChildren = new int[INITIAL_NODES_SIZE];
+    private float[] nodeSize = new float[INITIAL_NODES_SIZE];
+    private float[] nodeMinCorner = null;
+    private int[] nodeMass = new int[INITIAL_NODES_SIZE];
+    private float[] nodeCenterOfMass = null;
+    private int[] nodeNonPseudoMass = new int[INITIAL_NODES_SIZE];
+    private float[] nodeNonPseudoCenterOfMass = null;
+
+    /**
+    *  The per thread results of interactionsOf(), exact vertices and approximated nodes.
+    */
+    public static final class Interactions
+    {
+        private int[] vertexIDs = new int[64];
+        private int totalVertices = 0;
+        private int[] nodes = new int[64];
+        private int totalNodes = 0;
+        private int[] stack = new int[64];
+
+        public int getTotalVertices()
+        {
+            return totalVertices;
+        }
+
+        public int getVertexID(int index)
+        {
+            return vertexIDs[index];
+        }
+
+        public int getTotalNodes()
+        {
+            return totalNodes;
+        }
+
+        public int getNode(int index)
+        {
+            return nodes[index];
+        }
+
+        private void addVertexID(int vertexID)
+        {
+            if (totalVertices == vertexIDs.length)
+                vertexIDs = Arrays.copyOf(vertexIDs, totalVertices << 1);
+            vertexIDs[totalVertices++] = vertexID;
+        }
+
+        private void addNode(int node)
+        {
+            if (totalNodes == nodes.length)
+                nodes = Arrays.copyOf(nodes, totalNodes << 1);
+            nodes[totalNodes++] = node;
+        }
+    }
+
+    /**
+    *  The constructor of the BarnesHutTree class, a quadtree for 2 dimensions, an octree for 3.
+    */
+    public BarnesHutTree(int dimensions)
+    {
+        this.dimensions = dimensions;
+        this.totalCellChildren = 1 << dimensions;
+        this.nodeMinCorner = new float[dimensions * INITIAL_NODES_SIZE];
+        this.nodeCenterOfMass = new float[dimensions * INITIAL_NODES_SIZE];
+        this.nodeNonPseudoCenterOfMass = new float[dimensions * INITIAL_NODES_SIZE];
+    }
+
+    /**
+    *  Builds the tree of the first totalVertices vertex IDs, with their coordinates at vertexID * dimensions.
+    *  The pseudo vertex matrix is the bit packed one of the FRLayout, or null.
+    */
+    public void build(int[] vertexIndices, int totalVertices, float[] coords, int[] pseudoVertexMatrix)
+    {
+        this.coords = coords;
+        this.pseudoVertexMatrix = pseudoVertexMatrix;
+        if (vertexIDs.length < totalVertices)
+        {
+            vertexIDs = new int[totalVertices];
+            vertexIDsCellCodes = new int[totalVertices];
+            sortedVertexIDs = new int[totalVertices];
+        }
+        System.arraycopy(vertexIndices, 0, vertexIDs, 0, totalVertices);
+
+        totalNodes = 0;
+        if (totalVertices == 0)
+            return;
+
+        float[] minCorner = new float[dimensions];
+        float[] maxCorner = new float[dimensions];
+        for (int axis = 0; axis < dimensions; axis++)
+        {
+            minCorner[axis] = Float.POSITIVE_INFINITY;
+            maxCorner[axis] = Float.NEGATIVE_INFINITY;
+        }
+
+        for (int i = 0; i < totalVertices; i++)
+        {
+            int vertexIDIndex = vertexIDs[i] * dimensions;
+            for (int axis = 0; axis < dimensions; axis++)
+            {
+                minCorner[axis] = min(minCorner[axis], coords[vertexIDIndex + axis]);
+                maxCorner[axis] = max(maxCorner[axis], coords[vertexIDIndex + axis]);
+            }
+        }
+
+        float size = 0.0f;
+        for (int axis = 0; axis < dimensions; axis++)
+            size = max(size, maxCorner[axis] - minCorner[axis]);
+
+        int root = addNode(0, totalVertices, size + 1.0f); // enlarged so as the max coordinates fall inside the cell
+        System.arraycopy(minCorner, 0, nodeMinCorner, root * dimensions, dimensions);
+        buildNode(root, 0);
+    }
+
+    /**
+    *  Splits a node to its non-empty cell children, recursively, and sets its mass & center of mass.
+    */
+    private void buildNode(int node, int depth)
+    {
+        int start = nodeStart[node];
+        int end = nodeEnd[node];
+        if ( ( (end - start) <= MAX_LEAF_VERTICES ) || (depth == MAX_DEPTH) )
+        {
+            nodeFirstChild[node] = -1;
+            nodeTotalChildren[node] = 0;
+            setLeafMass(node);
+
+            return;
+        }
+
+        float childSize = 0.5f * nodeSize[node];
+        int cornerIndex = node * dimensions;
+        int[] cellCounts = new int[totalCellChildren];
+        for (int i = start; i < end; i++)
+        {
+            int vertexIDIndex = vertexIDs[i] * dimensions;
+            int cellCode = 0;
+            for (int axis = 0; axis < dimensions; axis++)
+                if (coords[vertexIDIndex + axis] >= nodeMinCorner[cornerIndex + axis] + childSize)
+                    cellCode |= (1 << axis);
+            vertexIDsCellCodes[i] = cellCode;
+            cellCounts[cellCode]++;
+        }
+
+        // counting sort of the vertex IDs by cell, so as every child covers a consecutive range
+        int[] cellStarts = new int[totalCellChildren + 1];
+        cellStarts[0] = start;
+        for (int cell = 0; cell < totalCellChildren; cell++)
+            cellStarts[cell + 1] = cellStarts[cell] + cellCounts[cell];
+        int[] cellPositions = Arrays.copyOf(cellStarts, totalCellChildren);
+        for (int i = start; i < end; i++)
+            sortedVertexIDs[cellPositions[vertexIDsCellCodes[i]]++] = vertexIDs[i];
+        System.arraycopy(sortedVertexIDs, start, vertexIDs, start, end - start);
+
+        // the children are allocated consecutively before descending to them
+        int firstChild = totalNodes;
+        int totalChildren = 0;
+        for (int cell = 0; cell < totalCellChildren; cell++)
+        {
+            if (cellCounts[cell] == 0)
+                continue;
+
+            int child = addNode(cellStarts[cell], cellStarts[cell + 1], childSize);
+            for (int axis = 0; axis < dimensions; axis++)
+                nodeMinCorner[child * dimensions + axis] = nodeMinCorner[cornerIndex + axis] + ( ( (cell >> axis) & 1 ) != 0 ? childSize : 0.0f );
+            totalChildren++;
+        }
+        nodeFirstChild[node] = firstChild;
+        nodeTotalChildren[node] = totalChildren;
+
+        for (int child = firstChild; child < firstChild + totalChildren; child++)
+            buildNode(child, depth + 1);
+
+        setInternalMass(node);
+    }
+
+    /**
+    *  Sets the mass & center of mass of a leaf from its vertices.
+    */
+    private void setLeafMass(int node)
+    {
+        int mass = 0;
+        int nonPseudoMass = 0;
+        int centerIndex = node * dimensions;
+        for (int axis = 0; axis < dimensions; axis++)
+        {
+            nodeCenterOfMass[centerIndex + axis] = 0.0f;
+            nodeNonPseudoCenterOfMass[centerIndex + axis] = 0.0f;
+        }
+
+        for (int i = nodeStart[node]; i < nodeEnd[node]; i++)
+        {
+            int vertexID = vertexIDs[i];
+            int vertexIDIndex = vertexID * dimensions;
+            boolean isPseudoVertex = isPseudoVertex(vertexID);
+            mass++;
+            if (!isPseudoVertex)
+                nonPseudoMass++;
+            for (int axis = 0; axis < dimensions; axis++)
+            {
+                nodeCenterOfMass[centerIndex + axis] += coords[vertexIDIndex + axis];
+                if (!isPseudoVertex)
+                    nodeNonPseudoCenterOfMass[centerIndex + axis] += coords[vertexIDIndex + axis];
+            }
+        }
+
+        setMass(node, mass, nonPseudoMass);
+    }
+
+    /**
+    *  Sets the mass & center of mass of an internal node from its children.
+    */
+    private void setInternalMass(int node)
+    {
+        int mass = 0;
+        int nonPseudoMass = 0;
+        int centerIndex = node * dimensions;
+        for (int axis = 0; axis < dimensions; axis++)
+        {
+            nodeCenterOfMass[centerIndex + axis] = 0.0f;
+            nodeNonPseudoCenterOfMass[centerIndex + axis] = 0.0f;
+        }
+
+        for (int child = nodeFirstChild[node]; child < nodeFirstChild[node] + nodeTotalChildren[node]; child++)
+        {
+            int childCenterIndex = child * dimensions;
+            mass += nodeMass[child];
+            nonPseudoMass += nodeNonPseudoMass[child];
+            for (int axis = 0; axis < dimensions; axis++)
+            {
+                nodeCenterOfMass[centerIndex + axis] += nodeMass[child] * nodeCenterOfMass[childCenterIndex + axis];
+                nodeNonPseudoCenterOfMass[centerIndex + axis] += nodeNonPseudoMass[child] * nodeNonPseudoCenterOfMass[childCenterIndex + axis];
+            }
+        }
+
+        setMass(node, mass, nonPseudoMass);
+    }
+
+    /**
+    *  Sets the mass of a node, dividing its coordinates sums to its center of mass.
+    */
+    private void setMass(int node, int mass, int nonPseudoMass)
+    {
+        int centerIndex = node * dimensions;
+        nodeMass[node] = mass;
+        nodeNonPseudoMass[node] = nonPseudoMass;
+        for (int axis = 0; axis < dimensions; axis++)
+        {
+            nodeCenterOfMass[centerIndex + axis] /= mass;
+            if (nonPseudoMass > 0)
+                nodeNonPseudoCenterOfMass[centerIndex + axis] /= nonPseudoMass;
+        }
+    }
+
+    /**
+    *  Adds a node, growing the node arrays when needed.
+    */
+    private int addNode(int start, int end, float size)
+    {
+        if (totalNodes == nodeStart.length)
+        {
+            int length = totalNodes << 1;
+            nodeStart = Arrays.copyOf(nodeStart, length);
+            nodeEnd = Arrays.copyOf(nodeEnd, length);
+            nodeFirstChild = Arrays.copyOf(nodeFirstChild, length);
+            nodeTotalChildren = Arrays.copyOf(nodeTotalChildren, length);
+            nodeSize = Arrays.copyOf(nodeSize, length);
+            nodeMinCorner = Arrays.copyOf(nodeMinCorner, length * dimensions);
+            nodeMass = Arrays.copyOf(nodeMass, length);
+            nodeCenterOfMass = Arrays.copyOf(nodeCenterOfMass, length * dimensions);
+            nodeNonPseudoMass = Arrays.copyOf(nodeNonPseudoMass, length);
+            nodeNonPseudoCenterOfMass = Arrays.copyOf(nodeNonPseudoCenterOfMass, length * dimensions);
+        }
+
+        nodeStart[totalNodes] = start;
+        nodeEnd[totalNodes] = end;
+        nodeSize[totalNodes] = size;
+
+        return totalNodes++;
+    }
+
+    /**
+    *  Collects the interactions of a vertex: the vertices of the leaves within the cutoff distance, and the nodes
+    *  completely within the cutoff distance that are far away enough for their center of mass approximation
+    *  (cell size / distance < theta). Safe to call from many threads at once, each with its own interactions.
+    */
+    public void interactionsOf(int vertexID, float cutoffDistance, float theta, Interactions interactions)
+    {
+        interactions.totalVertices = 0;
+        interactions.totalNodes = 0;
+        if (totalNodes == 0)
+            return;
+
+        int vertexIDIndex = vertexID * dimensions;
+        float squaredCutoffDistance = cutoffDistance * cutoffDistance;
+        float squaredTheta = theta * theta;
+        int[] stack = interactions.stack;
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        while (stackSize > 0)
+        {
+            int node = stack[--stackSize];
+            int cornerIndex = node * dimensions;
+            float size = nodeSize[node];
+
+            // squared min & max distances of the vertex to the node cell
+            float squaredMinDistance = 0.0f;
+            float squaredMaxDistance = 0.0f;
+            float squaredDistance = 0.0f;
+            for (int axis = 0; axis < dimensions; axis++)
+            {
+                float coord = coords[vertexIDIndex + axis];
+                float lowDistance = nodeMinCorner[cornerIndex + axis] - coord;
+                float highDistance = coord - (nodeMinCorner[cornerIndex + axis] + size);
+                float outsideDistance = max( 0.0f, max(lowDistance, highDistance) );
+                float farthestDistance = max( abs(lowDistance), abs(highDistance) );
+                float centerDistance = coord - nodeCenterOfMass[cornerIndex + axis];
+                squaredMinDistance += outsideDistance * outsideDistance;
+                squaredMaxDistance += farthestDistance * farthestDistance;
+                squaredDistance += centerDistance * centerDistance;
+            }
+
+            if (squaredMinDistance > squaredCutoffDistance)
+                continue;
+
+            if (nodeFirstChild[node] < 0)
+            {
+                for (int i = nodeStart[node]; i < nodeEnd[node]; i++)
+                    if (vertexIDs[i] != vertexID)
+                        interactions.addVertexID(vertexIDs[i]);
+            }
+            else if ( (squaredMinDistance > 0.0f) && (squaredMaxDistance <= squaredCutoffDistance) && (size * size < squaredTheta * squaredDistance) )
+            {
+                interactions.addNode(node);
+            }
+            else
+            {
+                if (stackSize + totalCellChildren > stack.length)
+                    interactions.stack = stack = Arrays.copyOf(stack, (stack.length << 1) + totalCellChildren);
+                for (int child = nodeFirstChild[node]; child < nodeFirstChild[node] + nodeTotalChildren[node]; child++)
+                    stack[stackSize++] = child;
+            }
+        }
+    }
+
+    /**
+    *  Gets the mass of a node, of its non-pseudo vertices only if requested.
+    */
+    public int getMass(int node, boolean nonPseudoOnly)
+    {
+        return (nonPseudoOnly) ? nodeNonPseudoMass[node] : nodeMass[node];
+    }
+
+    /**
+    *  Gets the center of mass of a node along an axis, of its non-pseudo vertices only if requested.
+    */
+    public float getCenterOfMass(int node, int axis, boolean nonPseudoOnly)
+    {
+        return (nonPseudoOnly) ? nodeNonPseudoCenterOfMass[node * dimensions + axis] : nodeCenterOfMass[node * dimensions + axis];
+    }
+
+    /**
+    *  Checks the bit packed pseudo vertex matrix of the FRLayout.
+    */
+    private boolean isPseudoVertex(int vertexID)
+    {
+        return (pseudoVertexMatrix != null) && ( ( ( pseudoVertexMatrix[vertexID >> FRLayout.BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (vertexID & FRLayout.BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 );
+    }
+
+
+}
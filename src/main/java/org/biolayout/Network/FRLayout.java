@@ -3,16 +3,14 @@ package org.biolayout.Network;
 import java.nio.*;
 import java.text.*;
 import java.util.*;
-import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 import org.biolayout.CoreUI.*;
 import org.biolayout.CoreUI.Dialogs.*;
 import org.biolayout.CPUParallelism.*;
 import org.biolayout.CPUParallelism.Executors.*;
+import org.biolayout.Graph.ActiveRendering.*;
 import org.biolayout.StaticLibraries.*;
 import static java.lang.Math.*;
-import static org.biolayout.StaticLibraries.ArraysAutoBoxUtils.*;
-import static org.biolayout.StaticLibraries.FixedPointMath.*;
 import static org.biolayout.Environment.GlobalEnvironment.*;
 import static org.biolayout.DebugConsole.ConsoleOutput.*;
 
@@ -33,7 +31,6 @@ public final class FRLayout
 
     public static final int BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE = 5;
     public static final int BOOLEAN_PACKED_DATA_BIT_SIZE = (1 << BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) - 1; // to be used for bitshift modulo division
-    private static final byte FIXED_POINT_DECIMAL_PART_LENGTH = 14; // fixed point normalized weights range 0.0-2.0, 0.0 & 2.0 inclusive thus 2 bit & 14 bit integer-decimal part chosen for fixed point
     private static final float TEMPERATURE_SCALING = 0.95f;
 
     private int canvasXSize = 0;
@@ -49,6 +46,10 @@ public final class FRLayout
     private float kSquareValue = 0.0f;
     private float kDoubled = 0.0f;
     private boolean useEdgeWeights = false;
+    private boolean useBarnesHut = false;
+    private float barnesHutTheta = 0.0f;
+    private boolean useThreadLocalAccumulation = false;
+    private boolean useAtomicSynchronization = false;
 
     private IntBuffer vertexIndicesMatrixBuffer = null;
     private int[] vertexIndicesMatrixArray = null;
@@ -60,17 +61,17 @@ public final class FRLayout
     private int[] cachedPseudoVertexMatrixArray = null;
     private FloatBuffer cachedVertexPointCoordsMatrixBuffer = null;
     private float[] cachedVertexPointCoordsMatrixArray = null;
-    private IntBuffer cachedVertexConnectionMatrixBuffer = null;
-    private int[] cachedVertexConnectionMatrixArray = null;
-    private IntBuffer cachedVertexConnectionRowSkipSizeValuesMatrixBuffer = null;
-    private int[] cachedVertexConnectionRowSkipSizeValuesMatrixArray = null;
-    private ShortBuffer cachedVertexNormalizedWeightMatrixBuffer = null;
-    private short[] cachedVertexNormalizedWeightMatrixArray = null;
-    private IntBuffer cachedVertexNormalizedWeightIndicesToSkipBuffer = null;
-    private int[] cachedVertexNormalizedWeightIndicesToSkipArray = null;
+    private int[] cachedVertexNeighboursOffsetsArray = null;
+    private int[] cachedVertexNeighboursArray = null;
+    private float[] cachedVertexNeighboursWeightsArray = null;
+
+    // variables needed for the Barnes-Hut repulsion mode
+    private BarnesHutTree barnesHutTree = null;
+    private BarnesHutTree.Interactions[] barnesHutInteractions = null;
 
     private Vertex[] vertexArray = null;
     private int numberOfVertices = 0;
+    private int vertexIDsRange = 0;
     private LayoutFrame layoutFrame = null;
     private LayoutProgressBarDialog layoutProgressBarDialog = null;
     private NumberFormat nf1 = null;
@@ -78,9 +79,26 @@ public final class FRLayout
 
     // variables needed for N-CP
     private static final int MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION = 1000;
+    private static final int CACHE_LINE_INT_PADDING = 16; // a 64 byte cache line of ints
     private final CyclicBarrierTimer cyclicBarrierTimer = (USE_MULTICORE_PROCESS) ? new CyclicBarrierTimer() : null;
-    private final CyclicBarrier threadBarrier = (USE_MULTICORE_PROCESS) ? new CyclicBarrier(NUMBER_OF_AVAILABLE_PROCESSORS + 1, cyclicBarrierTimer) : null;
+    private final ComputePool computePool = (USE_MULTICORE_PROCESS) ? ComputePool.getInstance() : null;
     private volatile AtomicIntegerArray displacementValuesAtomic = null;
+    private int[][] displacementValuesThreadArrays = null;
+    private int[] threadLocalRowBoundaries = null;
+    private boolean reportIterationsProgress = true;
+
+    // variables needed for the anytime layout
+    private LayoutSnapshotBuffer layoutSnapshotBuffer = null;
+
+    // variables needed for the incremental relayout
+    private int[] incrementalVertexIDsArray = null;
+    private float[] incrementalDampingArray = null;
+    private int[] incrementalHopsArray = null;
+    private int[] gridCellOffsetsArray = null;
+    private int[] gridCellVerticesArray = null;
+    private int[] gridCellsPerAxis = new int[3];
+    private float[] gridMinimumCoords = new float[3];
+    private float[] gridCellSizes = new float[3];
 
     /**
     *  The constructor of the FRLayout class. Initializes all the variables needed for the FRLayout algorithm.
@@ -98,6 +116,63 @@ public final class FRLayout
         this.nf2.setMaximumFractionDigits(2);
     }
 
+    /**
+    *  The component constructor of the FRLayout class, see createComponentFRLayout().
+    */
+    private FRLayout(FRLayout frLayout)
+    {
+        this.canvasXSize = frLayout.canvasXSize;
+        this.canvasYSize = frLayout.canvasYSize;
+        this.canvasZSize = frLayout.canvasZSize;
+        this.displacementMatrixDimensionality = frLayout.displacementMatrixDimensionality;
+        this.vertexIDsRange = frLayout.vertexIDsRange;
+        this.numberOfIterations = frLayout.numberOfIterations;
+        this.temperature = frLayout.temperature;
+        this.kValueModifier = frLayout.kValueModifier;
+        this.kValue = frLayout.kValue;
+        this.kSquareValue = frLayout.kSquareValue;
+        this.kDoubled = frLayout.kDoubled;
+        this.useEdgeWeights = frLayout.useEdgeWeights;
+        this.useBarnesHut = frLayout.useBarnesHut;
+        this.barnesHutTheta = frLayout.barnesHutTheta;
+
+        // the shared data structures, indexed by vertex ID
+        this.displacementValuesArray = frLayout.displacementValuesArray;
+        this.displacementMatrixArray = frLayout.displacementMatrixArray;
+        this.cachedPseudoVertexMatrixArray = frLayout.cachedPseudoVertexMatrixArray;
+        this.cachedVertexPointCoordsMatrixArray = frLayout.cachedVertexPointCoordsMatrixArray;
+        this.cachedVertexNeighboursOffsetsArray = frLayout.cachedVertexNeighboursOffsetsArray;
+        this.cachedVertexNeighboursArray = frLayout.cachedVertexNeighboursArray;
+        this.cachedVertexNeighboursWeightsArray = frLayout.cachedVertexNeighboursWeightsArray;
+
+        this.layoutFrame = frLayout.layoutFrame;
+        this.nf1 = frLayout.nf1;
+        this.nf2 = frLayout.nf2;
+        this.reportIterationsProgress = false;
+
+        if (useBarnesHut)
+            initBarnesHutCaching();
+    }
+
+    /**
+    *  Creates a component FRLayout sharing the cached data structures of this FRLayout, with its own vertex indices, temperature
+    *  & Barnes-Hut tree. The shared data structures are indexed by vertex ID, thus disjoint between the graph components, so many
+    *  component FRLayouts can lay out different components concurrently, each from a single thread & without reporting the iterations
+    *  progress. To be used for components not using N-Core parallelism only, see usesNCoreParallelism().
+    */
+    public FRLayout createComponentFRLayout()
+    {
+        return new FRLayout(this);
+    }
+
+    /**
+    *  Whether the layout of a graph component with the given number of vertices uses N-Core parallelism.
+    */
+    public boolean usesNCoreParallelism(int numberOfVertices)
+    {
+        return ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) && (numberOfVertices >= MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION);
+    }
+
     /**
     *  Sets the Kvalue and initializes the data structures.
     */
@@ -107,6 +182,11 @@ public final class FRLayout
 
         currentVertexCount = 0;
         numberOfVertices = vertices.size();
+        // the vertex IDs index the cached data structures, with gaps for the deleted vertices
+        vertexIDsRange = 0;
+        for (Vertex vertex : vertices)
+            if (vertex.getVertexID() >= vertexIDsRange)
+                vertexIDsRange = vertex.getVertexID() + 1;
         displacementMatrixDimensionality = (6000 * canvasXSize + 6 * canvasYSize);
         numberOfIterations = NUMBER_OF_LAYOUT_ITERATIONS.get();
         temperature = STARTING_TEMPERATURE.get();
@@ -115,6 +195,12 @@ public final class FRLayout
         kSquareValue = kValue * kValue;
         kDoubled = 2.0f * kValue;
         useEdgeWeights = WEIGHTED_EDGES && USE_EDGE_WEIGHTS_FOR_LAYOUT.get();
+        useBarnesHut = USE_BARNES_HUT_FOR_LAYOUT.get();
+        barnesHutTheta = BARNES_HUT_THETA.get();
+        // the N-CP strategy: the thread local accumulation takes precedence over the atomic synchronization, else the threads race on
+        // the displacement values, while the Barnes-Hut forces are always set without synchronization, as every thread owns its vertices
+        useThreadLocalAccumulation = ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) && USE_THREAD_LOCAL_ACCUMULATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() && !useBarnesHut;
+        useAtomicSynchronization = ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) && USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() && !useThreadLocalAccumulation && !useBarnesHut;
 
         initAllCachedDataStructures(vertices);
     }
@@ -128,22 +214,12 @@ public final class FRLayout
         vertices.toArray(vertexArray);
         Arrays.sort(vertexArray);
 
-        long totalCalculationsNeeded = org.biolayout.StaticLibraries.Math.totalTriangularMatrixCalculationsNeeded( (long)numberOfVertices );
         vertexIndicesMatrixBuffer = IntBuffer.allocate(numberOfVertices);
-        cachedVertexConnectionMatrixBuffer = IntBuffer.allocate( (int)(totalCalculationsNeeded >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) + 1 ); // Elaine's optimum idea of defining the bitshift array!
-        cachedVertexConnectionRowSkipSizeValuesMatrixBuffer = IntBuffer.allocate(numberOfVertices - 1);
-        int tempRowSkipSizeValue = (int)totalCalculationsNeeded;
-        int from = numberOfVertices;
-        while (--from >= 1)
-        {
-            tempRowSkipSizeValue -= from;
-            cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.put(from - 1, tempRowSkipSizeValue);
-        }
 
         if (!RENDERER_MODE_3D)
         {
-            int matricesSize = numberOfVertices << 1;
-            if ( ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) && USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+            int matricesSize = vertexIDsRange << 1;
+            if (useAtomicSynchronization)
                 displacementValuesAtomic = new AtomicIntegerArray(matricesSize);
             displacementValuesBuffer = IntBuffer.allocate(matricesSize);
             cachedVertexPointCoordsMatrixBuffer = FloatBuffer.allocate(matricesSize);
@@ -161,12 +237,12 @@ public final class FRLayout
         }
         else
         {
-            int matricesSize = 3 * numberOfVertices;
-            if ( ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) && USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+            int matricesSize = 3 * vertexIDsRange;
+            if (useAtomicSynchronization)
                 displacementValuesAtomic = new AtomicIntegerArray(matricesSize);
             displacementValuesBuffer = IntBuffer.allocate(matricesSize);
             cachedVertexPointCoordsMatrixBuffer = FloatBuffer.allocate(matricesSize);
-            cachedPseudoVertexMatrixBuffer = IntBuffer.allocate((numberOfVertices >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) + 1); // Elaine's optimum idea of defining the bitshift array!
+            cachedPseudoVertexMatrixBuffer = IntBuffer.allocate((vertexIDsRange >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) + 1); // Elaine's optimum idea of defining the bitshift array!
 
             int vertexIDIndex = 0;
             for (Vertex vertex : vertexArray)
@@ -181,65 +257,71 @@ public final class FRLayout
             }
         }
 
-        int dimensionalityIndex = 0;
-        int weightRowIndex = 0;
-        ArrayList<Short> cachedVertexNormalizedWeightArrayList = (useEdgeWeights) ? new ArrayList<Short>() : null;
-        cachedVertexNormalizedWeightIndicesToSkipBuffer = ( useEdgeWeights && ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) ) ? IntBuffer.allocate(numberOfVertices) : null;
-        from = numberOfVertices;
-        int to = 0;
-        while (--from >= 0)
-        // for (int from = 0; from < numberOfVertices; from++)
-        {
-            weightRowIndex = 0;
-            to = numberOfVertices;
-            while (--to >= from + 1)
-            // for (int to = from + 1; to < numberOfVertices; to++)
-            {
-                if ( vertexArray[from].getEdgeConnectionsMap().containsKey(vertexArray[to]) )
-                {
-                    dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.get(vertexArray[from].getVertexID() - 1) + vertexArray[to].getVertexID();
-                    cachedVertexConnectionMatrixBuffer.put( dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE, cachedVertexConnectionMatrixBuffer.get(dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE) | 1 << (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) );
-                    if (useEdgeWeights)
-                    {
-                        cachedVertexNormalizedWeightArrayList.add( convertFromFloatToFixedPointShortNumber(vertexArray[from].getEdgeConnectionsMap().get(vertexArray[to]).getNormalisedWeight(), FIXED_POINT_DECIMAL_PART_LENGTH) );
-                        if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) )
-                            cachedVertexNormalizedWeightIndicesToSkipBuffer.put(from, ++weightRowIndex);
-                    }
-                }
-            }
-        }
-
-        if (useEdgeWeights)
-        {
-            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate( cachedVertexNormalizedWeightArrayList.size() );
-            cachedVertexNormalizedWeightMatrixBuffer.put( toPrimitiveListShort(cachedVertexNormalizedWeightArrayList) );
-        }
-        else
-        {
-            // make sure the native code does not crash the JVM with a C side null pointer exception!
-            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate(1);
-            cachedVertexNormalizedWeightMatrixBuffer.put(new short[1]);
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) )
-            {
-                cachedVertexNormalizedWeightIndicesToSkipBuffer = IntBuffer.allocate(1);
-                cachedVertexNormalizedWeightIndicesToSkipBuffer.put(new int[1]);
-            }
-        }
-
         vertexIndicesMatrixArray = vertexIndicesMatrixBuffer.array();
         displacementValuesArray = displacementValuesBuffer.array();
         if (RENDERER_MODE_3D)
             cachedPseudoVertexMatrixArray = cachedPseudoVertexMatrixBuffer.array();
         cachedVertexPointCoordsMatrixArray = cachedVertexPointCoordsMatrixBuffer.array();
-        cachedVertexConnectionMatrixArray = cachedVertexConnectionMatrixBuffer.array();
-        cachedVertexConnectionRowSkipSizeValuesMatrixArray = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.array();
-        if (useEdgeWeights)
+
+        initVertexNeighboursCaching();
+        if (useBarnesHut)
+            initBarnesHutCaching();
+        else if (useThreadLocalAccumulation)
+            initThreadLocalAccumulationCaching();
+    }
+
+    /**
+    *  Initializes the compressed sparse row neighbours of every vertex ID in O(E), with the neighbours of a vertex ID
+    *  in [cachedVertexNeighboursOffsetsArray[vertexID], cachedVertexNeighboursOffsetsArray[vertexID + 1]).
+    *  Every edge is stored for both its vertices, along with its normalised weight if used.
+    */
+    private void initVertexNeighboursCaching()
+    {
+        cachedVertexNeighboursOffsetsArray = new int[vertexIDsRange + 1];
+        for (Vertex vertex : vertexArray)
+            cachedVertexNeighboursOffsetsArray[vertex.getVertexID() + 1] = vertex.getEdgeConnectionsMap().size();
+        for (int vertexID = 0; vertexID < vertexIDsRange; vertexID++)
+            cachedVertexNeighboursOffsetsArray[vertexID + 1] += cachedVertexNeighboursOffsetsArray[vertexID];
+
+        int totalNeighbours = cachedVertexNeighboursOffsetsArray[vertexIDsRange];
+        cachedVertexNeighboursArray = new int[totalNeighbours];
+        cachedVertexNeighboursWeightsArray = (useEdgeWeights) ? new float[totalNeighbours] : null;
+        for (Vertex vertex : vertexArray)
         {
-            cachedVertexNormalizedWeightMatrixArray = cachedVertexNormalizedWeightMatrixBuffer.array();
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) )
-                cachedVertexNormalizedWeightIndicesToSkipArray = cachedVertexNormalizedWeightIndicesToSkipBuffer.array();
+            int neighbourIndex = cachedVertexNeighboursOffsetsArray[vertex.getVertexID()];
+            for (Map.Entry<Vertex, Edge> entry : vertex.getEdgeConnectionsMap().entrySet())
+            {
+                cachedVertexNeighboursArray[neighbourIndex] = entry.getKey().getVertexID();
+                if (useEdgeWeights)
+                    cachedVertexNeighboursWeightsArray[neighbourIndex] = entry.getValue().getNormalisedWeight();
+                neighbourIndex++;
+            }
         }
-        cachedVertexNormalizedWeightMatrixArray = cachedVertexNormalizedWeightMatrixBuffer.array();
+    }
+
+    /**
+    *  Initializes the Barnes-Hut cached data structures, the tree & the per thread interactions.
+    */
+    private void initBarnesHutCaching()
+    {
+        barnesHutTree = new BarnesHutTree( (!RENDERER_MODE_3D) ? 2 : 3 );
+        barnesHutInteractions = new BarnesHutTree.Interactions[NUMBER_OF_AVAILABLE_PROCESSORS];
+        for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
+            barnesHutInteractions[threadId] = new BarnesHutTree.Interactions();
+    }
+
+    /**
+    *  Initializes the per thread displacement values arrays of the thread local accumulation N-CP strategy.
+    *  Every array is padded to whole cache lines plus one more, so as no two threads ever write to the same cache line.
+    */
+    private void initThreadLocalAccumulationCaching()
+    {
+        int matricesSize = ( (!RENDERER_MODE_3D) ? 2 : 3 ) * vertexIDsRange;
+        int paddedMatricesSize = ( (matricesSize + CACHE_LINE_INT_PADDING - 1) / CACHE_LINE_INT_PADDING + 1 ) * CACHE_LINE_INT_PADDING;
+        displacementValuesThreadArrays = new int[NUMBER_OF_AVAILABLE_PROCESSORS][];
+        for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
+            displacementValuesThreadArrays[threadId] = new int[paddedMatricesSize];
+        threadLocalRowBoundaries = new int[NUMBER_OF_AVAILABLE_PROCESSORS + 1];
     }
 
     /**
@@ -302,58 +384,12 @@ public final class FRLayout
         vertices.toArray(vertexArray);
         Arrays.sort(vertexArray);
 
+        // the neighbours are indexed by vertex ID, thus shared by all the components
         vertexIndicesMatrixBuffer = IntBuffer.allocate(numberOfVertices);
         for (Vertex vertex : vertexArray)
             vertexIndicesMatrixBuffer.put( vertex.getVertexID() );
 
-        int dimensionalityIndex = 0;
-        int weightRowIndex = 0;
-        ArrayList<Short> cachedVertexNormalizedWeightArrayList = (useEdgeWeights) ? new ArrayList<Short>() : null;
-        cachedVertexNormalizedWeightIndicesToSkipBuffer = ( useEdgeWeights && ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) ) ? IntBuffer.allocate(numberOfVertices) : null;
-        int from = numberOfVertices;
-        int to = 0;
-        while (--from >= 0)
-        // for (int from = 0; from < numberOfVertices; from++)
-        {
-            weightRowIndex = 0;
-            to = numberOfVertices;
-            while (--to >= from + 1)
-            // for (int to = from + 1; to < numberOfVertices; to++)
-            {
-                dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.get(vertexArray[from].getVertexID() - 1) + vertexArray[to].getVertexID();
-                if ( useEdgeWeights && ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 )
-                {
-                    cachedVertexNormalizedWeightArrayList.add( convertFromFloatToFixedPointShortNumber(vertexArray[from].getEdgeConnectionsMap().get(vertexArray[to]).getNormalisedWeight(), FIXED_POINT_DECIMAL_PART_LENGTH) );
-                    if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) )
-                        cachedVertexNormalizedWeightIndicesToSkipBuffer.put(from, ++weightRowIndex);
-                }
-            }
-        }
-
-        if (useEdgeWeights)
-        {
-            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate( cachedVertexNormalizedWeightArrayList.size() );
-            cachedVertexNormalizedWeightMatrixBuffer.put( toPrimitiveListShort(cachedVertexNormalizedWeightArrayList) );
-        }
-        else
-        {
-            // make sure the native code does not crash the JVM with a C side null pointer exception!
-            cachedVertexNormalizedWeightMatrixBuffer = ShortBuffer.allocate(1);
-            cachedVertexNormalizedWeightMatrixBuffer.put(new short[1]);
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) )
-            {
-                cachedVertexNormalizedWeightIndicesToSkipBuffer = IntBuffer.allocate(1);
-                cachedVertexNormalizedWeightIndicesToSkipBuffer.put(new int[1]);
-            }
-        }
-
         vertexIndicesMatrixArray = vertexIndicesMatrixBuffer.array();
-        if (useEdgeWeights)
-        {
-            cachedVertexNormalizedWeightMatrixArray = cachedVertexNormalizedWeightMatrixBuffer.array();
-            if ( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) )
-                cachedVertexNormalizedWeightIndicesToSkipArray = cachedVertexNormalizedWeightIndicesToSkipBuffer.array();
-        }
     }
 
     /**
@@ -372,14 +408,26 @@ public final class FRLayout
     private void allIterationsCalcBiDirForce2DJava(int iterations, int componentID)
     {
         int vertexID = 0;
-        if ( !( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
+        if (useBarnesHut)
+        {
+            while (--iterations >= 0)
+            {
+                iterateBarnesHut(true, layoutProgressBarDialog);
+                temperatureHandling();
+                updateGUI();
+
+                if ( layoutProgressBarDialog.userHasCancelled() || layoutProgressBarDialog.userHasStopped() )
+                {
+                    return;
+                }
+            }
+        }
+        else if ( !( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
         {
             int from = numberOfVertices;
             int to = 0;
             while (--iterations >= 0)
             {
-                // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
                 from = numberOfVertices;
                 to = 0;
                 while (--from >= 0)
@@ -388,7 +436,8 @@ public final class FRLayout
                     to = numberOfVertices;
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirRepulsion2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
+                    calcBiDirAttraction2D(vertexIndicesMatrixArray[from], displacementValuesArray);
                 }
 
                 vertexID = numberOfVertices;
@@ -397,7 +446,7 @@ public final class FRLayout
                 temperatureHandling();
                 updateGUI();
 
-                if (layoutProgressBarDialog.userHasCancelled())
+                if ( layoutProgressBarDialog.userHasCancelled() || layoutProgressBarDialog.userHasStopped() )
                 {
                     return;
                 }
@@ -410,37 +459,18 @@ public final class FRLayout
                 String progressBarParallelismTitle = (USE_MULTICORE_PROCESS) ? "(Utilizing " + NUMBER_OF_AVAILABLE_PROCESSORS + "-Core Parallelism)" : "";
                 layoutProgressBarDialog.prepareProgressBar(numberOfIterations,
                         "Now Processing Layout Iterations " + progressBarParallelismTitle +
-                        ( (componentID != 0) ? " for Graph Component: " + componentID : "" ));
+                        ( (componentID != 0) ? " for Graph Component: " + componentID : "" ), false, layoutSnapshotBuffer != null);
             }
 
             boolean isPowerOfTwo = org.biolayout.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
             while (--iterations >= 0)
             {
-                LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                                 new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                                 new LoggerThreadFactory("FRLayout2D"),
-                                                                                 new ThreadPoolExecutor.CallerRunsPolicy() );
+                if (useThreadLocalAccumulation)
+                    calcThreadLocalRowBoundaries();
 
-                cyclicBarrierTimer.clear();
-                for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                    executor.execute( frLayout2DProcessKernel(threadId, isPowerOfTwo) );
-
-                try
-                {
-                    threadBarrier.await(); // wait for all threads to be ready
-                    threadBarrier.await(); // wait for all threads to finish
-                    executor.shutdown();
-                }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in allIterationsCalcBiDirForce2DJava()!:\n" + ex.getMessage());
-                }
-                catch (InterruptedException ex)
-                {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in allIterationsCalcBiDirForce2DJava()!:\n" + ex.getMessage());
-                }
+                computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayout2DProcessKernel(isPowerOfTwo), layoutProgressBarDialog, cyclicBarrierTimer);
+                if (useThreadLocalAccumulation)
+                    computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayoutThreadLocalReductionKernel(true));
 
                 if (DEBUG_BUILD) println("\nTotal allIterationsCalcBiDirForce2DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
 
@@ -448,7 +478,7 @@ public final class FRLayout
                 temperatureHandling();
                 updateGUI();
 
-                if (layoutProgressBarDialog.userHasCancelled())
+                if ( layoutProgressBarDialog.userHasCancelled() || layoutProgressBarDialog.userHasStopped() )
                 {
                     return;
                 }
@@ -462,10 +492,12 @@ public final class FRLayout
     public void iterateCalcBiDirForce2D()
     {
         int vertexID = 0;
-        if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
+        if (useBarnesHut)
+        {
+            iterateBarnesHut(true, null);
+        }
+        else if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
         {
-            // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-            int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
             int from = numberOfVertices;
             int to = 0;
             while (--from >= 0)
@@ -474,7 +506,8 @@ public final class FRLayout
                 to = numberOfVertices;
                 while (--to >= from + 1)
                 // for (int to = from + 1; to < numberOfVertices; to++)
-                    calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                    calcBiDirRepulsion2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
+                calcBiDirAttraction2D(vertexIndicesMatrixArray[from], displacementValuesArray);
             }
 
             vertexID = numberOfVertices;
@@ -484,31 +517,12 @@ public final class FRLayout
         else
         {
             boolean isPowerOfTwo = org.biolayout.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
-            LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                             new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                             new LoggerThreadFactory("FRLayout2D"),
-                                                                             new ThreadPoolExecutor.CallerRunsPolicy() );
+            if (useThreadLocalAccumulation)
+                calcThreadLocalRowBoundaries();
 
-            cyclicBarrierTimer.clear();
-            for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                executor.execute( frLayout2DProcessKernel(threadId, isPowerOfTwo) );
-
-            try
-            {
-                threadBarrier.await(); // wait for all threads to be ready
-                threadBarrier.await(); // wait for all threads to finish
-                executor.shutdown();
-            }
-            catch (BrokenBarrierException ex)
-            {
-                if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in iterateCalcBiDirForce2DJava()!:\n" + ex.getMessage());
-            }
-            catch (InterruptedException ex)
-            {
-                // restore the interuption status after catching InterruptedException
-                Thread.currentThread().interrupt();
-                if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in iterateCalcBiDirForce2DJava()!:\n" + ex.getMessage());
-            }
+            computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayout2DProcessKernel(isPowerOfTwo), null, cyclicBarrierTimer);
+            if (useThreadLocalAccumulation)
+                computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayoutThreadLocalReductionKernel(true));
 
             if (DEBUG_BUILD) println("\nTotal iterateCalcBiDirForce2DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
 
@@ -519,143 +533,95 @@ public final class FRLayout
     }
 
     /**
-    *   Return a light-weight thread using the Adapter technique for the 2D layout FRLayout algorithm so as to avoid any load latencies.
-    */
-    private Runnable frLayout2DProcessKernel(final int threadId, final boolean isPowerOfTwo)
-    {
-        return frLayout2DProcessKernel(threadId, isPowerOfTwo, false, threadBarrier);
-    }
-
-    /**
-    *   Return a light-weight thread using the Adapter technique for the 2D layout FRLayout algorithm so as to avoid any load latencies.
-    *   Overloaded version that supports optional native method processing.
+    *   Return a light-weight kernel using the Adapter technique for the 2D layout FRLayout algorithm so as to avoid any load latencies.
     */
-    public Runnable frLayout2DProcessKernel(final int threadId, final boolean isPowerOfTwo, final boolean javaOrNativeComparisonMethod, final CyclicBarrier threadBarrier)
+    private ComputePool.ParallelKernel frLayout2DProcessKernel(final boolean isPowerOfTwo)
     {
-        return new Runnable()
+        return new ComputePool.ParallelKernel()
         {
 
             @Override
-            public void run()
+            public void run(int threadId)
             {
-                try
+                int from = numberOfVertices;
+                int to = 0;
+                if (useThreadLocalAccumulation)
+                {
+                    calcThreadLocalForces(threadId, true);
+                }
+                else if (useAtomicSynchronization)
                 {
-                    threadBarrier.await();
-                    try
+                    if (isPowerOfTwo)
                     {
-                        // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                        int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
-                        int from = numberOfVertices;
-                        int to = 0;
-                        if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
                         {
-                            if (isPowerOfTwo)
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ( ( from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1) ) == threadId )
                             {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
-                                {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ( ( from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1) ) == threadId )
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                    }
-                                }
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
+                                    calcBiDirRepulsion2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to]);
+                                calcBiDirAttraction2DAtomic(vertexIndicesMatrixArray[from]);
                             }
-                            else
+                        }
+                    }
+                    else
+                    {
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
+                        {
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ( (from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId )
                             {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
-                                {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ( (from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId )
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                    }
-                                }
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
+                                    calcBiDirRepulsion2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to]);
+                                calcBiDirAttraction2DAtomic(vertexIndicesMatrixArray[from]);
                             }
                         }
-                        else
+                    }
+                }
+                else
+                {
+                    if (isPowerOfTwo)
+                    {
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
                         {
-                            if (isPowerOfTwo)
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ((from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1)) == threadId)
                             {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
                                 {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ((from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1)) == threadId)
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                        {
-                                            calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                        }
-                                    }
+                                    calcBiDirRepulsion2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
                                 }
+                                calcBiDirAttraction2D(vertexIndicesMatrixArray[from], displacementValuesArray);
                             }
-                            else
+                        }
+                    }
+                    else
+                    {
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
+                        {
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ((from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId)
                             {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
                                 {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ((from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId)
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                        {
-                                            calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                        }
-                                    }
+                                    calcBiDirRepulsion2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
                                 }
+                                calcBiDirAttraction2D(vertexIndicesMatrixArray[from], displacementValuesArray);
                             }
                         }
                     }
-                    finally
-                    {
-                        threadBarrier.await();
-                    }
-                }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the N-Core thread with threadId " + threadId + " in frLayout2DProcessKernel()!:\n" + ex.getMessage());
-                }
-                catch (InterruptedException ex)
-                {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the N-Core thread with threadId " + threadId + " in frLayout2DProcessKernel()!:\n" + ex.getMessage());
                 }
             }
 
@@ -664,15 +630,14 @@ public final class FRLayout
     }
 
     /**
-    *  Calculates the 2D bi-directional force of the FRLayout algorithm.
+    *  Calculates the 2D bi-directional repulsive force of the FRLayout algorithm.
     */
-    private void calcBiDirForce2D(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirRepulsion2D(int vertexID1, int vertexID2, int[] displacementValues)
     {
         int vertexID1Index0 = vertexID1 << 1;
         int vertexID2Index0 = vertexID2 << 1;
         int vertexID1Index1 = vertexID1Index0 + 1;
         int vertexID2Index1 = vertexID2Index0 + 1;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -684,6 +649,8 @@ public final class FRLayout
 
         int absDistX = (int)( (distX > 0.0f) ? distX : -distX );
         int absDistY = (int)( (distY > 0.0f) ? distY : -distY );
+        if ( (absDistX > kDoubled) && (absDistY > kDoubled) )
+            return;
 
         int signX = (distX > 0.0f) ? 1 : -1;
         int signY = (distY > 0.0f) ? 1 : -1;
@@ -691,55 +658,82 @@ public final class FRLayout
         int distanceCache = (6000 * absDistX + 6 * absDistY);
         if (distanceCache >= displacementMatrixDimensionality)
             distanceCache = displacementMatrixDimensionality;
-        int dispCalcX = 0, dispCalcY = 0;
 
-        if ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 )
-        {
-            if (useEdgeWeights)
-            {
-                float weight = convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
-                dispCalcX = (int)( ( ( (displacementMatrixArray[distanceCache    ] - displacementMatrixArray[distanceCache + 4]) * weight ) + displacementMatrixArray[distanceCache + 4] ) * signX );
-                dispCalcY = (int)( ( ( (displacementMatrixArray[distanceCache + 1] - displacementMatrixArray[distanceCache + 5]) * weight ) + displacementMatrixArray[distanceCache + 5] ) * signY );
-            }
-            else
-            {
-                dispCalcX = (int)(displacementMatrixArray[distanceCache    ] * signX);
-                dispCalcY = (int)(displacementMatrixArray[distanceCache + 1] * signY);
-            }
+        int dispCalcX = (int)(displacementMatrixArray[distanceCache + 2] * signX);
+        int dispCalcY = (int)(displacementMatrixArray[distanceCache + 3] * signY);
 
-            displacementValuesArray[vertexID1Index0] += dispCalcX;
-            displacementValuesArray[vertexID1Index1] += dispCalcY;
+        displacementValues[vertexID1Index0] += dispCalcX;
+        displacementValues[vertexID1Index1] += dispCalcY;
 
-            displacementValuesArray[vertexID2Index0] -= dispCalcX;
-            displacementValuesArray[vertexID2Index1] -= dispCalcY;
-        }
-        else
-        {
-            if ( !( (absDistX > kDoubled) && (absDistY > kDoubled) ) )
-            {
-                dispCalcX = (int)(displacementMatrixArray[distanceCache + 2] * signX);
-                dispCalcY = (int)(displacementMatrixArray[distanceCache + 3] * signY);
+        displacementValues[vertexID2Index0] -= dispCalcX;
+        displacementValues[vertexID2Index1] -= dispCalcY;
+    }
 
-                displacementValuesArray[vertexID1Index0] += dispCalcX;
-                displacementValuesArray[vertexID1Index1] += dispCalcY;
+    /**
+    *  Calculates the 2D bi-directional attractive forces of the FRLayout algorithm for the edges of a vertex,
+    *  every edge once from its lower vertex ID. The attraction is the difference of the connected & the
+    *  repulsion only displacements.
+    */
+    private void calcBiDirAttraction2D(int vertexID1, int[] displacementValues)
+    {
+        for (int i = cachedVertexNeighboursOffsetsArray[vertexID1]; i < cachedVertexNeighboursOffsetsArray[vertexID1 + 1]; i++)
+        {
+            int vertexID2 = cachedVertexNeighboursArray[i];
+            if (vertexID2 < vertexID1)
+                continue;
 
-                displacementValuesArray[vertexID2Index0] -= dispCalcX;
-                displacementValuesArray[vertexID2Index1] -= dispCalcY;
-            }
+            calcBiDirAttraction2D(vertexID1, vertexID2, (useEdgeWeights) ? cachedVertexNeighboursWeightsArray[i] : 1.0f, displacementValues);
         }
     }
 
     /**
-    *  Calculates the 2D bi-directional force of the FRLayout algorithm.
+    *  Calculates the 2D bi-directional attractive force of the FRLayout algorithm for the edge between two vertices.
+    */
+    private void calcBiDirAttraction2D(int vertexID1, int vertexID2, float weight, int[] displacementValues)
+    {
+        int vertexID1Index0 = vertexID1 << 1;
+        int vertexID1Index1 = vertexID1Index0 + 1;
+        int vertexID2Index0 = vertexID2 << 1;
+        int vertexID2Index1 = vertexID2Index0 + 1;
+
+        float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
+        float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
+
+        if (distX == 0.0f)
+            distX = 1.0f;
+        if (distY == 0.0f)
+            distY = 1.0f;
+
+        int absDistX = (int)( (distX > 0.0f) ? distX : -distX );
+        int absDistY = (int)( (distY > 0.0f) ? distY : -distY );
+
+        int signX = (distX > 0.0f) ? 1 : -1;
+        int signY = (distY > 0.0f) ? 1 : -1;
+
+        int distanceCache = (6000 * absDistX + 6 * absDistY);
+        if (distanceCache >= displacementMatrixDimensionality)
+            distanceCache = displacementMatrixDimensionality;
+
+        int dispCalcX = (int)( (displacementMatrixArray[distanceCache    ] - displacementMatrixArray[distanceCache + 2]) * weight * signX );
+        int dispCalcY = (int)( (displacementMatrixArray[distanceCache + 1] - displacementMatrixArray[distanceCache + 3]) * weight * signY );
+
+        displacementValues[vertexID1Index0] += dispCalcX;
+        displacementValues[vertexID1Index1] += dispCalcY;
+
+        displacementValues[vertexID2Index0] -= dispCalcX;
+        displacementValues[vertexID2Index1] -= dispCalcY;
+    }
+
+    /**
+    *  Calculates the 2D bi-directional repulsive force of the FRLayout algorithm.
     *  Atomic version.
     */
-    private void calcBiDirForce2DAtomic(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirRepulsion2DAtomic(int vertexID1, int vertexID2)
     {
         int vertexID1Index0 = vertexID1 << 1;
         int vertexID2Index0 = vertexID2 << 1;
         int vertexID1Index1 = vertexID1Index0 + 1;
         int vertexID2Index1 = vertexID2Index0 + 1;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -751,6 +745,8 @@ public final class FRLayout
 
         int absDistX = (int)( (distX > 0.0f) ? distX : -distX );
         int absDistY = (int)( (distY > 0.0f) ? distY : -distY );
+        if ( (absDistX > kDoubled) && (absDistY > kDoubled) )
+            return;
 
         int signX = (distX > 0.0f) ? 1 : -1;
         int signY = (distY > 0.0f) ? 1 : -1;
@@ -758,21 +754,57 @@ public final class FRLayout
         int distanceCache = (6000 * absDistX + 6 * absDistY);
         if (distanceCache >= displacementMatrixDimensionality)
             distanceCache = displacementMatrixDimensionality;
-        int dispCalcX = 0, dispCalcY = 0;
 
-        if ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 )
+        int dispCalcX = (int)(displacementMatrixArray[distanceCache + 2] * signX);
+        int dispCalcY = (int)(displacementMatrixArray[distanceCache + 3] * signY);
+
+        displacementValuesAtomic.getAndAdd(vertexID1Index0, dispCalcX);
+        displacementValuesAtomic.getAndAdd(vertexID1Index1, dispCalcY);
+
+        displacementValuesAtomic.getAndAdd(vertexID2Index0, -dispCalcX);
+        displacementValuesAtomic.getAndAdd(vertexID2Index1, -dispCalcY);
+    }
+
+    /**
+    *  Calculates the 2D bi-directional attractive forces of the FRLayout algorithm for the edges of a vertex,
+    *  every edge once from its lower vertex ID. The attraction is the difference of the connected & the
+    *  repulsion only displacements.
+    *  Atomic version.
+    */
+    private void calcBiDirAttraction2DAtomic(int vertexID1)
+    {
+        int vertexID1Index0 = vertexID1 << 1;
+        int vertexID1Index1 = vertexID1Index0 + 1;
+        for (int i = cachedVertexNeighboursOffsetsArray[vertexID1]; i < cachedVertexNeighboursOffsetsArray[vertexID1 + 1]; i++)
         {
-            if (useEdgeWeights)
-            {
-                float weight = convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
-                dispCalcX = (int)( ( ( (displacementMatrixArray[distanceCache    ] - displacementMatrixArray[distanceCache + 4]) * weight ) + displacementMatrixArray[distanceCache + 4] ) * signX );
-                dispCalcY = (int)( ( ( (displacementMatrixArray[distanceCache + 1] - displacementMatrixArray[distanceCache + 5]) * weight ) + displacementMatrixArray[distanceCache + 5] ) * signY );
-            }
-            else
-            {
-                dispCalcX = (int)(displacementMatrixArray[distanceCache    ] * signX);
-                dispCalcY = (int)(displacementMatrixArray[distanceCache + 1] * signY);
-            }
+            int vertexID2 = cachedVertexNeighboursArray[i];
+            if (vertexID2 < vertexID1)
+                continue;
+
+            int vertexID2Index0 = vertexID2 << 1;
+            int vertexID2Index1 = vertexID2Index0 + 1;
+
+            float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
+            float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
+
+            if (distX == 0.0f)
+                distX = 1.0f;
+            if (distY == 0.0f)
+                distY = 1.0f;
+
+            int absDistX = (int)( (distX > 0.0f) ? distX : -distX );
+            int absDistY = (int)( (distY > 0.0f) ? distY : -distY );
+
+            int signX = (distX > 0.0f) ? 1 : -1;
+            int signY = (distY > 0.0f) ? 1 : -1;
+
+            int distanceCache = (6000 * absDistX + 6 * absDistY);
+            if (distanceCache >= displacementMatrixDimensionality)
+                distanceCache = displacementMatrixDimensionality;
+
+            float weight = (useEdgeWeights) ? cachedVertexNeighboursWeightsArray[i] : 1.0f;
+            int dispCalcX = (int)( (displacementMatrixArray[distanceCache    ] - displacementMatrixArray[distanceCache + 2]) * weight * signX );
+            int dispCalcY = (int)( (displacementMatrixArray[distanceCache + 1] - displacementMatrixArray[distanceCache + 3]) * weight * signY );
 
             displacementValuesAtomic.getAndAdd(vertexID1Index0, dispCalcX);
             displacementValuesAtomic.getAndAdd(vertexID1Index1, dispCalcY);
@@ -780,20 +812,6 @@ public final class FRLayout
             displacementValuesAtomic.getAndAdd(vertexID2Index0, -dispCalcX);
             displacementValuesAtomic.getAndAdd(vertexID2Index1, -dispCalcY);
         }
-        else
-        {
-            if ( !( (absDistX > kDoubled) && (absDistY > kDoubled) ) )
-            {
-                dispCalcX = (int)(displacementMatrixArray[distanceCache + 2] * signX);
-                dispCalcY = (int)(displacementMatrixArray[distanceCache + 3] * signY);
-
-                displacementValuesAtomic.getAndAdd(vertexID1Index0, dispCalcX);
-                displacementValuesAtomic.getAndAdd(vertexID1Index1, dispCalcY);
-
-                displacementValuesAtomic.getAndAdd(vertexID2Index0, -dispCalcX);
-                displacementValuesAtomic.getAndAdd(vertexID2Index1, -dispCalcY);
-            }
-        }
     }
 
     /**
@@ -895,14 +913,26 @@ public final class FRLayout
     private void allIterationsCalcBiDirForce3DJava(int iterations, int componentID)
     {
         int vertexID = 0;
-        if ( !( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
+        if (useBarnesHut)
+        {
+            while (--iterations >= 0)
+            {
+                iterateBarnesHut(false, layoutProgressBarDialog);
+                temperatureHandling();
+                updateGUI();
+
+                if ( layoutProgressBarDialog.userHasCancelled() || layoutProgressBarDialog.userHasStopped() )
+                {
+                    return;
+                }
+            }
+        }
+        else if ( !( ( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
         {
             int from = numberOfVertices;
             int to = 0;
             while (--iterations >= 0)
             {
-                // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
                 from = numberOfVertices;
                 to = 0;
                 while (--from >= 0)
@@ -911,7 +941,8 @@ public final class FRLayout
                     to = numberOfVertices;
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirRepulsion3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
+                    calcBiDirAttraction3D(vertexIndicesMatrixArray[from], displacementValuesArray);
                 }
 
                 vertexID = numberOfVertices;
@@ -920,7 +951,7 @@ public final class FRLayout
                 temperatureHandling();
                 updateGUI();
 
-                if (layoutProgressBarDialog.userHasCancelled())
+                if ( layoutProgressBarDialog.userHasCancelled() || layoutProgressBarDialog.userHasStopped() )
                 {
                     return;
                 }
@@ -933,37 +964,18 @@ public final class FRLayout
                 String progressBarParallelismTitle = (USE_MULTICORE_PROCESS) ? "(Utilizing " + NUMBER_OF_AVAILABLE_PROCESSORS + "-Core Parallelism)" : "";
                 layoutProgressBarDialog.prepareProgressBar(numberOfIterations, "Now Processing Layout Iterations " +
                         progressBarParallelismTitle + ( (componentID != 0) ? " for Graph Component: " +
-                        componentID : "" ));
+                        componentID : "" ), false, layoutSnapshotBuffer != null);
             }
 
             boolean isPowerOfTwo = org.biolayout.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
             while (--iterations >= 0)
             {
-                LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                                 new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                                 new LoggerThreadFactory("FRLayout3D"),
-                                                                                 new ThreadPoolExecutor.CallerRunsPolicy() );
-
-                cyclicBarrierTimer.clear();
-                for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                    executor.execute( frLayout3DProcessKernel(threadId, isPowerOfTwo) );
+                if (useThreadLocalAccumulation)
+                    calcThreadLocalRowBoundaries();
 
-                try
-                {
-                    threadBarrier.await(); // wait for all threads to be ready
-                    threadBarrier.await(); // wait for all threads to finish
-                    executor.shutdown();
-                }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in allIterationsCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-                }
-                catch (InterruptedException ex)
-                {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in allIterationsCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-                }
+                computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayout3DProcessKernel(isPowerOfTwo), layoutProgressBarDialog, cyclicBarrierTimer);
+                if (useThreadLocalAccumulation)
+                    computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayoutThreadLocalReductionKernel(false));
 
                 if (DEBUG_BUILD) println("\nTotal allIterationsCalcBiDirForce3DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
 
@@ -971,7 +983,7 @@ public final class FRLayout
                 temperatureHandling();
                 updateGUI();
 
-                if (layoutProgressBarDialog.userHasCancelled())
+                if ( layoutProgressBarDialog.userHasCancelled() || layoutProgressBarDialog.userHasStopped() )
                 {
                     return;
                 }
@@ -985,10 +997,12 @@ public final class FRLayout
     public void iterateCalcBiDirForce3D()
     {
         int vertexID = 0;
-        if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
+        if (useBarnesHut)
+        {
+            iterateBarnesHut(false, null);
+        }
+        else if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
         {
-            // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-            int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
             int from = numberOfVertices;
             int to = 0;
             while (--from >= 0)
@@ -997,7 +1011,8 @@ public final class FRLayout
                 to = numberOfVertices;
                 while (--to >= from + 1)
                 // for (int to = from + 1; to < numberOfVertices; to++)
-                    calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                    calcBiDirRepulsion3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
+                calcBiDirAttraction3D(vertexIndicesMatrixArray[from], displacementValuesArray);
             }
 
             vertexID = numberOfVertices;
@@ -1007,31 +1022,12 @@ public final class FRLayout
         else
         {
             boolean isPowerOfTwo = org.biolayout.StaticLibraries.Math.isPowerOfTwo(NUMBER_OF_AVAILABLE_PROCESSORS);
-            LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(NUMBER_OF_AVAILABLE_PROCESSORS, NUMBER_OF_AVAILABLE_PROCESSORS, 0L, TimeUnit.MILLISECONDS,
-                                                                             new LinkedBlockingQueue<Runnable>(NUMBER_OF_AVAILABLE_PROCESSORS),
-                                                                             new LoggerThreadFactory("FRLayout3D"),
-                                                                             new ThreadPoolExecutor.CallerRunsPolicy() );
-
-            cyclicBarrierTimer.clear();
-            for (int threadId = 0; threadId < NUMBER_OF_AVAILABLE_PROCESSORS; threadId++)
-                executor.execute( frLayout3DProcessKernel(threadId, isPowerOfTwo) );
+            if (useThreadLocalAccumulation)
+                calcThreadLocalRowBoundaries();
 
-            try
-            {
-                threadBarrier.await(); // wait for all threads to be ready
-                threadBarrier.await(); // wait for all threads to finish
-                executor.shutdown();
-            }
-            catch (BrokenBarrierException ex)
-            {
-                if (DEBUG_BUILD) println("Problem with a broken barrier with the main FRLayout thread in iterateCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-            }
-            catch (InterruptedException ex)
-            {
-                // restore the interuption status after catching InterruptedException
-                Thread.currentThread().interrupt();
-                if (DEBUG_BUILD) println("Problem with pausing the main FRLayout thread in iterateCalcBiDirForce3DJava()!:\n" + ex.getMessage());
-            }
+            computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayout3DProcessKernel(isPowerOfTwo), null, cyclicBarrierTimer);
+            if (useThreadLocalAccumulation)
+                computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayoutThreadLocalReductionKernel(false));
 
             if (DEBUG_BUILD) println("\nTotal iterateCalcBiDirForce3DJava N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
 
@@ -1042,144 +1038,96 @@ public final class FRLayout
     }
 
     /**
-    *   Return a light-weight thread using the Adapter technique for the 3D FRLayout algorithm so as to avoid any load latencies.
-    */
-    private Runnable frLayout3DProcessKernel(final int threadId, final boolean isPowerOfTwo)
-    {
-        return frLayout3DProcessKernel(threadId, isPowerOfTwo, false, threadBarrier);
-    }
-
-    /**
-    *   Return a light-weight thread using the Adapter technique for the 3D FRLayout algorithm so as to avoid any load latencies.
-    *   Overloaded version that supports optional native method processing.
+    *   Return a light-weight kernel using the Adapter technique for the 3D FRLayout algorithm so as to avoid any load latencies.
     */
-    public Runnable frLayout3DProcessKernel(final int threadId, final boolean isPowerOfTwo, final boolean javaOrNativeComparisonMethod, final CyclicBarrier threadBarrier)
+    private ComputePool.ParallelKernel frLayout3DProcessKernel(final boolean isPowerOfTwo)
     {
-        return new Runnable()
+        return new ComputePool.ParallelKernel()
         {
 
             @Override
-            public void run()
+            public void run(int threadId)
             {
-                try
+                int from = numberOfVertices;
+                int to = 0;
+                if (useThreadLocalAccumulation)
+                {
+                    calcThreadLocalForces(threadId, false);
+                }
+                else if (useAtomicSynchronization)
                 {
-                    threadBarrier.await();
-                    try
+                    if (isPowerOfTwo)
                     {
-                        // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-                        int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
-                        int from = numberOfVertices;
-                        int to = 0;
-                        if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
                         {
-                            if (isPowerOfTwo)
-                            {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
-                                {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ( ( from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1) ) == threadId )
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                    }
-                                }
-                            }
-                            else
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ( ( from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1) ) == threadId )
                             {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
-                                {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ( (from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId )
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                            calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                    }
-                                }
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
+                                    calcBiDirRepulsion3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to]);
+                                calcBiDirAttraction3DAtomic(vertexIndicesMatrixArray[from]);
                             }
                         }
-                        else
+                    }
+                    else
+                    {
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
                         {
-                            if (isPowerOfTwo)
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ( (from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId )
                             {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
-                                {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ((from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1)) == threadId)
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                        {
-                                            calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                        }
-                                    }
-                                }
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
+                                    calcBiDirRepulsion3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to]);
+                                calcBiDirAttraction3DAtomic(vertexIndicesMatrixArray[from]);
                             }
-                            else
+                        }
+                    }
+                }
+                else
+                {
+                    if (isPowerOfTwo)
+                    {
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
+                        {
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ((from & (NUMBER_OF_AVAILABLE_PROCESSORS - 1)) == threadId)
                             {
-                                while (--from >= 0)
-                                // for (int from = 0; from < numberOfVertices; from++)
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
                                 {
-                                    // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
-                                    if ((from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId)
-                                    {
-                                        to = numberOfVertices;
-                                        while (--to >= from + 1)
-                                        // for (int to = from + 1; to < numberOfVertices; to++)
-                                        {
-                                            calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
-                                        }
-                                    }
-                                    else
-                                    {
-                                        if (useEdgeWeights)
-                                        {
-                                            cachedVertexNormalizedWeightIndex[0] += cachedVertexNormalizedWeightIndicesToSkipArray[from];
-                                        }
-                                    }
+                                    calcBiDirRepulsion3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
                                 }
+                                calcBiDirAttraction3D(vertexIndicesMatrixArray[from], displacementValuesArray);
                             }
                         }
                     }
-                    finally
+                    else
                     {
-                        threadBarrier.await();
+                        while (--from >= 0)
+                        // for (int from = 0; from < numberOfVertices; from++)
+                        {
+                            // distribute every (from % NUMBER_OF_AVAILABLE_PROCESSORS) execution to the given threadId
+                            if ((from % NUMBER_OF_AVAILABLE_PROCESSORS) == threadId)
+                            {
+                                to = numberOfVertices;
+                                while (--to >= from + 1)
+                                // for (int to = from + 1; to < numberOfVertices; to++)
+                                {
+                                    calcBiDirRepulsion3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
+                                }
+                                calcBiDirAttraction3D(vertexIndicesMatrixArray[from], displacementValuesArray);
+                            }
+                        }
                     }
                 }
-                catch (BrokenBarrierException ex)
-                {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the N-Core thread with threadId " + threadId + " in frLayout3DProcessKernel()!:\n" + ex.getMessage());
-                }
-                catch (InterruptedException ex)
-                {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the N-Core thread with threadId " + threadId + " in frLayout3DProcessKernel()!:\n" + ex.getMessage());
-                }
             }
 
 
@@ -1187,9 +1135,9 @@ public final class FRLayout
     }
 
     /**
-    *  Calculates the 3D bi-directional force of the FRLayout algorithm.
+    *  Calculates the 3D bi-directional repulsive force of the FRLayout algorithm.
     */
-    private void calcBiDirForce3D(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirRepulsion3D(int vertexID1, int vertexID2, int[] displacementValues)
     {
         int vertexID1Index0 = 3 * vertexID1;
         int vertexID2Index0 = 3 * vertexID2;
@@ -1197,7 +1145,6 @@ public final class FRLayout
         int vertexID2Index1 = vertexID2Index0 + 1;
         int vertexID1Index2 = vertexID1Index0 + 2;
         int vertexID2Index2 = vertexID2Index0 + 2;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -1210,66 +1157,87 @@ public final class FRLayout
         if (distZ == 0.0f)
             distZ = 1.0f;
 
-        boolean connected = ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 );
-        if ( !connected && ( ( (distX < 0) ? -distX : distX ) > kDoubled ) && ( ( (distY < 0) ? -distY : distY ) > kDoubled ) ) // abs(distX) & abs(distY)
+        if ( ( ( (distX < 0) ? -distX : distX ) > kDoubled ) && ( ( (distY < 0) ? -distY : distY ) > kDoubled ) ) // abs(distX) & abs(distY)
             return;
 
-        float squaredDistance = (distX * distX + distY * distY + distZ * distZ);
-        float distance = (float)sqrt(squaredDistance);
-
-        if (distance <= kDoubled)
+        float distance = (float)sqrt(distX * distX + distY * distY + distZ * distZ);
+        if ( (distance <= kDoubled) && !( isPseudoVertex(vertexID1) && isPseudoVertex(vertexID2) ) )
         {
-            if ( !( ( ( ( cachedPseudoVertexMatrixArray[vertexID1 >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (vertexID1 & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 ) && ( ( ( cachedPseudoVertexMatrixArray[vertexID2 >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (vertexID2 & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 ) ) )
-            {
-                float kDist = kSquareValue / distance;
-                int dispCalcX = (int)( (distX / distance) * kDist );
-                int dispCalcY = (int)( (distY / distance) * kDist );
-                int dispCalcZ = (int)( (distZ / distance) * kDist );
-
-                displacementValuesArray[vertexID1Index0] += dispCalcX;
-                displacementValuesArray[vertexID1Index1] += dispCalcY;
-                displacementValuesArray[vertexID1Index2] += dispCalcZ;
-
-                displacementValuesArray[vertexID2Index0] -= dispCalcX;
-                displacementValuesArray[vertexID2Index1] -= dispCalcY;
-                displacementValuesArray[vertexID2Index2] -= dispCalcZ;
-            }
+            float kDist = kSquareValue / distance;
+            int dispCalcX = (int)( (distX / distance) * kDist );
+            int dispCalcY = (int)( (distY / distance) * kDist );
+            int dispCalcZ = (int)( (distZ / distance) * kDist );
+
+            displacementValues[vertexID1Index0] += dispCalcX;
+            displacementValues[vertexID1Index1] += dispCalcY;
+            displacementValues[vertexID1Index2] += dispCalcZ;
+
+            displacementValues[vertexID2Index0] -= dispCalcX;
+            displacementValues[vertexID2Index1] -= dispCalcY;
+            displacementValues[vertexID2Index2] -= dispCalcZ;
         }
+    }
 
-        if (connected)
+    /**
+    *  Calculates the 3D bi-directional attractive forces of the FRLayout algorithm for the edges of a vertex,
+    *  every edge once from its lower vertex ID.
+    */
+    private void calcBiDirAttraction3D(int vertexID1, int[] displacementValues)
+    {
+        for (int i = cachedVertexNeighboursOffsetsArray[vertexID1]; i < cachedVertexNeighboursOffsetsArray[vertexID1 + 1]; i++)
         {
-            float kDist = squaredDistance / kValue;
-            int dispCalcX = 0, dispCalcY = 0, dispCalcZ = 0;
+            int vertexID2 = cachedVertexNeighboursArray[i];
+            if (vertexID2 < vertexID1)
+                continue;
 
-            if (useEdgeWeights)
-            {
-                float kDistWeight = kDist * convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
-                dispCalcX = (int)( (distX / distance) * kDistWeight );
-                dispCalcY = (int)( (distY / distance) * kDistWeight );
-                dispCalcZ = (int)( (distZ / distance) * kDistWeight );
-            }
-            else
-            {
-                dispCalcX = (int)( (distX / distance) * kDist );
-                dispCalcY = (int)( (distY / distance) * kDist );
-                dispCalcZ = (int)( (distZ / distance) * kDist );
-            }
+            calcBiDirAttraction3D(vertexID1, vertexID2, (useEdgeWeights) ? cachedVertexNeighboursWeightsArray[i] : 1.0f, displacementValues);
+        }
+    }
 
-            displacementValuesArray[vertexID1Index0] -= dispCalcX;
-            displacementValuesArray[vertexID1Index1] -= dispCalcY;
-            displacementValuesArray[vertexID1Index2] -= dispCalcZ;
+    /**
+    *  Calculates the 3D bi-directional attractive force of the FRLayout algorithm for the edge between two vertices.
+    */
+    private void calcBiDirAttraction3D(int vertexID1, int vertexID2, float weight, int[] displacementValues)
+    {
+        int vertexID1Index0 = 3 * vertexID1;
+        int vertexID1Index1 = vertexID1Index0 + 1;
+        int vertexID1Index2 = vertexID1Index0 + 2;
+        int vertexID2Index0 = 3 * vertexID2;
+        int vertexID2Index1 = vertexID2Index0 + 1;
+        int vertexID2Index2 = vertexID2Index0 + 2;
 
-            displacementValuesArray[vertexID2Index0] += dispCalcX;
-            displacementValuesArray[vertexID2Index1] += dispCalcY;
-            displacementValuesArray[vertexID2Index2] += dispCalcZ;
-        }
+        float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
+        float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
+        float distZ = cachedVertexPointCoordsMatrixArray[vertexID1Index2] - cachedVertexPointCoordsMatrixArray[vertexID2Index2];
+
+        if (distX == 0.0f)
+            distX = 1.0f;
+        if (distY == 0.0f)
+            distY = 1.0f;
+        if (distZ == 0.0f)
+            distZ = 1.0f;
+
+        float squaredDistance = (distX * distX + distY * distY + distZ * distZ);
+        float distance = (float)sqrt(squaredDistance);
+        float kDist = (squaredDistance / kValue) * weight;
+        int dispCalcX = (int)( (distX / distance) * kDist );
+        int dispCalcY = (int)( (distY / distance) * kDist );
+        int dispCalcZ = (int)( (distZ / distance) * kDist );
+
+        displacementValues[vertexID1Index0] -= dispCalcX;
+        displacementValues[vertexID1Index1] -= dispCalcY;
+        displacementValues[vertexID1Index2] -= dispCalcZ;
+
+        displacementValues[vertexID2Index0] += dispCalcX;
+        displacementValues[vertexID2Index1] += dispCalcY;
+        displacementValues[vertexID2Index2] += dispCalcZ;
     }
 
     /**
-    *  Calculates the 3D bi-directional force of the FRLayout algorithm.
+    *  Calculates the 3D bi-directional repulsive force of the FRLayout algorithm.
     *  Atomic version.
     */
-    private void calcBiDirForce3DAtomic(int vertexID1, int vertexID2, int[] cachedVertexNormalizedWeightIndex)
+    private void calcBiDirRepulsion3DAtomic(int vertexID1, int vertexID2)
     {
         int vertexID1Index0 = 3 * vertexID1;
         int vertexID2Index0 = 3 * vertexID2;
@@ -1277,7 +1245,6 @@ public final class FRLayout
         int vertexID2Index1 = vertexID2Index0 + 1;
         int vertexID1Index2 = vertexID1Index0 + 2;
         int vertexID2Index2 = vertexID2Index0 + 2;
-        int dimensionalityIndex = cachedVertexConnectionRowSkipSizeValuesMatrixArray[vertexID1 - 1] + vertexID2;
 
         float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
         float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
@@ -1290,50 +1257,64 @@ public final class FRLayout
         if (distZ == 0.0f)
             distZ = 1.0f;
 
-        boolean connected = ( ( ( cachedVertexConnectionMatrixArray[dimensionalityIndex >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (dimensionalityIndex & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 );
-        if ( !connected && ( ( (distX < 0) ? -distX : distX ) > kDoubled ) && ( ( (distY < 0) ? -distY : distY ) > kDoubled ) ) // abs(distX) & abs(distY)
+        if ( ( ( (distX < 0) ? -distX : distX ) > kDoubled ) && ( ( (distY < 0) ? -distY : distY ) > kDoubled ) ) // abs(distX) & abs(distY)
             return;
 
-        float squaredDistance = (distX * distX + distY * distY + distZ * distZ);
-        float distance = (float)sqrt(squaredDistance);
-
-        if (distance <= kDoubled)
+        float distance = (float)sqrt(distX * distX + distY * distY + distZ * distZ);
+        if ( (distance <= kDoubled) && !( isPseudoVertex(vertexID1) && isPseudoVertex(vertexID2) ) )
         {
-            if ( !( ( ( ( cachedPseudoVertexMatrixArray[vertexID1 >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (vertexID1 & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 ) && ( ( ( cachedPseudoVertexMatrixArray[vertexID2 >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (vertexID2 & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 ) ) )
-            {
-                float kDist = kSquareValue / distance;
-                int dispCalcX = (int)( (distX / distance) * kDist );
-                int dispCalcY = (int)( (distY / distance) * kDist );
-                int dispCalcZ = (int)( (distZ / distance) * kDist );
-
-                displacementValuesAtomic.getAndAdd(vertexID1Index0, dispCalcX);
-                displacementValuesAtomic.getAndAdd(vertexID1Index1, dispCalcY);
-                displacementValuesAtomic.getAndAdd(vertexID1Index2, dispCalcZ);
-
-                displacementValuesAtomic.getAndAdd(vertexID2Index0, -dispCalcX);
-                displacementValuesAtomic.getAndAdd(vertexID2Index1, -dispCalcY);
-                displacementValuesAtomic.getAndAdd(vertexID2Index2, -dispCalcZ);
-            }
+            float kDist = kSquareValue / distance;
+            int dispCalcX = (int)( (distX / distance) * kDist );
+            int dispCalcY = (int)( (distY / distance) * kDist );
+            int dispCalcZ = (int)( (distZ / distance) * kDist );
+
+            displacementValuesAtomic.getAndAdd(vertexID1Index0, dispCalcX);
+            displacementValuesAtomic.getAndAdd(vertexID1Index1, dispCalcY);
+            displacementValuesAtomic.getAndAdd(vertexID1Index2, dispCalcZ);
+
+            displacementValuesAtomic.getAndAdd(vertexID2Index0, -dispCalcX);
+            displacementValuesAtomic.getAndAdd(vertexID2Index1, -dispCalcY);
+            displacementValuesAtomic.getAndAdd(vertexID2Index2, -dispCalcZ);
         }
+    }
 
-        if (connected)
+    /**
+    *  Calculates the 3D bi-directional attractive forces of the FRLayout algorithm for the edges of a vertex,
+    *  every edge once from its lower vertex ID.
+    *  Atomic version.
+    */
+    private void calcBiDirAttraction3DAtomic(int vertexID1)
+    {
+        int vertexID1Index0 = 3 * vertexID1;
+        int vertexID1Index1 = vertexID1Index0 + 1;
+        int vertexID1Index2 = vertexID1Index0 + 2;
+        for (int i = cachedVertexNeighboursOffsetsArray[vertexID1]; i < cachedVertexNeighboursOffsetsArray[vertexID1 + 1]; i++)
         {
-            float kDist = squaredDistance / kValue;
-            int dispCalcX = 0, dispCalcY = 0, dispCalcZ = 0;
-
-            if (useEdgeWeights)
-            {
-                float kDistWeight = kDist * convertFromFixedPointShortNumberToUnsignedFloat(cachedVertexNormalizedWeightMatrixArray[cachedVertexNormalizedWeightIndex[0]++], FIXED_POINT_DECIMAL_PART_LENGTH);
-                dispCalcX = (int)( (distX / distance) * kDistWeight );
-                dispCalcY = (int)( (distY / distance) * kDistWeight );
-                dispCalcZ = (int)( (distZ / distance) * kDistWeight );
-            }
-            else
-            {
-                dispCalcX = (int)( (distX / distance) * kDist );
-                dispCalcY = (int)( (distY / distance) * kDist );
-                dispCalcZ = (int)( (distZ / distance) * kDist );
-            }
+            int vertexID2 = cachedVertexNeighboursArray[i];
+            if (vertexID2 < vertexID1)
+                continue;
+
+            int vertexID2Index0 = 3 * vertexID2;
+            int vertexID2Index1 = vertexID2Index0 + 1;
+            int vertexID2Index2 = vertexID2Index0 + 2;
+
+            float distX = cachedVertexPointCoordsMatrixArray[vertexID1Index0] - cachedVertexPointCoordsMatrixArray[vertexID2Index0];
+            float distY = cachedVertexPointCoordsMatrixArray[vertexID1Index1] - cachedVertexPointCoordsMatrixArray[vertexID2Index1];
+            float distZ = cachedVertexPointCoordsMatrixArray[vertexID1Index2] - cachedVertexPointCoordsMatrixArray[vertexID2Index2];
+
+            if (distX == 0.0f)
+                distX = 1.0f;
+            if (distY == 0.0f)
+                distY = 1.0f;
+            if (distZ == 0.0f)
+                distZ = 1.0f;
+
+            float squaredDistance = (distX * distX + distY * distY + distZ * distZ);
+            float distance = (float)sqrt(squaredDistance);
+            float kDist = (squaredDistance / kValue) * ( (useEdgeWeights) ? cachedVertexNeighboursWeightsArray[i] : 1.0f );
+            int dispCalcX = (int)( (distX / distance) * kDist );
+            int dispCalcY = (int)( (distY / distance) * kDist );
+            int dispCalcZ = (int)( (distZ / distance) * kDist );
 
             displacementValuesAtomic.getAndAdd(vertexID1Index0, -dispCalcX);
             displacementValuesAtomic.getAndAdd(vertexID1Index1, -dispCalcY);
@@ -1464,6 +1445,552 @@ public final class FRLayout
         displacementValuesAtomic.set(vertexIDIndex, 0);
     }
 
+    /**
+    *  Splits the rows of the triangular pair loop in NUMBER_OF_AVAILABLE_PROCESSORS consecutive blocks of (nearly) equal pair counts
+    *  for the thread local accumulation N-CP strategy, the row 'from' having numberOfVertices - 1 - from pairs.
+    *  Thread threadId processes the rows [threadLocalRowBoundaries[threadId], threadLocalRowBoundaries[threadId + 1]).
+    */
+    private void calcThreadLocalRowBoundaries()
+    {
+        long totalPairs = ( (long)numberOfVertices * (numberOfVertices - 1) ) >> 1;
+        long pairs = 0;
+        int threadId = 1;
+        threadLocalRowBoundaries[0] = 0;
+        for (int from = 0; (from < numberOfVertices) && (threadId < NUMBER_OF_AVAILABLE_PROCESSORS); from++)
+        {
+            pairs += numberOfVertices - 1 - from;
+            while ( (threadId < NUMBER_OF_AVAILABLE_PROCESSORS) && (pairs * NUMBER_OF_AVAILABLE_PROCESSORS >= totalPairs * threadId) )
+                threadLocalRowBoundaries[threadId++] = from + 1;
+        }
+
+        while (threadId <= NUMBER_OF_AVAILABLE_PROCESSORS)
+            threadLocalRowBoundaries[threadId++] = numberOfVertices;
+    }
+
+    /**
+    *  Calculates the forces of the thread local accumulation N-CP strategy for the given threadId.
+    *  The thread accumulates the forces of its balanced block of rows into its own displacement values array without any synchronization.
+    */
+    private void calcThreadLocalForces(int threadId, boolean is2DOr3DFRLayout)
+    {
+        int[] displacementValues = displacementValuesThreadArrays[threadId];
+        int startRow = threadLocalRowBoundaries[threadId];
+        int from = threadLocalRowBoundaries[threadId + 1];
+        int to = 0;
+        if (is2DOr3DFRLayout)
+        {
+            while (--from >= startRow)
+            {
+                to = numberOfVertices;
+                while (--to >= from + 1)
+                    calcBiDirRepulsion2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValues);
+                calcBiDirAttraction2D(vertexIndicesMatrixArray[from], displacementValues);
+            }
+        }
+        else
+        {
+            while (--from >= startRow)
+            {
+                to = numberOfVertices;
+                while (--to >= from + 1)
+                    calcBiDirRepulsion3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValues);
+                calcBiDirAttraction3D(vertexIndicesMatrixArray[from], displacementValues);
+            }
+        }
+    }
+
+    /**
+    *   Return a light-weight kernel using the Adapter technique for the reduction of the thread local accumulation N-CP strategy.
+    *   After all threads are done accumulating, every thread reduces its block of the vertices from all the thread arrays to the
+    *   displacement values array, clearing the thread arrays for the next iteration. The integer sums do not depend on the
+    *   order of the additions, so the layout is the same for any number of threads.
+    */
+    private ComputePool.ParallelKernel frLayoutThreadLocalReductionKernel(final boolean is2DOr3DFRLayout)
+    {
+        return new ComputePool.ParallelKernel()
+        {
+
+            @Override
+            public void run(int threadId)
+            {
+                reduceThreadLocalForces(threadId, is2DOr3DFRLayout);
+            }
+
+
+        };
+    }
+
+    /**
+    *  Reduces the thread local displacement values of the block of the vertices of the given threadId.
+    */
+    private void reduceThreadLocalForces(int threadId, boolean is2DOr3DFRLayout)
+    {
+        int dimensions = (is2DOr3DFRLayout) ? 2 : 3;
+        int startIndex = (int)( ( (long)numberOfVertices * threadId ) / NUMBER_OF_AVAILABLE_PROCESSORS );
+        int endIndex = (int)( ( (long)numberOfVertices * (threadId + 1) ) / NUMBER_OF_AVAILABLE_PROCESSORS );
+        for (int i = startIndex; i < endIndex; i++)
+        {
+            int vertexIDIndex = dimensions * vertexIndicesMatrixArray[i];
+            for (int axis = 0; axis < dimensions; axis++)
+            {
+                int sum = 0;
+                for (int[] threadDisplacementValues : displacementValuesThreadArrays)
+                {
+                    sum += threadDisplacementValues[vertexIDIndex + axis];
+                    threadDisplacementValues[vertexIDIndex + axis] = 0;
+                }
+                displacementValuesArray[vertexIDIndex + axis] += sum;
+            }
+        }
+    }
+
+    /**
+    *  Performs one iteration of the FRLayout algorithm with the Barnes-Hut repulsion mode.
+    *  The quadtree (2D) or octree (3D) is rebuilt from the current vertex points, then the force of every vertex is
+    *  calculated independently from the tree & its edges, thus without any synchronization between the N-CP threads.
+    */
+    private void iterateBarnesHut(boolean is2DOr3DFRLayout, LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        barnesHutTree.build(vertexIndicesMatrixArray, numberOfVertices, cachedVertexPointCoordsMatrixArray, (is2DOr3DFRLayout) ? null : cachedPseudoVertexMatrixArray);
+
+        if ( !( USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() ) || (numberOfVertices < MINIMUM_NUMBER_OF_VERTICES_FOR_NCP_PARALLELIZATION) )
+        {
+            calcBarnesHutForces(0, numberOfVertices, is2DOr3DFRLayout, barnesHutInteractions[0]);
+        }
+        else
+        {
+            computePool.parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, frLayoutBarnesHutProcessKernel(is2DOr3DFRLayout), layoutProgressBarDialog, cyclicBarrierTimer);
+
+            if (DEBUG_BUILD) println("\nTotal iterateBarnesHut N-CP run time: " + (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
+        }
+
+        setForceToVertex(is2DOr3DFRLayout);
+    }
+
+    /**
+    *   Return a light-weight kernel using the Adapter technique for the Barnes-Hut FRLayout algorithm so as to avoid any load latencies.
+    *   Every thread calculates the forces of a consecutive block of the vertices.
+    */
+    private ComputePool.ParallelKernel frLayoutBarnesHutProcessKernel(final boolean is2DOr3DFRLayout)
+    {
+        return new ComputePool.ParallelKernel()
+        {
+
+            @Override
+            public void run(int threadId)
+            {
+                int startIndex = (int)( ( (long)numberOfVertices * threadId ) / NUMBER_OF_AVAILABLE_PROCESSORS );
+                int endIndex = (int)( ( (long)numberOfVertices * (threadId + 1) ) / NUMBER_OF_AVAILABLE_PROCESSORS );
+                calcBarnesHutForces(startIndex, endIndex, is2DOr3DFRLayout, barnesHutInteractions[threadId]);
+            }
+
+
+        };
+    }
+
+    /**
+    *  Calculates the Barnes-Hut forces of the vertices [startIndex, endIndex) of the vertex indices matrix.
+    *  Every vertex only updates its own displacement values.
+    */
+    private void calcBarnesHutForces(int startIndex, int endIndex, boolean is2DOr3DFRLayout, BarnesHutTree.Interactions interactions)
+    {
+        int[] displacement = new int[3];
+        for (int i = startIndex; i < endIndex; i++)
+        {
+            if (is2DOr3DFRLayout)
+                calcBarnesHutForce2D(vertexIndicesMatrixArray[i], interactions, displacement);
+            else
+                calcBarnesHutForce3D(vertexIndicesMatrixArray[i], interactions, displacement);
+        }
+    }
+
+    /**
+    *  Calculates the 2D Barnes-Hut force of a vertex, the repulsion from the tree & the attraction from its edges.
+    *  Both use the same displacement matrix as the exact pairwise calculation.
+    */
+    private void calcBarnesHutForce2D(int vertexID, BarnesHutTree.Interactions interactions, int[] displacement)
+    {
+        int vertexIDIndex0 = vertexID << 1;
+        int vertexIDIndex1 = vertexIDIndex0 + 1;
+        float pointX = cachedVertexPointCoordsMatrixArray[vertexIDIndex0];
+        float pointY = cachedVertexPointCoordsMatrixArray[vertexIDIndex1];
+        displacement[0] = 0;
+        displacement[1] = 0;
+
+        // the integer distances of the displacement matrix are up to sqrt(2) shorter than the actual ones
+        barnesHutTree.interactionsOf(vertexID, kDoubled + 2.0f, barnesHutTheta, interactions);
+        for (int i = 0; i < interactions.getTotalVertices(); i++)
+        {
+            int otherVertexIDIndex0 = interactions.getVertexID(i) << 1;
+            addBarnesHutRepulsion2D(pointX - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0],
+                                    pointY - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0 + 1], 1, displacement);
+        }
+
+        for (int i = 0; i < interactions.getTotalNodes(); i++)
+        {
+            int node = interactions.getNode(i);
+            addBarnesHutRepulsion2D(pointX - barnesHutTree.getCenterOfMass(node, 0, false),
+                                    pointY - barnesHutTree.getCenterOfMass(node, 1, false), barnesHutTree.getMass(node, false), displacement);
+        }
+
+        for (int i = cachedVertexNeighboursOffsetsArray[vertexID]; i < cachedVertexNeighboursOffsetsArray[vertexID + 1]; i++)
+        {
+            int otherVertexIDIndex0 = cachedVertexNeighboursArray[i] << 1;
+            addBarnesHutAttraction2D(pointX - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0],
+                                     pointY - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0 + 1],
+                                     (useEdgeWeights) ? cachedVertexNeighboursWeightsArray[i] : 1.0f, displacement);
+        }
+
+        displacementValuesArray[vertexIDIndex0] += displacement[0];
+        displacementValuesArray[vertexIDIndex1] += displacement[1];
+    }
+
+    /**
+    *  Adds the 2D repulsion of a mass of vertices at the given distance.
+    */
+    private void addBarnesHutRepulsion2D(float distX, float distY, int mass, int[] displacement)
+    {
+        if (distX == 0.0f)
+            distX = 1.0f;
+        if (distY == 0.0f)
+            distY = 1.0f;
+
+        int absDistX = (int)( (distX > 0.0f) ? distX : -distX );
+        int absDistY = (int)( (distY > 0.0f) ? distY : -distY );
+        if ( (absDistX > kDoubled) && (absDistY > kDoubled) )
+            return;
+
+        int signX = (distX > 0.0f) ? 1 : -1;
+        int signY = (distY > 0.0f) ? 1 : -1;
+
+        int distanceCache = (6000 * absDistX + 6 * absDistY);
+        if (distanceCache >= displacementMatrixDimensionality)
+            distanceCache = displacementMatrixDimensionality;
+
+        displacement[0] += (int)(mass * displacementMatrixArray[distanceCache + 2] * signX);
+        displacement[1] += (int)(mass * displacementMatrixArray[distanceCache + 3] * signY);
+    }
+
+    /**
+    *  Adds the 2D attraction of an edge at the given distance, the difference of the connected & the repulsion only displacements.
+    */
+    private void addBarnesHutAttraction2D(float distX, float distY, float weight, int[] displacement)
+    {
+        if (distX == 0.0f)
+            distX = 1.0f;
+        if (distY == 0.0f)
+            distY = 1.0f;
+
+        int absDistX = (int)( (distX > 0.0f) ? distX : -distX );
+        int absDistY = (int)( (distY > 0.0f) ? distY : -distY );
+
+        int signX = (distX > 0.0f) ? 1 : -1;
+        int signY = (distY > 0.0f) ? 1 : -1;
+
+        int distanceCache = (6000 * absDistX + 6 * absDistY);
+        if (distanceCache >= displacementMatrixDimensionality)
+            distanceCache = displacementMatrixDimensionality;
+
+        displacement[0] += (int)( (displacementMatrixArray[distanceCache    ] - displacementMatrixArray[distanceCache + 2]) * weight * signX );
+        displacement[1] += (int)( (displacementMatrixArray[distanceCache + 1] - displacementMatrixArray[distanceCache + 3]) * weight * signY );
+    }
+
+    /**
+    *  Calculates the 3D Barnes-Hut force of a vertex, the repulsion from the tree & the attraction from its edges.
+    *  A pseudo vertex is only repulsed by the non-pseudo vertices.
+    */
+    private void calcBarnesHutForce3D(int vertexID, BarnesHutTree.Interactions interactions, int[] displacement)
+    {
+        int vertexIDIndex0 = 3 * vertexID;
+        float pointX = cachedVertexPointCoordsMatrixArray[vertexIDIndex0];
+        float pointY = cachedVertexPointCoordsMatrixArray[vertexIDIndex0 + 1];
+        float pointZ = cachedVertexPointCoordsMatrixArray[vertexIDIndex0 + 2];
+        boolean isPseudoVertex = isPseudoVertex(vertexID);
+        displacement[0] = 0;
+        displacement[1] = 0;
+        displacement[2] = 0;
+
+        barnesHutTree.interactionsOf(vertexID, kDoubled + 2.0f, barnesHutTheta, interactions);
+        for (int i = 0; i < interactions.getTotalVertices(); i++)
+        {
+            int otherVertexID = interactions.getVertexID(i);
+            if ( isPseudoVertex && isPseudoVertex(otherVertexID) )
+                continue;
+
+            int otherVertexIDIndex0 = 3 * otherVertexID;
+            addBarnesHutRepulsion3D(pointX - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0],
+                                    pointY - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0 + 1],
+                                    pointZ - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0 + 2], 1, displacement);
+        }
+
+        for (int i = 0; i < interactions.getTotalNodes(); i++)
+        {
+            int node = interactions.getNode(i);
+            int mass = barnesHutTree.getMass(node, isPseudoVertex);
+            if (mass == 0)
+                continue;
+
+            addBarnesHutRepulsion3D(pointX - barnesHutTree.getCenterOfMass(node, 0, isPseudoVertex),
+                                    pointY - barnesHutTree.getCenterOfMass(node, 1, isPseudoVertex),
+                                    pointZ - barnesHutTree.getCenterOfMass(node, 2, isPseudoVertex), mass, displacement);
+        }
+
+        for (int i = cachedVertexNeighboursOffsetsArray[vertexID]; i < cachedVertexNeighboursOffsetsArray[vertexID + 1]; i++)
+        {
+            int otherVertexIDIndex0 = 3 * cachedVertexNeighboursArray[i];
+            addBarnesHutAttraction3D(pointX - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0],
+                                     pointY - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0 + 1],
+                                     pointZ - cachedVertexPointCoordsMatrixArray[otherVertexIDIndex0 + 2],
+                                     (useEdgeWeights) ? cachedVertexNeighboursWeightsArray[i] : 1.0f, displacement);
+        }
+
+        displacementValuesArray[vertexIDIndex0    ] += displacement[0];
+        displacementValuesArray[vertexIDIndex0 + 1] += displacement[1];
+        displacementValuesArray[vertexIDIndex0 + 2] += displacement[2];
+    }
+
+    /**
+    *  Adds the 3D repulsion of a mass of vertices at the given distance.
+    */
+    private void addBarnesHutRepulsion3D(float distX, float distY, float distZ, int mass, int[] displacement)
+    {
+        if (distX == 0.0f)
+            distX = 1.0f;
+        if (distY == 0.0f)
+            distY = 1.0f;
+        if (distZ == 0.0f)
+            distZ = 1.0f;
+
+        float distance = (float)sqrt(distX * distX + distY * distY + distZ * distZ);
+        if (distance > kDoubled)
+            return;
+
+        float kDist = mass * kSquareValue / distance;
+        displacement[0] += (int)( (distX / distance) * kDist );
+        displacement[1] += (int)( (distY / distance) * kDist );
+        displacement[2] += (int)( (distZ / distance) * kDist );
+    }
+
+    /**
+    *  Adds the 3D attraction of an edge at the given distance.
+    */
+    private void addBarnesHutAttraction3D(float distX, float distY, float distZ, float weight, int[] displacement)
+    {
+        if (distX == 0.0f)
+            distX = 1.0f;
+        if (distY == 0.0f)
+            distY = 1.0f;
+        if (distZ == 0.0f)
+            distZ = 1.0f;
+
+        float squaredDistance = (distX * distX + distY * distY + distZ * distZ);
+        float distance = (float)sqrt(squaredDistance);
+        float kDist = weight * squaredDistance / kValue;
+        displacement[0] -= (int)( (distX / distance) * kDist );
+        displacement[1] -= (int)( (distY / distance) * kDist );
+        displacement[2] -= (int)( (distZ / distance) * kDist );
+    }
+
+    /**
+    *  Checks the pseudo vertex matrix for a vertex ID.
+    */
+    private boolean isPseudoVertex(int vertexID)
+    {
+        return ( ( ( cachedPseudoVertexMatrixArray[vertexID >> BOOLEAN_PACKED_DATA_POWER_OF_TWO_VALUE] >> (vertexID & BOOLEAN_PACKED_DATA_BIT_SIZE) ) & 1 ) != 0 );
+    }
+
+    /**
+    *  Initializes the incremental relayout of the given changed vertices, after setKvalue() has cached the current vertex points.
+    *  Only the vertices up to the given number of hops away from the changed vertices move, found with a breadth first search of
+    *  the cached neighbours, all the other vertices staying fixed while still exerting their forces. The displacement of a vertex
+    *  is damped by its hop distance, so as the boundary of the neighbourhood blends in with the rest of the layout.
+    *  Returns the number of vertices to move.
+    */
+    public int initIncrementalRelayout(Collection<Vertex> changedVertices, int hops)
+    {
+        incrementalHopsArray = new int[vertexIDsRange];
+        Arrays.fill(incrementalHopsArray, -1);
+        incrementalVertexIDsArray = new int[numberOfVertices];
+
+        int numberOfIncrementalVertices = 0;
+        for (Vertex vertex : changedVertices)
+        {
+            if (incrementalHopsArray[vertex.getVertexID()] < 0)
+            {
+                incrementalHopsArray[vertex.getVertexID()] = 0;
+                incrementalVertexIDsArray[numberOfIncrementalVertices++] = vertex.getVertexID();
+            }
+        }
+
+        // the array of the vertices to move is the breadth first search queue as well
+        for (int i = 0; i < numberOfIncrementalVertices; i++)
+        {
+            int vertexID1 = incrementalVertexIDsArray[i];
+            if (incrementalHopsArray[vertexID1] == hops)
+                continue;
+
+            for (int j = cachedVertexNeighboursOffsetsArray[vertexID1]; j < cachedVertexNeighboursOffsetsArray[vertexID1 + 1]; j++)
+            {
+                int vertexID2 = cachedVertexNeighboursArray[j];
+                if (incrementalHopsArray[vertexID2] < 0)
+                {
+                    incrementalHopsArray[vertexID2] = incrementalHopsArray[vertexID1] + 1;
+                    incrementalVertexIDsArray[numberOfIncrementalVertices++] = vertexID2;
+                }
+            }
+        }
+
+        incrementalVertexIDsArray = Arrays.copyOf(incrementalVertexIDsArray, numberOfIncrementalVertices);
+        incrementalDampingArray = new float[numberOfIncrementalVertices];
+        for (int i = 0; i < numberOfIncrementalVertices; i++)
+            incrementalDampingArray[i] = 1.0f - incrementalHopsArray[incrementalVertexIDsArray[i]] / (hops + 1.0f);
+
+        gridCellOffsetsArray = null;
+        gridCellVerticesArray = null;
+
+        return numberOfIncrementalVertices;
+    }
+
+    /**
+    *  Iterates the incremental relayout, see initIncrementalRelayout(). The repulsive forces of the FRLayout algorithm vanish beyond
+    *  kDoubled, thus every moving vertex is only repulsed by the vertices in its neighbouring cells of a uniform grid of at least
+    *  kDoubled sized cells, rebuilt every iteration in O(V), instead of by all the vertices. The forces are calculated with the
+    *  same bi-directional calculations & displacement values as the full FRLayout algorithm.
+    */
+    public void iterateIncrementalRelayout(boolean is2DOr3DFRLayout)
+    {
+        int dimensions = (is2DOr3DFRLayout) ? 2 : 3;
+        buildGrid(dimensions);
+
+        for (int vertexID1 : incrementalVertexIDsArray)
+        {
+            int vertexID1Index = dimensions * vertexID1;
+            int cellX = getGridCell(0, cachedVertexPointCoordsMatrixArray[vertexID1Index    ]);
+            int cellY = getGridCell(1, cachedVertexPointCoordsMatrixArray[vertexID1Index + 1]);
+            int cellZ = (is2DOr3DFRLayout) ? 0 : getGridCell(2, cachedVertexPointCoordsMatrixArray[vertexID1Index + 2]);
+            for (int x = max(cellX - 1, 0); x <= min(cellX + 1, gridCellsPerAxis[0] - 1); x++)
+            {
+                for (int y = max(cellY - 1, 0); y <= min(cellY + 1, gridCellsPerAxis[1] - 1); y++)
+                {
+                    for (int z = max(cellZ - 1, 0); z <= min(cellZ + 1, gridCellsPerAxis[2] - 1); z++)
+                    {
+                        int cell = (z * gridCellsPerAxis[1] + y) * gridCellsPerAxis[0] + x;
+                        for (int i = gridCellOffsetsArray[cell]; i < gridCellOffsetsArray[cell + 1]; i++)
+                        {
+                            // every pair of moving vertices once, from its lower vertex ID
+                            int vertexID2 = gridCellVerticesArray[i];
+                            if ( (vertexID2 == vertexID1) || ( (incrementalHopsArray[vertexID2] >= 0) && (vertexID2 < vertexID1) ) )
+                                continue;
+
+                            if (is2DOr3DFRLayout)
+                                calcBiDirRepulsion2D(vertexID1, vertexID2, displacementValuesArray);
+                            else
+                                calcBiDirRepulsion3D(vertexID1, vertexID2, displacementValuesArray);
+                        }
+                    }
+                }
+            }
+
+            for (int i = cachedVertexNeighboursOffsetsArray[vertexID1]; i < cachedVertexNeighboursOffsetsArray[vertexID1 + 1]; i++)
+            {
+                int vertexID2 = cachedVertexNeighboursArray[i];
+                if ( (incrementalHopsArray[vertexID2] >= 0) && (vertexID2 < vertexID1) )
+                    continue;
+
+                float weight = (useEdgeWeights) ? cachedVertexNeighboursWeightsArray[i] : 1.0f;
+                if (is2DOr3DFRLayout)
+                    calcBiDirAttraction2D(vertexID1, vertexID2, weight, displacementValuesArray);
+                else
+                    calcBiDirAttraction3D(vertexID1, vertexID2, weight, displacementValuesArray);
+            }
+        }
+
+        for (int i = 0; i < incrementalVertexIDsArray.length; i++)
+        {
+            int vertexIDIndex = dimensions * incrementalVertexIDsArray[i];
+            for (int axis = 0; axis < dimensions; axis++)
+                displacementValuesArray[vertexIDIndex + axis] = (int)(displacementValuesArray[vertexIDIndex + axis] * incrementalDampingArray[i]);
+
+            if (is2DOr3DFRLayout)
+                set2DForceToVertex(incrementalVertexIDsArray[i]);
+            else
+                set3DForceToVertex(incrementalVertexIDsArray[i]);
+        }
+
+        // the displacement values of the fixed vertices are not used
+        Arrays.fill(displacementValuesArray, 0);
+    }
+
+    /**
+    *  Builds the uniform grid of all the vertices for the incremental relayout, as a compressed sparse row of the vertex IDs per cell.
+    *  The number of cells per axis is bounded so as the grid has O(V) cells.
+    */
+    private void buildGrid(int dimensions)
+    {
+        int maximumCellsPerAxis = (int)ceil( pow(numberOfVertices, 1.0 / dimensions) );
+        int numberOfCells = 1;
+        for (int axis = 0; axis < 3; axis++)
+        {
+            gridCellsPerAxis[axis] = 1;
+            gridMinimumCoords[axis] = 0.0f;
+            gridCellSizes[axis] = 1.0f;
+            if (axis >= dimensions)
+                continue;
+
+            float minimumCoord = Float.MAX_VALUE;
+            float maximumCoord = -Float.MAX_VALUE;
+            for (int i = 0; i < numberOfVertices; i++)
+            {
+                float coord = cachedVertexPointCoordsMatrixArray[dimensions * vertexIndicesMatrixArray[i] + axis];
+                if (coord < minimumCoord)
+                    minimumCoord = coord;
+                if (coord > maximumCoord)
+                    maximumCoord = coord;
+            }
+
+            // the cells are at least kDoubled + 1 wide, as the displacements are looked up with the truncated distances
+            float span = maximumCoord - minimumCoord;
+            gridCellsPerAxis[axis] = max( 1, min( (int)( span / (kDoubled + 1.0f) ), maximumCellsPerAxis ) );
+            gridMinimumCoords[axis] = minimumCoord;
+            gridCellSizes[axis] = max(span / gridCellsPerAxis[axis], kDoubled + 1.0f);
+            numberOfCells *= gridCellsPerAxis[axis];
+        }
+
+        if ( (gridCellOffsetsArray == null) || (gridCellOffsetsArray.length < numberOfCells + 1) )
+            gridCellOffsetsArray = new int[numberOfCells + 1];
+        else
+            Arrays.fill(gridCellOffsetsArray, 0);
+        if (gridCellVerticesArray == null)
+            gridCellVerticesArray = new int[numberOfVertices];
+
+        int[] vertexCells = new int[numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++)
+        {
+            int vertexIDIndex = dimensions * vertexIndicesMatrixArray[i];
+            int cellX = getGridCell(0, cachedVertexPointCoordsMatrixArray[vertexIDIndex    ]);
+            int cellY = getGridCell(1, cachedVertexPointCoordsMatrixArray[vertexIDIndex + 1]);
+            int cellZ = (dimensions == 2) ? 0 : getGridCell(2, cachedVertexPointCoordsMatrixArray[vertexIDIndex + 2]);
+            vertexCells[i] = (cellZ * gridCellsPerAxis[1] + cellY) * gridCellsPerAxis[0] + cellX;
+            gridCellOffsetsArray[vertexCells[i] + 1]++;
+        }
+
+        for (int cell = 0; cell < numberOfCells; cell++)
+            gridCellOffsetsArray[cell + 1] += gridCellOffsetsArray[cell];
+
+        int[] cellPositions = Arrays.copyOf(gridCellOffsetsArray, numberOfCells);
+        for (int i = 0; i < numberOfVertices; i++)
+            gridCellVerticesArray[cellPositions[vertexCells[i]]++] = vertexIndicesMatrixArray[i];
+    }
+
+    /**
+    *  Gets the grid cell of the given coordinate along the given axis.
+    */
+    private int getGridCell(int axis, float coord)
+    {
+        int cell = (int)( (coord - gridMinimumCoords[axis]) / gridCellSizes[axis] );
+        return (cell < 0) ? 0 : (cell >= gridCellsPerAxis[axis]) ? gridCellsPerAxis[axis] - 1 : cell;
+    }
+
     /**
     *  Temperature Handling.
     */
@@ -1478,7 +2005,30 @@ public final class FRLayout
     */
     private void updateGUI()
     {
-        if (layoutProgressBarDialog != null) layoutProgressBarDialog.incrementProgress();
+        if (reportIterationsProgress && layoutProgressBarDialog != null) layoutProgressBarDialog.incrementProgress();
+        if (layoutSnapshotBuffer != null) publishLayoutSnapshot();
+    }
+
+    /**
+    *  Sets the buffer the anytime layout publishes its snapshots to (null for no snapshots).
+    */
+    public void setLayoutSnapshotBuffer(LayoutSnapshotBuffer layoutSnapshotBuffer)
+    {
+        this.layoutSnapshotBuffer = layoutSnapshotBuffer;
+    }
+
+    /**
+    *  Publishes a snapshot of the vertex point coordinates when due, applying it too if no renderer thread does.
+    *  Costs nothing between the snapshots, so as the iterations run at full speed.
+    */
+    public void publishLayoutSnapshot()
+    {
+        if ( !layoutSnapshotBuffer.isSnapshotDue() )
+            return;
+
+        layoutSnapshotBuffer.publishSnapshot(cachedVertexPointCoordsMatrixArray);
+        if ( !layoutSnapshotBuffer.isAppliedByRenderer() )
+            layoutSnapshotBuffer.applyLatestSnapshot();
     }
 
     /**
@@ -1488,11 +2038,14 @@ public final class FRLayout
     {
         int from = numberOfVertices;
         int to = 0;
-        // done this way so as to emulate copy by reference (pointer) for value of cachedWeightIndex
-        int[] cachedVertexNormalizedWeightIndex = (useEdgeWeights) ? new int[1] : null;
-        if (is2DOr3DFRLayout)
+        if (useBarnesHut)
+        {
+            barnesHutTree.build(vertexIndicesMatrixArray, numberOfVertices, cachedVertexPointCoordsMatrixArray, (is2DOr3DFRLayout) ? null : cachedPseudoVertexMatrixArray);
+            calcBarnesHutForces(0, numberOfVertices, is2DOr3DFRLayout, barnesHutInteractions[0]);
+        }
+        else if (is2DOr3DFRLayout)
         {
-            if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+            if (useAtomicSynchronization)
             {
                 while (--from >= 0)
                 // for (int from = 0; from < numberOfVertices; from++)
@@ -1500,7 +2053,8 @@ public final class FRLayout
                     to = numberOfVertices;
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirRepulsion2DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to]);
+                    calcBiDirAttraction2DAtomic(vertexIndicesMatrixArray[from]);
                 }
             }
             else
@@ -1511,13 +2065,14 @@ public final class FRLayout
                     to = numberOfVertices;
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirRepulsion2D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
+                    calcBiDirAttraction2D(vertexIndicesMatrixArray[from], displacementValuesArray);
                 }
             }
         }
         else
         {
-            if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+            if (useAtomicSynchronization)
             {
                 while (--from >= 0)
                 // for (int from = 0; from < numberOfVertices; from++)
@@ -1525,7 +2080,8 @@ public final class FRLayout
                     to = numberOfVertices;
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirRepulsion3DAtomic(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to]);
+                    calcBiDirAttraction3DAtomic(vertexIndicesMatrixArray[from]);
                 }
             }
             else
@@ -1536,7 +2092,8 @@ public final class FRLayout
                     to = numberOfVertices;
                     while (--to >= from + 1)
                     // for (int to = from + 1; to < numberOfVertices; to++)
-                        calcBiDirForce3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], cachedVertexNormalizedWeightIndex);
+                        calcBiDirRepulsion3D(vertexIndicesMatrixArray[from], vertexIndicesMatrixArray[to], displacementValuesArray);
+                    calcBiDirAttraction3D(vertexIndicesMatrixArray[from], displacementValuesArray);
                 }
             }
         }
@@ -1552,7 +2109,7 @@ public final class FRLayout
         int vertexID = numberOfVertices;
         if (is2DOr3DFRLayout)
         {
-            if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+            if (useAtomicSynchronization)
             {
                 while (--vertexID >= 0)
                     set2DForceToVertexAtomic(vertexIndicesMatrixArray[vertexID]);
@@ -1565,7 +2122,7 @@ public final class FRLayout
         }
         else
         {
-            if ( USE_ATOMIC_SYNCHRONIZATION_FOR_LAYOUT_N_CORE_PARALLELISM.get() )
+            if (useAtomicSynchronization)
             {
                 while (--vertexID >= 0)
                     set3DForceToVertexAtomic(vertexIndicesMatrixArray[vertexID]);
@@ -1582,6 +2139,14 @@ public final class FRLayout
     *  Sets the FRLayout algorithm point to vertex.
     */
     public void setPointsToVertices()
+    {
+        setPointsToVertices(cachedVertexPointCoordsMatrixArray);
+    }
+
+    /**
+    *  Sets the given vertex point coordinates (ie an anytime layout snapshot) to the vertices.
+    */
+    public void setPointsToVertices(float[] vertexPointCoordsMatrixArray)
     {
         int i = 0;
         int vertexIDIndex = 0;
@@ -1590,8 +2155,8 @@ public final class FRLayout
             for (Vertex vertex : vertexArray)
             {
                 vertexIDIndex = vertexIndicesMatrixArray[i] << 1;
-                vertex.setVertexLocation( cachedVertexPointCoordsMatrixArray[vertexIDIndex    ],
-                                          cachedVertexPointCoordsMatrixArray[vertexIDIndex + 1],
+                vertex.setVertexLocation( vertexPointCoordsMatrixArray[vertexIDIndex    ],
+                                          vertexPointCoordsMatrixArray[vertexIDIndex + 1],
                                           canvasZSize / 2);
                 i++;
             }
@@ -1601,9 +2166,9 @@ public final class FRLayout
             for (Vertex vertex : vertexArray)
             {
                 vertexIDIndex = 3 * vertexIndicesMatrixArray[i];
-                vertex.setVertexLocation( cachedVertexPointCoordsMatrixArray[vertexIDIndex    ],
-                                          cachedVertexPointCoordsMatrixArray[vertexIDIndex + 1],
-                                          cachedVertexPointCoordsMatrixArray[vertexIDIndex + 2]);
+                vertex.setVertexLocation( vertexPointCoordsMatrixArray[vertexIDIndex    ],
+                                          vertexPointCoordsMatrixArray[vertexIDIndex + 1],
+                                          vertexPointCoordsMatrixArray[vertexIDIndex + 2]);
                 i++;
             }
         }
@@ -1634,20 +2199,18 @@ public final class FRLayout
         cachedVertexPointCoordsMatrixBuffer.clear();
         cachedVertexPointCoordsMatrixBuffer = null;
         cachedVertexPointCoordsMatrixArray = null;
-        cachedVertexConnectionMatrixBuffer.clear();
-        cachedVertexConnectionMatrixBuffer = null;
-        cachedVertexConnectionRowSkipSizeValuesMatrixBuffer.clear();
-        cachedVertexConnectionRowSkipSizeValuesMatrixArray = null;
-        cachedVertexConnectionMatrixArray = null;
-        cachedVertexNormalizedWeightMatrixBuffer.clear();
-        cachedVertexNormalizedWeightMatrixBuffer = null;
-        cachedVertexNormalizedWeightMatrixArray = null;
-        if (cachedVertexNormalizedWeightIndicesToSkipBuffer != null)
-        {
-            cachedVertexNormalizedWeightIndicesToSkipBuffer.clear();
-            cachedVertexNormalizedWeightIndicesToSkipBuffer = null;
-            cachedVertexNormalizedWeightIndicesToSkipArray = null;
-        }
+        cachedVertexNeighboursOffsetsArray = null;
+        cachedVertexNeighboursArray = null;
+        cachedVertexNeighboursWeightsArray = null;
+        barnesHutTree = null;
+        barnesHutInteractions = null;
+        displacementValuesThreadArrays = null;
+        threadLocalRowBoundaries = null;
+        incrementalVertexIDsArray = null;
+        incrementalDampingArray = null;
+        incrementalHopsArray = null;
+        gridCellOffsetsArray = null;
+        gridCellVerticesArray = null;
 
         System.gc();
     }
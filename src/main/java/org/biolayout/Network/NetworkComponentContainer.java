@@ -78,26 +78,31 @@ public final class NetworkComponentContainer extends NetworkContainer
 
             componentID = 0;
             layoutProgressBarDialog.prepareProgressBar(BURST_LAYOUT_ITERATIONS.get(), "Now Processing Burst Layout Iterations" + progressBarParallelismTitle + "...");
+            layoutProgressBarDialog.startProgressBar();
         }
         else
         {
+            // the progress bar of the whole tiled layout is prepared once by the NetworkRootContainer, so as a Stop holds across all the components
             numberOfIterations = frLayout.getNumberOfIterations();
-            layoutProgressBarDialog.prepareProgressBar(numberOfIterations,
+            layoutProgressBarDialog.continueProgressBar(numberOfIterations,
                     "Now Processing Layout Iterations " + progressBarParallelismTitle +
-                    " for Graph Component: " + componentID, true);
+                    " for Graph Component: " + componentID);
         }
 
-        layoutProgressBarDialog.startProgressBar();
-
         if (!isOptimized)
         {
             frLayout.createVerticesMatrices( getVertices() );
 
+            if ( !isRelayout && ANYTIME_LAYOUT.get() )
+                startAnytimeLayout();
+
             if (!RENDERER_MODE_3D)
                 frLayout.allIterationsCalcBiDirForce2D(numberOfIterations, componentID, layoutProgressBarDialog);
             else
                 frLayout.allIterationsCalcBiDirForce3D(numberOfIterations, componentID, layoutProgressBarDialog);
 
+            stopAnytimeLayout();
+
             // applying the new vertex points at the end of the layout algoprithm process
             frLayout.setPointsToVertices();
             frLayout.setTemperature(initialTemperature);
@@ -107,8 +112,41 @@ public final class NetworkComponentContainer extends NetworkContainer
             isOptimized = false;
         }
 
-        layoutProgressBarDialog.endProgressBar();
-        if (isRelayout) layoutProgressBarDialog.stopProgressBar();
+        if (isRelayout)
+        {
+            layoutProgressBarDialog.endProgressBar();
+            layoutProgressBarDialog.stopProgressBar();
+        }
+
+        calcBoundaries();
+    }
+
+    /**
+    *  Lays out the component with a component FRLayout of its calling thread, so as many small components can be laid out concurrently.
+    *  The progress is reported per component by the caller.
+    */
+    public void optimize(FRLayout componentFRLayout, LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        initBoundaries();
+
+        if (!isOptimized)
+        {
+            float initialTemperature = componentFRLayout.getTemperature();
+            componentFRLayout.createVerticesMatrices( getVertices() );
+
+            if (!RENDERER_MODE_3D)
+                componentFRLayout.allIterationsCalcBiDirForce2D(componentFRLayout.getNumberOfIterations(), 0, layoutProgressBarDialog);
+            else
+                componentFRLayout.allIterationsCalcBiDirForce3D(componentFRLayout.getNumberOfIterations(), 0, layoutProgressBarDialog);
+
+            // applying the new vertex points at the end of the layout algoprithm process
+            componentFRLayout.setPointsToVertices();
+            componentFRLayout.setTemperature(initialTemperature);
+        }
+        else
+        {
+            isOptimized = false;
+        }
 
         calcBoundaries();
     }
@@ -3,6 +3,8 @@ package org.biolayout.Network;
 import java.util.*;
 import org.biolayout.CoreUI.*;
 import org.biolayout.CoreUI.Dialogs.*;
+import org.biolayout.Graph.*;
+import org.biolayout.Graph.ActiveRendering.*;
 import org.biolayout.Graph.GraphElements.*;
 import static org.biolayout.Environment.GlobalEnvironment.*;
 import static org.biolayout.DebugConsole.ConsoleOutput.*;
@@ -23,6 +25,9 @@ public abstract class NetworkContainer
     public static final float CANVAS_Y_SIZE = 1000.0f;
     public static final float CANVAS_Z_SIZE = 1000.0f;
 
+    // the period of the anytime layout snapshots, in milliseconds
+    private static final long ANYTIME_LAYOUT_SNAPSHOT_PERIOD = 100;
+
     // static so as to instantiate only one instance for all network containers
     protected static FRLayout frLayout = null;
 
@@ -33,6 +38,12 @@ public abstract class NetworkContainer
     protected boolean isOptimized = false;
     protected boolean isRelayout = false;
 
+    // the vertices whose connections changed since the last layout, for the incremental relayout
+    protected HashSet<Vertex> changedVertices = null;
+
+    // the snapshots of the anytime layout, while running
+    private LayoutSnapshotBuffer layoutSnapshotBuffer = null;
+
     // Variable used for the graphml network container
     private GraphmlNetworkContainer gnc = null;
 
@@ -49,6 +60,7 @@ public abstract class NetworkContainer
 
         verticesMap = new HashMap<String, Vertex>();
         edges = new ArrayList<Edge>();
+        changedVertices = new HashSet<Vertex>();
     }
 
     public void setOptimized(boolean isOptimized)
@@ -198,13 +210,16 @@ public abstract class NetworkContainer
         {
             numberOfIterations = frLayout.getNumberOfIterations();
             layoutProgressBarDialog.prepareProgressBar(numberOfIterations,
-                    "Now Processing Layout Iterations" + progressBarParallelismTitle + "...", true);
+                    "Now Processing Layout Iterations" + progressBarParallelismTitle + "...", true, ANYTIME_LAYOUT.get());
         }
 
         layoutProgressBarDialog.startProgressBar();
 
         if (!isOptimized)
         {
+            if ( !isRelayout && ANYTIME_LAYOUT.get() )
+                startAnytimeLayout();
+
             if (!RENDERER_MODE_3D)
             {
                 // cannot do all iterations with allIterationsCalcBiDirForce2D() as the native code cannot refresh (show) the iteration on the OpenGL display (freezes)
@@ -212,6 +227,9 @@ public abstract class NetworkContainer
                 {
                     frLayout.iterateCalcBiDirForce2D();
                     updateGUI(layoutProgressBarDialog);
+
+                    if ( layoutProgressBarDialog.userHasStopped() )
+                        break;
                 }
             }
             else
@@ -221,9 +239,14 @@ public abstract class NetworkContainer
                 {
                     frLayout.iterateCalcBiDirForce3D();
                     updateGUI(layoutProgressBarDialog);
+
+                    if ( layoutProgressBarDialog.userHasStopped() )
+                        break;
                 }
             }
 
+            stopAnytimeLayout();
+
             // applying the new vertex points at the end of the layout algoprithm process
             frLayout.setPointsToVertices();
             frLayout.setTemperature(initialTemperature);
@@ -241,7 +264,12 @@ public abstract class NetworkContainer
 
     private void updateGUI(LayoutProgressBarDialog layoutProgressBarDialog)
     {
-        if ( SHOW_LAYOUT_ITERATIONS.get() )
+        if (layoutSnapshotBuffer != null)
+        {
+            // the anytime layout streams its snapshots instead, without slowing down the iterations
+            frLayout.publishLayoutSnapshot();
+        }
+        else if ( SHOW_LAYOUT_ITERATIONS.get() )
         {
             // applying the new vertex points here so as to be renderered below with the rebuildGraph() method call
             frLayout.setPointsToVertices();
@@ -251,6 +279,44 @@ public abstract class NetworkContainer
         layoutProgressBarDialog.incrementProgress();
     }
 
+    /**
+    *  Starts the anytime layout: the graph is rebuilt so as its vertices are rendered while being laid out, & the frLayout streams
+    *  snapshots of the vertex points at a fixed period, applied by the renderer thread updater if running, otherwise by the layout thread.
+    *  The user can stop the layout at any point, keeping the layout so far.
+    */
+    protected void startAnytimeLayout()
+    {
+        final Graph graph = layoutFrame.getGraph();
+        graph.rebuildGraph();
+
+        layoutSnapshotBuffer = new LayoutSnapshotBuffer(new LayoutSnapshotBuffer.LayoutSnapshotApplier()
+        {
+            @Override
+            public void applyLayoutSnapshot(float[] snapshot)
+            {
+                frLayout.setPointsToVertices(snapshot);
+                graph.updateAllDisplayLists();
+            }
+        }, ANYTIME_LAYOUT_SNAPSHOT_PERIOD);
+
+        frLayout.setLayoutSnapshotBuffer(layoutSnapshotBuffer);
+        graph.setLayoutSnapshotBuffer(layoutSnapshotBuffer);
+    }
+
+    /**
+    *  Stops the anytime layout, if started, so as no snapshots are applied after the final layout.
+    */
+    protected void stopAnytimeLayout()
+    {
+        if (layoutSnapshotBuffer != null)
+        {
+            layoutFrame.getGraph().setLayoutSnapshotBuffer(null);
+            layoutSnapshotBuffer.close();
+            frLayout.setLayoutSnapshotBuffer(null);
+            layoutSnapshotBuffer = null;
+        }
+    }
+
     public void updateEdges()
     {
         for (Vertex vertex : verticesMap.values())
@@ -270,6 +336,7 @@ public abstract class NetworkContainer
     {
         verticesMap.clear();
         edges.clear();
+        changedVertices.clear();
 
         layoutClassSetsManager.clearClassSets();
         WEIGHTED_EDGES = false;
@@ -337,9 +404,26 @@ public abstract class NetworkContainer
             layoutFrame.getGraph().getSelectionManager().undeleteAllNodes();
 
         optimize(gla);
+        changedVertices.clear();
         isRelayout = false;
     }
 
+    /**
+    *  Marks the given vertex as having its connections changed by an edit, for the incremental relayout.
+    */
+    public void addChangedVertex(Vertex vertex)
+    {
+        changedVertices.add(vertex);
+    }
+
+    /**
+    *  Whether any vertex has its connections changed since the last layout.
+    */
+    public boolean hasChangedVertices()
+    {
+        return !changedVertices.isEmpty();
+    }
+
     public int getNumberOfVertices()
     {
         return verticesMap.values().size();
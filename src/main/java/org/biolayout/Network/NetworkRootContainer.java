@@ -2,11 +2,13 @@ package org.biolayout.Network;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import ogdf.basic.PointFactory;
 import ogdf.basic.GraphAttributes;
 import ogdf.energybased.FMMMLayout;
 import org.biolayout.CoreUI.*;
 import org.biolayout.CoreUI.Dialogs.*;
+import org.biolayout.CPUParallelism.Executors.*;
 import static org.biolayout.Environment.GlobalEnvironment.*;
 import static org.biolayout.DebugConsole.ConsoleOutput.*;
 import org.biolayout.Utils.Point3D;
@@ -20,6 +22,9 @@ import org.biolayout.Utils.Point3D;
 
 public final class NetworkRootContainer extends NetworkContainer
 {
+    // the number of hops from the changed vertices moved by the incremental relayout
+    private static final int INCREMENTAL_RELAYOUT_HOPS = 2;
+
     private ArrayList<NetworkComponentContainer> componentCollection = null;
     public List<NetworkComponentContainer> getComponentCollection()
     {
@@ -196,18 +201,22 @@ public final class NetworkRootContainer extends NetworkContainer
                     case VERY_HIGH_QUALITY_VERY_LOW_SPEED:
                         fmmm.fixedIterations(200);
                         fmmm.fineTuningIterations(100);
+                        fmmm.nmPrecision(6);
                         break;
                     case HIGH_QUALITY_LOW_SPEED:
                         fmmm.fixedIterations(100);
                         fmmm.fineTuningIterations(50);
+                        fmmm.nmPrecision(4);
                         break;
                     case MEDIUM_QUALITY_MEDIUM_SPEED:
                         fmmm.fixedIterations(20);
                         fmmm.fineTuningIterations(10);
+                        fmmm.nmPrecision(4);
                         break;
                     case LOW_QUALITY_HIGH_SPEED:
                         fmmm.fixedIterations(3);
                         fmmm.fineTuningIterations(1);
+                        fmmm.nmPrecision(2);
                         break;
                 }
 
@@ -219,9 +228,9 @@ public final class NetworkRootContainer extends NetworkContainer
                     case FRUCHTERMAN_REINGOLD:
                         fmmm.repulsiveForcesCalculation(FMMMLayout.RepulsiveForcesMethod.rfcGridApproximation);
                         break;
-                    /*case NMM:
+                    case NMM:
                         fmmm.repulsiveForcesCalculation(FMMMLayout.RepulsiveForcesMethod.rfcNMM);
-                        break;*/
+                        break;
                 }
 
                 switch (FMMM_STOP_CRITERION.get())
@@ -283,15 +292,7 @@ public final class NetworkRootContainer extends NetworkContainer
                 }
                 else
                 {
-                    int componentNumber = 0;
-                    for (NetworkComponentContainer ncc : componentCollection)
-                    {
-                        if (layoutProgressBarDialog.userHasCancelled())
-                        {
-                            break;
-                        }
-                        ncc.optimize(++componentNumber);
-                    }
+                    optimizeComponents(layoutProgressBarDialog);
 
                     if (layoutProgressBarDialog.userHasCancelled())
                     {
@@ -325,6 +326,68 @@ public final class NetworkRootContainer extends NetworkContainer
         rescaleToFitCanvas();
     }
 
+    /**
+    *  Lays out the graph components for the tiled layout. The giant components are laid out one after another, each with N-Core
+    *  parallelism within the component, then the small ones are laid out concurrently, dynamically batched onto the compute pool
+    *  threads, each thread with its own component FRLayout. The progress bar is prepared once for all the components, so as
+    *  a Stop (like a Cancel) ends the layout of all the components still to be laid out.
+    */
+    private void optimizeComponents(final LayoutProgressBarDialog layoutProgressBarDialog)
+    {
+        boolean useConcurrentComponents = USE_MULTICORE_PROCESS && USE_LAYOUT_N_CORE_PARALLELISM.get() && (NUMBER_OF_AVAILABLE_PROCESSORS > 1);
+        final ArrayList<NetworkComponentContainer> smallComponents = new ArrayList<NetworkComponentContainer>();
+
+        layoutProgressBarDialog.prepareProgressBar(componentCollection.size(), "Now Processing Layout Iterations for " + componentCollection.size() + " Graph Components",
+                true, ANYTIME_LAYOUT.get());
+        layoutProgressBarDialog.startProgressBar();
+
+        int componentNumber = 0;
+        for (NetworkComponentContainer ncc : componentCollection)
+        {
+            if ( layoutProgressBarDialog.userHasCancelled() || layoutProgressBarDialog.userHasStopped() )
+            {
+                break;
+            }
+
+            componentNumber++;
+            if ( useConcurrentComponents && !frLayout.usesNCoreParallelism( ncc.getNumberOfVertices() ) )
+                smallComponents.add(ncc);
+            else
+                ncc.optimize(componentNumber);
+        }
+
+        if ( !smallComponents.isEmpty() && !layoutProgressBarDialog.userHasCancelled() && !layoutProgressBarDialog.userHasStopped() )
+        {
+            // the largest components first, so as the last ones to be picked up are the quickest to lay out
+            Collections.sort( smallComponents, new NCComponentSizeSorter() );
+
+            layoutProgressBarDialog.continueProgressBar(smallComponents.size(), "Now Processing Layout Iterations (Utilizing " + NUMBER_OF_AVAILABLE_PROCESSORS +
+                    "-Core Parallelism) for " + smallComponents.size() + " Graph Components");
+
+            final AtomicInteger nextComponentIndex = new AtomicInteger();
+            ComputePool.getInstance().parallelFor(NUMBER_OF_AVAILABLE_PROCESSORS, new ComputePool.ParallelKernel()
+            {
+
+                @Override
+                public void run(int threadId)
+                {
+                    FRLayout componentFRLayout = frLayout.createComponentFRLayout();
+                    int componentIndex = 0;
+                    while ( ( ( componentIndex = nextComponentIndex.getAndIncrement() ) < smallComponents.size() ) &&
+                            !layoutProgressBarDialog.userHasCancelled() && !layoutProgressBarDialog.userHasStopped() )
+                    {
+                        smallComponents.get(componentIndex).optimize(componentFRLayout, layoutProgressBarDialog);
+                        layoutProgressBarDialog.incrementProgress();
+                    }
+                }
+
+
+            }, layoutProgressBarDialog, null);
+        }
+
+        layoutProgressBarDialog.endProgressBar();
+    }
+
     private void rescale(float scale, Point3D offset,
             boolean positions, boolean nodeSizes, boolean arrowHeadSizes)
     {
@@ -458,6 +521,63 @@ public final class NetworkRootContainer extends NetworkContainer
         isRelayout = false;
     }
 
+    /**
+    *  Relayouts incrementally the neighbourhoods of the vertices changed by the edits since the last layout (ie the neighbours of
+    *  deleted or undeleted vertices), seeding from the current vertex points & keeping all the other vertices fixed, so as the rest
+    *  of the layout is not scrambled. Runs the burst layout iterations, see FRLayout.initIncrementalRelayout().
+    */
+    public void incrementalRelayout()
+    {
+        LayoutProgressBarDialog layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
+        int numberOfIterations = BURST_LAYOUT_ITERATIONS.get();
+        layoutProgressBarDialog.prepareProgressBar(numberOfIterations, "Now Processing Incremental Burst Layout Iterations...");
+        layoutProgressBarDialog.startProgressBar();
+
+        // the edits may have deleted some of the changed vertices
+        ArrayList<Vertex> seedVertices = new ArrayList<Vertex>();
+        for (Vertex vertex : changedVertices)
+            if ( verticesMap.get( vertex.getVertexName() ) == vertex )
+                seedVertices.add(vertex);
+        changedVertices.clear();
+
+        if (WEIGHTED_EDGES)
+        {
+            normaliseWeights();
+        }
+
+        setKvalue();
+        int numberOfIncrementalVertices = frLayout.initIncrementalRelayout(seedVertices, INCREMENTAL_RELAYOUT_HOPS);
+
+        if (DEBUG_BUILD) println("Incremental relayout of " + numberOfIncrementalVertices + " vertices from " + seedVertices.size() + " changed vertices");
+
+        float initialTemperature = frLayout.getTemperature();
+        frLayout.setTemperature( (initialTemperature * numberOfIterations) / frLayout.getNumberOfIterations() );
+
+        while (--numberOfIterations >= 0)
+        {
+            frLayout.iterateIncrementalRelayout(!RENDERER_MODE_3D);
+            frLayout.temperatureHandling();
+
+            if ( SHOW_LAYOUT_ITERATIONS.get() )
+            {
+                // applying the new vertex points here so as to be renderered below with the rebuildGraph() method call
+                frLayout.setPointsToVertices();
+                layoutFrame.getGraph().rebuildGraph();
+            }
+
+            layoutProgressBarDialog.incrementProgress();
+        }
+
+        // applying the new vertex points at the end of the layout algoprithm process
+        frLayout.setPointsToVertices();
+        frLayout.setTemperature(initialTemperature);
+        frLayout.clean();
+        layoutFrame.getGraph().rebuildGraph();
+
+        layoutProgressBarDialog.endProgressBar();
+        layoutProgressBarDialog.stopProgressBar();
+    }
+
     public void setKvalue()
     {
         frLayout.setKvalue( layoutFrame, getVertices() );
@@ -0,0 +1,287 @@
+package org.biolayout.Simulation;
+
+import java.util.*;
+
+/**
+*
+* The SPNTransitionProgram class is the SPN simulation net compiled to contiguous primitive arrays.
+*
+* Every transition is one instruction of the instructions array: a header with the numbers of its total inhibitors, partial inhibitors,
+* parents & children & the offset of its child weights, followed by the place IDs of these, in the order of the per transition arrays
+* they are compiled from. The instructions are laid out in a topology-aware order, a breadth first traversal from the source transitions
+* through their children places to the transitions consuming them, so as connected transitions are close in memory. The child weights
+* are resolved to one table per time block, with the weights of all the children of a transition contiguous in it. The random firing
+* order of the simulation is a permutation of the instruction offsets, the compiled layout not changing the results of a given seed.
+* The activation rule set of the simulation executes the instructions of the program.
+*
+* @see org.biolayout.Simulation.SignalingPetriNetSimulation
+*
+*/
+
+final class SPNTransitionProgram // package access
+{
+    static final int NUMBER_OF_TOTAL_INHIBITORS = 0;
+    static final int NUMBER_OF_PARTIAL_INHIBITORS = 1;
+    static final int NUMBER_OF_PARENTS = 2;
+    static final int NUMBER_OF_CHILDREN = 3;
+    static final int CHILD_WEIGHTS_OFFSET = 4;
+    static final int HEADER_SIZE = 5;
+
+    final int numberOfTransitions;
+    final int numberOfTimeBlocks;
+    final int numberOfChildWeights;
+    final int[] instructions;
+    final float[] childWeights;
+
+    // the instruction offset of every transition, in the order of the transition IDs it is compiled from
+    final int[] transitionInstructionOffsets;
+
+    /**
+    *  The probability of the next transition with parents to fire, from the random stream of the run.
+    */
+    interface TransitionProbability
+    {
+        public double nextProbability();
+    }
+
+    /**
+    *  The SPNTransitionProgram constructor, compiling the per transition arrays indexed by transition ID.
+    *  The child weights of a transition are per child blocks of numberOfTimeBlocks weights.
+    */
+    SPNTransitionProgram(int[] transitionIDs, int[][] parentsIDs, int[][] childrenIDs, float[][] childrenWeights,
+                         int[][] totalInhibitorsIDs, int[][] partialInhibitorsIDs, int numberOfVertices, int numberOfTimeBlocks)
+    {
+        this.numberOfTransitions = transitionIDs.length;
+        this.numberOfTimeBlocks = numberOfTimeBlocks;
+
+        int numberOfInstructions = 0;
+        int numberOfAllChildren = 0;
+        for (int transitionID : transitionIDs)
+        {
+            numberOfInstructions += HEADER_SIZE + totalInhibitorsIDs[transitionID].length + partialInhibitorsIDs[transitionID].length +
+                                    parentsIDs[transitionID].length + childrenIDs[transitionID].length;
+            numberOfAllChildren += childrenIDs[transitionID].length;
+        }
+
+        this.numberOfChildWeights = numberOfAllChildren;
+        instructions = new int[numberOfInstructions];
+        childWeights = new float[numberOfTimeBlocks * numberOfAllChildren];
+        transitionInstructionOffsets = new int[numberOfTransitions];
+
+        int offset = 0;
+        int childWeightsOffset = 0;
+        for ( int transition : getTopologyAwareOrder(transitionIDs, parentsIDs, childrenIDs, numberOfVertices) )
+        {
+            int transitionID = transitionIDs[transition];
+            int[] childIDs = childrenIDs[transitionID];
+            float[] childWeightsOfTransition = childrenWeights[transitionID];
+
+            transitionInstructionOffsets[transition] = offset;
+            instructions[offset + NUMBER_OF_TOTAL_INHIBITORS] = totalInhibitorsIDs[transitionID].length;
+            instructions[offset + NUMBER_OF_PARTIAL_INHIBITORS] = partialInhibitorsIDs[transitionID].length;
+            instructions[offset + NUMBER_OF_PARENTS] = parentsIDs[transitionID].length;
+            instructions[offset + NUMBER_OF_CHILDREN] = childIDs.length;
+            instructions[offset + CHILD_WEIGHTS_OFFSET] = childWeightsOffset;
+            offset += HEADER_SIZE;
+
+            offset = append(totalInhibitorsIDs[transitionID], offset);
+            offset = append(partialInhibitorsIDs[transitionID], offset);
+            offset = append(parentsIDs[transitionID], offset);
+            offset = append(childIDs, offset);
+
+            for (int i = 0; i < childIDs.length; i++)
+                for (int timeBlock = 0; timeBlock < numberOfTimeBlocks; timeBlock++)
+                    childWeights[timeBlock * numberOfAllChildren + childWeightsOffset + i] = childWeightsOfTransition[i * numberOfTimeBlocks + timeBlock];
+
+            childWeightsOffset += childIDs.length;
+        }
+    }
+
+    /**
+    *  Activates all transitions of a run for a time block, in the reverse order of the given permutation of the instruction offsets.
+    *  Not synchronized, as all the state of the run is confined to its thread.
+    */
+    void activateAllTransitions(int[] transitionsPermutation, float[] places, int timeBlock, boolean isConsumptive, TransitionProbability transitionProbability)
+    {
+        int childWeightsOffset = timeBlock * numberOfChildWeights; // the weights table of the time block
+        int i = transitionsPermutation.length;
+        while (--i >= 0)
+            activationRuleSet(transitionsPermutation[i], places, childWeightsOffset, isConsumptive, transitionProbability);
+    }
+
+    /**
+    *  Activation of one transition according to a given rule set, executing its instruction of the transition program.
+    */
+    private void activationRuleSet(int instructionOffset, float[] places, int childWeightsOffset, boolean isConsumptive, TransitionProbability transitionProbability)
+    {
+        int i = 0;
+        int index = 0;
+        boolean hasTotalInhibitorParents = false;
+        boolean hasPartialInhibitorParents = false;
+        float partialInihibitorTokens = 0.0f;
+        float tokenInPlace = 0.0f;
+        float tokenMoving = -1.0f;
+        double randomValue = 0.0;
+
+        // the place IDs of the total inhibitors, partial inhibitors, parents & children follow the instruction header
+        int totalInhibitorIDs = instructionOffset + HEADER_SIZE;
+        int partialInhibitorIDs = totalInhibitorIDs + instructions[instructionOffset + NUMBER_OF_TOTAL_INHIBITORS];
+        int parentIDs = partialInhibitorIDs + instructions[instructionOffset + NUMBER_OF_PARTIAL_INHIBITORS];
+        int childIDs = parentIDs + instructions[instructionOffset + NUMBER_OF_PARENTS];
+        int numberOfParents = childIDs - parentIDs;
+        childWeightsOffset += instructions[instructionOffset + CHILD_WEIGHTS_OFFSET];
+
+        /* Differences from the SPN algorithm:
+            1. Added support for multiple parents instead of only one in original SPN (which only supported a tree like structure) (case 2 in code below).
+            2. Addition of Total Inhibitor edges to block a transition (case 1 in code below), old SPN algorithm did not support it.
+            3. Addition of Partial Inhibitor edges to block a transition (case 1 in code below), old SPN algorithm did not support it.*
+            4. For multiple parents we find the minimum token (case 3 in code below) and calculate a token randomly between 0 & that minimum token so as to move forward (add to the flow) (case 4 in code below).
+            5. Token is substracted to all parents, than just the only one supported by the original SPN algorithm (case 5 in code below).
+            6. Token is added to all children, times their weight, than just the only one (one child) supported by the original SPN algorithm (case 6 in code below).
+        */
+
+        // 1) check for parents, no parents token to 1.0
+        if (numberOfParents == 0)
+        {
+            tokenMoving = 1.0f;
+        }
+        else
+        {
+
+            // 2) check total inhibitor
+            i = partialInhibitorIDs - totalInhibitorIDs;
+            while (--i >= 0)
+                if (!hasTotalInhibitorParents)
+                    hasTotalInhibitorParents = (places[instructions[totalInhibitorIDs + i]] > 0.0f);
+
+            // 3) check partial inhibitor, only if no total inhibitor is present
+            if (!hasTotalInhibitorParents)
+            {
+                i = parentIDs - partialInhibitorIDs;
+                while (--i >= 0)
+                    if ( (hasPartialInhibitorParents = (places[instructions[partialInhibitorIDs + i]] > 0.0f) ) )
+                        partialInihibitorTokens += places[instructions[partialInhibitorIDs + i]];
+            }
+
+            // 4) find the minimum token of all parents
+            i = numberOfParents;
+            while (--i >= 0)
+            {
+                tokenInPlace = places[instructions[parentIDs + i]];
+                if ( (tokenMoving > tokenInPlace) || (tokenMoving < 0.0f) )
+                {
+                    tokenMoving = tokenInPlace;
+                    index = i;
+                }
+            }
+
+            randomValue = transitionProbability.nextProbability();
+            if (randomValue == 0.0) // if randomValue is zero, then tokenMoving will be zero, thus no need to calculate anything else
+                return;
+            else // randomly calculate a token between 0 - minimum token
+                tokenMoving = (int)( randomValue * (tokenMoving + 1.0f) );
+        }
+
+        // 5) take the correct number of token to parents
+        i = numberOfParents;
+        while (--i >= 0)
+        {
+            if (isConsumptive)
+                places[instructions[parentIDs + i]] -= ( (index == i) ? tokenMoving : (int)( randomValue * (places[instructions[parentIDs + i]] + 1.0f) ) );
+            else
+                // old way of parents substraction, same min token substracted from everywhere
+                places[instructions[parentIDs + i]] -= tokenMoving;
+        }
+
+        // skip adding to children if it's an total inhibitor
+        if (hasTotalInhibitorParents)
+            return;
+
+        // add to children all partial inhibitor tokens
+        if (hasPartialInhibitorParents)
+        {
+            // so as to avoid getting below zero results
+            if (partialInihibitorTokens > tokenMoving)
+                return;
+
+            tokenMoving -= partialInihibitorTokens;
+        }
+
+        // 6) put the correct number of token in child
+        // the child weights of the transition are contiguous in the weights table of the time block
+        i = instructions[instructionOffset + NUMBER_OF_CHILDREN];
+        while (--i >= 0)
+        {
+            places[instructions[childIDs + i]] += (tokenMoving * childWeights[childWeightsOffset + i]);
+        }
+    }
+
+    /**
+    *  Appends the given place IDs to the instructions.
+    */
+    private int append(int[] placeIDs, int offset)
+    {
+        System.arraycopy(placeIDs, 0, instructions, offset, placeIDs.length); // fastest way, native method!
+
+        return offset + placeIDs.length;
+    }
+
+    /**
+    *  Gets the transitions (as indices of the transition IDs) in a breadth first order, starting from the transitions with no parents
+    *  & following the children places to the transitions they are parents of. Transitions not reachable this way, as in cycles,
+    *  start new traversals in their given order.
+    */
+    private static int[] getTopologyAwareOrder(int[] transitionIDs, int[][] parentsIDs, int[][] childrenIDs, int numberOfVertices)
+    {
+        int numberOfTransitions = transitionIDs.length;
+
+        // the transitions consuming every place, in compressed sparse row form
+        int[] consumersOffsets = new int[numberOfVertices + 1];
+        for (int transitionID : transitionIDs)
+            for (int parentID : parentsIDs[transitionID])
+                consumersOffsets[parentID + 1]++;
+        for (int placeID = 0; placeID < numberOfVertices; placeID++)
+            consumersOffsets[placeID + 1] += consumersOffsets[placeID];
+
+        int[] consumers = new int[consumersOffsets[numberOfVertices]];
+        int[] consumersPositions = Arrays.copyOf(consumersOffsets, numberOfVertices);
+        for (int transition = 0; transition < numberOfTransitions; transition++)
+            for (int parentID : parentsIDs[transitionIDs[transition]])
+                consumers[consumersPositions[parentID]++] = transition;
+
+        int[] order = new int[numberOfTransitions];
+        boolean[] isVisited = new boolean[numberOfTransitions];
+        int head = 0;
+        int tail = 0;
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int root = 0; root < numberOfTransitions; root++)
+            {
+                // the first pass only starts from the source transitions
+                if ( isVisited[root] || ( (pass == 0) && (parentsIDs[transitionIDs[root]].length > 0) ) )
+                    continue;
+
+                isVisited[root] = true;
+                order[tail++] = root;
+                while (head < tail)
+                {
+                    for ( int childID : childrenIDs[transitionIDs[order[head++]]] )
+                    {
+                        for (int i = consumersOffsets[childID]; i < consumersOffsets[childID + 1]; i++)
+                        {
+                            if (!isVisited[consumers[i]])
+                            {
+                                isVisited[consumers[i]] = true;
+                                order[tail++] = consumers[i];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return order;
+    }
+
+
+}
@@ -3,6 +3,7 @@ package org.biolayout.Simulation;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import javax.swing.*;
 import org.biolayout.CoreUI.*;
 import org.biolayout.CoreUI.Dialogs.*;
@@ -59,14 +60,8 @@ public class SignalingPetriNetSimulation
     private int numberOfVertices = 0;
     private SPNDistributionTypes SPNDistributionType = SPNDistributionTypes.UNIFORM;
     private SPNTransitionTypes SPNTransitionType = SPNTransitionTypes.CONSUMPTIVE;
-    private java.util.Random random = null;
-
-    private int[] transitionIDs = null;
-    private int[][] parentsIDs = null;
-    private int[][] childrenIDs = null;
-    private float[][] childrenWeights = null;
-    private int[][] totalInhibitorsIDs = null;
-    private int[][] partialInhibitorsIDs = null;
+
+    private SPNTransitionProgram transitionProgram = null;
     private int[][] allArraysLengths = null;
 
     private long timeTaken = 0;
@@ -149,14 +144,27 @@ public class SignalingPetriNetSimulation
         private ErrorType errorType;
         private SpnResult[] runs;
 
-        public SpnResultRuns(int numTimeBlocks, int numPlaces, int numRuns, ErrorType errorType)
+        // streaming aggregation, Welford running means & M2s indexed by [timeBlock * numPlaces + placeIndex]
+        private boolean isStreaming;
+        private int numAccumulatedRuns;
+        private double[] runningMeans;
+        private double[] runningM2s;
+
+        public SpnResultRuns(int numTimeBlocks, int numPlaces, int numRuns, ErrorType errorType, boolean isStreaming)
         {
             this.numTimeBlocks = numTimeBlocks;
             this.numPlaces = numPlaces;
             this.numRuns = numRuns;
             this.errorType = errorType;
+            this.isStreaming = isStreaming && (errorType != ErrorType.NONE);
 
-            if (errorType != ErrorType.NONE)
+            if (this.isStreaming)
+            {
+                runs = new SpnResult[0];
+                runningMeans = new double[numTimeBlocks * numPlaces];
+                runningM2s = new double[numTimeBlocks * numPlaces];
+            }
+            else if (errorType != ErrorType.NONE)
             {
                 runs = new SpnResult[numRuns];
                 for (int i = 0; i < numRuns; i++)
@@ -172,7 +180,7 @@ public class SignalingPetriNetSimulation
 
             if (DEBUG_BUILD)
             {
-                int bytesAllocated = 0;
+                int bytesAllocated = (this.isStreaming) ? 16 * numTimeBlocks * numPlaces : 0;
                 for (SpnResult run : runs)
                 {
                     bytesAllocated += run.bytesAllocated;
@@ -188,6 +196,59 @@ public class SignalingPetriNetSimulation
             {
                 run.clear();
             }
+
+            if (isStreaming)
+            {
+                numAccumulatedRuns = 0;
+                Arrays.fill(runningMeans, 0.0);
+                Arrays.fill(runningM2s, 0.0);
+            }
+        }
+
+        /**
+        *  Starts accumulating a new run with the streaming aggregation.
+        */
+        public void startAccumulatingRun()
+        {
+            numAccumulatedRuns++;
+        }
+
+        /**
+        *  Accumulates the places of the current run for a time block with the Welford online algorithm.
+        *  The time block 0 needs no accumulation, as all its places are always empty.
+        */
+        public void accumulate(int timeBlock, float[] places)
+        {
+            int offset = timeBlock * numPlaces;
+            double delta = 0.0;
+            for (int placeIndex = 0; placeIndex < numPlaces; placeIndex++)
+            {
+                delta = places[placeIndex] - runningMeans[offset + placeIndex];
+                runningMeans[offset + placeIndex] += delta / numAccumulatedRuns;
+                runningM2s[offset + placeIndex] += delta * (places[placeIndex] - runningMeans[offset + placeIndex]);
+            }
+        }
+
+        /**
+        *  Merges the streaming aggregation of another run block to this one, with the parallel variance algorithm of Chan et al.
+        */
+        public void merge(SpnResultRuns other)
+        {
+            if (other.numAccumulatedRuns == 0)
+                return;
+
+            int totalAccumulatedRuns = numAccumulatedRuns + other.numAccumulatedRuns;
+            double otherRatio = (double)other.numAccumulatedRuns / totalAccumulatedRuns;
+            double crossFactor = (double)numAccumulatedRuns * otherRatio;
+            double delta = 0.0;
+            for (int i = 0; i < runningMeans.length; i++)
+            {
+                delta = other.runningMeans[i] - runningMeans[i];
+                runningMeans[i] += delta * otherRatio;
+                runningM2s[i] += other.runningM2s[i] + delta * delta * crossFactor;
+            }
+
+            numAccumulatedRuns = totalAccumulatedRuns;
         }
 
         //FIXME: parallelise this
@@ -197,6 +258,10 @@ public class SignalingPetriNetSimulation
             {
                 return runs[0];
             }
+            else if (isStreaming)
+            {
+                return consolidateStreamingRuns();
+            }
 
             SpnResult out = new SpnResult(numPlaces, numTimeBlocks, errorType);
 
@@ -244,16 +309,118 @@ public class SignalingPetriNetSimulation
 
             return out;
         }
+
+        /**
+        *  Consolidates the streaming aggregation, already merged from all run blocks, with the same mean & error as from all the stored runs.
+        */
+        private SpnResult consolidateStreamingRuns()
+        {
+            SpnResult out = new SpnResult(numPlaces, numTimeBlocks, errorType);
+            if (numAccumulatedRuns == 0)
+                return out;
+
+            double sqrtNumAccumulatedRuns = java.lang.Math.sqrt(numAccumulatedRuns);
+            int index = 0;
+            for (int timeBlock = 0; timeBlock < numTimeBlocks; timeBlock++)
+            {
+                for (int placeIndex = 0; placeIndex < numPlaces; placeIndex++)
+                {
+                    index = timeBlock * numPlaces + placeIndex;
+                    double stddev = java.lang.Math.sqrt(runningM2s[index] / numAccumulatedRuns);
+
+                    out.setValue(placeIndex, timeBlock, (float)runningMeans[index]);
+                    out.setError(placeIndex, timeBlock, (float)( (errorType == ErrorType.STDDEV) ? stddev : stddev / sqrtNumAccumulatedRuns ) );
+                }
+            }
+
+            return out;
+        }
     }
 
-    // Array so computation can be spread across threads
+    /**
+    *  The state of the SPN simulation runs of a thread, confined to it: its places, its transitions (instruction offsets) permutation & the random stream of its current run.
+    */
+    private final class SPNRunState implements SPNTransitionProgram.TransitionProbability
+    {
+        private final float[] places = new float[numberOfVertices];
+        private final int[] transitionsPermutation = new int[transitionProgram.numberOfTransitions];
+        private SplittableRandom random = null;
+        private double nextNextGaussian = 0.0;
+        private boolean haveNextNextGaussian = false;
+
+        /**
+        *  Starts a run with its own random stream, from empty places & the initial transitions order.
+        */
+        private void startRun(SplittableRandom random)
+        {
+            this.random = random;
+            haveNextNextGaussian = false;
+
+            Arrays.fill(places, 0.0f);
+            System.arraycopy(transitionProgram.transitionInstructionOffsets, 0, transitionsPermutation, 0, transitionsPermutation.length); // fastest way, native method!
+        }
+
+        /**
+        *  Computes the probability of the next transition with parents to fire, with the SPN distribution type.
+        */
+        @Override
+        public double nextProbability()
+        {
+            return computeProbability(this);
+        }
+
+        /**
+        *  The polar method of G. E. P. Box, M. E. Muller, and G. Marsaglia, as in org.biolayout.StaticLibraries.Random, with the random stream of the run.
+        */
+        private double nextGaussian()
+        {
+            if (haveNextNextGaussian)
+            {
+                haveNextNextGaussian = false;
+                return nextNextGaussian;
+            }
+
+            double v1 = 0.0;
+            double v2 = 0.0;
+            double s = 0.0;
+            do
+            {
+                v1 = 2.0 * random.nextDouble() - 1.0; // between -1 and 1
+                v2 = 2.0 * random.nextDouble() - 1.0; // between -1 and 1
+                s = v1 * v1 + v2 * v2;
+            }
+            while ( (s >= 1.0) || (s == 0.0) );
+            double multiplier = java.lang.Math.sqrt(-2.0 * java.lang.Math.log(s) / s);
+            nextNextGaussian = v2 * multiplier;
+            haveNextNextGaussian = true;
+
+            return v1 * multiplier;
+        }
+    }
+
+    // Array of the run blocks results, so computation can be spread across threads.
+    // When accumulating the runs, these are instead the slots of the reorder buffer, reused by every run block numbered modulo their number
     private SpnResultRuns[] intermediateResults = null;
+    private int[] runBlocksRuns = null;
     private SpnResult consolidatedResult = null;
 
     // variables needed for N-CP
     private static final int MINIMUM_NUMBER_OF_SPN_RUNS_FOR_PARALLELIZATION = 2;
+
+    /**
+    *  The maximum number of run blocks, unless there are more available processors. The run blocks do not depend on the number of threads,
+    *  so as the results of a given random seed are the same with any number of threads.
+    */
+    private static final int MAXIMUM_NUMBER_OF_SPN_RUN_BLOCKS = 64;
+
+    /**
+    *  The slots of the reorder buffer per thread when accumulating the runs. A thread only waits to start a run block when the one as many
+    *  slots before it is still not merged, ie behind a run block slower than the ones completed in the meantime.
+    */
+    private static final int NUMBER_OF_SPN_RUN_BLOCK_SLOTS_PER_THREAD = 2;
+
     private final CyclicBarrierTimer cyclicBarrierTimer = (USE_MULTICORE_PROCESS) ? new CyclicBarrierTimer() : null;
-    private final CyclicBarrier threadBarrier = (USE_MULTICORE_PROCESS) ? new CyclicBarrier(NUMBER_OF_AVAILABLE_PROCESSORS + 1, cyclicBarrierTimer) : null;
+    private final ComputePool computePool = (USE_MULTICORE_PROCESS) ? ComputePool.getInstance() : null;
 
     /**
     *  Variable used for loading the native library only once (no use of re-loading the library).
@@ -268,7 +435,6 @@ public class SignalingPetriNetSimulation
         this.nc = nc;
         this.layoutFrame = layoutFrame;
 
-        random = new java.util.Random();
         layoutProgressBarDialog = layoutFrame.getLayoutProgressBar();
     }
 
@@ -286,8 +452,7 @@ public class SignalingPetriNetSimulation
     /**
     *  Initializes all the relevant SPN data structures.
     */
-    private void initAllCachedDataStructures(int totalTimeBlocks, int totalRuns,
-            int numThreads, ErrorType errorType)
+    private void initAllCachedDataStructures(int totalTimeBlocks, int totalRuns, ErrorType errorType, boolean isStreaming, int numThreads)
     {
         numberOfVertices = nc.getNumberOfVertices();
         String SPNDistributionTypeString = USE_SPN_DISTRIBUTION_TYPE.get();
@@ -303,29 +468,33 @@ public class SignalingPetriNetSimulation
         else if ( SPNTransitionTypeString.equals( SPNTransitionTypes.ORIGINAL.toString() ) )
             SPNTransitionType = SPNTransitionTypes.ORIGINAL;
 
-        // Note:
-        // We need to initialize the four arrays below with a dimention of 0 or above instead of plain []
-        // Otherwise the C/JNI native version of the SPN simulation will crash the JVM trying to lock these 2D arrays!
-        parentsIDs = new int[numberOfVertices][0];
-        childrenIDs = new int[numberOfVertices][0];
-        childrenWeights = new float[numberOfVertices][0];
-        totalInhibitorsIDs = new int[numberOfVertices][0];
-        partialInhibitorsIDs = new int[numberOfVertices][0];
-
-        intermediateResults = new SpnResultRuns[numThreads];
-        for (int threadId = 0; threadId < intermediateResults.length; threadId++)
+        // every vertex starts with empty arrays, only the ones of the transitions being set below
+        int[][] parentsIDs = new int[numberOfVertices][0];
+        int[][] childrenIDs = new int[numberOfVertices][0];
+        float[][] childrenWeights = new float[numberOfVertices][0];
+        int[][] totalInhibitorsIDs = new int[numberOfVertices][0];
+        int[][] partialInhibitorsIDs = new int[numberOfVertices][0];
+
+        runBlocksRuns = new int[ getNumberOfRunBlocks(totalRuns) ];
+        for (int runBlock = 0; runBlock < runBlocksRuns.length; runBlock++)
         {
-            int runsForThread = totalRuns / numThreads;
+            runBlocksRuns[runBlock] = totalRuns / runBlocksRuns.length;
 
-            if (threadId == 0)
+            if (runBlock < totalRuns % runBlocksRuns.length)
             {
-                // Give the first thread the left over runs
-                runsForThread += totalRuns % numThreads;
+                // Spread the left over runs to the first run blocks
+                runBlocksRuns[runBlock]++;
             }
+        }
 
-            println("Creating intermediateResults[" + threadId + "]");
-            intermediateResults[threadId] = new SpnResultRuns(totalTimeBlocks,
-                    numberOfVertices, runsForThread, errorType);
+        // accumulated runs need one result per slot of the reorder buffer, stored runs one per run block
+        intermediateResults = new SpnResultRuns[ isAccumulatingRunsPerThread(errorType, isStreaming)
+                ? java.lang.Math.min(NUMBER_OF_SPN_RUN_BLOCK_SLOTS_PER_THREAD * numThreads, runBlocksRuns.length) : runBlocksRuns.length ];
+        for (int i = 0; i < intermediateResults.length; i++)
+        {
+            if (DEBUG_BUILD) println("Creating intermediateResults[" + i + "]");
+            intermediateResults[i] = new SpnResultRuns(totalTimeBlocks,
+                    numberOfVertices, runBlocksRuns[i], errorType, isStreaming);
         }
 
         ArrayList<Integer> arraylistTransitionIDs = new ArrayList<Integer>();
@@ -344,7 +513,37 @@ public class SignalingPetriNetSimulation
             }
         }
 
-        transitionIDs = toPrimitiveListInteger(arraylistTransitionIDs);
+        // the per transition arrays are only needed to compile the transition program the simulation runs
+        transitionProgram = new SPNTransitionProgram(toPrimitiveListInteger(arraylistTransitionIDs), parentsIDs, childrenIDs, childrenWeights,
+                                                     totalInhibitorsIDs, partialInhibitorsIDs, numberOfVertices, totalTimeBlocks);
+    }
+
+    /**
+    *  Gets the number of run blocks, independent of the number of threads & never below the number of available processors.
+    */
+    private int getNumberOfRunBlocks(int totalRuns)
+    {
+        return java.lang.Math.max( 1, java.lang.Math.min( totalRuns, java.lang.Math.max(MAXIMUM_NUMBER_OF_SPN_RUN_BLOCKS, NUMBER_OF_AVAILABLE_PROCESSORS) ) );
+    }
+
+    /**
+    *  Without an error type or with the streaming aggregation the runs are accumulated (sums or Welford running means & M2s) by a bounded reorder buffer
+    *  of results, which the threads fill with the run blocks they dynamically take & merge in the order of the run blocks.
+    */
+    private boolean isAccumulatingRunsPerThread(ErrorType errorType, boolean isStreaming)
+    {
+        return (errorType == ErrorType.NONE) || isStreaming;
+    }
+
+    /**
+    *  Gets the random seed of the SPN simulation, a new one for every simulation unless set.
+    */
+    private long getRandomSeed()
+    {
+        long seed = ( SPN_RANDOM_SEED.get() != 0 ) ? SPN_RANDOM_SEED.get() : System.nanoTime();
+        if (DEBUG_BUILD) println("SPN simulation random seed: " + seed);
+
+        return seed;
     }
 
     /**
@@ -361,66 +560,43 @@ public class SignalingPetriNetSimulation
 
         layoutProgressBarDialog.prepareProgressBar(totalRuns, "Allocating resources...");
         layoutProgressBarDialog.startProgressBar();
-        initAllCachedDataStructures(totalTimeBlocks, totalRuns, numThreads, errorType);
+        boolean isStreaming = SPN_STREAMING_ERROR_AGGREGATION.get() && (errorType != ErrorType.NONE);
+        numThreads = java.lang.Math.min( numThreads, getNumberOfRunBlocks(totalRuns) );
+        initAllCachedDataStructures(totalTimeBlocks, totalRuns, errorType, isStreaming, numThreads);
 
         layoutProgressBarDialog.setText("Now Processing SPN Simulation For " + totalTimeBlocks +
                 " Time Blocks & " + totalRuns + " Runs...");
 
-        if ( numThreads > 1 )
-        {
-            LoggerThreadPoolExecutor executor = new LoggerThreadPoolExecutor(numThreads,
-                    numThreads, 0L, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<Runnable>(numThreads),
-                    new LoggerThreadFactory("SignalingPetriNetSimulation"),
-                    new ThreadPoolExecutor.CallerRunsPolicy());
-
-            cyclicBarrierTimer.clear();
-            for (int threadId = 0; threadId < numThreads; threadId++)
-            {
-                executor.execute( SPNSimulationProcessKernel(threadId, totalRuns, intermediateResults[threadId]) );
-            }
-
-            try
-            {
-                threadBarrier.await(); // wait for all threads to be ready
-                threadBarrier.await(); // wait for all threads to finish
-                executor.shutdown();
-            }
-            catch (BrokenBarrierException ex)
-            {
-                if (DEBUG_BUILD)
-                {
-                    println("Problem with a broken barrier with the main SignalingPetriNetSimulation " +
-                            "simulation thread in performSPNSimulation()!:\n" + ex.getMessage());
-                }
-            }
-            catch (InterruptedException ex)
-            {
-                // restore the interuption status after catching InterruptedException
-                Thread.currentThread().interrupt();
-                if (DEBUG_BUILD)
-                {
-                    println("Problem with pausing the main SignalingPetriNetSimulation simulation " +
-                            "thread in performSPNSimulation()!:\n" + ex.getMessage());
-                }
-            }
-
-            if (DEBUG_BUILD)
-            {
-                println("\nTotal SignalingPetriNetSimulation N-CP run time: " +
-                        (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
-            }
+        // every run block has its own random stream split from the master one, every run of it its own random stream split from the run block one
+        SplittableRandom masterRandom = new SplittableRandom( getRandomSeed() );
+        SplittableRandom[] runBlockRandoms = new SplittableRandom[runBlocksRuns.length];
+        for (int runBlock = 0; runBlock < runBlockRandoms.length; runBlock++)
+            runBlockRandoms[runBlock] = masterRandom.split();
 
-            aggregateResultsFromAllProcesses(intermediateResults, errorType);
+        SpnResultRuns result = null;
+        if ( isAccumulatingRunsPerThread(errorType, isStreaming) )
+        {
+            // the threads merge the completed run blocks in their order (Chan et al. for the streaming aggregation) while the others keep on running
+            result = new SpnResultRuns(totalTimeBlocks, numberOfVertices, totalRuns, errorType, isStreaming);
+            runSPNSimulationProcessKernel( numThreads, SPNSimulationReorderKernel(totalRuns, runBlockRandoms, result, errorType, isStreaming) );
         }
         else
         {
-            allIterationsSPNSimulation(totalRuns, transitionIDs, intermediateResults[0]);
+            runSPNSimulationProcessKernel( numThreads, SPNSimulationProcessKernel(totalRuns, runBlockRandoms) );
+            result = intermediateResults[0];
+            for (int runBlock = 1; runBlock < intermediateResults.length; runBlock++)
+                mergeRunBlockResult(result, intermediateResults[runBlock], errorType, isStreaming);
+        }
+
+        if (DEBUG_BUILD && (numThreads > 1))
+        {
+            println("\nTotal SignalingPetriNetSimulation N-CP run time: " +
+                    (cyclicBarrierTimer.getTime() / 1e6) + " ms.\n");
         }
 
         layoutProgressBarDialog.endProgressBar();
 
-        consolidatedResult = intermediateResults[0].consolidateRuns();
+        consolidatedResult = result.consolidateRuns();
 
         layoutProgressBarDialog.stopProgressBar();
 
@@ -435,34 +611,62 @@ public class SignalingPetriNetSimulation
     }
 
     /**
-    *  Performs all iterations of the SPN simulation.
+    *  Runs the kernel on the given number of threads of the ComputePool, or on the calling thread for a single one.
     */
-    private void allIterationsSPNSimulation(int totalRuns, int[] transitionIDs, SpnResultRuns result)
+    private void runSPNSimulationProcessKernel(int numThreads, ComputePool.ParallelKernel kernel)
     {
-        float[] places = new float[numberOfVertices];
+        if ( numThreads > 1 )
+        {
+            computePool.parallelFor(numThreads, kernel, layoutProgressBarDialog, cyclicBarrierTimer);
+        }
+        else
+        {
+            kernel.run(0);
+        }
+    }
+
+    /**
+    *  Performs all iterations of the SPN simulation for a run block of the given number of runs.
+    */
+    private void allIterationsSPNSimulation(int totalRuns, int runBlockRuns, SpnResultRuns result, SplittableRandom runBlockRandom, SPNRunState runState)
+    {
+        float[] places = runState.places;
         int placesIndex = 0;
-        int run = result.numRuns;
+        int run = runBlockRuns;
         while (--run >= 0)
         {
-            placesIndex = result.numPlaces;
-            while (--placesIndex >= 0)
-            {
-                places[placesIndex] = 0.0f;
+            runState.startRun( runBlockRandom.split() );
 
-                if (result.errorType != ErrorType.NONE)
-                {
-                    result.runs[run].setValue(placesIndex, 0, 0.0f);
-                }
-                else
+            if (result.isStreaming)
+            {
+                result.startAccumulatingRun();
+            }
+            else
+            {
+                placesIndex = result.numPlaces;
+                while (--placesIndex >= 0)
                 {
-                    result.runs[0].setValue(placesIndex, 0, 0.0f);
+                    if (result.errorType != ErrorType.NONE)
+                    {
+                        result.runs[run].setValue(placesIndex, 0, 0.0f);
+                    }
+                    else
+                    {
+                        result.runs[0].setValue(placesIndex, 0, 0.0f);
+                    }
                 }
             }
 
             for (int timeBlock = 1; timeBlock < result.numTimeBlocks; timeBlock++) // start from 1
             {
-                shuffleTransitions(transitionIDs);
-                activateAllTransitions(transitionIDs, places, timeBlock);
+                shuffleTransitions(runState);
+                activateAllTransitions(runState, timeBlock);
+
+                if (result.isStreaming)
+                {
+                    result.accumulate(timeBlock, places);
+                    continue;
+                }
 
                 placesIndex = numberOfVertices;
                 while (--placesIndex >= 0)
@@ -485,229 +689,193 @@ public class SignalingPetriNetSimulation
     }
 
     /**
-    *   Return a light-weight runnable using the Adapter technique for the SPN simulation so as to avoid any load latencies.
+    *   Return a light-weight kernel using the Adapter technique for the SPN simulation so as to avoid any load latencies.
+    *   Every thread dynamically takes the next run block, with no mutable state shared with the other threads.
+    */
+    private ComputePool.ParallelKernel SPNSimulationProcessKernel(final int totalRuns, final SplittableRandom[] runBlockRandoms)
+    {
+        final AtomicInteger nextRunBlock = new AtomicInteger(0);
+
+        return new ComputePool.ParallelKernel()
+        {
+
+            @Override
+            public void run(int threadId)
+            {
+                SPNRunState runState = new SPNRunState();
+                int runBlock = 0;
+                while ( ( runBlock = nextRunBlock.getAndIncrement() ) < intermediateResults.length )
+                    allIterationsSPNSimulation(totalRuns, runBlocksRuns[runBlock], intermediateResults[runBlock], runBlockRandoms[runBlock], runState);
+            }
+        };
+    }
+
+    /**
+    *   Return a light-weight kernel accumulating the run blocks to the given result. Every thread dynamically takes the next run block & runs it
+    *   in its slot of the reorder buffer, the run block modulo the number of slots, as soon as the run block the slot last held is merged.
+    *   The thread completing the next run block to merge then merges all the completed ones in their order, so as no thread waits for a wave
+    *   of run blocks & the results of a given random seed are the same with any number of threads.
     */
-    private Runnable SPNSimulationProcessKernel(final int threadId, final int totalRuns, final SpnResultRuns processResult)
+    private ComputePool.ParallelKernel SPNSimulationReorderKernel(final int totalRuns, final SplittableRandom[] runBlockRandoms, final SpnResultRuns result,
+                                                                  final ErrorType errorType, final boolean isStreaming)
     {
-        return new Runnable()
+        return new ComputePool.ParallelKernel()
         {
 
+            private final AtomicInteger nextRunBlock = new AtomicInteger(0);
+            private final boolean[] completedRunBlocks = new boolean[runBlocksRuns.length];
+            private int nextRunBlockToMerge = 0;
+            private boolean isMerging = false;
+
             @Override
-            public void run()
+            public void run(int threadId)
             {
-                try
+                SPNRunState runState = new SPNRunState();
+                int runBlock = 0;
+                while ( ( runBlock = nextRunBlock.getAndIncrement() ) < runBlocksRuns.length )
+                {
+                    if ( !waitForRunBlockSlot(runBlock) )
+                        return;
+
+                    allIterationsSPNSimulation(totalRuns, runBlocksRuns[runBlock], intermediateResults[runBlock % intermediateResults.length], runBlockRandoms[runBlock], runState);
+                    completeRunBlock(runBlock);
+                }
+            }
+
+            /**
+            *  Waits until the run block the slot last held is merged, returns false if interrupted.
+            */
+            private synchronized boolean waitForRunBlockSlot(int runBlock)
+            {
+                while (runBlock - nextRunBlockToMerge >= intermediateResults.length)
                 {
-                    threadBarrier.await();
                     try
                     {
-                        int[] transitionIDsForThread = new int[transitionIDs.length];
-                        System.arraycopy(transitionIDs, 0, transitionIDsForThread, 0, transitionIDs.length); // fastest way, native method!
-
-                        allIterationsSPNSimulation(totalRuns, transitionIDsForThread, processResult);
+                        wait();
                     }
-                    finally
+                    catch (InterruptedException ex)
                     {
-                        threadBarrier.await();
+                        // restore the interuption status after catching InterruptedException
+                        Thread.currentThread().interrupt();
+                        if (DEBUG_BUILD) println("Problem with waiting for a run block slot in SPNSimulationReorderKernel()!:\n" + ex.getMessage());
+
+                        return false;
                     }
                 }
-                catch (BrokenBarrierException ex)
+
+                return true;
+            }
+
+            /**
+            *  Marks the run block as completed & merges the completed run blocks in their order, unless another thread already does.
+            *  The merging happens outside the lock, so as the other threads can keep on completing & starting run blocks meanwhile.
+            */
+            private void completeRunBlock(int runBlock)
+            {
+                synchronized (this)
                 {
-                    if (DEBUG_BUILD) println("Problem with a broken barrier with the N-Core thread with threadId " + threadId + " in SPNSimulationProcessKernel()!:\n" + ex.getMessage());
+                    completedRunBlocks[runBlock] = true;
+                    if (isMerging)
+                        return;
+
+                    isMerging = true;
                 }
-                catch (InterruptedException ex)
+
+                int runBlockToMerge = 0;
+                while (true)
                 {
-                    // restore the interuption status after catching InterruptedException
-                    Thread.currentThread().interrupt();
-                    if (DEBUG_BUILD) println("Problem with pausing the N-Core thread with threadId " + threadId + " in SPNSimulationProcessKernel()!:\n" + ex.getMessage());
+                    synchronized (this)
+                    {
+                        if ( (nextRunBlockToMerge == completedRunBlocks.length) || !completedRunBlocks[nextRunBlockToMerge] )
+                        {
+                            isMerging = false;
+                            return;
+                        }
+
+                        runBlockToMerge = nextRunBlockToMerge;
+                    }
+
+                    SpnResultRuns runBlockResult = intermediateResults[runBlockToMerge % intermediateResults.length];
+                    mergeRunBlockResult(result, runBlockResult, errorType, isStreaming);
+                    runBlockResult.clear();
+
+                    synchronized (this)
+                    {
+                        nextRunBlockToMerge++;
+                        notifyAll();
+                    }
                 }
             }
         };
     }
 
     /**
-    *  Aggregates results from all processes to the first dimension (threadId) of the results array.
+    *  Merges the results of a run block to the given result. Run blocks are merged in their order, so as the results do not depend on the number of threads.
     */
-    private void aggregateResultsFromAllProcesses(SpnResultRuns[] results, ErrorType errorType)
+    private void mergeRunBlockResult(SpnResultRuns result, SpnResultRuns runBlockResult, ErrorType errorType, boolean isStreaming)
     {
-        for (int threadId = 1; threadId < results.length; threadId++)
+        if (isStreaming)
         {
-            if (errorType != ErrorType.NONE)
-            {
-                // Just concatenate the results, they'll be combined later
-                results[0].runs = Utils.mergeArrays(results[0].runs, results[threadId].runs);
-            }
-            else
+            // Merge the running means & M2s, the runs are not stored
+            result.merge(runBlockResult);
+        }
+        else if (errorType != ErrorType.NONE)
+        {
+            // Just concatenate the results, they'll be combined later
+            result.runs = Utils.mergeArrays(result.runs, runBlockResult.runs);
+        }
+        else
+        {
+            int placeIndex = result.numPlaces;
+            while (--placeIndex >= 0)
             {
-                int placeIndex = results[0].numPlaces;
-                while (--placeIndex >= 0)
+                int timeBlock = result.numTimeBlocks;
+                while (--timeBlock >= 0)
                 {
-                    int timeBlock = results[0].numTimeBlocks;
-                    while (--timeBlock >= 0)
-                    {
-                        float value = results[0].runs[0].getValue(placeIndex, timeBlock);
-                        results[0].runs[0].setValue(placeIndex, timeBlock,
-                                value + results[threadId].runs[0].getValue(placeIndex, timeBlock));
-                    }
+                    float value = result.runs[0].getValue(placeIndex, timeBlock);
+                    result.runs[0].setValue(placeIndex, timeBlock,
+                            value + runBlockResult.runs[0].getValue(placeIndex, timeBlock));
                 }
             }
         }
     }
 
     /**
-    *  Shuffles the transitions.
+    *  Shuffles the transitions of the run.
     */
-    private void shuffleTransitions(int[] transitionIDs)
+    private void shuffleTransitions(SPNRunState runState)
     {
+        int[] transitions = runState.transitionsPermutation;
         int index = 0;
         int temp = 0;
-        for (int i = transitionIDs.length; i > 1; i--)
+        for (int i = transitions.length; i > 1; i--)
         {
-            index = random.nextInt(i);
-            temp = transitionIDs[i - 1];
-            transitionIDs[i - 1] = transitionIDs[index];
-            transitionIDs[index] = temp;
+            index = runState.random.nextInt(i);
+            temp = transitions[i - 1];
+            transitions[i - 1] = transitions[index];
+            transitions[index] = temp;
         }
     }
 
     /**
-    *  Activates all transitions.
-    *
-    *  Note:
-    *  The 'synchronized' keyword is being used because some machines/platforms/JVMs (Dell based ones?) slow down really badly without it.
-    *  It does though hinder the unlimited scalability potential of the N-Core parallelization (4 cores onwards do not scale more).
-    *  The C/JNI version does not have this problem & overhead on any platforms, so it is unlimitedly scalable with the N-Core parallelization.
+    *  Activates all the transitions of a time block with the transition program, in the shuffled order of the run.
     */
-    private synchronized void activateAllTransitions(int[] transitionIDs, float[] places, int timeBlock)
+    private void activateAllTransitions(SPNRunState runState, int timeBlock)
     {
-        int i = transitionIDs.length;
-        while (--i >= 0)
-            activationRuleSet(transitionIDs[i], places, timeBlock);
+        transitionProgram.activateAllTransitions(runState.transitionsPermutation, runState.places, timeBlock,
+                                                 SPNTransitionType.equals(SPNTransitionTypes.CONSUMPTIVE), runState);
     }
 
     /**
-    *  Activation of one transition according to a given rule set.
+    *  Computes the SPN simulation probability with the random stream of the run.
     */
-    private void activationRuleSet(int transitionID, float[] places, int timeBlock)
-    {
-        int i = 0;
-        int index = 0;
-        boolean hasTotalInhibitorParents = false;
-        boolean hasPartialInhibitorParents = false;
-        float partialInihibitorTokens = 0.0f;
-        float tokenInPlace = 0.0f;
-        float tokenMoving = -1.0f;
-        double randomValue = 0.0;
-
-        int[] parentIDs = parentsIDs[transitionID];
-        int[] childIDs = childrenIDs[transitionID];
-        float[] childWeights = childrenWeights[transitionID];
-        int[] totalInhibitorIDs = totalInhibitorsIDs[transitionID];
-        int[] partialInhibitorIDs = partialInhibitorsIDs[transitionID];
-
-        /* Differences from the SPN algorithm:
-            1. Added support for multiple parents instead of only one in original SPN (which only supported a tree like structure) (case 2 in code below).
-            2. Addition of Total Inhibitor edges to block a transition (case 1 in code below), old SPN algorithm did not support it.
-            3. Addition of Partial Inhibitor edges to block a transition (case 1 in code below), old SPN algorithm did not support it.*
-            4. For multiple parents we find the minimum token (case 3 in code below) and calculate a token randomly between 0 & that minimum token so as to move forward (add to the flow) (case 4 in code below).
-            5. Token is substracted to all parents, than just the only one supported by the original SPN algorithm (case 5 in code below).
-            6. Token is added to all children, times their weight, than just the only one (one child) supported by the original SPN algorithm (case 6 in code below).
-        */
-
-        // 1) check for parents, no parents token to 1.0
-        if (parentIDs.length == 0)
-        {
-            tokenMoving = 1.0f;
-        }
-        else
-        {
-
-            // 2) check total inhibitor
-            // totalInhibitorIDs is the 4th int array
-            i = totalInhibitorIDs.length;
-            while (--i >= 0)
-                if (!hasTotalInhibitorParents)
-                    hasTotalInhibitorParents = (places[totalInhibitorIDs[i]] > 0.0f);
-
-            // 3) check partial inhibitor, only if no total inhibitor is present
-            // partialInhibitorIDs is the 5th int array
-            if (!hasTotalInhibitorParents)
-            {
-                i = partialInhibitorIDs.length;
-                while (--i >= 0)
-                    if ( (hasPartialInhibitorParents = (places[partialInhibitorIDs[i]] > 0.0f) ) )
-                        partialInihibitorTokens += places[partialInhibitorIDs[i]];
-            }
-
-            // 4) find the minimum token of all parents
-            // parentsIDs is the 1st int array
-            i = parentIDs.length;
-            while (--i >= 0)
-            {
-                tokenInPlace = places[parentIDs[i]];
-                if ( (tokenMoving > tokenInPlace) || (tokenMoving < 0.0f) )
-                {
-                    tokenMoving = tokenInPlace;
-                    index = i;
-                }
-            }
-
-            randomValue = computeProbability();
-            if (randomValue == 0.0) // if randomValue is zero, then tokenMoving will be zero, thus no need to calculate anything else
-                return;
-            else // randomly calculate a token between 0 - minimum token
-                tokenMoving = (int)( randomValue * (tokenMoving + 1.0f) );
-        }
-
-        // 5) take the correct number of token to parents
-        // parentsIDs is the 1st int array
-        i = parentIDs.length;
-        while (--i >= 0)
-        {
-            if ( SPNTransitionType.equals(SPNTransitionTypes.CONSUMPTIVE) )
-                places[parentIDs[i]] -= ( (index == i) ? tokenMoving : (int)( randomValue * (places[parentIDs[i]] + 1.0f) ) );
-            else // if ( SPNTransitionType.equals(SPNTransitionTypes.ORIGINAL) )
-                // old way of parents substraction, same min token substracted from everywhere
-                places[parentIDs[i]] -= tokenMoving;
-        }
-
-        // skip adding to children if it's an total inhibitor
-        if (hasTotalInhibitorParents)
-            return;
-
-        // add to children all partial inhibitor tokens
-        if (hasPartialInhibitorParents)
-        {
-            // so as to avoid getting below zero results
-            if (partialInihibitorTokens > tokenMoving)
-                return;
-
-            tokenMoving -= partialInihibitorTokens;
-        }
-
-        // 6) put the correct number of token in child
-        // childrenIDs & childrenWeigths are the 2nd & the 3rd int & float arrays
-        i = childIDs.length;
-        if (i > 0)
-        {
-            int sizeOfChildWeightsBlock = childWeights.length / childIDs.length;
-
-            while (--i >= 0)
-            {
-                places[childIDs[i]] += (tokenMoving * childWeights[(i * sizeOfChildWeightsBlock) + timeBlock]);
-            }
-        }
-    }
-
-    /**
-    *  Computes the SPN simulation probability.
-    */
-    private double computeProbability()
+    private double computeProbability(SPNRunState runState)
     {
         if ( SPNDistributionType.equals(SPNDistributionTypes.UNIFORM) )
-            return java.lang.Math.random();
+            return runState.random.nextDouble();
         else if ( SPNDistributionType.equals(SPNDistributionTypes.STANDARD_NORMAL) )
         {
-            double randomValue = org.biolayout.StaticLibraries.Random.nextGaussian();
+            double randomValue = runState.nextGaussian();
             randomValue += STANDARD_NORMAL_DISTRIBUTION_HALF_RANGE;
             randomValue /= STANDARD_NORMAL_DISTRIBUTION_RANGE;
             if (randomValue < 0.0)
@@ -853,21 +1021,12 @@ public class SignalingPetriNetSimulation
     */
     private void clean(int totalRuns)
     {
-        transitionIDs = null;
-        parentsIDs = null;
-        childrenIDs = null;
-        childrenWeights = null;
-        totalInhibitorsIDs = null;
-        partialInhibitorsIDs = null;
+        transitionProgram = null;
         allArraysLengths = null;
 
         timeTaken = 0;
-        if ( ( USE_MULTICORE_PROCESS && USE_SPN_N_CORE_PARALLELISM.get() ) && (totalRuns >= MINIMUM_NUMBER_OF_SPN_RUNS_FOR_PARALLELIZATION) )
-        {
-            int z = NUMBER_OF_AVAILABLE_PROCESSORS;
-            while (--z >= 1) // does not need to add to the first threadId as all results are aggregated to the first one
-                intermediateResults[z].clear();
-        }
+        intermediateResults = null; // all results are aggregated to the consolidated one
+        runBlocksRuns = null;
 
         System.gc();
     }
@@ -0,0 +1,583 @@
+package org.biolayout.Utils;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import org.biolayout.CPUParallelism.Executors.*;
+import static org.biolayout.Environment.GlobalEnvironment.*;
+import static org.biolayout.DebugConsole.ConsoleOutput.*;
+
+/**
+ * Parse a file that represents a matrix of float values, preceded by annotation rows and columns, whose values are
+ * delimited by tabs or are in CSV form. Unlike TextDelimitedMatrix, the data cells are never held as strings: the file is
+ * scanned once for its line boundaries, then split into byte ranges of whole lines which are parsed in parallel straight
+ * from their bytes into a FloatMatrix. Only the annotation cells, the rows before firstDataRow and the columns before
+ * firstDataColumn (after transposing), are kept as strings.
+ */
+public class TextDelimitedFloatMatrix
+{
+    /**
+     * The destination of the data cells, in data coordinates (excluding the annotation rows and columns).
+     */
+    public interface FloatMatrix
+    {
+        void setDataValue(int row, int column, float value);
+    }
+
+    /**
+     * Target size of the byte ranges of whole lines parsed by a thread at a time.
+     */
+    private static final int CHUNK_SIZE = (1 << 23);
+
+    /**
+     * Size of the buffer the line boundaries are scanned with.
+     */
+    private static final int SCAN_BUFFER_SIZE = (1 << 20);
+
+    /**
+     * Mantissas above this are not exact in a float, so are left to Float.parseFloat().
+     */
+    private static final long MAX_EXACT_MANTISSA = (1L << 24);
+
+    /**
+     * The powers of ten exact in a float, larger exponents being left to Float.parseFloat().
+     */
+    private static final float[] POWERS_OF_TEN = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private final File file;
+    private final TextDelimitedMatrix.ProgressIndicator progressIndicator;
+    private final boolean csv;
+    private final byte delimiter;
+    private final int firstDataColumn;
+    private final int firstDataRow;
+    private final boolean transpose;
+    // the annotation rows and columns as lines and columns of the file
+    private final int annotationLines;
+    private final int annotationColumns;
+    private final Charset charset = Charset.defaultCharset();
+
+    private long[] lineOffsets;
+    private int numLines;
+    private int numFileColumns;
+    private String[][] annotationCells;
+    private volatile boolean failed;
+    public String reasonForFailure = "";
+
+    /**
+     * An empty delimiter means CSV, as for TextDelimitedMatrix, otherwise it has to be a single character.
+     */
+    public TextDelimitedFloatMatrix(File file, TextDelimitedMatrix.ProgressIndicator progressIndicator, String delimiter,
+            int firstDataColumn, int firstDataRow, boolean transpose)
+    {
+        this.file = file;
+        this.progressIndicator = progressIndicator;
+        this.csv = delimiter.isEmpty();
+        this.delimiter = (csv) ? (byte) ',' : (byte) delimiter.charAt(0);
+        this.firstDataColumn = firstDataColumn;
+        this.firstDataRow = firstDataRow;
+        this.transpose = transpose;
+        this.annotationLines = (transpose) ? firstDataColumn : firstDataRow;
+        this.annotationColumns = (transpose) ? firstDataRow : firstDataColumn;
+    }
+
+    private synchronized void setReasonForFailure(int row, int column, String reason)
+    {
+        if (failed)
+        {
+            return;
+        }
+
+        failed = true;
+        if (row >= 0 && column >= 0)
+        {
+            reasonForFailure += "At row " + (row + 1) + ", column " + (column + 1) + ":\n";
+        }
+
+        reasonForFailure += reason;
+    }
+
+    private void notifyProgress(int percent)
+    {
+        if (progressIndicator != null)
+        {
+            progressIndicator.notify(percent);
+        }
+    }
+
+    /**
+     * Finds the line boundaries and the number of columns of the file, so as numRows() and numColumns() are known
+     * before the data is parsed. Reports the first half of the progress.
+     */
+    public boolean scan()
+    {
+        try
+        {
+            scanLines();
+
+            numFileColumns = 0;
+            if (numLines > 0)
+            {
+                byte[] firstLine = readBytes(lineOffsets[0], (int) (lineOffsets[1] - lineOffsets[0]));
+                numFileColumns = countCells(firstLine, 0, lineEndOf(firstLine, 0, firstLine.length));
+            }
+
+            annotationCells = new String[numLines][];
+        }
+        catch (IOException e)
+        {
+            if (DEBUG_BUILD)
+            {
+                println("IOException in TextDelimitedFloatMatrix.scan():\n" + e.getMessage());
+            }
+
+            setReasonForFailure(-1, -1, e.getMessage());
+            return false;
+        }
+
+        return true;
+    }
+
+    private void scanLines() throws IOException
+    {
+        long fileSize = file.length();
+        long[] offsets = new long[1024];
+        int lines = 0;
+        boolean atLineStart = true;
+        boolean afterCarriageReturn = false;
+        long position = 0;
+
+        InputStream inputStream = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) > 0)
+            {
+                for (int i = 0; i < bytesRead; i++, position++)
+                {
+                    byte value = buffer[i];
+                    if (atLineStart)
+                    {
+                        if (afterCarriageReturn && (value == '\n'))
+                        {
+                            // second half of a \r\n line end
+                            afterCarriageReturn = false;
+                            continue;
+                        }
+
+                        if (lines + 1 >= offsets.length)
+                        {
+                            offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+                        }
+
+                        offsets[lines++] = position;
+                        atLineStart = false;
+                    }
+
+                    afterCarriageReturn = (value == '\r');
+                    atLineStart = (value == '\n') || afterCarriageReturn;
+                }
+
+                notifyProgress((int) ((50 * position) / Math.max(1, fileSize)));
+            }
+        }
+        finally
+        {
+            inputStream.close();
+        }
+
+        offsets[lines] = position;
+        lineOffsets = offsets;
+        numLines = lines;
+    }
+
+    private byte[] readBytes(long offset, int length) throws IOException
+    {
+        byte[] bytes = new byte[length];
+        readBytes(offset, bytes, length);
+
+        return bytes;
+    }
+
+    private void readBytes(long offset, byte[] bytes, int length) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer, offset + buffer.position()) < 0)
+                {
+                    throw new EOFException("Unexpected end of " + file.getName());
+                }
+            }
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns the end of the line starting at start, excluding its line end characters.
+     */
+    private static int lineEndOf(byte[] bytes, int start, int end)
+    {
+        int lineEnd = start;
+        while ((lineEnd < end) && (bytes[lineEnd] != '\n') && (bytes[lineEnd] != '\r'))
+        {
+            lineEnd++;
+        }
+
+        return lineEnd;
+    }
+
+    /**
+     * Returns the end of the cell starting at start, honouring quotes for CSV.
+     */
+    private int cellEndOf(byte[] bytes, int start, int lineEnd)
+    {
+        boolean inQuotes = false;
+        int cellEnd = start;
+        for (; cellEnd < lineEnd; cellEnd++)
+        {
+            byte value = bytes[cellEnd];
+            if (csv && (value == '\"'))
+            {
+                inQuotes = !inQuotes;
+            }
+            else if ((value == delimiter) && !inQuotes)
+            {
+                break;
+            }
+        }
+
+        return cellEnd;
+    }
+
+    /**
+     * Returns the number of cells of a line, ignoring trailing empty cells as String.split() does.
+     */
+    private int countCells(byte[] bytes, int lineStart, int lineEnd)
+    {
+        int cells = 0;
+        int nonEmptyCells = 0;
+        int cellStart = lineStart;
+        while (cellStart <= lineEnd)
+        {
+            int cellEnd = cellEndOf(bytes, cellStart, lineEnd);
+            cells++;
+            if (cellEnd > cellStart)
+            {
+                nonEmptyCells = cells;
+            }
+
+            cellStart = cellEnd + 1;
+        }
+
+        return Math.max(1, nonEmptyCells);
+    }
+
+    /**
+     * Parses the file in parallel, storing the data cells into the given matrix (which may be null when only the
+     * annotation cells are needed) and keeping the annotation cells. Reports the second half of the progress.
+     */
+    public boolean parse(final FloatMatrix floatMatrix)
+    {
+        if (failed)
+        {
+            return false;
+        }
+
+        final List<Integer> chunkStartLines = new ArrayList<Integer>();
+        int maxChunkLength = 0;
+        for (int line = 0; line < numLines; )
+        {
+            int chunkStartLine = line;
+            while ((line < numLines) && ((lineOffsets[line] - lineOffsets[chunkStartLine]) < CHUNK_SIZE))
+            {
+                line++;
+            }
+
+            chunkStartLines.add(chunkStartLine);
+            maxChunkLength = (int) Math.max(maxChunkLength, lineOffsets[line] - lineOffsets[chunkStartLine]);
+        }
+        chunkStartLines.add(numLines);
+
+        final int totalChunks = chunkStartLines.size() - 1;
+        final int chunkBufferLength = maxChunkLength;
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final AtomicInteger chunksDone = new AtomicInteger();
+        int numberOfThreads = (USE_MULTICORE_PROCESS) ? Math.max(1, Math.min(NUMBER_OF_AVAILABLE_PROCESSORS, totalChunks)) : 1;
+
+        ComputePool.ParallelKernel kernel = new ComputePool.ParallelKernel()
+        {
+
+            @Override
+            public void run(int threadId)
+            {
+                byte[] chunk = new byte[chunkBufferLength];
+                int chunkIndex;
+                while (!failed && ((chunkIndex = nextChunk.getAndIncrement()) < totalChunks))
+                {
+                    int startLine = chunkStartLines.get(chunkIndex);
+                    int endLine = chunkStartLines.get(chunkIndex + 1);
+                    long chunkOffset = lineOffsets[startLine];
+                    try
+                    {
+                        readBytes(chunkOffset, chunk, (int) (lineOffsets[endLine] - chunkOffset));
+                    }
+                    catch (IOException e)
+                    {
+                        setReasonForFailure(-1, -1, e.getMessage());
+                        return;
+                    }
+
+                    for (int line = startLine; !failed && (line < endLine); line++)
+                    {
+                        parseLine(chunk, (int) (lineOffsets[line] - chunkOffset), (int) (lineOffsets[line + 1] - chunkOffset), line, floatMatrix);
+                    }
+
+                    notifyProgress(50 + (50 * chunksDone.incrementAndGet()) / totalChunks);
+                }
+            }
+
+        };
+
+        try
+        {
+            if (numberOfThreads == 1)
+            {
+                kernel.run(0);
+            }
+            else
+            {
+                ComputePool.getInstance().parallelFor(numberOfThreads, kernel);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            setReasonForFailure(-1, -1, e.toString());
+        }
+
+        return !failed;
+    }
+
+    /**
+     * Parses the cells of a file line, the data ones as floats and the annotation ones as strings.
+     */
+    private void parseLine(byte[] bytes, int lineStart, int lineBytesEnd, int line, FloatMatrix floatMatrix)
+    {
+        int lineEnd = lineEndOf(bytes, lineStart, lineBytesEnd);
+        boolean annotationLine = (line < annotationLines);
+        String[] cells = new String[(annotationLine) ? numFileColumns : Math.min(annotationColumns, numFileColumns)];
+        Arrays.fill(cells, "");
+
+        int column = 0;
+        int lastNonEmptyColumn = -1;
+        int cellStart = lineStart;
+        while (cellStart <= lineEnd)
+        {
+            int cellEnd = cellEndOf(bytes, cellStart, lineEnd);
+            if (cellEnd > cellStart)
+            {
+                lastNonEmptyColumn = column;
+            }
+
+            if (column < numFileColumns)
+            {
+                // Strip off leading and trailing quotes
+                int valueStart = cellStart;
+                int valueEnd = cellEnd;
+                if ((valueStart < valueEnd) && (bytes[valueStart] == '\"'))
+                {
+                    valueStart++;
+                }
+
+                if ((valueStart < valueEnd) && (bytes[valueEnd - 1] == '\"'))
+                {
+                    valueEnd--;
+                }
+
+                if (column < cells.length)
+                {
+                    cells[column] = new String(bytes, valueStart, valueEnd - valueStart, charset);
+                }
+                else if (floatMatrix != null)
+                {
+                    if (!parseDataCell(bytes, valueStart, valueEnd, line, column, floatMatrix))
+                    {
+                        return;
+                    }
+                }
+            }
+
+            column++;
+            cellStart = cellEnd + 1;
+        }
+
+        if (lastNonEmptyColumn >= numFileColumns)
+        {
+            // We have rows with extra columns
+            setReasonForFailure(-1, -1, "Row " + (line + 1) + " contains " + (lastNonEmptyColumn + 1 - numFileColumns) + " excess columns");
+            return;
+        }
+
+        // In Excel if you export a tab separated file with some rows that are shorter than the others,
+        // the short rows will not get trailing tabs to indicate empty cells, which are empty data values
+        if ((floatMatrix != null) && !annotationLine)
+        {
+            for (; column < numFileColumns; column++)
+            {
+                if ((column >= cells.length) && !parseDataCell(bytes, lineEnd, lineEnd, line, column, floatMatrix))
+                {
+                    return;
+                }
+            }
+        }
+
+        annotationCells[line] = cells;
+    }
+
+    private boolean parseDataCell(byte[] bytes, int valueStart, int valueEnd, int line, int column, FloatMatrix floatMatrix)
+    {
+        int row = (transpose) ? column : line;
+        int dataColumn = (transpose) ? line : column;
+        try
+        {
+            floatMatrix.setDataValue(row - firstDataRow, dataColumn - firstDataColumn, parseFloat(bytes, valueStart, valueEnd));
+        }
+        catch (NumberFormatException nfe)
+        {
+            setReasonForFailure(row, dataColumn, nfe.toString());
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a float straight from its bytes, accepting ',' as the decimal separator. Mantissas & powers of ten which are
+     * exact in a float need a single rounding, so as the result matches Float.parseFloat(), to which all other values
+     * (too many digits, large exponents, NaN, Infinity) are left.
+     */
+    private float parseFloat(byte[] bytes, int start, int end)
+    {
+        while ((start < end) && (bytes[start] <= ' '))
+        {
+            start++;
+        }
+
+        while ((end > start) && (bytes[end - 1] <= ' '))
+        {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if ((i < end) && ((bytes[i] == '-') || (bytes[i] == '+')))
+        {
+            negative = (bytes[i] == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        for (; (i < end) && (bytes[i] >= '0') && (bytes[i] <= '9'); i++)
+        {
+            mantissa = 10 * mantissa + (bytes[i] - '0');
+            hasDigits = true;
+            if (mantissa > MAX_EXACT_MANTISSA)
+            {
+                return slowParseFloat(bytes, start, end);
+            }
+        }
+
+        if ((i < end) && ((bytes[i] == '.') || (bytes[i] == ',')))
+        {
+            for (i++; (i < end) && (bytes[i] >= '0') && (bytes[i] <= '9'); i++)
+            {
+                mantissa = 10 * mantissa + (bytes[i] - '0');
+                exponent--;
+                hasDigits = true;
+                if (mantissa > MAX_EXACT_MANTISSA)
+                {
+                    return slowParseFloat(bytes, start, end);
+                }
+            }
+        }
+
+        if (hasDigits && (i < end) && ((bytes[i] == 'e') || (bytes[i] == 'E')))
+        {
+            i++;
+            boolean negativeExponent = false;
+            if ((i < end) && ((bytes[i] == '-') || (bytes[i] == '+')))
+            {
+                negativeExponent = (bytes[i] == '-');
+                i++;
+            }
+
+            int exponentStart = i;
+            int exponentValue = 0;
+            for (; (i < end) && (bytes[i] >= '0') && (bytes[i] <= '9') && (exponentValue < POWERS_OF_TEN.length); i++)
+            {
+                exponentValue = 10 * exponentValue + (bytes[i] - '0');
+            }
+
+            if (i == exponentStart)
+            {
+                return slowParseFloat(bytes, start, end);
+            }
+
+            exponent += (negativeExponent) ? -exponentValue : exponentValue;
+        }
+
+        if (!hasDigits || (i != end) || (Math.abs(exponent) >= POWERS_OF_TEN.length))
+        {
+            return slowParseFloat(bytes, start, end);
+        }
+
+        float value = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return (negative) ? -value : value;
+    }
+
+    private float slowParseFloat(byte[] bytes, int start, int end)
+    {
+        return Float.parseFloat(new String(bytes, start, end - start, charset).replace(',', '.'));
+    }
+
+    public int numColumns()
+    {
+        return (transpose) ? numLines : numFileColumns;
+    }
+
+    public int numRows()
+    {
+        return (transpose) ? numFileColumns : numLines;
+    }
+
+    public int numLines()
+    {
+        return numLines;
+    }
+
+    /**
+     * Returns an annotation cell, or null for a data cell as these are not kept.
+     */
+    public String valueAt(int column, int row)
+    {
+        int line = (transpose) ? column : row;
+        int fileColumn = (transpose) ? row : column;
+        String[] cells = annotationCells[line];
+
+        return (fileColumn < cells.length) ? cells[fileColumn] : null;
+    }
+}
@@ -0,0 +1,205 @@
+package ogdf.energybased;
+
+import java.util.*;
+import ogdf.basic.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * The NMM repulsive forces against the exact forces of the FruchtermanReingold
+ * method on seeded uniform random points: the RMS error relative to the exact
+ * forces has to stay below a bound for each precision & both reduced quad tree
+ * constructions. The times of the exact, grid & NMM forces are reported on
+ * larger point sets.
+ *
+ */
+public class NMMTest
+{
+
+    private static final int TOTAL_NODES = 1000;
+    private static final long POINTS_SEED = 7L;
+    private static final int PARTICLES_IN_LEAVES = 25;
+
+    /**
+     * Precisions of the multipole expansions & their max RMS errors, about 3
+     * times the errors measured on the TOTAL_NODES points.
+     */
+    private static final int[] PRECISIONS = { 2, 4, 6 };
+    private static final double[] MAXIMUM_RMS_ERRORS = { 2e-2, 1.5e-3, 1.5e-4 };
+
+    /**
+     * Node counts of the timed point sets.
+     */
+    private static final int[] TIMED_NODES = { 2000, 10000 };
+    private static final int TIMED_PRECISION = 4;
+    private static final int TIMED_RUNS = 3;
+
+    private Graph G;
+    private NodeArray<NodeAttributes> A;
+    private double boxlength;
+    private DPoint2 downLeftCorner;
+
+    @Test
+    public void rmsErrorOfNMMIsBelowTheBoundOfEachPrecision()
+    {
+        PointFactory.INSTANCE.setDimensions(PointFactory.Dimensions._2);
+        generatePoints(POINTS_SEED, TOTAL_NODES);
+        NodeArray<DPoint> exactForces = calculateExactForces();
+
+        for (FMMMLayout.ReducedTreeConstruction treeConstruction : FMMMLayout.ReducedTreeConstruction.values())
+        {
+            for (int i = 0; i < PRECISIONS.length; i++)
+            {
+                double rmsError = rmsError( calculateNMMForces(PRECISIONS[i], treeConstruction), exactForces );
+                assertTrue("NMM " + treeConstruction + " precision " + PRECISIONS[i] + " RMS error " + rmsError,
+                        rmsError < MAXIMUM_RMS_ERRORS[i]);
+            }
+        }
+    }
+
+    @Test
+    public void nmmIsUsedFromItsMinimumNodeNumber()
+    {
+        PointFactory.INSTANCE.setDimensions(PointFactory.Dimensions._2);
+        NMM nmm = new NMM( new Random(1) );
+        generatePoints(POINTS_SEED, nmm.MIN_NODE_NUMBER - 1);
+        nmm.make_initialisations(G, boxlength, downLeftCorner, PARTICLES_IN_LEAVES, TIMED_PRECISION,
+                FMMMLayout.ReducedTreeConstruction.rtcSubtreeBySubtree, FMMMLayout.SmallestCellFinding.scfIteratively);
+        assertFalse(nmm.using_NMM);
+
+        NodeArray<DPoint> forces = new NodeArray<DPoint>(G, Factory.DPOINT);
+        nmm.calculate_repulsive_forces(G, A, forces);
+        assertEquals( 0.0, rmsError( forces, calculateExactForces() ), 0.0 );
+
+        generatePoints(POINTS_SEED, nmm.MIN_NODE_NUMBER);
+        nmm.make_initialisations(G, boxlength, downLeftCorner, PARTICLES_IN_LEAVES, TIMED_PRECISION,
+                FMMMLayout.ReducedTreeConstruction.rtcSubtreeBySubtree, FMMMLayout.SmallestCellFinding.scfIteratively);
+        assertTrue(nmm.using_NMM);
+    }
+
+    @Test
+    public void reportsTimesOfTheExactGridAndNMMForces()
+    {
+        PointFactory.INSTANCE.setDimensions(PointFactory.Dimensions._2);
+        for (int totalNodes : TIMED_NODES)
+        {
+            generatePoints(POINTS_SEED, totalNodes);
+            calculateExactForces();
+
+            long startTime = System.nanoTime();
+            NodeArray<DPoint> exactForces = calculateExactForces();
+            double exactTime = (System.nanoTime() - startTime) / 1e6;
+
+            NodeArray<DPoint> gridForces = calculateGridForces();
+            startTime = System.nanoTime();
+            for (int run = 0; run < TIMED_RUNS; run++)
+            {
+                gridForces = calculateGridForces();
+            }
+            double gridTime = (System.nanoTime() - startTime) / 1e6 / TIMED_RUNS;
+
+            NodeArray<DPoint> nmmForces = calculateNMMForces(TIMED_PRECISION, FMMMLayout.ReducedTreeConstruction.rtcSubtreeBySubtree);
+            startTime = System.nanoTime();
+            for (int run = 0; run < TIMED_RUNS; run++)
+            {
+                nmmForces = calculateNMMForces(TIMED_PRECISION, FMMMLayout.ReducedTreeConstruction.rtcSubtreeBySubtree);
+            }
+            double nmmTime = (System.nanoTime() - startTime) / 1e6 / TIMED_RUNS;
+
+            double nmmRMSError = rmsError(nmmForces, exactForces);
+            System.out.println( String.format("Repulsive forces of %d nodes: exact %.1f ms, grid %.1f ms (RMS error %.3f), NMM precision %d %.1f ms (RMS error %.2e)",
+                    totalNodes, exactTime, gridTime, rmsError(gridForces, exactForces), TIMED_PRECISION, nmmTime, nmmRMSError) );
+            assertTrue(nmmRMSError < MAXIMUM_RMS_ERRORS[1]);
+        }
+    }
+
+    /**
+     * Generates a graph of uniform random points in a square of side 10 sqrt(n),
+     * inside a drawing box 20% larger.
+     */
+    private void generatePoints(long seed, int totalNodes)
+    {
+        Random random = new Random(seed);
+        double sideLength = 10.0 * Math.sqrt(totalNodes);
+        G = new Graph();
+        for (int i = 0; i < totalNodes; i++)
+        {
+            G.newNode();
+        }
+
+        A = new NodeArray<NodeAttributes>(G, Factory.NODE_ATTRIBUTES);
+        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        {
+            A.get( iter.next() ).set_position( new DPoint2(random.nextDouble() * sideLength, random.nextDouble() * sideLength) );
+        }
+
+        boxlength = 1.2 * sideLength;
+        downLeftCorner = new DPoint2(-0.1 * sideLength, -0.1 * sideLength);
+    }
+
+    private NodeArray<DPoint> calculateExactForces()
+    {
+        FruchtermanReingold exactMethod = new FruchtermanReingold();
+        exactMethod.make_initialisations(boxlength, downLeftCorner, 2);
+        NodeArray<DPoint> forces = new NodeArray<DPoint>(G, Factory.DPOINT);
+        exactMethod.calculate_exact_repulsive_forces(G, A, forces);
+
+        return forces;
+    }
+
+    private NodeArray<DPoint> calculateGridForces()
+    {
+        FruchtermanReingold gridMethod = new FruchtermanReingold();
+        gridMethod.make_initialisations(boxlength, downLeftCorner, 2);
+        DPointArray positions = new DPointArray(G);
+        DPointArray gridForces = new DPointArray(G);
+        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        {
+            node v = iter.next();
+            positions.set( v.index(), A.get(v).get_x(), A.get(v).get_y(), A.get(v).get_z() );
+        }
+        gridMethod.calculate_approx_repulsive_forces(G, positions, gridForces);
+
+        NodeArray<DPoint> forces = new NodeArray<DPoint>(G, Factory.DPOINT);
+        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        {
+            node v = iter.next();
+            forces.set( v, gridForces.get( v.index() ) );
+        }
+
+        return forces;
+    }
+
+    private NodeArray<DPoint> calculateNMMForces(int precision, FMMMLayout.ReducedTreeConstruction treeConstruction)
+    {
+        NMM nmm = new NMM( new Random(1) );
+        nmm.make_initialisations(G, boxlength, downLeftCorner, PARTICLES_IN_LEAVES, precision,
+                treeConstruction, FMMMLayout.SmallestCellFinding.scfIteratively);
+        assertTrue(nmm.using_NMM);
+        NodeArray<DPoint> forces = new NodeArray<DPoint>(G, Factory.DPOINT);
+        nmm.calculate_repulsive_forces(G, A, forces);
+
+        return forces;
+    }
+
+    /**
+     * The RMS error of the forces relative to the exact forces, sqrt(sum |F - F_exact|^2 / sum |F_exact|^2).
+     */
+    private double rmsError(NodeArray<DPoint> forces, NodeArray<DPoint> exactForces)
+    {
+        double sumOfSquaredErrors = 0.0;
+        double sumOfSquaredForces = 0.0;
+        for (Iterator<node> iter = G.nodesIterator(); iter.hasNext();)
+        {
+            node v = iter.next();
+            DPoint error = forces.get(v).minus( exactForces.get(v) );
+            sumOfSquaredErrors += error.dot(error);
+            sumOfSquaredForces += exactForces.get(v).dot( exactForces.get(v) );
+        }
+
+        return Math.sqrt(sumOfSquaredErrors / sumOfSquaredForces);
+    }
+
+
+}
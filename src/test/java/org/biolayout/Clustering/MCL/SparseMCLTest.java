@@ -0,0 +1,440 @@
+package org.biolayout.Clustering.MCL;
+
+import java.io.*;
+import java.util.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ *
+ * The SparseMCL clusters of generated graphs: cliques joined by bridges,
+ * planted partitions & complete graphs for the pruning schemes. The native
+ * mcl executable (on the PATH, or given by the mcl.executable system property)
+ * is timed against SparseMCL on a planted partition & their clusters compared,
+ * the test being skipped without it.
+ *
+ */
+public class SparseMCLTest
+{
+
+    private static final int TOTAL_CLIQUES = 8;
+    private static final int CLIQUE_SIZE = 10;
+
+    /**
+     * The groups of the planted partitions, the edge probability inside the
+     * groups & the expected number of edges of a node to the other groups.
+     */
+    private static final int TOTAL_GROUPS = 12;
+    private static final int GROUP_SIZE = 100;
+    private static final double INNER_EDGE_PROBABILITY = 0.5;
+    private static final double OUTER_DEGREE = 2.0;
+
+    /**
+     * The default inflation, pre-inflation & scheme of the MCL settings.
+     */
+    private static final float INFLATION = 2.2f;
+    private static final float PRE_INFLATION = 3.0f;
+    private static final int SCHEME = 6;
+
+    private static final int[] THREADS = { 2, 4, 7 };
+
+    /**
+     * The nodes of the complete graph pruned by the schemes, its expanded
+     * columns having all their entries above the cutoff of every scheme.
+     */
+    private static final int COMPLETE_GRAPH_NODES = 700;
+
+    /**
+     * Groups of the timed planted partition & the min fraction of nodes in
+     * the same clusters for SparseMCL & the native mcl executable.
+     */
+    private static final int TIMED_GROUPS = 100;
+    private static final double MINIMUM_NATIVE_AGREEMENT = 0.95;
+
+    private int totalNodes;
+    private int[] columnOffsets;
+    private int[] rowIndices;
+    private float[] weights;
+
+    @Test
+    public void cliquesJoinedByBridgesAreTheClusters()
+    {
+        // the nodes of the cliques are shuffled, consecutive cliques joined by a bridge between their first nodes
+        List<Integer> shuffledNodes = new ArrayList<Integer>();
+        for (int node = 0; node < TOTAL_CLIQUES * CLIQUE_SIZE; node++)
+        {
+            shuffledNodes.add(node);
+        }
+        Collections.shuffle( shuffledNodes, new Random(5) );
+
+        List<int[]> edges = new ArrayList<int[]>();
+        Set<Set<Integer>> cliques = new HashSet<Set<Integer>>();
+        for (int clique = 0; clique < TOTAL_CLIQUES; clique++)
+        {
+            Set<Integer> cliqueNodes = new HashSet<Integer>();
+            for (int i = 0; i < CLIQUE_SIZE; i++)
+            {
+                cliqueNodes.add( shuffledNodes.get(clique * CLIQUE_SIZE + i) );
+                for (int j = i + 1; j < CLIQUE_SIZE; j++)
+                {
+                    edges.add( new int[] { shuffledNodes.get(clique * CLIQUE_SIZE + i), shuffledNodes.get(clique * CLIQUE_SIZE + j) } );
+                }
+            }
+            cliques.add(cliqueNodes);
+
+            int nextClique = (clique + 1) % TOTAL_CLIQUES;
+            edges.add( new int[] { shuffledNodes.get(clique * CLIQUE_SIZE), shuffledNodes.get(nextClique * CLIQUE_SIZE + 1) } );
+        }
+        createGraph(TOTAL_CLIQUES * CLIQUE_SIZE, edges, null);
+
+        ArrayList<int[]> clusters = cluster(INFLATION, 0.0f, SCHEME, 1);
+
+        assertEquals( TOTAL_CLIQUES, clusters.size() );
+        int previousSmallestNode = -1;
+        for (int[] cluster : clusters)
+        {
+            assertTrue( "a cluster is not a clique: " + Arrays.toString(cluster), cliques.contains( asSet(cluster) ) );
+            assertTrue("clusters of the same size are in the order of their smallest nodes", cluster[0] > previousSmallestNode);
+            previousSmallestNode = cluster[0];
+        }
+
+        // every clique has k (k - 1) / 2 inner edges & 2 bridge ends, of a total weight of 2 m
+        double totalWeight = 2.0 * edges.size();
+        double cliqueDegree = CLIQUE_SIZE * (CLIQUE_SIZE - 1) + 2.0;
+        double expectedModularity = TOTAL_CLIQUES * ( CLIQUE_SIZE * (CLIQUE_SIZE - 1) / totalWeight - (cliqueDegree / totalWeight) * (cliqueDegree / totalWeight) );
+        assertEquals( expectedModularity, SparseMCL.modularity(totalNodes, columnOffsets, rowIndices, weights, clusters), 1e-9 );
+    }
+
+    @Test
+    public void clustersAreTheSameForOneAndManyThreads()
+    {
+        createPlantedPartition(TOTAL_GROUPS, 11L);
+
+        List<Double> singleThreadChaos = new ArrayList<Double>();
+        ArrayList<int[]> singleThreadClusters = cluster(INFLATION, PRE_INFLATION, SCHEME, 1, singleThreadChaos);
+        assertPlantedGroups(TOTAL_GROUPS, singleThreadClusters);
+        for (int threads : THREADS)
+        {
+            List<Double> chaos = new ArrayList<Double>();
+            ArrayList<int[]> clusters = cluster(INFLATION, PRE_INFLATION, SCHEME, threads, chaos);
+            assertEquals(singleThreadChaos, chaos);
+            assertClustersEqual(singleThreadClusters, clusters);
+        }
+    }
+
+    @Test
+    public void preInflationIsClusteringThePreInflatedWeights()
+    {
+        createPlantedPartition(TOTAL_GROUPS, 13L);
+        float[] graphWeights = weights;
+        List<Double> chaos = new ArrayList<Double>();
+        ArrayList<int[]> clusters = cluster(INFLATION, PRE_INFLATION, SCHEME, 1, chaos);
+
+        List<Double> notPreInflatedChaos = new ArrayList<Double>();
+        cluster(INFLATION, 0.0f, SCHEME, 1, notPreInflatedChaos);
+        assertTrue( "pre-inflation has to change the first expansion", Math.abs( chaos.get(0) - notPreInflatedChaos.get(0) ) > 1e-3 * chaos.get(0) );
+
+        weights = new float[graphWeights.length];
+        for (int i = 0; i < weights.length; i++)
+        {
+            weights[i] = (float) Math.pow(graphWeights[i], PRE_INFLATION);
+        }
+        List<Double> preInflatedWeightsChaos = new ArrayList<Double>();
+        ArrayList<int[]> preInflatedWeightsClusters = cluster(INFLATION, 0.0f, SCHEME, 1, preInflatedWeightsChaos);
+
+        assertEquals( chaos.get(0), preInflatedWeightsChaos.get(0), 1e-5 * chaos.get(0) );
+        assertClustersEqual(clusters, preInflatedWeightsClusters);
+    }
+
+    @Test
+    public void schemesPruneTheColumnsToTheirSelectionAndRecoveryNumbers()
+    {
+        // all the k (k - 1) / 2 edges of a complete graph, of weights in [0.5, 1.5)
+        Random random = new Random(17);
+        List<int[]> edges = new ArrayList<int[]>();
+        float[] edgeWeights = new float[COMPLETE_GRAPH_NODES * (COMPLETE_GRAPH_NODES - 1) / 2];
+        for (int i = 0; i < COMPLETE_GRAPH_NODES; i++)
+        {
+            for (int j = i + 1; j < COMPLETE_GRAPH_NODES; j++)
+            {
+                edgeWeights[ edges.size() ] = 0.5f + random.nextFloat();
+                edges.add( new int[] { i, j } );
+            }
+        }
+        createGraph(COMPLETE_GRAPH_NODES, edges, edgeWeights);
+
+        // scheme 1 selects 400 entries, about 57% of the column mass, below the recovery percentage of 90%: recovered up to 500 entries
+        assertEquals( (long) COMPLETE_GRAPH_NODES * 500, numberOfNonZerosOfFirstIteration(1) );
+        // scheme 7 selects up to 1200 entries, so all of them
+        assertEquals( (long) COMPLETE_GRAPH_NODES * COMPLETE_GRAPH_NODES, numberOfNonZerosOfFirstIteration(7) );
+    }
+
+    @Test
+    public void reportsTimesAndClustersAgreementOfSparseMCLAndTheNativeExecutable() throws IOException, InterruptedException
+    {
+        String mclExecutable = findNativeMCLExecutable();
+        assumeTrue("no native mcl executable", mclExecutable != null);
+
+        createPlantedPartition(TIMED_GROUPS, 19L);
+        File graphFile = File.createTempFile("SparseMCLTest", ".abc");
+        File clustersFile = File.createTempFile("SparseMCLTest", ".clusters");
+        try
+        {
+            PrintWriter writer = new PrintWriter( new BufferedWriter( new FileWriter(graphFile) ) );
+            for (int column = 0; column < totalNodes; column++)
+            {
+                for (int i = columnOffsets[column]; i < columnOffsets[column + 1]; i++)
+                {
+                    if (rowIndices[i] > column)
+                    {
+                        writer.println(column + "\t" + rowIndices[i] + "\t" + weights[i]);
+                    }
+                }
+            }
+            writer.close();
+
+            long startTime = System.nanoTime();
+            ArrayList<int[]> clusters = cluster(INFLATION, PRE_INFLATION, SCHEME, 1);
+            double sparseMCLTime = (System.nanoTime() - startTime) / 1e6;
+
+            ProcessBuilder processBuilder = new ProcessBuilder(mclExecutable, graphFile.getAbsolutePath(), "--abc",
+                    "-I", Float.toString(INFLATION), "-pi", Float.toString(PRE_INFLATION), "-scheme", Integer.toString(SCHEME),
+                    "-o", clustersFile.getAbsolutePath());
+            processBuilder.redirectErrorStream(true);
+            processBuilder.redirectOutput( new File(clustersFile.getAbsolutePath() + ".log") );
+            startTime = System.nanoTime();
+            int exitValue = processBuilder.start().waitFor();
+            double nativeMCLTime = (System.nanoTime() - startTime) / 1e6;
+            assertEquals(0, exitValue);
+
+            ArrayList<int[]> nativeClusters = new ArrayList<int[]>();
+            BufferedReader reader = new BufferedReader( new FileReader(clustersFile) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                String[] labels = line.trim().split("\\s+");
+                int[] cluster = new int[labels.length];
+                for (int i = 0; i < labels.length; i++)
+                {
+                    cluster[i] = Integer.parseInt(labels[i]);
+                }
+                nativeClusters.add(cluster);
+            }
+            reader.close();
+
+            double agreement = clustersAgreement(clusters, nativeClusters);
+            System.out.println( String.format("MCL of %d nodes: SparseMCL %.1f ms (%d clusters), native mcl %.1f ms (%d clusters), %.1f%% of the nodes in the same clusters",
+                    totalNodes, sparseMCLTime, clusters.size(), nativeMCLTime, nativeClusters.size(), 100.0 * agreement) );
+            assertTrue("clusters agreement " + agreement, agreement >= MINIMUM_NATIVE_AGREEMENT);
+        }
+        finally
+        {
+            graphFile.delete();
+            clustersFile.delete();
+            new File(clustersFile.getAbsolutePath() + ".log").delete();
+        }
+    }
+
+    private ArrayList<int[]> cluster(float inflation, float preInflation, int scheme, int numberOfThreads)
+    {
+        return cluster(inflation, preInflation, scheme, numberOfThreads, new ArrayList<Double>());
+    }
+
+    /**
+     * Clusters the graph, adding the chaos of every iteration to the given list.
+     */
+    private ArrayList<int[]> cluster(float inflation, float preInflation, int scheme, int numberOfThreads, final List<Double> chaos)
+    {
+        SparseMCL sparseMCL = new SparseMCL(totalNodes, columnOffsets, rowIndices, weights, inflation, preInflation, scheme, numberOfThreads);
+        ArrayList<int[]> clusters = sparseMCL.cluster( new SparseMCL.IterationListener()
+        {
+
+            @Override
+            public void iterationDone(int iteration, double iterationChaos, long numberOfNonZeros)
+            {
+                chaos.add(iterationChaos);
+            }
+
+
+        } );
+        assertNotNull(clusters);
+
+        return clusters;
+    }
+
+    /**
+     * The number of non zero entries of the matrix after the first expansion & pruning, cancelling the clustering there.
+     */
+    private long numberOfNonZerosOfFirstIteration(int scheme)
+    {
+        final long[] numberOfNonZerosOfIteration = new long[1];
+        final SparseMCL sparseMCL = new SparseMCL(totalNodes, columnOffsets, rowIndices, weights, INFLATION, 0.0f, scheme, 1);
+        ArrayList<int[]> clusters = sparseMCL.cluster( new SparseMCL.IterationListener()
+        {
+
+            @Override
+            public void iterationDone(int iteration, double chaos, long numberOfNonZeros)
+            {
+                numberOfNonZerosOfIteration[0] = numberOfNonZeros;
+                sparseMCL.cancel();
+            }
+
+
+        } );
+        assertNull("a cancelled clustering has no clusters", clusters);
+
+        return numberOfNonZerosOfIteration[0];
+    }
+
+    /**
+     * Creates a planted partition of groups of GROUP_SIZE nodes, with edge weights in [0.5, 1).
+     */
+    private void createPlantedPartition(int totalGroups, long seed)
+    {
+        Random random = new Random(seed);
+        int numberOfNodes = totalGroups * GROUP_SIZE;
+        double outerEdgeProbability = OUTER_DEGREE / (numberOfNodes - GROUP_SIZE);
+        List<int[]> edges = new ArrayList<int[]>();
+        List<Float> edgeWeights = new ArrayList<Float>();
+        for (int i = 0; i < numberOfNodes; i++)
+        {
+            for (int j = i + 1; j < numberOfNodes; j++)
+            {
+                double probability = (i / GROUP_SIZE == j / GROUP_SIZE) ? INNER_EDGE_PROBABILITY : outerEdgeProbability;
+                if (random.nextDouble() < probability)
+                {
+                    edges.add( new int[] { i, j } );
+                    edgeWeights.add( 0.5f + 0.5f * random.nextFloat() );
+                }
+            }
+        }
+
+        float[] edgeWeightsArray = new float[ edgeWeights.size() ];
+        for (int i = 0; i < edgeWeightsArray.length; i++)
+        {
+            edgeWeightsArray[i] = edgeWeights.get(i);
+        }
+        createGraph(numberOfNodes, edges, edgeWeightsArray);
+    }
+
+    /**
+     * Creates the symmetric graph of the edges as the neighbours of every node, of weight 1 without edge weights.
+     */
+    private void createGraph(int numberOfNodes, List<int[]> edges, float[] edgeWeights)
+    {
+        totalNodes = numberOfNodes;
+        columnOffsets = new int[numberOfNodes + 1];
+        for (int[] edge : edges)
+        {
+            columnOffsets[ edge[0] + 1 ]++;
+            columnOffsets[ edge[1] + 1 ]++;
+        }
+        for (int node = 0; node < numberOfNodes; node++)
+        {
+            columnOffsets[node + 1] += columnOffsets[node];
+        }
+
+        int[] fill = Arrays.copyOf(columnOffsets, numberOfNodes);
+        rowIndices = new int[ columnOffsets[numberOfNodes] ];
+        weights = new float[ columnOffsets[numberOfNodes] ];
+        for (int index = 0; index < edges.size(); index++)
+        {
+            int[] edge = edges.get(index);
+            float weight = (edgeWeights != null) ? edgeWeights[index] : 1.0f;
+            rowIndices[ fill[ edge[0] ] ] = edge[1];
+            weights[ fill[ edge[0] ]++ ] = weight;
+            rowIndices[ fill[ edge[1] ] ] = edge[0];
+            weights[ fill[ edge[1] ]++ ] = weight;
+        }
+    }
+
+    /**
+     * Asserts that the clusters are the groups of the planted partition, in the order of their nodes.
+     */
+    private static void assertPlantedGroups(int totalGroups, ArrayList<int[]> clusters)
+    {
+        assertEquals( totalGroups, clusters.size() );
+        for (int group = 0; group < totalGroups; group++)
+        {
+            int[] groupNodes = new int[GROUP_SIZE];
+            for (int i = 0; i < GROUP_SIZE; i++)
+            {
+                groupNodes[i] = group * GROUP_SIZE + i;
+            }
+            assertArrayEquals( groupNodes, clusters.get(group) );
+        }
+    }
+
+    private static void assertClustersEqual(ArrayList<int[]> expectedClusters, ArrayList<int[]> clusters)
+    {
+        assertEquals( expectedClusters.size(), clusters.size() );
+        for (int i = 0; i < clusters.size(); i++)
+        {
+            assertArrayEquals( expectedClusters.get(i), clusters.get(i) );
+        }
+    }
+
+    /**
+     * The fraction of the nodes whose clusters have the same nodes in both clusterings.
+     */
+    private double clustersAgreement(ArrayList<int[]> clusters, ArrayList<int[]> otherClusters)
+    {
+        Set<Set<Integer>> otherClusterSets = new HashSet<Set<Integer>>();
+        for (int[] cluster : otherClusters)
+        {
+            otherClusterSets.add( asSet(cluster) );
+        }
+
+        int nodesInSameClusters = 0;
+        for (int[] cluster : clusters)
+        {
+            if ( otherClusterSets.contains( asSet(cluster) ) )
+            {
+                nodesInSameClusters += cluster.length;
+            }
+        }
+
+        return (double) nodesInSameClusters / totalNodes;
+    }
+
+    private static Set<Integer> asSet(int[] cluster)
+    {
+        Set<Integer> set = new HashSet<Integer>();
+        for (int node : cluster)
+        {
+            set.add(node);
+        }
+
+        return set;
+    }
+
+    /**
+     * The mcl.executable system property, else the first mcl executable on the PATH, else null.
+     */
+    private static String findNativeMCLExecutable()
+    {
+        String mclExecutable = System.getProperty("mcl.executable");
+        if (mclExecutable != null)
+        {
+            return mclExecutable;
+        }
+
+        String path = System.getenv("PATH");
+        if (path != null)
+        {
+            for (String directory : path.split(File.pathSeparator))
+            {
+                File file = new File(directory, "mcl");
+                if ( file.isFile() && file.canExecute() )
+                {
+                    return file.getAbsolutePath();
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+}
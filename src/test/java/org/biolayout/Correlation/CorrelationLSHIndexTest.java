@@ -0,0 +1,292 @@
+package org.biolayout.Correlation;
+
+import java.util.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * Recall & pruning of the CorrelationLSHIndex against the exact Pearson
+ * correlations of generated standardised rows. The times of the LSH candidate
+ * search & verification & of the exact all pairs calculation are reported on
+ * a larger generated matrix.
+ *
+ */
+public class CorrelationLSHIndexTest
+{
+
+    /**
+     * Min recall of the above threshold pairs, the expected recall of the
+     * default 32 tables of 12 bits being 99.5% at a 0.9 correlation.
+     */
+    private static final double MINIMUM_RECALL = 0.95;
+
+    /**
+     * Max fraction of all row pairs to be verified as candidates.
+     */
+    private static final double MAXIMUM_CANDIDATES_FRACTION = 0.10;
+
+    private static final float THRESHOLD = 0.9f;
+    private static final int TOTAL_COLUMNS = 40;
+
+    /**
+     * Clusters & unrelated rows of the timed matrix, calculated exactly in
+     * tiles of rows as CorrelationData does for TOTAL_COLUMNS columns.
+     */
+    private static final int TIMED_CLUSTERS = 1000;
+    private static final int TIMED_UNRELATED_ROWS = 20000;
+    private static final int TIMED_TILE_SIZE = 512;
+
+    @Test
+    public void recallOfClusteredRowsIsAboveTheMinimum()
+    {
+        // 100 clusters of 10 rows with noise 0.2 (correlations about 0.96 within a cluster) & 1000 unrelated rows
+        java.util.Random random = new java.util.Random(42);
+        int totalRows = 2000;
+        float[][] rows = new float[totalRows][];
+        for (int cluster = 0; cluster < 100; cluster++)
+        {
+            float[] base = randomRow(random);
+            for (int member = 0; member < 10; member++)
+            {
+                float[] row = new float[TOTAL_COLUMNS];
+                for (int k = 0; k < TOTAL_COLUMNS; k++)
+                {
+                    row[k] = base[k] + 0.2f * (float) random.nextGaussian();
+                }
+                rows[cluster * 10 + member] = row;
+            }
+        }
+        for (int i = 1000; i < totalRows; i++)
+        {
+            rows[i] = randomRow(random);
+        }
+
+        CorrelationMatrix standardisedData = standardise(rows);
+        CorrelationLSHIndex index = new CorrelationLSHIndex(standardisedData, validRows(totalRows),
+                CorrelationEnvironment.DEFAULT_CORRELATION_LSH_TABLES, CorrelationEnvironment.DEFAULT_CORRELATION_LSH_BITS_PER_TABLE, 1);
+
+        long exactPairs = 0;
+        long foundPairs = 0;
+        long totalCandidates = 0;
+        int[] stamps = new int[totalRows];
+        Arrays.fill(stamps, -1);
+        int[] candidates = new int[totalRows];
+        boolean[] isCandidate = new boolean[totalRows];
+        for (int i = 0; i < totalRows; i++)
+        {
+            int rowCandidates = index.findCandidates(i, stamps, candidates);
+            totalCandidates += rowCandidates;
+            for (int k = 0; k < rowCandidates; k++)
+            {
+                assertTrue("candidates have to be after the row", candidates[k] > i);
+                assertFalse("candidates have to be distinct", isCandidate[candidates[k]]);
+                isCandidate[candidates[k]] = true;
+            }
+
+            for (int j = i + 1; j < totalRows; j++)
+            {
+                if (dot(standardisedData, i, j) >= THRESHOLD)
+                {
+                    exactPairs++;
+                    if (isCandidate[j])
+                    {
+                        foundPairs++;
+                    }
+                }
+            }
+
+            for (int k = 0; k < rowCandidates; k++)
+            {
+                isCandidate[candidates[k]] = false;
+            }
+        }
+
+        double recall = (double) foundPairs / exactPairs;
+        double candidatesFraction = (double) totalCandidates / ( (long) totalRows * (totalRows - 1) / 2 );
+        assertTrue("expected some pairs above the threshold", exactPairs >= 4000);
+        assertTrue("recall " + recall + " below " + MINIMUM_RECALL, recall >= MINIMUM_RECALL);
+        assertTrue("candidates fraction " + candidatesFraction + " above " + MAXIMUM_CANDIDATES_FRACTION, candidatesFraction <= MAXIMUM_CANDIDATES_FRACTION);
+    }
+
+    @Test
+    public void reportsTimesOfTheLSHAndTheExactCalculations()
+    {
+        java.util.Random random = new java.util.Random(11);
+        int totalRows = 10 * TIMED_CLUSTERS + TIMED_UNRELATED_ROWS;
+        float[][] rows = new float[totalRows][];
+        for (int cluster = 0; cluster < TIMED_CLUSTERS; cluster++)
+        {
+            float[] base = randomRow(random);
+            for (int member = 0; member < 10; member++)
+            {
+                float[] row = new float[TOTAL_COLUMNS];
+                for (int k = 0; k < TOTAL_COLUMNS; k++)
+                {
+                    row[k] = base[k] + 0.2f * (float) random.nextGaussian();
+                }
+                rows[cluster * 10 + member] = row;
+            }
+        }
+        for (int i = 10 * TIMED_CLUSTERS; i < totalRows; i++)
+        {
+            rows[i] = randomRow(random);
+        }
+
+        CorrelationMatrix standardisedData = standardise(rows);
+        boolean[] validRows = validRows(totalRows);
+        CorrelationMetric metric = new StandardisedCorrelationMetric(standardisedData, validRows, TIMED_TILE_SIZE);
+
+        // exact: every row band against the tiles of the rows after it
+        long startTime = System.nanoTime();
+        long exactPairs = 0;
+        float[] tileResults = new float[TIMED_TILE_SIZE];
+        for (int bandStartRow = 0; bandStartRow < totalRows - 1; bandStartRow += TIMED_TILE_SIZE)
+        {
+            int bandEndRow = Math.min(bandStartRow + TIMED_TILE_SIZE, totalRows - 1);
+            for (int tileStartColumn = bandStartRow + 1; tileStartColumn < totalRows; tileStartColumn += TIMED_TILE_SIZE)
+            {
+                int tileEndColumn = Math.min(tileStartColumn + TIMED_TILE_SIZE, totalRows);
+                for (int i = bandStartRow; i < bandEndRow; i++)
+                {
+                    int fromRow = Math.max(tileStartColumn, i + 1);
+                    if (fromRow < tileEndColumn)
+                    {
+                        metric.calculateRow(i, fromRow, tileEndColumn, tileResults, 0);
+                        for (int j = fromRow; j < tileEndColumn; j++)
+                        {
+                            if (tileResults[j - fromRow] >= THRESHOLD)
+                            {
+                                exactPairs++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        double exactTime = (System.nanoTime() - startTime) / 1e6;
+
+        // LSH: the index, then the candidates of every row verified with the same metric
+        startTime = System.nanoTime();
+        CorrelationLSHIndex index = new CorrelationLSHIndex(standardisedData, validRows,
+                CorrelationEnvironment.DEFAULT_CORRELATION_LSH_TABLES, CorrelationEnvironment.DEFAULT_CORRELATION_LSH_BITS_PER_TABLE, 1);
+        double indexTime = (System.nanoTime() - startTime) / 1e6;
+
+        startTime = System.nanoTime();
+        long foundPairs = 0;
+        long totalCandidates = 0;
+        int[] stamps = new int[totalRows];
+        Arrays.fill(stamps, -1);
+        int[] candidates = new int[totalRows];
+        for (int i = 0; i < totalRows; i++)
+        {
+            int rowCandidates = index.findCandidates(i, stamps, candidates);
+            totalCandidates += rowCandidates;
+            for (int k = 0; k < rowCandidates; k++)
+            {
+                if (metric.calculate(i, candidates[k]) >= THRESHOLD)
+                {
+                    foundPairs++;
+                }
+            }
+        }
+        double lshTime = (System.nanoTime() - startTime) / 1e6;
+
+        double recall = (double) foundPairs / exactPairs;
+        double candidatesFraction = (double) totalCandidates / ( (long) totalRows * (totalRows - 1) / 2 );
+        System.out.println( String.format("Correlation of %d rows of %d columns: exact %.0f ms, LSH index %.0f ms & candidates %.0f ms (%.2f%% of the pairs), speedup %.1fx, recall %.4f",
+                totalRows, TOTAL_COLUMNS, exactTime, indexTime, lshTime, 100.0 * candidatesFraction, exactTime / (indexTime + lshTime), recall) );
+        assertTrue("recall " + recall + " below " + MINIMUM_RECALL, recall >= MINIMUM_RECALL);
+        assertTrue("candidates fraction " + candidatesFraction + " above " + MAXIMUM_CANDIDATES_FRACTION, candidatesFraction <= MAXIMUM_CANDIDATES_FRACTION);
+    }
+
+    @Test
+    public void oversizedBucketsAreSplit()
+    {
+        // one table of 1 bit hashes 10000 unrelated rows into 2 buckets of about 5000 rows, to be split
+        java.util.Random random = new java.util.Random(7);
+        int totalRows = 10000;
+        float[][] rows = new float[totalRows][];
+        for (int i = 0; i < totalRows; i++)
+        {
+            rows[i] = randomRow(random);
+        }
+
+        CorrelationLSHIndex index = new CorrelationLSHIndex(standardise(rows), validRows(totalRows), 1, 1, 1);
+        int[] stamps = new int[totalRows];
+        Arrays.fill(stamps, -1);
+        int[] candidates = new int[totalRows];
+        int maximumCandidates = 0;
+        for (int i = 0; i < totalRows; i++)
+        {
+            maximumCandidates = Math.max( maximumCandidates, index.findCandidates(i, stamps, candidates) );
+        }
+
+        assertTrue("a row has " + maximumCandidates + " candidates", maximumCandidates < CorrelationLSHIndex.MAXIMUM_BUCKET_SIZE);
+    }
+
+    private static float[] randomRow(java.util.Random random)
+    {
+        float[] row = new float[TOTAL_COLUMNS];
+        for (int k = 0; k < TOTAL_COLUMNS; k++)
+        {
+            row[k] = (float) random.nextGaussian();
+        }
+
+        return row;
+    }
+
+    /**
+     * Centres & normalises the rows to unit length, as CorrelationData does for Pearson.
+     */
+    private static CorrelationMatrix standardise(float[][] rows)
+    {
+        CorrelationMatrix matrix = new CorrelationMatrix(rows.length, TOTAL_COLUMNS);
+        float[] standardisedRow = new float[TOTAL_COLUMNS];
+        for (int i = 0; i < rows.length; i++)
+        {
+            double mean = 0.0;
+            for (float value : rows[i])
+            {
+                mean += value;
+            }
+            mean /= TOTAL_COLUMNS;
+
+            double norm = 0.0;
+            for (float value : rows[i])
+            {
+                norm += (value - mean) * (value - mean);
+            }
+            norm = Math.sqrt(norm);
+
+            for (int k = 0; k < TOTAL_COLUMNS; k++)
+            {
+                standardisedRow[k] = (float) ( (rows[i][k] - mean) / norm );
+            }
+            matrix.writeRows(i, i + 1, standardisedRow, 0);
+        }
+
+        return matrix;
+    }
+
+    private static boolean[] validRows(int totalRows)
+    {
+        boolean[] validRows = new boolean[totalRows];
+        Arrays.fill(validRows, true);
+
+        return validRows;
+    }
+
+    private static float dot(CorrelationMatrix matrix, int firstRow, int secondRow)
+    {
+        float sum = 0.0f;
+        for (int k = 0; k < matrix.getTotalColumns(); k++)
+        {
+            sum += matrix.get(firstRow, k) * matrix.get(secondRow, k);
+        }
+
+        return sum;
+    }
+
+
+}
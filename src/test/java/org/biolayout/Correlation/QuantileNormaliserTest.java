@@ -0,0 +1,177 @@
+package org.biolayout.Correlation;
+
+import java.util.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * The QuantileNormaliser against the previous (sorted list & unique ranks)
+ * quantile normalisation on matrices without ties, and its averaged ranks
+ * on a matrix with ties.
+ *
+ */
+public class QuantileNormaliserTest
+{
+
+    /**
+     * Max relative difference, as the previous normalisation summed the means in float.
+     */
+    private static final float TOLERANCE = 1e-5f;
+
+    @Test
+    public void matchesThePreviousNormalisationWithoutTies()
+    {
+        java.util.Random random = new java.util.Random(42);
+        int[][] sizes = { { 1, 1 }, { 2, 3 }, { 7, 4 }, { 50, 9 }, { 200, 16 } };
+        for (int[] size : sizes)
+        {
+            int totalRows = size[0];
+            int totalColumns = size[1];
+            float[][] values = new float[totalRows][totalColumns];
+            Set<Float> usedValues = new HashSet<Float>();
+            for (int column = 0; column < totalColumns; column++)
+            {
+                usedValues.clear();
+                for (int row = 0; row < totalRows; row++)
+                {
+                    float value;
+                    do
+                    {
+                        value = (float) (10.0 * random.nextGaussian());
+                    }
+                    while ( !usedValues.add(value) );
+                    values[row][column] = value;
+                }
+            }
+
+            float[][] expectedValues = previousQuantileNormalise(values);
+            CorrelationMatrix matrix = createMatrix(values);
+            new QuantileNormaliser(matrix, null).normalise(null);
+
+            for (int row = 0; row < totalRows; row++)
+            {
+                for (int column = 0; column < totalColumns; column++)
+                {
+                    float expected = expectedValues[row][column];
+                    assertEquals(totalRows + "x" + totalColumns + " at " + row + "," + column,
+                            expected, matrix.get(row, column), TOLERANCE * Math.max(1.0f, Math.abs(expected)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tiedValuesGetTheAverageOfTheirRanksMeans()
+    {
+        // sorted columns { 1, 1, 3 } & { 2, 4, 5 }: rank means 1.5, 2.5 & 4
+        float[][] values = { { 1.0f, 2.0f },
+                             { 1.0f, 5.0f },
+                             { 3.0f, 4.0f } };
+        CorrelationMatrix matrix = createMatrix(values);
+        new QuantileNormaliser(matrix, null).normalise(null);
+
+        // the tied 1s of the first column span ranks 0 & 1: (1.5 + 2.5) / 2
+        float[][] expectedValues = { { 2.0f, 1.5f },
+                                     { 2.0f, 4.0f },
+                                     { 4.0f, 2.5f } };
+        for (int row = 0; row < values.length; row++)
+        {
+            for (int column = 0; column < values[0].length; column++)
+            {
+                assertEquals(row + "," + column, expectedValues[row][column], matrix.get(row, column), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void allTiedColumnGetsTheOverallMean()
+    {
+        float[][] values = { { 7.0f, 1.0f },
+                             { 7.0f, 2.0f },
+                             { 7.0f, 6.0f } };
+        CorrelationMatrix matrix = createMatrix(values);
+        new QuantileNormaliser(matrix, null).normalise(null);
+
+        // rank means 4, 4.5 & 6.5, averaging to 5 over the all tied first column
+        for (int row = 0; row < values.length; row++)
+        {
+            assertEquals(5.0f, matrix.get(row, 0), 0.0f);
+        }
+        assertEquals(4.0f, matrix.get(0, 1), 0.0f);
+        assertEquals(4.5f, matrix.get(1, 1), 0.0f);
+        assertEquals(6.5f, matrix.get(2, 1), 0.0f);
+    }
+
+    private static CorrelationMatrix createMatrix(float[][] values)
+    {
+        CorrelationMatrix matrix = new CorrelationMatrix(values.length, values[0].length);
+        for (int row = 0; row < values.length; row++)
+        {
+            matrix.writeRows(row, row + 1, values[row], 0);
+        }
+
+        return matrix;
+    }
+
+    /**
+     * The previous CorrelationData quantile normalisation, ranking every value
+     * among the unique sorted values of its column & summing the means in float.
+     */
+    private static float[][] previousQuantileNormalise(float[][] values)
+    {
+        int totalRows = values.length;
+        int totalColumns = values[0].length;
+        int[] quantileRanking = new int[totalRows * totalColumns];
+        float[] sortedColumnValues = new float[totalRows * totalColumns];
+        float[] meanValues = new float[totalRows];
+        for (int column = 0; column < totalColumns; column++)
+        {
+            List<Float> columnValues = new ArrayList<Float>();
+            for (int row = 0; row < totalRows; row++)
+            {
+                columnValues.add(values[row][column]);
+            }
+            Collections.sort(columnValues);
+            Set<Float> uniqueSortedColumnValues = new TreeSet<Float>(columnValues);
+
+            for (int row = 0; row < totalRows; row++)
+            {
+                float dataValue = values[row][column];
+                int i = 0;
+                for (Float columnValue : uniqueSortedColumnValues)
+                {
+                    if (columnValue == dataValue)
+                    {
+                        quantileRanking[row * totalColumns + column] = i;
+                    }
+                    i++;
+                }
+                sortedColumnValues[row * totalColumns + column] = columnValues.get(row);
+            }
+        }
+
+        for (int row = 0; row < totalRows; row++)
+        {
+            float meanValue = 0;
+            for (int column = 0; column < totalColumns; column++)
+            {
+                meanValue += sortedColumnValues[row * totalColumns + column];
+            }
+            meanValues[row] = meanValue / totalColumns;
+        }
+
+        float[][] normalisedValues = new float[totalRows][totalColumns];
+        for (int row = 0; row < totalRows; row++)
+        {
+            for (int column = 0; column < totalColumns; column++)
+            {
+                normalisedValues[row][column] = meanValues[quantileRanking[row * totalColumns + column]];
+            }
+        }
+
+        return normalisedValues;
+    }
+
+
+}
@@ -0,0 +1,346 @@
+package org.biolayout.Simulation;
+
+import java.util.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * The SPNTransitionProgram activation of the transitions, as run by the
+ * SignalingPetriNetSimulation, against the previous per transition arrays
+ * kernel on generated nets with the uniform distribution: the same seed has
+ * to give the same places at every time block of every run, checked with a
+ * checksum of all of them. The per run times of both kernels are reported
+ * on larger generated nets.
+ *
+ */
+public class SPNTransitionProgramTest
+{
+
+    private static final int TOTAL_PLACES = 100;
+    private static final int TOTAL_TRANSITIONS = 200;
+    private static final int TOTAL_TIME_BLOCKS = 30;
+    private static final int TOTAL_RUNS = 5;
+    private static final long NET_SEED = 42L;
+    private static final long RUNS_SEED = 9L;
+
+    /**
+     * Places, transitions & time blocks of the timed nets.
+     */
+    private static final int[][] TIMED_NETS = { { 2000, 2000, 50 }, { 20000, 20000, 50 } };
+    private static final int TIMED_WARMUP_RUNS = 5;
+    private static final int TIMED_RUNS = 20;
+
+    private int totalTimeBlocks;
+    private int numberOfVertices;
+    private int[] transitionIDs;
+    private int[][] parentsIDs;
+    private int[][] childrenIDs;
+    private float[][] childrenWeights;
+    private int[][] totalInhibitorsIDs;
+    private int[][] partialInhibitorsIDs;
+
+    @Test
+    public void compiledKernelMatchesThePreviousKernel()
+    {
+        SPNTransitionProgram transitionProgram = generateNet(NET_SEED, TOTAL_PLACES, TOTAL_TRANSITIONS, TOTAL_TIME_BLOCKS);
+
+        double previousChecksum = runPreviousKernel(TOTAL_RUNS, true, RUNS_SEED);
+        double compiledChecksum = runCompiledKernel(transitionProgram, TOTAL_RUNS, true, RUNS_SEED);
+
+        assertTrue("expected tokens to flow through the net", previousChecksum > 0.0);
+        assertEquals(previousChecksum, compiledChecksum, 0.0);
+    }
+
+    @Test
+    public void compiledKernelMatchesThePreviousKernelWithOriginalTransitions()
+    {
+        SPNTransitionProgram transitionProgram = generateNet(NET_SEED, TOTAL_PLACES, TOTAL_TRANSITIONS, TOTAL_TIME_BLOCKS);
+
+        double previousChecksum = runPreviousKernel(TOTAL_RUNS, false, RUNS_SEED);
+        double compiledChecksum = runCompiledKernel(transitionProgram, TOTAL_RUNS, false, RUNS_SEED);
+
+        assertTrue("expected tokens to flow through the net", previousChecksum > 0.0);
+        assertEquals(previousChecksum, compiledChecksum, 0.0);
+    }
+
+    @Test
+    public void compiledProgramKeepsAllTransitions()
+    {
+        SPNTransitionProgram transitionProgram = generateNet(NET_SEED, TOTAL_PLACES, TOTAL_TRANSITIONS, TOTAL_TIME_BLOCKS);
+
+        assertEquals(TOTAL_TRANSITIONS, transitionProgram.numberOfTransitions);
+        Set<Integer> instructionOffsets = new HashSet<Integer>();
+        for (int transition = 0; transition < TOTAL_TRANSITIONS; transition++)
+        {
+            int instructionOffset = transitionProgram.transitionInstructionOffsets[transition];
+            int transitionID = transitionIDs[transition];
+            assertTrue("instruction offsets have to be distinct", instructionOffsets.add(instructionOffset));
+            assertEquals(parentsIDs[transitionID].length, transitionProgram.instructions[instructionOffset + SPNTransitionProgram.NUMBER_OF_PARENTS]);
+            assertEquals(childrenIDs[transitionID].length, transitionProgram.instructions[instructionOffset + SPNTransitionProgram.NUMBER_OF_CHILDREN]);
+        }
+    }
+
+    /**
+     * Reports the per run times of the previous & the compiled kernels, after
+     * warming both up, the checksums of the timed runs having to be equal.
+     */
+    @Test
+    public void reportsPerRunTimesOfThePreviousAndTheCompiledKernels()
+    {
+        for (int[] timedNet : TIMED_NETS)
+        {
+            SPNTransitionProgram transitionProgram = generateNet(NET_SEED, timedNet[0], timedNet[1], timedNet[2]);
+            runPreviousKernel(TIMED_WARMUP_RUNS, true, RUNS_SEED);
+            runCompiledKernel(transitionProgram, TIMED_WARMUP_RUNS, true, RUNS_SEED);
+
+            long startTime = System.nanoTime();
+            double previousChecksum = runPreviousKernel(TIMED_RUNS, true, RUNS_SEED);
+            double previousRunTime = (System.nanoTime() - startTime) / 1e6 / TIMED_RUNS;
+
+            startTime = System.nanoTime();
+            double compiledChecksum = runCompiledKernel(transitionProgram, TIMED_RUNS, true, RUNS_SEED);
+            double compiledRunTime = (System.nanoTime() - startTime) / 1e6 / TIMED_RUNS;
+
+            System.out.println( String.format("SPN net of %d places, %d transitions & %d time blocks: previous kernel %.2f ms/run, compiled kernel %.2f ms/run, speedup %.2fx",
+                    timedNet[0], timedNet[1], timedNet[2], previousRunTime, compiledRunTime, previousRunTime / compiledRunTime) );
+            assertEquals(previousChecksum, compiledChecksum, 0.0);
+        }
+    }
+
+    /**
+     * Generates a net of places & transitions (the transition IDs following
+     * the place IDs, in shuffled order) with 1 to 3 parents (none for 1 in 4
+     * transitions) & children, some inhibitors & weights varying per time
+     * block, & compiles it.
+     */
+    private SPNTransitionProgram generateNet(long seed, int totalPlaces, int totalTransitions, int totalTimeBlocks)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        this.totalTimeBlocks = totalTimeBlocks;
+        numberOfVertices = totalPlaces + totalTransitions;
+        transitionIDs = new int[totalTransitions];
+        parentsIDs = new int[numberOfVertices][0];
+        childrenIDs = new int[numberOfVertices][0];
+        childrenWeights = new float[numberOfVertices][0];
+        totalInhibitorsIDs = new int[numberOfVertices][0];
+        partialInhibitorsIDs = new int[numberOfVertices][0];
+
+        List<Integer> shuffledTransitionIDs = new ArrayList<Integer>();
+        for (int transition = 0; transition < totalTransitions; transition++)
+        {
+            shuffledTransitionIDs.add(totalPlaces + transition);
+        }
+        Collections.shuffle( shuffledTransitionIDs, new java.util.Random(seed) );
+
+        for (int transition = 0; transition < totalTransitions; transition++)
+        {
+            int transitionID = shuffledTransitionIDs.get(transition);
+            transitionIDs[transition] = transitionID;
+            parentsIDs[transitionID] = (random.nextInt(4) == 0) ? new int[0] : randomPlaces(random, totalPlaces, 1, 3);
+            childrenIDs[transitionID] = randomPlaces(random, totalPlaces, 1, 3);
+            if (random.nextInt(8) == 0)
+            {
+                totalInhibitorsIDs[transitionID] = randomPlaces(random, totalPlaces, 1, 1);
+            }
+            if (random.nextInt(8) == 0)
+            {
+                partialInhibitorsIDs[transitionID] = randomPlaces(random, totalPlaces, 1, 2);
+            }
+
+            childrenWeights[transitionID] = new float[childrenIDs[transitionID].length * totalTimeBlocks];
+            for (int k = 0; k < childrenWeights[transitionID].length; k++)
+            {
+                childrenWeights[transitionID][k] = 1.0f + random.nextInt(3);
+            }
+        }
+
+        return new SPNTransitionProgram(transitionIDs, parentsIDs, childrenIDs, childrenWeights,
+                                        totalInhibitorsIDs, partialInhibitorsIDs, numberOfVertices, totalTimeBlocks);
+    }
+
+    private static int[] randomPlaces(SplittableRandom random, int totalPlaces, int minimum, int maximum)
+    {
+        int[] places = new int[minimum + random.nextInt(maximum - minimum + 1)];
+        for (int i = 0; i < places.length; i++)
+        {
+            places[i] = random.nextInt(totalPlaces);
+        }
+
+        return places;
+    }
+
+    private static void shuffle(int[] transitions, SplittableRandom random)
+    {
+        for (int i = transitions.length; i > 1; i--)
+        {
+            int index = random.nextInt(i);
+            int temp = transitions[i - 1];
+            transitions[i - 1] = transitions[index];
+            transitions[index] = temp;
+        }
+    }
+
+    private static double checksum(float[] places)
+    {
+        double checksum = 0.0;
+        for (float place : places)
+        {
+            checksum += place;
+        }
+
+        return checksum;
+    }
+
+    /**
+     * Runs the previous kernel, firing the transitions by ID from the per transition arrays.
+     */
+    private double runPreviousKernel(int totalRuns, boolean isConsumptive, long seed)
+    {
+        SplittableRandom masterRandom = new SplittableRandom(seed);
+        float[] places = new float[numberOfVertices];
+        int[] transitions = new int[transitionIDs.length];
+        double checksum = 0.0;
+        for (int run = 0; run < totalRuns; run++)
+        {
+            SplittableRandom random = masterRandom.split();
+            Arrays.fill(places, 0.0f);
+            System.arraycopy(transitionIDs, 0, transitions, 0, transitions.length);
+            for (int timeBlock = 1; timeBlock < totalTimeBlocks; timeBlock++)
+            {
+                shuffle(transitions, random);
+                int i = transitions.length;
+                while (--i >= 0)
+                {
+                    previousActivationRuleSet(transitions[i], places, timeBlock, isConsumptive, random);
+                }
+                checksum += checksum(places);
+            }
+        }
+
+        return checksum;
+    }
+
+    /**
+     * Runs the compiled kernel of the transition program, firing the
+     * transitions by instruction offset as SignalingPetriNetSimulation does.
+     */
+    private double runCompiledKernel(SPNTransitionProgram transitionProgram, int totalRuns, boolean isConsumptive, long seed)
+    {
+        SplittableRandom masterRandom = new SplittableRandom(seed);
+        float[] places = new float[numberOfVertices];
+        int[] transitions = new int[transitionProgram.numberOfTransitions];
+        double checksum = 0.0;
+        for (int run = 0; run < totalRuns; run++)
+        {
+            final SplittableRandom random = masterRandom.split();
+            SPNTransitionProgram.TransitionProbability transitionProbability = new SPNTransitionProgram.TransitionProbability()
+            {
+
+                @Override
+                public double nextProbability()
+                {
+                    return random.nextDouble();
+                }
+            };
+
+            Arrays.fill(places, 0.0f);
+            System.arraycopy(transitionProgram.transitionInstructionOffsets, 0, transitions, 0, transitions.length);
+            for (int timeBlock = 1; timeBlock < totalTimeBlocks; timeBlock++)
+            {
+                shuffle(transitions, random);
+                transitionProgram.activateAllTransitions(transitions, places, timeBlock, isConsumptive, transitionProbability);
+                checksum += checksum(places);
+            }
+        }
+
+        return checksum;
+    }
+
+    /**
+     * The previous activation rule set of a transition, from its per transition arrays.
+     */
+    private void previousActivationRuleSet(int transitionID, float[] places, int timeBlock, boolean isConsumptive, SplittableRandom random)
+    {
+        int[] parentIDs = parentsIDs[transitionID];
+        int[] childIDs = childrenIDs[transitionID];
+        int[] totalInhibitorIDs = totalInhibitorsIDs[transitionID];
+        int[] partialInhibitorIDs = partialInhibitorsIDs[transitionID];
+        float[] childWeights = childrenWeights[transitionID];
+        int i = 0;
+        int index = 0;
+        boolean hasTotalInhibitorParents = false;
+        boolean hasPartialInhibitorParents = false;
+        float partialInihibitorTokens = 0.0f;
+        float tokenInPlace = 0.0f;
+        float tokenMoving = -1.0f;
+        double randomValue = 0.0;
+
+        if (parentIDs.length == 0)
+        {
+            tokenMoving = 1.0f;
+        }
+        else
+        {
+            i = totalInhibitorIDs.length;
+            while (--i >= 0)
+                if (!hasTotalInhibitorParents)
+                    hasTotalInhibitorParents = (places[totalInhibitorIDs[i]] > 0.0f);
+
+            if (!hasTotalInhibitorParents)
+            {
+                i = partialInhibitorIDs.length;
+                while (--i >= 0)
+                    if ( (hasPartialInhibitorParents = (places[partialInhibitorIDs[i]] > 0.0f) ) )
+                        partialInihibitorTokens += places[partialInhibitorIDs[i]];
+            }
+
+            i = parentIDs.length;
+            while (--i >= 0)
+            {
+                tokenInPlace = places[parentIDs[i]];
+                if ( (tokenMoving > tokenInPlace) || (tokenMoving < 0.0f) )
+                {
+                    tokenMoving = tokenInPlace;
+                    index = i;
+                }
+            }
+
+            randomValue = random.nextDouble();
+            if (randomValue == 0.0)
+                return;
+            else
+                tokenMoving = (int)( randomValue * (tokenMoving + 1.0f) );
+        }
+
+        i = parentIDs.length;
+        while (--i >= 0)
+        {
+            if (isConsumptive)
+                places[parentIDs[i]] -= ( (index == i) ? tokenMoving : (int)( randomValue * (places[parentIDs[i]] + 1.0f) ) );
+            else
+                places[parentIDs[i]] -= tokenMoving;
+        }
+
+        if (hasTotalInhibitorParents)
+            return;
+
+        if (hasPartialInhibitorParents)
+        {
+            if (partialInihibitorTokens > tokenMoving)
+                return;
+
+            tokenMoving -= partialInihibitorTokens;
+        }
+
+        i = childIDs.length;
+        if (i > 0)
+        {
+            int numberOfTimeBlocks = childWeights.length / childIDs.length;
+            while (--i >= 0)
+                places[childIDs[i]] += (tokenMoving * childWeights[i * numberOfTimeBlocks + timeBlock]);
+        }
+    }
+
+
+}